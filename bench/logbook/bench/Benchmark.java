@@ -0,0 +1,235 @@
+package logbook.bench;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+
+/**
+ * 簡単なマイクロベンチマーク
+ *
+ * 指定時間だけ処理を繰り返す試行をウォームアップの後に何回か行い、1回あたりの時間と確保したメモリを測ります。
+ * 結果は JMH の JSON 出力と同じ形式(mode=avgt, score=ns/op, gc.alloc.rate.norm=B/op)で書き出すので、
+ * バージョン間で比較できます。
+ *
+ * @author Nekopanda
+ */
+public final class Benchmark {
+
+    /**
+     * 測る処理
+     * 後始末が必要な場合は {@link Closeable} も実装すると測り終えた後に閉じます
+     */
+    public static interface Task {
+        /**
+         * @return 最適化で処理が消されないように結果を返す（使わない場合は null ）
+         */
+        Object run() throws Exception;
+    }
+
+    /**
+     * 結果
+     */
+    public static final class Result {
+        final String name;
+        final int iterations;
+        final double score;
+        final double error;
+        final double min;
+        final double max;
+        final double allocBytes;
+        final long ops;
+
+        Result(String name, double[] nanosPerOp, double allocBytes, long ops) {
+            this.name = name;
+            this.iterations = nanosPerOp.length;
+            double sum = 0;
+            double min = Double.MAX_VALUE;
+            double max = 0;
+            for (double v : nanosPerOp) {
+                sum += v;
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            double mean = sum / nanosPerOp.length;
+            double var = 0;
+            for (double v : nanosPerOp) {
+                var += (v - mean) * (v - mean);
+            }
+            // 99.9%信頼区間の概算（正規分布）
+            double stddev = (nanosPerOp.length > 1) ? Math.sqrt(var / (nanosPerOp.length - 1)) : 0;
+            this.score = mean;
+            this.error = (3.29 * stddev) / Math.sqrt(nanosPerOp.length);
+            this.min = min;
+            this.max = max;
+            this.allocBytes = allocBytes;
+            this.ops = ops;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-48s %14.1f ± %10.1f ns/op %14.1f B/op", this.name, this.score, this.error,
+                    this.allocBytes);
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = getThreadBean();
+
+    /** 最適化で結果が消されないようにするための値 */
+    private static volatile int sink;
+
+    private final int warmupIterations;
+
+    private final int measurementIterations;
+
+    private final long iterationNanos;
+
+    private final List<Result> results = new ArrayList<Result>();
+
+    /**
+     * @param warmupIterations ウォームアップの回数
+     * @param measurementIterations 測る回数
+     * @param iterationMillis 1回の試行の時間(ミリ秒)
+     */
+    public Benchmark(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = TimeUnit.MILLISECONDS.toNanos(iterationMillis);
+    }
+
+    /**
+     * 処理を測ります
+     *
+     * @param name 名前
+     * @param task 処理
+     * @return 結果
+     */
+    public Result run(String name, Task task) throws Exception {
+        try {
+            for (int i = 0; i < this.warmupIterations; i++) {
+                this.iteration(task, null);
+            }
+            double[] nanosPerOp = new double[this.measurementIterations];
+            long[] alloc = new long[2];
+            long totalOps = 0;
+            for (int i = 0; i < this.measurementIterations; i++) {
+                long[] stat = this.iteration(task, alloc);
+                nanosPerOp[i] = (double) stat[1] / stat[0];
+                totalOps += stat[0];
+            }
+            double allocBytes = (alloc[1] > 0) ? ((double) alloc[0] / alloc[1]) : Double.NaN;
+            Result result = new Result(name, nanosPerOp, allocBytes, totalOps);
+            this.results.add(result);
+            System.out.println(result);
+            return result;
+        } finally {
+            if (task instanceof Closeable) {
+                ((Closeable) task).close();
+            }
+        }
+    }
+
+    /**
+     * 1回の試行
+     * @return {回数, 時間(ナノ秒)}
+     */
+    private long[] iteration(Task task, long[] alloc) throws Exception {
+        long tid = Thread.currentThread().getId();
+        long allocBefore = (THREAD_BEAN != null) ? THREAD_BEAN.getThreadAllocatedBytes(tid) : -1;
+        long start = System.nanoTime();
+        long deadline = start + this.iterationNanos;
+        long ops = 0;
+        long now;
+        int hash = 0;
+        do {
+            Object ret = task.run();
+            if (ret != null) {
+                hash += System.identityHashCode(ret);
+            }
+            ops++;
+        } while ((now = System.nanoTime()) < deadline);
+        sink += hash;
+        if ((alloc != null) && (allocBefore >= 0)) {
+            alloc[0] += THREAD_BEAN.getThreadAllocatedBytes(tid) - allocBefore;
+            alloc[1] += ops;
+        }
+        return new long[] { ops, now - start };
+    }
+
+    /**
+     * 結果を JMH と同じ形式の JSON で書き出します
+     *
+     * @param file 書き出すファイル
+     */
+    public void writeJson(File file) throws IOException {
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put(JsonGenerator.PRETTY_PRINTING, Boolean.TRUE);
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+                JsonGenerator gen = Json.createGeneratorFactory(config).createGenerator(out)) {
+            gen.writeStartArray();
+            for (Result result : this.results) {
+                gen.writeStartObject()
+                        .write("benchmark", result.name)
+                        .write("mode", "avgt")
+                        .write("warmupIterations", this.warmupIterations)
+                        .write("measurementIterations", result.iterations)
+                        .write("measurementTime", TimeUnit.NANOSECONDS.toMillis(this.iterationNanos) + " ms")
+                        .write("jvm", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+                gen.writeStartObject("primaryMetric")
+                        .write("score", result.score)
+                        .write("scoreError", result.error)
+                        .write("scoreUnit", "ns/op")
+                        .writeStartArray("scoreConfidence")
+                        .write(result.score - result.error)
+                        .write(result.score + result.error)
+                        .writeEnd()
+                        .write("min", result.min)
+                        .write("max", result.max)
+                        .write("ops", result.ops)
+                        .writeEnd();
+                gen.writeStartObject("secondaryMetrics");
+                if (!Double.isNaN(result.allocBytes)) {
+                    gen.writeStartObject("gc.alloc.rate.norm")
+                            .write("score", result.allocBytes)
+                            .write("scoreUnit", "B/op")
+                            .writeEnd();
+                }
+                gen.writeEnd();
+                gen.writeEnd();
+            }
+            gen.writeEnd();
+        }
+    }
+
+    /**
+     * @return 結果
+     */
+    public List<Result> getResults() {
+        return Collections.unmodifiableList(this.results);
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        // スレッドごとの確保量は HotSpot の拡張でしか取れない
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+                return sunBean;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,250 @@
+package logbook.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+
+import logbook.data.CaptureJournal;
+import logbook.data.Data;
+import logbook.data.DataType;
+import logbook.data.TestData;
+import logbook.data.UndefinedData;
+import logbook.data.context.GlobalContext;
+import logbook.dto.BattleExDto;
+import logbook.dto.BattlePhaseKind;
+import logbook.dto.ShipDto;
+import logbook.gui.logic.CreateReportLogic;
+import logbook.internal.BattleLogFormatBenchmarks;
+import logbook.internal.LogWriter;
+import logbook.test.ReplayEngine;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * データ取り込みの処理を測るベンチマーク
+ *
+ * 使い方: IngestionBenchmarks &lt;キャプチャのフォルダ&gt; [結果のJSONファイル]
+ *
+ * キャプチャのフォルダ（ジャーナルかJSONファイル）をフィクスチャとして使います。
+ * 最初にフォルダ全体を再生して状態を作り、その中の最後の PORT, SHIP2, BATTLE, BATTLE_RESULT で測ります。
+ * フィクスチャに無いデータを使うベンチマークは飛ばします。
+ * 試行の回数と時間はシステムプロパティ bench.warmup, bench.iterations, bench.time(ミリ秒) で変えられます。
+ *
+ * @author Nekopanda
+ */
+public class IngestionBenchmarks {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** キャプチャの1件 */
+    private static final class Fixture {
+        final Data data;
+        final String url;
+        final String request;
+        final String response;
+
+        Fixture(Data data, String url, String request, String response) {
+            this.data = data;
+            this.url = url;
+            this.request = request;
+            this.response = response;
+        }
+    }
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("使い方: IngestionBenchmarks <キャプチャのフォルダ> [結果のJSONファイル]");
+            System.exit(2);
+        }
+        File dir = new File(args[0]);
+        File resultFile = new File((args.length >= 2) ? args[1] : "bench-result.json");
+
+        File outDir = ReplayEngine.setup();
+        try {
+            run(dir, resultFile, outDir);
+        } finally {
+            LogWriter.end();
+            FileUtils.deleteQuietly(outDir);
+        }
+    }
+
+    private static void run(File dir, File resultFile, File outDir) throws Exception {
+        List<Fixture> fixtures = load(dir);
+        System.out.println("フィクスチャ: " + fixtures.size() + "件");
+
+        // 状態を作る
+        ReplayEngine engine = new ReplayEngine();
+        engine.replay(dir);
+
+        Fixture port = findLast(fixtures, DataType.PORT);
+        Fixture ship2 = findLast(fixtures, DataType.SHIP2);
+        Fixture[] battle = findBattle(fixtures);
+
+        Benchmark bench = new Benchmark(
+                Integer.getInteger("bench.warmup", 5),
+                Integer.getInteger("bench.iterations", 10),
+                Integer.getInteger("bench.time", 1000));
+
+        for (Fixture fixture : new Fixture[] { port, ship2 }) {
+            if (fixture == null) {
+                continue;
+            }
+            final String url = fixture.url;
+            final byte[] request = fixture.request.getBytes(UTF8);
+            final byte[] response = ("svdata=" + fixture.response).getBytes(UTF8);
+            bench.run("UndefinedData.toDefinedData(" + fixture.data.getDataType() + ")", new Benchmark.Task() {
+                @Override
+                public Object run() {
+                    return new UndefinedData(url, url, request, response).toDefinedData();
+                }
+            });
+        }
+
+        JsonObject portData = (port != null) ? port.data.getJsonObject().getJsonObject("api_data") : null;
+        if (portData != null) {
+            JsonArray ships = portData.getJsonArray("api_ship");
+            if ((ships != null) && (ships.size() > 0)) {
+                final JsonObject[] objects = ships.getValuesAs(JsonObject.class).toArray(new JsonObject[0]);
+                bench.run("ShipDto.<init>", new Benchmark.Task() {
+                    private int index;
+
+                    @Override
+                    public Object run() {
+                        this.index = (this.index + 1) % objects.length;
+                        return new ShipDto(objects[this.index]);
+                    }
+                });
+            }
+        }
+
+        for (Fixture fixture : new Fixture[] { port, ship2 }) {
+            if (fixture == null) {
+                continue;
+            }
+            final Data data = fixture.data;
+            bench.run("GlobalContext.updateContext(" + data.getDataType() + ")", new Benchmark.Task() {
+                @Override
+                public Object run() {
+                    GlobalContext.updateContext(data);
+                    return null;
+                }
+            });
+        }
+
+        if (battle != null) {
+            final Data battleData = battle[0].data;
+            final Data resultData = battle[1].data;
+            // 戦闘の状態は戦闘結果で完結するので対で測る
+            bench.run("GlobalContext.updateContext(BATTLE,BATTLE_RESULT)", new Benchmark.Task() {
+                @Override
+                public Object run() {
+                    GlobalContext.updateContext(battleData);
+                    GlobalContext.updateContext(resultData);
+                    return null;
+                }
+            });
+            // ログの書き込みが溜まらないようにする
+            LogWriter.flush(60000);
+
+            final JsonObject phase = battleData.getJsonObject().getJsonObject("api_data");
+            final Date date = battleData.getCreateDate();
+            bench.run("BattleExDto.addPhase", new Benchmark.Task() {
+                @Override
+                public Object run() {
+                    BattleExDto dto = new BattleExDto(date);
+                    dto.addPhase(phase, BattlePhaseKind.BATTLE);
+                    return dto;
+                }
+            });
+
+            BattleExDto dto = GlobalContext.getLastBattleDto();
+            if (dto == null) {
+                dto = new BattleExDto(date);
+                dto.addPhase(phase, BattlePhaseKind.BATTLE);
+                dto.setResult(resultData.getJsonObject().getJsonObject("api_data"), null);
+            }
+            bench.run("BattleLogFormat.write", BattleLogFormatBenchmarks.write(outDir, dto));
+            bench.run("BattleLogFormat.read", BattleLogFormatBenchmarks.read(outDir, dto));
+        }
+
+        if (!GlobalContext.getShipMap().isEmpty()) {
+            bench.run("CreateReportLogic.getShipListBody", new Benchmark.Task() {
+                @Override
+                public Object run() {
+                    return CreateReportLogic.getShipListBody(false, null);
+                }
+            });
+        }
+
+        bench.writeJson(resultFile);
+        System.out.println("結果を書き込みました: " + resultFile.getPath());
+    }
+
+    /**
+     * キャプチャを全部読み込みます
+     */
+    private static List<Fixture> load(File dir) throws IOException {
+        List<Fixture> fixtures = new ArrayList<Fixture>();
+        if (CaptureJournal.listSegments(dir).length > 0) {
+            try (CaptureJournal.Reader reader = new CaptureJournal.Reader(dir)) {
+                CaptureJournal.JournalData data;
+                while ((data = reader.next()) != null) {
+                    fixtures.add(new Fixture(data, data.getUrl(), data.getRequest(), data.getResponse()));
+                }
+            }
+        }
+        else {
+            File[] files = dir.listFiles();
+            if (files == null) {
+                throw new IOException("フォルダがありません (" + dir.getPath() + ")");
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                if (!file.getName().endsWith(".json")) {
+                    continue;
+                }
+                try {
+                    TestData data = new TestData(file.getPath());
+                    String url = data.getDataType().getUrl();
+                    fixtures.add(new Fixture(data, url, "", data.getJsonObject().toString()));
+                } catch (ParseException | IllegalArgumentException e) {
+                    System.out.println("読み込めません: " + file.getName());
+                }
+            }
+        }
+        return fixtures;
+    }
+
+    private static Fixture findLast(List<Fixture> fixtures, DataType type) {
+        for (int i = fixtures.size() - 1; i >= 0; i--) {
+            if ((fixtures.get(i).data.getDataType() == type) && (fixtures.get(i).url != null)) {
+                return fixtures.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 最後の {BATTLE, その直後の BATTLE_RESULT}
+     */
+    private static Fixture[] findBattle(List<Fixture> fixtures) {
+        for (int i = fixtures.size() - 2; i >= 0; i--) {
+            if ((fixtures.get(i).data.getDataType() == DataType.BATTLE)
+                    && (fixtures.get(i + 1).data.getDataType() == DataType.BATTLE_RESULT)) {
+                return new Fixture[] { fixtures.get(i), fixtures.get(i + 1) };
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,89 @@
+package logbook.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import logbook.bench.Benchmark;
+import logbook.dto.BattleExDto;
+
+import com.dyuproject.protostuff.LinkedBuffer;
+
+/**
+ * 出撃ログ(protostuff)の読み書きを測る処理
+ * BattleLogFormat はパッケージ内からしか使えないので同じパッケージに置いています
+ *
+ * @author Nekopanda
+ */
+public final class BattleLogFormatBenchmarks {
+
+    /** ファイルがこの大きさを超えたら空にする */
+    private static final long MAX_FILE_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * 出撃ログへの追記
+     *
+     * @param dir 一時ファイルを作るフォルダ
+     * @param battle 書き込む戦闘
+     */
+    public static Benchmark.Task write(File dir, BattleExDto battle) throws IOException {
+        File file = new File(dir, "bench-write.dat");
+        file.delete();
+        return new WriteTask(file, battle);
+    }
+
+    /** 出撃ログへの追記（測り終えたらファイルを閉じる） */
+    private static final class WriteTask implements Benchmark.Task, Closeable {
+        private final File file;
+        private final BattleExDto battle;
+        private final FileChannel channel;
+        private final LinkedBuffer buffer = LinkedBuffer.allocate(128 * 1024);
+        private BattleLogFormat.Writer writer = new BattleLogFormat.Writer();
+
+        WriteTask(File file, BattleExDto battle) throws IOException {
+            this.file = file;
+            this.battle = battle;
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+        }
+
+        @Override
+        public Object run() throws Exception {
+            if (this.channel.size() > MAX_FILE_SIZE) {
+                // 新しいファイルに書き込むのと同じ状態にする
+                this.channel.truncate(0);
+                this.writer = new BattleLogFormat.Writer();
+            }
+            this.channel.position(this.channel.size());
+            return this.writer.append(this.file, this.channel, this.battle, this.buffer);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * 出撃ログから1件読み込む
+     *
+     * @param dir 一時ファイルを作るフォルダ
+     * @param battle 読み込む戦闘
+     */
+    public static Benchmark.Task read(File dir, BattleExDto battle) throws IOException {
+        final File file = new File(dir, "bench-read.dat");
+        file.delete();
+        final long[] pos;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            pos = new BattleLogFormat.Writer().append(file, raf.getChannel(), battle, LinkedBuffer.allocate(128 * 1024));
+        }
+        final LinkedBuffer buffer = LinkedBuffer.allocate(128 * 1024);
+        return new Benchmark.Task() {
+            @Override
+            public Object run() throws Exception {
+                return BattleLogFormat.readRecord(file, pos[0], pos[1], buffer);
+            }
+        };
+    }
+}
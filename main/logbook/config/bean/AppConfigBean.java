@@ -279,6 +279,39 @@ public final class AppConfigBean {
     private String twitterToken;
     private String twitterTokenSecret;
 
+    /** 報告書・出撃ログを書き込んだ時の同期 0:しない, 1:まとめて書き込むごと, 2:1件ごと */
+    private int logSyncMode = 0;
+
+    /** ゲームの画像などをキャッシュするか */
+    private boolean useAssetCache = false;
+
+    /** ゲームの画像などのキャッシュの最大サイズ(MB) */
+    private int assetCacheSize = 1024;
+
+    /** プロキシサーバーのアクセプタ数 */
+    private int proxyAcceptors = 1;
+
+    /** プロキシサーバーのセレクタ数 */
+    private int proxySelectors = 1;
+
+    /** プロキシサーバーの最小スレッド数 */
+    private int proxyMinThreads = 2;
+
+    /** プロキシサーバーの最大スレッド数 */
+    private int proxyMaxThreads = 200;
+
+    /** プロキシの接続を閉じるまでのアイドル時間(秒) */
+    private int proxyIdleTimeout = 30;
+
+    /** ゲームサーバーへの接続数の上限 0:ライブラリの既定値 */
+    private int upstreamMaxConnections = 0;
+
+    /** ゲームサーバーへの接続を使いまわすか */
+    private boolean upstreamKeepAlive = true;
+
+    /** ゲームサーバーに先に繋いでおく接続数 0:しない（ゲームが送らないHEADリクエストを送るので既定はしない） */
+    private int upstreamWarmConnections = 0;
+
     private static RGB cloneRGB(RGB rgb) {
         return new RGB(rgb.red, rgb.green, rgb.blue);
     }
@@ -1597,4 +1630,158 @@ public final class AppConfigBean {
         this.twitterTokenSecret = twitterTokenSecret;
     }
 
+    /**
+     * @return logSyncMode
+     */
+    public int getLogSyncMode() {
+        return this.logSyncMode;
+    }
+
+    /**
+     * @param logSyncMode セットする logSyncMode
+     */
+    public void setLogSyncMode(int logSyncMode) {
+        this.logSyncMode = logSyncMode;
+    }
+
+    /**
+     * @return useAssetCache
+     */
+    public boolean isUseAssetCache() {
+        return this.useAssetCache;
+    }
+
+    /**
+     * @param useAssetCache セットする useAssetCache
+     */
+    public void setUseAssetCache(boolean useAssetCache) {
+        this.useAssetCache = useAssetCache;
+    }
+
+    /**
+     * @return assetCacheSize
+     */
+    public int getAssetCacheSize() {
+        return this.assetCacheSize;
+    }
+
+    /**
+     * @param assetCacheSize セットする assetCacheSize
+     */
+    public void setAssetCacheSize(int assetCacheSize) {
+        this.assetCacheSize = assetCacheSize;
+    }
+
+    /**
+     * @return proxyAcceptors
+     */
+    public int getProxyAcceptors() {
+        return this.proxyAcceptors;
+    }
+
+    /**
+     * @param proxyAcceptors セットする proxyAcceptors
+     */
+    public void setProxyAcceptors(int proxyAcceptors) {
+        this.proxyAcceptors = proxyAcceptors;
+    }
+
+    /**
+     * @return proxySelectors
+     */
+    public int getProxySelectors() {
+        return this.proxySelectors;
+    }
+
+    /**
+     * @param proxySelectors セットする proxySelectors
+     */
+    public void setProxySelectors(int proxySelectors) {
+        this.proxySelectors = proxySelectors;
+    }
+
+    /**
+     * @return proxyMinThreads
+     */
+    public int getProxyMinThreads() {
+        return this.proxyMinThreads;
+    }
+
+    /**
+     * @param proxyMinThreads セットする proxyMinThreads
+     */
+    public void setProxyMinThreads(int proxyMinThreads) {
+        this.proxyMinThreads = proxyMinThreads;
+    }
+
+    /**
+     * @return proxyMaxThreads
+     */
+    public int getProxyMaxThreads() {
+        return this.proxyMaxThreads;
+    }
+
+    /**
+     * @param proxyMaxThreads セットする proxyMaxThreads
+     */
+    public void setProxyMaxThreads(int proxyMaxThreads) {
+        this.proxyMaxThreads = proxyMaxThreads;
+    }
+
+    /**
+     * @return proxyIdleTimeout
+     */
+    public int getProxyIdleTimeout() {
+        return this.proxyIdleTimeout;
+    }
+
+    /**
+     * @param proxyIdleTimeout セットする proxyIdleTimeout
+     */
+    public void setProxyIdleTimeout(int proxyIdleTimeout) {
+        this.proxyIdleTimeout = proxyIdleTimeout;
+    }
+
+    /**
+     * @return upstreamMaxConnections
+     */
+    public int getUpstreamMaxConnections() {
+        return this.upstreamMaxConnections;
+    }
+
+    /**
+     * @param upstreamMaxConnections セットする upstreamMaxConnections
+     */
+    public void setUpstreamMaxConnections(int upstreamMaxConnections) {
+        this.upstreamMaxConnections = upstreamMaxConnections;
+    }
+
+    /**
+     * @return upstreamKeepAlive
+     */
+    public boolean isUpstreamKeepAlive() {
+        return this.upstreamKeepAlive;
+    }
+
+    /**
+     * @param upstreamKeepAlive セットする upstreamKeepAlive
+     */
+    public void setUpstreamKeepAlive(boolean upstreamKeepAlive) {
+        this.upstreamKeepAlive = upstreamKeepAlive;
+    }
+
+    /**
+     * @return upstreamWarmConnections
+     */
+    public int getUpstreamWarmConnections() {
+        return this.upstreamWarmConnections;
+    }
+
+    /**
+     * @param upstreamWarmConnections セットする upstreamWarmConnections
+     */
+    public void setUpstreamWarmConnections(int upstreamWarmConnections) {
+        this.upstreamWarmConnections = upstreamWarmConnections;
+    }
+
 }
\ No newline at end of file
@@ -182,6 +182,12 @@ public class AppConstants {
     /** 出撃ログ表示用CSSファイル */
     public static final File BATTLE_LOG_CSS_FILE = new File("./templates/battle-log.css");
 
+    /** 統計データベースに送信するデータを溜めておくファイル */
+    public static final File DATABASE_SPOOL_FILE = new File("./config/database-spool.dat");
+
+    /** ゲームの画像などのキャッシュを置くフォルダ */
+    public static final File ASSET_CACHE_DIR = new File("./cache");
+
     /** 保有資材:燃料 */
     public static final int MATERIAL_FUEL = 1;
 
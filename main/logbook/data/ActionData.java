@@ -43,6 +43,13 @@ public final class ActionData extends AbstractDto implements Data {
         return this.json;
     }
 
+    /**
+     * @return リクエストのパラメータ
+     */
+    public Map<String, String> getPostField() {
+        return this.postField;
+    }
+
     @Override
     public String getField(String key) {
         if (this.postField != null) {
@@ -0,0 +1,614 @@
+package logbook.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import logbook.config.AppConfig;
+import logbook.internal.LogWriter;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * 受信したデータを記録するジャーナル
+ *
+ * 1回の受信ごとに1つのファイルを作る代わりに、セグメントファイルに追記します。
+ * セグメントは [マジック"LBJ1"] の後にレコードが続き、レコードは
+ * [本体の長さ(int)][時刻(long)][フラグ(byte)][本体] です。
+ * 本体は DataType の名前, URL, リクエスト, レスポンス(JSON) で、フラグが立っている場合はdeflateで圧縮されています。
+ * 時刻とフラグは圧縮しないので、時刻で探す時は本体を読み飛ばせます。
+ * セグメントは一定の大きさか日付が変わったら次のファイルにします。書き込みは {@link LogWriter} で行います。
+ *
+ * @author Nekopanda
+ */
+public final class CaptureJournal {
+
+    private static final Logger LOG = LogManager.getLogger(CaptureJournal.class);
+
+    /** セグメントファイルの先頭 */
+    private static final byte[] MAGIC = { 'L', 'B', 'J', '1' };
+
+    /** セグメントファイルの接頭辞 */
+    private static final String PREFIX = "journal_";
+
+    /** セグメントファイルの拡張子 */
+    private static final String EXTENSION = ".lbj";
+
+    /** この大きさを超えたら次のセグメントにする */
+    private static final long SEGMENT_SIZE = 32 * 1024 * 1024;
+
+    /** この大きさ以上の本体は圧縮する */
+    private static final int COMPRESS_THRESHOLD = 256;
+
+    /** フラグ: 圧縮 */
+    private static final int FLAG_DEFLATE = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** レコードの固定長の部分 */
+    private static final int HEADER_SIZE = 4 + 8 + 1;
+
+    /** セグメントファイル */
+    private static final FilenameFilter SEGMENT_FILTER = new FilenameFilter() {
+        @Override
+        public boolean accept(File dir, String name) {
+            return name.startsWith(PREFIX) && name.endsWith(EXTENSION) && !name.contains("alternativefile");
+        }
+    };
+
+    // 書き込み中のセグメント
+    private static File segment;
+    private static long segmentSize;
+    private static int segmentDay = -1;
+
+    /**
+     * 受信したデータを追記します
+     *
+     * @param data データ
+     */
+    public static void append(Data data) {
+        Map<String, String> field = (data instanceof ActionData) ? ((ActionData) data).getPostField() : null;
+        String url = (data.getDataType().getUrl() != null) ? data.getDataType().getUrl() : "";
+        byte[] record;
+        try {
+            record = encode(data.getCreateDate().getTime(), data.getDataType().name(), url,
+                    toQueryString(field), data.getJsonObject().toString());
+        } catch (IOException e) {
+            LOG.warn("ジャーナルのレコードを作れませんでした", e);
+            return;
+        }
+        File file = nextSegment(new File(AppConfig.get().getStoreJsonPath()), data.getCreateDate(), record.length);
+        LogWriter.write(new JournalRecord(file, record));
+    }
+
+    /** 書き込むセグメントを決める（大きさと日付で切り替える） */
+    private static synchronized File nextSegment(File dir, Date date, int length) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(date);
+        int day = cal.get(Calendar.YEAR) * 1000 + cal.get(Calendar.DAY_OF_YEAR);
+        if ((segment == null) || !segment.getParentFile().equals(dir) || (day != segmentDay)
+                || ((segmentSize + length) > SEGMENT_SIZE)) {
+            segment = new File(dir, segmentName(date));
+            segmentSize = segment.exists() ? segment.length() : MAGIC.length;
+            segmentDay = day;
+        }
+        segmentSize += length;
+        return segment;
+    }
+
+    private static String segmentName(Date date) {
+        return PREFIX + new SimpleDateFormat("yyyyMMdd_HHmmss.SSS").format(date) + EXTENSION;
+    }
+
+    /**
+     * レコードをバイト列にします
+     */
+    private static byte[] encode(long time, String type, String url, String request, String response)
+            throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(response.length() + 128);
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeUTF(type);
+        out.writeUTF(url);
+        writeBytes(out, request.getBytes(UTF8));
+        writeBytes(out, response.getBytes(UTF8));
+        out.flush();
+        byte[] bytes = body.toByteArray();
+
+        int flags = 0;
+        if (bytes.length >= COMPRESS_THRESHOLD) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (DeflaterOutputStream dout = new DeflaterOutputStream(compressed, deflater)) {
+                dout.write(bytes);
+            } finally {
+                deflater.end();
+            }
+            bytes = compressed.toByteArray();
+            flags |= FLAG_DEFLATE;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + bytes.length);
+        record.putInt(bytes.length).putLong(time).put((byte) flags).put(bytes);
+        return record.array();
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /** 復号済みのフィールドを元のリクエストと同じように URL エンコードして戻す */
+    private static String toQueryString(Map<String, String> field) throws IOException {
+        if (field == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : field.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append('&');
+            }
+            sb.append(URLEncoder.encode(entry.getKey(), "UTF-8"));
+            if (entry.getValue() != null) {
+                sb.append('=').append(URLEncoder.encode(entry.getValue(), "UTF-8"));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * ジャーナルのレコードを追記する
+     */
+    private static final class JournalRecord extends LogWriter.Record {
+        private final byte[] record;
+
+        JournalRecord(File file, byte[] record) {
+            super(file, FilenameUtils.getBaseName(file.getName()) + "_alternativefile" + EXTENSION);
+            this.record = record;
+        }
+
+        @Override
+        protected void write(File file, File storeFile, FileChannel channel) throws IOException {
+            if (channel.size() <= 0) {
+                writeFully(channel, ByteBuffer.wrap(MAGIC));
+            }
+            writeFully(channel, ByteBuffer.wrap(this.record));
+        }
+
+        @Override
+        protected void merge(File file, File altFile) throws IOException {
+            if (!file.exists() || (file.length() <= 0)) {
+                file.delete();
+                altFile.renameTo(file);
+                return;
+            }
+            // 代替ファイルの先頭のマジックを除いて追記する
+            try (InputStream in = new FileInputStream(altFile);
+                    FileOutputStream out = new FileOutputStream(file, true)) {
+                IOUtils.skipFully(in, MAGIC.length);
+                IOUtils.copy(in, out);
+            }
+            altFile.delete();
+        }
+
+        @Override
+        protected void failed(Exception e) {
+            LOG.warn("JSONオブジェクトを保存するに失敗しました", e);
+        }
+    }
+
+    /**
+     * @param dir ジャーナルのフォルダ
+     * @return セグメントファイル（古い順）
+     */
+    public static File[] listSegments(File dir) {
+        File[] files = dir.listFiles(SEGMENT_FILTER);
+        if (files == null) {
+            return new File[0];
+        }
+        // ファイル名は最初のレコードの時刻なので名前順が時刻順
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * ジャーナルを古い順に読み込みます
+     */
+    public static final class Reader implements Closeable {
+
+        private final File[] segments;
+
+        private int segmentIndex = -1;
+
+        private DataInputStream in;
+
+        /**
+         * @param dir ジャーナルのフォルダ
+         */
+        public Reader(File dir) {
+            this.segments = listSegments(dir);
+        }
+
+        /**
+         * 指定した時刻以降の最初のレコードまで進めます
+         *
+         * @param time 時刻
+         */
+        public void seek(Date time) throws IOException {
+            long target = time.getTime();
+            // 最初のレコードが指定時刻以前の最後のセグメントから読む
+            int start = 0;
+            for (int i = 0; i < this.segments.length; i++) {
+                long first = firstTime(this.segments[i]);
+                if ((first >= 0) && (first <= target)) {
+                    start = i;
+                }
+            }
+            this.close();
+            this.segmentIndex = start - 1;
+            if (!this.openNext()) {
+                return;
+            }
+            while (true) {
+                this.in.mark(HEADER_SIZE);
+                long recordTime = this.peekTime();
+                if (recordTime < 0) {
+                    if (!this.openNext()) {
+                        return;
+                    }
+                    continue;
+                }
+                if (recordTime >= target) {
+                    this.in.reset();
+                    return;
+                }
+                // 本体は読み飛ばす
+                this.in.reset();
+                try {
+                    int length = this.in.readInt();
+                    this.in.readLong();
+                    this.in.readByte();
+                    IOUtils.skipFully(this.in, length);
+                } catch (EOFException e) {
+                    // 書き込み途中で終わったレコードはセグメントの終わりとして扱う
+                    if (!this.openNext()) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return 次のデータ（終わりの場合は null ）
+         */
+        public JournalData next() throws IOException {
+            while (true) {
+                if ((this.in == null) && !this.openNext()) {
+                    return null;
+                }
+                JournalData data = this.read();
+                if (data != null) {
+                    return data;
+                }
+                this.in.close();
+                this.in = null;
+            }
+        }
+
+        /**
+         * @return レコードの数（本体は読み飛ばして数えます）
+         */
+        public int count() throws IOException {
+            int count = 0;
+            for (File file : this.segments) {
+                try (DataInputStream din = open(file)) {
+                    if (din == null) {
+                        continue;
+                    }
+                    while (true) {
+                        int length = din.readInt();
+                        din.readLong();
+                        din.readByte();
+                        IOUtils.skipFully(din, length);
+                        count++;
+                    }
+                } catch (EOFException e) {
+                    // セグメントの終わり
+                }
+            }
+            return count;
+        }
+
+        /** 時刻だけ読む（セグメントの終わりの場合は-1） */
+        private long peekTime() throws IOException {
+            try {
+                this.in.readInt();
+                return this.in.readLong();
+            } catch (EOFException e) {
+                return -1;
+            }
+        }
+
+        private JournalData read() throws IOException {
+            try {
+                int length = this.in.readInt();
+                long time = this.in.readLong();
+                int flags = this.in.readByte();
+                byte[] body = new byte[length];
+                this.in.readFully(body);
+                InputStream bodyStream = new ByteArrayInputStream(body);
+                Inflater inflater = null;
+                if ((flags & FLAG_DEFLATE) != 0) {
+                    inflater = new Inflater();
+                    bodyStream = new InflaterInputStream(bodyStream, inflater);
+                }
+                try (DataInputStream din = new DataInputStream(bodyStream)) {
+                    String type = din.readUTF();
+                    String url = din.readUTF();
+                    String request = new String(readBytes(din), UTF8);
+                    String response = new String(readBytes(din), UTF8);
+                    return new JournalData(toDataType(type), new Date(time), url, request, response);
+                } finally {
+                    if (inflater != null) {
+                        inflater.end();
+                    }
+                }
+            } catch (EOFException e) {
+                // セグメントの終わりか、書き込み途中で終わったレコード
+                return null;
+            }
+        }
+
+        /** 違うバージョンで書き込まれて知らない種類は UNDEFINED にする */
+        private static DataType toDataType(String type) {
+            try {
+                return DataType.valueOf(type);
+            } catch (IllegalArgumentException e) {
+                return DataType.UNDEFINED;
+            }
+        }
+
+        private boolean openNext() throws IOException {
+            if (this.in != null) {
+                this.in.close();
+                this.in = null;
+            }
+            while (++this.segmentIndex < this.segments.length) {
+                this.in = open(this.segments[this.segmentIndex]);
+                if (this.in != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.in != null) {
+                this.in.close();
+                this.in = null;
+            }
+        }
+
+        /** セグメントを開いてマジックを確認する（違う場合は null ） */
+        private static DataInputStream open(File file) throws IOException {
+            DataInputStream din = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+            byte[] magic = new byte[MAGIC.length];
+            try {
+                din.readFully(magic);
+            } catch (EOFException e) {
+                din.close();
+                return null;
+            }
+            if (!Arrays.equals(magic, MAGIC)) {
+                LOG.warn("ジャーナルではありません (" + file.getPath() + ")");
+                din.close();
+                return null;
+            }
+            return din;
+        }
+
+        /** セグメントの最初のレコードの時刻 */
+        private static long firstTime(File file) throws IOException {
+            try (DataInputStream din = open(file)) {
+                if (din == null) {
+                    return -1;
+                }
+                din.readInt();
+                return din.readLong();
+            } catch (EOFException e) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * JSONを1つずつ保存したフォルダをジャーナルに変換します
+     * ファイル名は "yyyy-MM-dd_HHmmss.SSS_DataType.json" の形式です
+     *
+     * @param srcDir JSONファイルのフォルダ
+     * @param dstDir ジャーナルを書き込むフォルダ
+     * @return 変換したファイルの数
+     */
+    public static int importJsonFiles(File srcDir, File dstDir) throws IOException {
+        File[] files = srcDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".json");
+            }
+        });
+        if (files == null) {
+            return 0;
+        }
+        // ファイル名は時刻で始まるので名前順が時刻順
+        Arrays.sort(files);
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd_HHmmss.SSS");
+        if (!dstDir.exists() && !dstDir.mkdirs()) {
+            throw new IOException("フォルダを作れません (" + dstDir.getPath() + ")");
+        }
+        int count = 0;
+        FileOutputStream out = null;
+        long size = 0;
+        int day = -1;
+        Calendar cal = Calendar.getInstance();
+        try {
+            for (File file : files) {
+                String name = FilenameUtils.getBaseName(file.getName());
+                int splitpos = name.indexOf('_', name.indexOf('_') + 1);
+                if (splitpos < 0) {
+                    continue;
+                }
+                Date date;
+                DataType type;
+                try {
+                    date = format.parse(name.substring(0, splitpos));
+                    type = DataType.valueOf(name.substring(splitpos + 1));
+                } catch (ParseException | IllegalArgumentException e) {
+                    LOG.warn("ファイル名が読み取れません (" + file.getName() + ")");
+                    continue;
+                }
+                String json = FileUtils.readFileToString(file, UTF8);
+                byte[] record = encode(date.getTime(), type.name(), (type.getUrl() != null) ? type.getUrl() : "",
+                        "", json);
+                cal.setTime(date);
+                int recordDay = cal.get(Calendar.YEAR) * 1000 + cal.get(Calendar.DAY_OF_YEAR);
+                if ((out == null) || (recordDay != day) || ((size + record.length) > SEGMENT_SIZE)) {
+                    IOUtils.closeQuietly(out);
+                    File segmentFile = new File(dstDir, segmentName(date));
+                    boolean exists = segmentFile.exists() && (segmentFile.length() > 0);
+                    out = new FileOutputStream(segmentFile, true);
+                    if (!exists) {
+                        out.write(MAGIC);
+                    }
+                    size = segmentFile.length() + MAGIC.length;
+                    day = recordDay;
+                }
+                out.write(record);
+                size += record.length;
+                count++;
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+        return count;
+    }
+
+    /**
+     * ジャーナルから読み込んだデータ
+     */
+    public static final class JournalData implements Data {
+
+        private final DataType type;
+        private final Date date;
+        private final String url;
+        private final String request;
+        private final String response;
+        private JsonObject json;
+        private Map<String, String> field;
+
+        JournalData(DataType type, Date date, String url, String request, String response) {
+            this.type = type;
+            this.date = date;
+            this.url = url;
+            this.request = request;
+            this.response = response;
+        }
+
+        @Override
+        public DataType getDataType() {
+            return this.type;
+        }
+
+        @Override
+        public Date getCreateDate() {
+            return this.date;
+        }
+
+        /**
+         * @return URL
+         */
+        public String getUrl() {
+            return this.url;
+        }
+
+        /**
+         * @return リクエストのパラメータ（URL エンコードした"key=value&..."の形式、記録されていない場合は空）
+         */
+        public String getRequest() {
+            return this.request;
+        }
+
+        /**
+         * @return レスポンスのJSON
+         */
+        public String getResponse() {
+            return this.response;
+        }
+
+        @Override
+        public synchronized JsonObject getJsonObject() {
+            if (this.json == null) {
+                this.json = Json.createReader(new StringReader(this.response)).readObject();
+            }
+            return this.json;
+        }
+
+        @Override
+        public synchronized String getField(String key) {
+            if (this.field == null) {
+                if (this.request.isEmpty()) {
+                    this.field = new LinkedHashMap<String, String>();
+                }
+                else {
+                    this.field = UndefinedData.getQueryMap(this.request);
+                }
+            }
+            if (this.field.isEmpty()) {
+                // リクエストが記録されていない場合は TestData と同じ値にする
+                if ((this.type == DataType.START) && key.equals("api_deck_id")) {
+                    return "1";
+                }
+                return "-1";
+            }
+            return this.field.get(key);
+        }
+    }
+}
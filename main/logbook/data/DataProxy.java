@@ -5,19 +5,39 @@
  */
 package logbook.data;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
 import logbook.data.context.GlobalContext;
 
-import org.eclipse.swt.widgets.Display;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 /**
  * <p>
  * サーバースレッドから渡されるデータをスレッドセーフに GlobalContext に反映させます<br>
+ * GlobalContext の更新は受け取った順番に専用のスレッド1つで行い、表示スレッドでは行いません。
+ * 画面は GlobalContext の更新カウンタや {@link logbook.gui.ApplicationMain#runOnDisplay(Runnable)} で更新します。
  * </p>
  */
 public class DataProxy {
 
+    private static final Logger LOG = LogManager.getLogger(DataProxy.class);
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "logbook_context_update");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     public static void add(final Data data) {
-        Display.getDefault().asyncExec(new Runnable() {
+        post(new Runnable() {
             @Override
             public void run() {
                 GlobalContext.updateContext(data);
@@ -25,4 +45,39 @@ public class DataProxy {
         });
     }
 
+    /**
+     * GlobalContext を更新する処理を更新スレッドで実行します
+     *
+     * @param task 処理
+     */
+    public static void post(final Runnable task) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } catch (Exception e) {
+                        LOG.warn("GlobalContextの更新に失敗しました", e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 終了処理中
+        }
+    }
+
+    /**
+     * 受け取ったデータを反映し終えてから更新スレッドを終了します
+     */
+    public static void end() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOG.warn("GlobalContextの更新が終わらないまま終了します");
+            }
+        } catch (InterruptedException e) {
+            LOG.fatal("更新スレッド終了時に何かのエラー", e);
+        }
+    }
 }
@@ -14,7 +14,9 @@ public enum DataType {
     /** 編成 */
     CHANGE("/kcsapi/api_req_hensei/change"),
     /** 母港 */
-    PORT("/kcsapi/api_port/port"),
+    PORT("/kcsapi/api_port/port",
+            "api_data.api_basic", "api_data.api_material", "api_data.api_ship", "api_data.api_deck_port",
+            "api_data.api_ndock", "api_data.api_combined_flag"),
     /** 保有艦 */
     SHIP2("/kcsapi/api_get_member/ship2"),
     /** 保有艦 */
@@ -84,7 +86,10 @@ public enum DataType {
     /** 任務消化 */
     QUEST_CLEAR("/kcsapi/api_req_quest/clearitemget"),
     /** 設定 */
-    START2("/kcsapi/api_start2"),
+    START2("/kcsapi/api_start2",
+            "api_data.api_mst_ship", "api_data.api_mst_slotitem", "api_data.api_mst_maparea",
+            "api_data.api_mst_mapinfo", "api_data.api_mst_mission", "api_data.api_mst_stype",
+            "api_data.api_mst_useitem"),
     /** マップ情報 */
     MAPINFO("/kcsapi/api_get_member/mapinfo"),
     /** 任務情報 */
@@ -121,11 +126,31 @@ public enum DataType {
 
     private final String url;
 
+    /** 使うフィールド（全部使う場合は null ） */
+    private final JsonSelector selector;
+
     private DataType(String url) {
         this.url = url;
+        this.selector = null;
+    }
+
+    /**
+     * @param url URL
+     * @param fields 処理で使うフィールドのパス（これ以外のフィールドは読み込まない）
+     */
+    private DataType(String url, String... fields) {
+        this.url = url;
+        this.selector = JsonSelector.of(fields);
     }
 
     public String getUrl() {
         return this.url;
     }
-}
+
+    /**
+     * @return 処理で使うフィールド（全部使う場合は null ）
+     */
+    JsonSelector getSelector() {
+        return this.selector;
+    }
+}
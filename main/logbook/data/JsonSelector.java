@@ -0,0 +1,63 @@
+package logbook.data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JSONのどのフィールドを読み込むかを表します
+ *
+ * "api_data.api_ship" のように . で区切ったパスで指定し、指定したフィールドの下は全部読み込みます。
+ * 配列の要素には配列と同じ指定を適用します。
+ */
+final class JsonSelector {
+
+    /** 全部読み込む */
+    static final JsonSelector ALL = new JsonSelector(true);
+
+    private final Map<String, JsonSelector> children = new HashMap<String, JsonSelector>();
+
+    private boolean all;
+
+    private JsonSelector(boolean all) {
+        this.all = all;
+    }
+
+    /**
+     * @param paths 読み込むフィールドのパス
+     * @return パスのフィールドだけを読み込むセレクタ
+     */
+    static JsonSelector of(String... paths) {
+        JsonSelector root = new JsonSelector(false);
+        // 結果コードは常に読み込む
+        root.add("api_result");
+        root.add("api_result_msg");
+        for (String path : paths) {
+            root.add(path);
+        }
+        return root;
+    }
+
+    private void add(String path) {
+        JsonSelector node = this;
+        for (String name : path.split("\\.")) {
+            JsonSelector child = node.children.get(name);
+            if (child == null) {
+                child = new JsonSelector(false);
+                node.children.put(name, child);
+            }
+            node = child;
+        }
+        node.all = true;
+    }
+
+    /**
+     * @param key フィールド名
+     * @return フィールドの下を読み込むセレクタ（読み込まない場合は null ）
+     */
+    JsonSelector get(String key) {
+        if (this.all) {
+            return this;
+        }
+        return this.children.get(key);
+    }
+}
@@ -0,0 +1,141 @@
+package logbook.data;
+
+import java.io.InputStream;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+/**
+ * {@link JsonParser} のイベントから必要なフィールドだけの {@link JsonObject} を作ります
+ *
+ * {@link JsonSelector} で選ばれなかったフィールドは読み飛ばすだけでオブジェクトを作りません。
+ * 作られる {@link JsonObject} は {@link javax.json.JsonReader} で読み込んだ場合と同じです。
+ */
+final class JsonStreamReader {
+
+    private static final JsonBuilderFactory FACTORY = Json.createBuilderFactory(null);
+
+    /**
+     * JSONのオブジェクトを読み込みます
+     *
+     * @param stream 入力
+     * @param selector 読み込むフィールド
+     * @return 選ばれたフィールドだけのオブジェクト
+     */
+    static JsonObject readObject(InputStream stream, JsonSelector selector) {
+        JsonParser parser = Json.createParser(stream);
+        try {
+            if (!parser.hasNext() || (parser.next() != Event.START_OBJECT)) {
+                throw new JsonException("JSONのオブジェクトではありません");
+            }
+            return readObject(parser, selector);
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static JsonObject readObject(JsonParser parser, JsonSelector selector) {
+        JsonObjectBuilder builder = FACTORY.createObjectBuilder();
+        while (true) {
+            Event event = parser.next();
+            if (event == Event.END_OBJECT) {
+                return builder.build();
+            }
+            String key = parser.getString();
+            JsonSelector child = selector.get(key);
+            event = parser.next();
+            if (child == null) {
+                skip(parser, event);
+                continue;
+            }
+            switch (event) {
+            case START_OBJECT:
+                builder.add(key, readObject(parser, child));
+                break;
+            case START_ARRAY:
+                builder.add(key, readArray(parser, child));
+                break;
+            case VALUE_STRING:
+                builder.add(key, parser.getString());
+                break;
+            case VALUE_NUMBER:
+                builder.add(key, parser.getBigDecimal());
+                break;
+            case VALUE_TRUE:
+                builder.add(key, true);
+                break;
+            case VALUE_FALSE:
+                builder.add(key, false);
+                break;
+            case VALUE_NULL:
+                builder.addNull(key);
+                break;
+            default:
+                throw new JsonException("不正なイベント " + event);
+            }
+        }
+    }
+
+    private static JsonArray readArray(JsonParser parser, JsonSelector selector) {
+        JsonArrayBuilder builder = FACTORY.createArrayBuilder();
+        while (true) {
+            Event event = parser.next();
+            switch (event) {
+            case END_ARRAY:
+                return builder.build();
+            case START_OBJECT:
+                builder.add(readObject(parser, selector));
+                break;
+            case START_ARRAY:
+                builder.add(readArray(parser, selector));
+                break;
+            case VALUE_STRING:
+                builder.add(parser.getString());
+                break;
+            case VALUE_NUMBER:
+                builder.add(parser.getBigDecimal());
+                break;
+            case VALUE_TRUE:
+                builder.add(true);
+                break;
+            case VALUE_FALSE:
+                builder.add(false);
+                break;
+            case VALUE_NULL:
+                builder.addNull();
+                break;
+            default:
+                throw new JsonException("不正なイベント " + event);
+            }
+        }
+    }
+
+    /** 値を読み飛ばす */
+    private static void skip(JsonParser parser, Event event) {
+        if ((event != Event.START_OBJECT) && (event != Event.START_ARRAY)) {
+            return;
+        }
+        int depth = 1;
+        while (depth > 0) {
+            switch (parser.next()) {
+            case START_OBJECT:
+            case START_ARRAY:
+                ++depth;
+                break;
+            case END_OBJECT:
+            case END_ARRAY:
+                --depth;
+                break;
+            default:
+                break;
+            }
+        }
+    }
+}
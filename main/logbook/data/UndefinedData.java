@@ -13,6 +13,8 @@ import javax.json.Json;
 import javax.json.JsonObject;
 import javax.json.JsonReader;
 
+import logbook.config.AppConfig;
+
 /**
  * 同定されていない未加工のデータ
  * 
@@ -29,6 +31,9 @@ public class UndefinedData implements Data {
 
     private final byte[] response;
 
+    // 解凍済みのレスポンス（1回だけ読める）
+    private final InputStream responseStream;
+
     private final Date date;
 
     /**
@@ -42,6 +47,23 @@ public class UndefinedData implements Data {
         this.url = url;
         this.request = request;
         this.response = response;
+        this.responseStream = null;
+        this.date = Calendar.getInstance().getTime();
+    }
+
+    /**
+     * レスポンスをバイト配列にせずにストリームから読み込む未加工データのコンストラクター
+     * ストリームは {@link #toDefinedData()} で1回だけ読み込まれ、 {@link #getResponse()} は null を返します
+     * 
+     * @param url URL
+     * @param response 解凍済みのレスポンスのストリーム
+     */
+    public UndefinedData(String fullUrl, String url, byte[] request, InputStream response) {
+        this.fullUrl = fullUrl;
+        this.url = url;
+        this.request = request;
+        this.response = null;
+        this.responseStream = response;
         this.date = Calendar.getInstance().getTime();
     }
 
@@ -75,7 +97,7 @@ public class UndefinedData implements Data {
      * @return
      */
     public final Data toDefinedData() {
-        if (this.response.length != 0) {
+        if ((this.responseStream != null) || (this.response.length != 0)) {
             DataType type = DataType.TYPEMAP.get(this.url);
 
             if (type != null) {
@@ -86,18 +108,41 @@ public class UndefinedData implements Data {
                         field = getQueryMap(URLDecoder.decode(new String(this.request).trim(), "UTF-8"));
                     }
                     // レスポンスのJSONを復号します
-                    InputStream stream = new ByteArrayInputStream(this.response);
-                    if ((this.response[0] == (byte) 0x1f) && (this.response[1] == (byte) 0x8b)) {
+                    InputStream stream;
+                    if (this.responseStream != null) {
+                        stream = this.responseStream;
+                        // レスポンスボディのJSONはsvdata=から始まるので除去します
+                        int read;
+                        while (((read = stream.read()) != -1) && (read != '=')) {
+                        }
+                    }
+                    else if ((this.response[0] == (byte) 0x1f) && (this.response[1] == (byte) 0x8b)) {
                         // レスポンスの先頭2バイトが0x1f, 0x8bであればgzip圧縮されている
-                        stream = new GZIPInputStream(stream);
+                        stream = new GZIPInputStream(new ByteArrayInputStream(this.response));
+                        // レスポンスボディのJSONはsvdata=から始まるので除去します
+                        int read;
+                        while (((read = stream.read()) != -1) && (read != '=')) {
+                        }
                     }
-                    // レスポンスボディのJSONはsvdata=から始まるので除去します
-                    int read;
-                    while (((read = stream.read()) != -1) && (read != '=')) {
+                    else {
+                        // レスポンスボディのJSONはsvdata=から始まるので除去します
+                        int start = 0;
+                        while ((start < this.response.length) && (this.response[start++] != '=')) {
+                        }
+                        stream = new ByteArrayInputStream(this.response, start, this.response.length - start);
                     }
 
-                    JsonReader jsonreader = Json.createReader(stream);
-                    JsonObject json = jsonreader.readObject();
+                    JsonObject json;
+                    JsonSelector selector = type.getSelector();
+                    if ((selector != null) && !AppConfig.get().isStoreJson()) {
+                        // 使うフィールドだけを読み込む
+                        json = JsonStreamReader.readObject(stream, selector);
+                    }
+                    else {
+                        // JSONを保存する場合は全部必要
+                        JsonReader jsonreader = Json.createReader(stream);
+                        json = jsonreader.readObject();
+                    }
 
                     return new ActionData(type, this.date, json, field);
                 } catch (Exception e) {
@@ -1,20 +1,17 @@
 package logbook.data.context;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.charset.Charset;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.CheckForNull;
@@ -27,6 +24,7 @@ import logbook.config.AppConfig;
 import logbook.config.ItemConfig;
 import logbook.config.KdockConfig;
 import logbook.constants.AppConstants;
+import logbook.data.CaptureJournal;
 import logbook.data.Data;
 import logbook.dto.BasicInfoDto;
 import logbook.dto.BattleExDto;
@@ -61,8 +59,6 @@ import logbook.internal.MasterData;
 import logbook.internal.Ship;
 import logbook.util.JsonUtils;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.FilenameUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.swt.SWT;
@@ -76,98 +72,102 @@ public final class GlobalContext {
     /** ロガー */
     private static final Logger LOG = LogManager.getLogger(GlobalContext.class);
 
+    // GlobalContext を更新するのは DataProxy の更新スレッドだけで、画面は表示スレッドから読み込む
+    // 読み込み中に変更されても壊れないように並行コレクションを使い、全体を作り直す場合は差し替える
+    // 配列は書き換えずにコピーを作って差し替える（コピーオンライト）
+
     /** 装備Map */
-    private static Map<Integer, ItemDto> itemMap = new TreeMap<Integer, ItemDto>();
+    private static volatile Map<Integer, ItemDto> itemMap = new ConcurrentSkipListMap<Integer, ItemDto>();
 
     /** 艦娘Map */
-    private static Map<Integer, ShipDto> shipMap = new TreeMap<Integer, ShipDto>();
+    private static volatile Map<Integer, ShipDto> shipMap = new ConcurrentSkipListMap<Integer, ShipDto>();
 
     /** 秘書艦 */
-    private static ShipDto secretary;
+    private static volatile ShipDto secretary;
 
     /** 建造 */
-    private static List<GetShipDto> getShipList = new ArrayList<GetShipDto>();
+    private static List<GetShipDto> getShipList = new CopyOnWriteArrayList<GetShipDto>();
 
     /** 建造(投入資源) */
-    private static Map<String, GetShipDto> getShipResource = new HashMap<String, GetShipDto>();
+    private static Map<String, GetShipDto> getShipResource = new ConcurrentHashMap<String, GetShipDto>();
 
     /** 開発 */
-    private static List<CreateItemDto> createItemList = new ArrayList<CreateItemDto>();
+    private static List<CreateItemDto> createItemList = new CopyOnWriteArrayList<CreateItemDto>();
 
     /** 海戦・ドロップ */
-    private static List<BattleResultDto> battleResultList = new ArrayList<BattleResultDto>();
+    private static List<BattleResultDto> battleResultList = new CopyOnWriteArrayList<BattleResultDto>();
 
     /** 遠征結果 */
-    private static List<MissionResultDto> missionResultList = new ArrayList<MissionResultDto>();
+    private static List<MissionResultDto> missionResultList = new CopyOnWriteArrayList<MissionResultDto>();
 
     /** 司令部Lv */
-    private static int hqLevel;
+    private static volatile int hqLevel;
 
     /** 最大保有可能 艦娘数 */
-    private static int maxChara;
+    private static volatile int maxChara;
 
     /** 最大保有可能 装備数 */
-    private static int maxSlotitem;
+    private static volatile int maxSlotitem;
 
     /** 最後に建造を行った建造ドック */
-    private static String lastBuildKdock;
+    private static volatile String lastBuildKdock;
 
     /** 現在のマップ位置 */
-    private static MapCellDto mapCellDto = null;
+    private static volatile MapCellDto mapCellDto = null;
 
     /** 戦闘詳細 */
-    private static BattleExDto battle = null;
+    private static volatile BattleExDto battle = null;
 
     /** 遠征リスト */
-    private static DeckMissionDto[] deckMissions = new DeckMissionDto[] { DeckMissionDto.EMPTY, DeckMissionDto.EMPTY,
+    private static volatile DeckMissionDto[] deckMissions = new DeckMissionDto[] { DeckMissionDto.EMPTY, DeckMissionDto.EMPTY,
             DeckMissionDto.EMPTY };
 
     /** ドック */
-    private static Map<String, DockDto> dock = new TreeMap<String, DockDto>();
+    private static volatile Map<String, DockDto> dock = new ConcurrentSkipListMap<String, DockDto>();
 
     /** 入渠リスト */
-    private static NdockDto[] ndocks = new NdockDto[] { NdockDto.EMPTY, NdockDto.EMPTY, NdockDto.EMPTY,
+    private static volatile NdockDto[] ndocks = new NdockDto[] { NdockDto.EMPTY, NdockDto.EMPTY, NdockDto.EMPTY,
             NdockDto.EMPTY };
 
     /** 建造リスト */
-    private static KdockDto[] kdocks = new KdockDto[] { KdockDto.EMPTY, KdockDto.EMPTY, KdockDto.EMPTY,
+    private static volatile KdockDto[] kdocks = new KdockDto[] { KdockDto.EMPTY, KdockDto.EMPTY, KdockDto.EMPTY,
             KdockDto.EMPTY };
 
     /** 演習リスト */
-    private static PracticeUserDto[] practiceUser = new PracticeUserDto[] { null, null, null, null, null };
+    private static volatile PracticeUserDto[] practiceUser = new PracticeUserDto[] { null, null, null, null, null };
 
     /** 最後に演習リストが更新された時間 */
-    private static Date practiceUserLastUpdate = null;
+    private static volatile Date practiceUserLastUpdate = null;
 
     /** 任務Map */
-    private static ArrayList<QuestDto> questList = new ArrayList<QuestDto>();
+    private static List<QuestDto> questList = new CopyOnWriteArrayList<QuestDto>();
 
     /** 最後に任務情報を受け取った時間 */
-    private static Date questLastUpdate;
+    private static volatile Date questLastUpdate;
 
     /** 出撃中か */
-    private static boolean[] isSortie = new boolean[4];
+    private static volatile boolean[] isSortie = new boolean[4];
 
     /** 出撃(START)か */
-    private static boolean isStart;
+    private static volatile boolean isStart;
 
     /**　ユーザ基本情報 */
-    private static BasicInfoDto basic;
+    private static volatile BasicInfoDto basic;
 
     /** updateContext() が呼ばれた数 */
-    private static int updateCounter = 0;
+    private static volatile int updateCounter = 0;
 
     /** 保有資源・資材 */
-    private static MaterialDto material = null;
+    private static volatile MaterialDto material = null;
 
     /** 最後に資源ログに追加した時間 */
     volatile private static Date materialLogLastUpdate = null;
 
     /** 連合艦隊 */
-    private static boolean combined;
+    private static volatile boolean combined;
 
     /** 情報の取得状態 0:母港情報未受信 1:正常 2:マスターデータの更新が必要 3:アカウントが変わった！   */
-    private static int state = 0;
+    private static volatile int state = 0;
 
     // 始めてアクセスがあった時に読み込む
     public static final boolean INIT_COMPLETE;
@@ -382,6 +382,7 @@ public final class GlobalContext {
      */
     public static boolean isMission(String idstr) {
         int id = Integer.parseInt(idstr);
+        DeckMissionDto[] deckMissions = GlobalContext.deckMissions;
         for (int i = 0; i < deckMissions.length; i++) {
             if ((deckMissions[i].getMission() != null) && (deckMissions[i].getFleetid() == id)) {
                 return true;
@@ -687,21 +688,8 @@ public final class GlobalContext {
      * @param data
      */
     private static void doStoreJson(Data data) {
-        try {
-            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd_HHmmss.SSS");
-            Date time = Calendar.getInstance().getTime();
-            // ファイル名
-            String fname = new StringBuilder().append(format.format(time)).append("_").append(data.getDataType())
-                    .append(".json").toString();
-            // ファイルパス
-            File file = new File(FilenameUtils.concat(AppConfig.get().getStoreJsonPath(), fname));
-
-            FileUtils.write(file, data.getJsonObject().toString(), Charset.forName("UTF-8"));
-        } catch (IOException e) {
-            LOG.warn("JSONオブジェクトを保存するに失敗しました", e);
-            LOG.warn(data);
-        }
-
+        // ジャーナルに追記する（書き込みは LogWriter のスレッドで行う）
+        CaptureJournal.append(data);
     }
 
     /**
@@ -851,9 +839,9 @@ public final class GlobalContext {
                     }
                 }
                 if (endSortie) {
-                    ApplicationMain.main.endSortie();
+                    displayEndSortie();
                 }
-                Arrays.fill(isSortie, false);
+                isSortie = new boolean[4];
 
                 // 戦闘結果がある場合、ダメージ計算があっているか検証します
                 if ((battle != null) && (battle.getDock() != null) && (battle.isPractice() == false)) {
@@ -877,12 +865,13 @@ public final class GlobalContext {
                 //addConsole("保有資材を更新しました");
 
                 // 保有艦娘を更新する
-                shipMap.clear();
+                Map<Integer, ShipDto> ships = new ConcurrentSkipListMap<Integer, ShipDto>();
                 JsonArray apiShip = apidata.getJsonArray("api_ship");
                 for (int i = 0; i < apiShip.size(); i++) {
                     ShipDto ship = new ShipDto((JsonObject) apiShip.get(i));
-                    shipMap.put(Integer.valueOf(ship.getId()), ship);
+                    ships.put(Integer.valueOf(ship.getId()), ship);
                 }
+                shipMap = ships;
                 JsonArray apiDeckPort = apidata.getJsonArray("api_deck_port");
                 doDeck(apiDeckPort);
                 //addConsole("保有艦娘情報を更新しました");
@@ -993,12 +982,14 @@ public final class GlobalContext {
 
             if (mapCellDto == null) {
                 // 出撃していない場合は出撃させる
+                boolean[] sortie = isSortie.clone();
                 for (DockDto dock : battle.getFriends()) {
-                    isSortie[Integer.parseInt(dock.getId()) - 1] = true;
+                    sortie[Integer.parseInt(dock.getId()) - 1] = true;
                 }
-                ApplicationMain.main.startSortie();
+                isSortie = sortie;
+                displayStartSortie();
             }
-            ApplicationMain.main.updateBattle(battle);
+            displayUpdateBattle(battle);
 
         } catch (Exception e) {
             LOG.warn("海戦情報を更新しますに失敗しました", e);
@@ -1155,7 +1146,7 @@ public final class GlobalContext {
     }
 
     private static void doKdockSub(JsonArray apidata) {
-        kdocks = new KdockDto[] { KdockDto.EMPTY, KdockDto.EMPTY, KdockDto.EMPTY, KdockDto.EMPTY };
+        KdockDto[] kdocks = new KdockDto[] { KdockDto.EMPTY, KdockDto.EMPTY, KdockDto.EMPTY, KdockDto.EMPTY };
         for (int i = 0; i < apidata.size(); i++) {
             JsonObject object = (JsonObject) apidata.get(i);
             int state = object.getJsonNumber("api_state").intValue();
@@ -1171,6 +1162,7 @@ public final class GlobalContext {
                 kdocks[i] = new KdockDto(state == 3, null);
             }
         }
+        GlobalContext.kdocks = kdocks;
     }
 
     /**
@@ -1268,11 +1260,12 @@ public final class GlobalContext {
         try {
             JsonArray apidata = data.getJsonObject().getJsonArray("api_data");
             // 破棄
-            itemMap.clear();
+            Map<Integer, ItemDto> items = new ConcurrentSkipListMap<Integer, ItemDto>();
             for (int i = 0; i < apidata.size(); i++) {
                 JsonObject object = (JsonObject) apidata.get(i);
-                addSlotitem(object);
+                addSlotitem(items, object);
             }
+            itemMap = items;
 
             state = checkDataState();
 
@@ -1304,11 +1297,12 @@ public final class GlobalContext {
                 }
             } else {
                 // 情報を破棄
-                shipMap.clear();
+                Map<Integer, ShipDto> ships = new ConcurrentSkipListMap<Integer, ShipDto>();
                 for (int i = 0; i < shipdata.size(); i++) {
                     ShipDto ship = new ShipDto((JsonObject) shipdata.get(i));
-                    shipMap.put(ship.getId(), ship);
+                    ships.put(ship.getId(), ship);
                 }
+                shipMap = ships;
             }
             // 艦隊を設定
             doDeck(apidata.getJsonArray("api_deck_data"));
@@ -1331,11 +1325,12 @@ public final class GlobalContext {
         try {
             JsonArray apidata = data.getJsonObject().getJsonArray("api_data");
             // 情報を破棄
-            shipMap.clear();
+            Map<Integer, ShipDto> ships = new ConcurrentSkipListMap<Integer, ShipDto>();
             for (int i = 0; i < apidata.size(); i++) {
                 ShipDto ship = new ShipDto((JsonObject) apidata.get(i));
-                shipMap.put(ship.getId(), ship);
+                ships.put(ship.getId(), ship);
             }
+            shipMap = ships;
 
             // 戦闘結果がある場合、ダメージ計算があっているか検証します
             if ((battle != null) && (battle.getDock() != null) && (battle.isPractice() == false)) {
@@ -1349,7 +1344,7 @@ public final class GlobalContext {
             doDeck(data.getJsonObject().getJsonArray("api_data_deck"));
 
             if (battle != null) {
-                ApplicationMain.main.updateSortieDock();
+                displayUpdateSortieDock();
             }
 
             battle = null;
@@ -1390,7 +1385,8 @@ public final class GlobalContext {
      * @param apidata
      */
     private static void doDeck(JsonArray apidata) {
-        Map<String, DockDto> newDocks = new TreeMap<String, DockDto>();
+        Map<String, DockDto> newDocks = new ConcurrentSkipListMap<String, DockDto>();
+        DeckMissionDto[] newMissions = deckMissions.clone();
         for (int i = 0; i < apidata.size(); i++) {
             JsonObject jsonObject = (JsonObject) apidata.get(i);
             int fleetid = jsonObject.getInt("api_id");
@@ -1427,10 +1423,11 @@ public final class GlobalContext {
                 if (milis > 0) {
                     time = new Date(milis);
                 }
-                deckMissions[i - 1] = new DeckMissionDto(name, section, time, fleetid, shipIds);
+                newMissions[i - 1] = new DeckMissionDto(name, section, time, fleetid, shipIds);
             }
         }
         dock = newDocks;
+        deckMissions = newMissions;
     }
 
     /**
@@ -1784,6 +1781,7 @@ public final class GlobalContext {
      * @param apidata
      */
     private static void doNdockSub(JsonArray apidata) {
+        NdockDto[] ndocks = GlobalContext.ndocks.clone();
         for (int i = 0; i < apidata.size(); i++) {
             JsonObject object = (JsonObject) apidata.get(i);
             int id = object.getJsonNumber("api_ship_id").intValue();
@@ -1799,6 +1797,7 @@ public final class GlobalContext {
                 ndocks[i] = NdockDto.EMPTY;
             }
         }
+        GlobalContext.ndocks = ndocks;
     }
 
     /**
@@ -1830,8 +1829,10 @@ public final class GlobalContext {
         try {
             int id = Integer.valueOf(data.getField("api_ndock_id"));
 
+            NdockDto[] ndocks = GlobalContext.ndocks.clone();
             ndockFinished(ndocks[id - 1].getNdockid());
             ndocks[id - 1] = NdockDto.EMPTY;
+            GlobalContext.ndocks = ndocks;
 
             addUpdateLog("バケツを使いました");
         } catch (Exception e) {
@@ -1956,11 +1957,13 @@ public final class GlobalContext {
             String idstr = data.getField("api_deck_id");
             if (idstr != null) {
                 int id = Integer.parseInt(idstr);
-                isSortie[id - 1] = true;
+                boolean[] sortie = isSortie.clone();
+                sortie[id - 1] = true;
                 // 連合艦隊
                 if ((id == 1) && combined) {
-                    isSortie[1] = true;
+                    sortie[1] = true;
                 }
+                isSortie = sortie;
             }
             // 出撃を更新
             isStart = true;
@@ -1970,8 +1973,8 @@ public final class GlobalContext {
             mapCellDto = new MapCellDto(obj, isStart);
             updateDetailedMaterial("出撃", null, MATERIAL_DIFF.NONE);
 
-            ApplicationMain.main.startSortie();
-            ApplicationMain.main.updateMapCell(mapCellDto);
+            displayStartSortie();
+            displayUpdateMapCell(mapCellDto);
 
             addUpdateLog("出撃しました");
             if (AppConfig.get().isPrintSortieLog())
@@ -1992,7 +1995,7 @@ public final class GlobalContext {
             JsonObject obj = data.getJsonObject().getJsonObject("api_data");
 
             mapCellDto = new MapCellDto(obj, isStart);
-            ApplicationMain.main.updateMapCell(mapCellDto);
+            displayUpdateMapCell(mapCellDto);
             if (AppConfig.get().isPrintSortieLog())
                 addConsole("行先 " + mapCellDto.toString());
         } catch (Exception e) {
@@ -2055,23 +2058,13 @@ public final class GlobalContext {
             // 装備の空き枠が少ない時はバルーンを出す
             if (AppConfig.get().isEnableItemFullBalloonNotify() &&
                     (itemSpace <= AppConfig.get().getItemFullBalloonNotify())) {
-                ToolTip tip = new ToolTip(ApplicationMain.main.getShell(), SWT.BALLOON
-                        | SWT.ICON_ERROR);
-                tip.setText("装備の空き枠警告");
-                tip.setMessage("装備の空き枠があと" + itemSpace + "個しかありません");
-                ApplicationMain.main.getTrayItem().setToolTip(tip);
-                tip.setVisible(true);
+                displayBalloon("装備の空き枠警告", "装備の空き枠があと" + itemSpace + "個しかありません");
                 Sound.randomWarningPlay();
             }
             // 艦娘の空き枠が少ない時はバルーンを出す
             else if (AppConfig.get().isEnableShipFullBalloonNotify() &&
                     (shipSpace <= AppConfig.get().getShipFullBalloonNotify())) {
-                ToolTip tip = new ToolTip(ApplicationMain.main.getShell(), SWT.BALLOON
-                        | SWT.ICON_ERROR);
-                tip.setText("母港の空き警告");
-                tip.setMessage("母港の空きがあと" + shipSpace + "隻分しかありません");
-                ApplicationMain.main.getTrayItem().setToolTip(tip);
-                tip.setVisible(true);
+                displayBalloon("母港の空き警告", "母港の空きがあと" + shipSpace + "隻分しかありません");
                 Sound.randomWarningPlay();
             }
         } catch (Exception e) {
@@ -2105,6 +2098,7 @@ public final class GlobalContext {
     private static void doPractice(Data data) {
         try {
             JsonArray apidata = data.getJsonObject().getJsonArray("api_data");
+            PracticeUserDto[] practiceUser = GlobalContext.practiceUser.clone();
             for (int i = 0; i < apidata.size(); ++i) {
                 PracticeUserDto dto = new PracticeUserDto((JsonObject) apidata.get(i));
                 if ((practiceUser[i] == null) || (practiceUser[i].getId() != dto.getId()))
@@ -2113,6 +2107,7 @@ public final class GlobalContext {
                     // stateだけ更新
                     practiceUser[i].setState(dto.getState());
             }
+            GlobalContext.practiceUser = practiceUser;
             practiceUserLastUpdate = new Date();
             addUpdateLog("演習情報を更新しました");
         } catch (Exception e) {
@@ -2131,14 +2126,17 @@ public final class GlobalContext {
             PracticeUserDetailDto dto = new PracticeUserDetailDto(apidata);
 
             // 持っている情報をアップデートする
+            PracticeUserDto[] practiceUser = GlobalContext.practiceUser;
             for (int i = 0; i < 5; ++i) {
                 if ((practiceUser[i] != null) && (practiceUser[i].getId() == dto.getId())) {
+                    practiceUser = practiceUser.clone();
                     practiceUser[i] = dto;
+                    GlobalContext.practiceUser = practiceUser;
                     break;
                 }
             }
 
-            ApplicationMain.main.updateCalcPracticeExp(dto);
+            displayUpdateCalcPracticeExp(dto);
             addUpdateLog("演習相手艦隊情報を更新しました");
         } catch (Exception e) {
             LOG.warn("演習相手艦隊情報更新に失敗しました", e);
@@ -2252,11 +2250,15 @@ public final class GlobalContext {
 
     /** 装備アイテムをitemMapに追加 */
     private static ItemDto addSlotitem(JsonObject object) {
+        return addSlotitem(itemMap, object);
+    }
+
+    private static ItemDto addSlotitem(Map<Integer, ItemDto> items, JsonObject object) {
         int slotitemId = object.getInt("api_slotitem_id");
         ItemInfoDto info = Item.get(slotitemId);
         if (info != null) {
             ItemDto dto = new ItemDto(info, object);
-            itemMap.put(dto.getId(), dto);
+            items.put(dto.getId(), dto);
             return dto;
         }
         return null;
@@ -2301,7 +2303,77 @@ public final class GlobalContext {
     }
 
     private static void addConsole(Object message) {
-        ApplicationMain.main.printMessage(message.toString());
+        ApplicationMain.logPrint(message.toString());
+    }
+
+    // 画面の更新は表示スレッドで行う
+
+    private static void displayStartSortie() {
+        ApplicationMain.runOnDisplay(new Runnable() {
+            @Override
+            public void run() {
+                ApplicationMain.main.startSortie();
+            }
+        });
+    }
+
+    private static void displayEndSortie() {
+        ApplicationMain.runOnDisplay(new Runnable() {
+            @Override
+            public void run() {
+                ApplicationMain.main.endSortie();
+            }
+        });
+    }
+
+    private static void displayUpdateSortieDock() {
+        ApplicationMain.runOnDisplay(new Runnable() {
+            @Override
+            public void run() {
+                ApplicationMain.main.updateSortieDock();
+            }
+        });
+    }
+
+    private static void displayUpdateMapCell(final MapCellDto mapCell) {
+        ApplicationMain.runOnDisplay(new Runnable() {
+            @Override
+            public void run() {
+                ApplicationMain.main.updateMapCell(mapCell);
+            }
+        });
+    }
+
+    private static void displayUpdateBattle(final BattleExDto battleDto) {
+        ApplicationMain.runOnDisplay(new Runnable() {
+            @Override
+            public void run() {
+                ApplicationMain.main.updateBattle(battleDto);
+            }
+        });
+    }
+
+    private static void displayUpdateCalcPracticeExp(final PracticeUserDetailDto dto) {
+        ApplicationMain.runOnDisplay(new Runnable() {
+            @Override
+            public void run() {
+                ApplicationMain.main.updateCalcPracticeExp(dto);
+            }
+        });
+    }
+
+    private static void displayBalloon(final String title, final String message) {
+        ApplicationMain.runOnDisplay(new Runnable() {
+            @Override
+            public void run() {
+                ToolTip tip = new ToolTip(ApplicationMain.main.getShell(), SWT.BALLOON
+                        | SWT.ICON_ERROR);
+                tip.setText(title);
+                tip.setMessage(message);
+                ApplicationMain.main.getTrayItem().setToolTip(tip);
+                tip.setVisible(true);
+            }
+        });
     }
 
     private static void addUpdateLog(Object message) {
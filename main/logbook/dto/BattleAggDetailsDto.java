@@ -77,6 +77,25 @@ public final class BattleAggDetailsDto extends AbstractDto {
         }
     }
 
+    /**
+     * 他の集計結果を加算します
+     * 
+     * @param other 集計結果
+     */
+    public void add(BattleAggDetailsDto other) {
+        this.start += other.start;
+        this.s += other.s;
+        this.a += other.a;
+        this.b += other.b;
+        this.c += other.c;
+        this.d += other.d;
+        this.bossS += other.bossS;
+        this.bossA += other.bossA;
+        this.bossB += other.bossB;
+        this.bossC += other.bossC;
+        this.bossD += other.bossD;
+    }
+
     /**
      * @return 出撃
      */
@@ -40,6 +40,23 @@ public final class BattleAggUnitDto extends AbstractDto {
         areaAgg.add(rank, area.isStart(), area.isBoss());
     }
 
+    /**
+     * 他の集計結果を加算します
+     * 
+     * @param other 集計結果
+     */
+    public void add(BattleAggUnitDto other) {
+        this.total.add(other.total);
+        for (Entry<Integer, BattleAggDetailsDto> entry : other.areaDetails.entrySet()) {
+            BattleAggDetailsDto areaAgg = this.areaDetails.get(entry.getKey());
+            if (areaAgg == null) {
+                areaAgg = new BattleAggDetailsDto(entry.getValue().getAreaName());
+                this.areaDetails.put(entry.getKey(), areaAgg);
+            }
+            areaAgg.add(entry.getValue());
+        }
+    }
+
     /**
      * 集計結果を取得します
      * 
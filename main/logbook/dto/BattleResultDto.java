@@ -148,6 +148,31 @@ public class BattleResultDto extends AbstractDto {
         this.noSpaceForShip = (dto.getExVersion() >= 1) && (dto.getShipSpace() == 0);
     }
 
+    /**
+     * コンストラクター
+     * 出撃ログのインデックスから復元します
+     */
+    public BattleResultDto(Date battleDate, String questName, ResultRank rank, MapCellDto mapCell,
+            String enemyName, String dropType, String dropName, boolean hasTaiha, boolean isCombined,
+            String mvp, String mvpCombined, String flagShip, String flagShipCombined, boolean noSpaceForShip) {
+        this.battleDate = battleDate;
+        this.questName = questName;
+        this.rank = rank;
+        this.mapCell = mapCell;
+        this.enemyName = enemyName;
+        this.dropFlag = dropName.length() > 0;
+        this.dropType = dropType;
+        this.dropName = dropName;
+        this.battle = null;
+        this.hasTaiha = hasTaiha;
+        this.isCombined = isCombined;
+        this.mvp = mvp;
+        this.mvpCombined = mvpCombined;
+        this.flagShip = flagShip;
+        this.flagShipCombined = flagShipCombined;
+        this.noSpaceForShip = noSpaceForShip;
+    }
+
     private boolean hasTaihaInFleet(int[] nowhp, int[] maxhp) {
         if ((nowhp == null) || (maxhp == null)) {
             return false;
@@ -1,8 +1,8 @@
 package logbook.dto;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.dyuproject.protostuff.Tag;
 
@@ -20,9 +20,9 @@ public final class DockDto extends AbstractDto {
     @Tag(2)
     private final String name;
 
-    /** 艦娘達 */
+    /** 艦娘達（更新スレッドで変更中に画面から読まれても壊れないように） */
     @Tag(3)
-    private final List<ShipDto> ships = new ArrayList<ShipDto>();
+    private final List<ShipDto> ships = new CopyOnWriteArrayList<ShipDto>();
 
     @Tag(4)
     private boolean[] escaped = null;
@@ -31,6 +31,9 @@ public class ItemDto extends AbstractDto {
     @Tag(5)
     private int level;
 
+    /** 書き換えられた回数（一覧の行を作り直すかの判断に使う。書き換えは更新スレッド、読み込みは表示スレッド） */
+    private transient volatile int revision;
+
     public ItemDto() {
     }
 
@@ -62,6 +65,7 @@ public class ItemDto extends AbstractDto {
      */
     public void setInfo(ItemInfoDto info) {
         this.info = info;
+        this.revision++;
     }
 
     /**
@@ -76,6 +80,7 @@ public class ItemDto extends AbstractDto {
      */
     public void setSlotitemId(int slotitemId) {
         this.slotitemId = slotitemId;
+        this.revision++;
     }
 
     /**
@@ -104,6 +109,7 @@ public class ItemDto extends AbstractDto {
      */
     public void setLocked(boolean locked) {
         this.locked = locked;
+        this.revision++;
     }
 
     /**
@@ -118,6 +124,14 @@ public class ItemDto extends AbstractDto {
      */
     public void setLevel(int level) {
         this.level = level;
+        this.revision++;
+    }
+
+    /**
+     * @return 書き換えられた回数
+     */
+    public int getRevision() {
+        return this.revision;
     }
 
     public boolean isPlane() {
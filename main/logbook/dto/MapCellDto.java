@@ -50,6 +50,19 @@ public class MapCellDto implements Comparable<MapCellDto> {
         this.start = start;
     }
 
+    /**
+     * 出撃ログのインデックスから復元します
+     * メモリ節約のため敵艦隊データは持たない
+     */
+    public MapCellDto(int[] map, int enemyId, int colorNo, int bosscellNo, boolean start) {
+        this.map = map;
+        this.enemyId = enemyId;
+        this.colorNo = colorNo;
+        this.bosscellNo = bosscellNo;
+        this.enemyData = null;
+        this.start = start;
+    }
+
     private String toString(boolean detailed, boolean withBoss) {
         String ret = "マップ:" + this.map[0] + "-" + this.map[1] + " セル:" + this.map[2];
         if (detailed) {
@@ -101,6 +101,9 @@ public final class ShipDto extends ShipBaseDto implements Comparable<ShipDto> {
     /** */
     private transient final int lockedEquip;
 
+    /** 書き換えられた回数（一覧の行を作り直すかの判断に使う。書き換えは更新スレッド、読み込みは表示スレッド） */
+    private transient volatile int revision;
+
     /**
      * コンストラクター
      * 
@@ -176,6 +179,7 @@ public final class ShipDto extends ShipBaseDto implements Comparable<ShipDto> {
      */
     public void setLocked(boolean locked) {
         this.locked = locked;
+        this.revision++;
     }
 
     /**
@@ -192,6 +196,7 @@ public final class ShipDto extends ShipBaseDto implements Comparable<ShipDto> {
      */
     public void setFleetid(String fleetid) {
         this.fleetid = fleetid;
+        this.revision++;
     }
 
     public boolean isFleetMember() {
@@ -210,6 +215,7 @@ public final class ShipDto extends ShipBaseDto implements Comparable<ShipDto> {
      */
     public void setFleetpos(int fleetpos) {
         this.fleetpos = fleetpos;
+        this.revision++;
     }
 
     /**
@@ -252,6 +258,7 @@ public final class ShipDto extends ShipBaseDto implements Comparable<ShipDto> {
      */
     public void setDockTime(long docktime) {
         this.docktime = docktime;
+        this.revision++;
     }
 
     /**
@@ -280,6 +287,7 @@ public final class ShipDto extends ShipBaseDto implements Comparable<ShipDto> {
      */
     public void setBull(int bull) {
         this.bull = bull;
+        this.revision++;
     }
 
     /**
@@ -294,6 +302,7 @@ public final class ShipDto extends ShipBaseDto implements Comparable<ShipDto> {
      */
     public void setFuel(int fuel) {
         this.fuel = fuel;
+        this.revision++;
     }
 
     /**
@@ -305,6 +314,14 @@ public final class ShipDto extends ShipBaseDto implements Comparable<ShipDto> {
 
     public void setNowhp(int v) {
         this.nowhp = v;
+        this.revision++;
+    }
+
+    /**
+     * @return 書き換えられた回数
+     */
+    public int getRevision() {
+        return this.revision;
     }
 
     /**
@@ -1,5 +1,6 @@
 package logbook.gui;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -34,6 +35,7 @@ import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
 
 /**
  * テーブルで構成されるダイアログの基底クラス
@@ -41,8 +43,6 @@ import org.eclipse.swt.widgets.TableColumn;
  */
 public abstract class AbstractTableDialog extends WindowBase {
 
-    private static int MAX_PRINT_ITEMS = 2000;
-
     private final Shell parent;
 
     /** タイマー */
@@ -54,6 +54,12 @@ public abstract class AbstractTableDialog extends WindowBase {
     /** テーブルに表示しているボディー */
     protected List<Comparable[]> body;
 
+    /** 表示順（表示している行番号から body の行番号を引く） */
+    private int[] order = new int[0];
+
+    /** 表示される行に内容をセットするクリエイター */
+    private TableItemCreator creator;
+
     /** ソート順序 */
     protected final boolean[] orderflgs = new boolean[this.header.length];
 
@@ -78,9 +84,6 @@ public abstract class AbstractTableDialog extends WindowBase {
     /** ヘッダーのメニュー */
     protected Menu headermenu;
 
-    /** テーブルソート */
-    protected final TableComparator comparator = new TableComparator();
-
     protected TableConfigBean config;
 
     protected MenuItem cyclicReloadMenuItem;
@@ -118,7 +121,8 @@ public abstract class AbstractTableDialog extends WindowBase {
         // テーブルより前に作成する必要があるコンポジットを作成
         this.createContentsBefore();
         // テーブル
-        this.table = new Table(this.getTableParent(), SWT.FULL_SELECTION | SWT.MULTI);
+        // 行は表示される時に作る
+        this.table = new Table(this.getTableParent(), SWT.FULL_SELECTION | SWT.MULTI | SWT.VIRTUAL);
         this.table.addKeyListener(new TableKeyShortcutAdapter(this.header, this.table));
         this.table.setLinesVisible(true);
         this.table.setHeaderVisible(true);
@@ -129,6 +133,13 @@ public abstract class AbstractTableDialog extends WindowBase {
                 AbstractTableDialog.this.shell.setText(AbstractTableDialog.this.getTitle());
             }
         });
+        this.table.addListener(SWT.SetData, new Listener() {
+            @Override
+            public void handleEvent(Event event) {
+                AbstractTableDialog.this.creator.update((TableItem) event.item,
+                        AbstractTableDialog.this.getRow(event.index), event.index);
+            }
+        });
         // メニューバーのメニュー
         MenuItem fileroot = new MenuItem(this.menubar, SWT.CASCADE);
         fileroot.setText("ファイル");
@@ -139,7 +150,7 @@ public abstract class AbstractTableDialog extends WindowBase {
         savecsv.setText("CSVファイルに保存(&S)\tCtrl+S");
         savecsv.setAccelerator(SWT.CTRL + 'S');
         savecsv.addSelectionListener(new TableToCsvSaveAdapter(this.shell, this.getTitle(), this.getTableHeader(),
-                this.table));
+                this));
 
         MenuItem operoot = new MenuItem(this.menubar, SWT.CASCADE);
         operoot.setText("操作");
@@ -304,7 +315,6 @@ public abstract class AbstractTableDialog extends WindowBase {
         int topindex = this.table.getTopIndex();
         int[] selection = this.table.getSelectionIndices();
         this.table.setSortColumn(null);
-        this.disposeTableBody();
         this.updateTableBody();
         this.sortBody();
         this.setTableBody();
@@ -335,29 +345,36 @@ public abstract class AbstractTableDialog extends WindowBase {
 
     /**
      * テーブルボディーをセットする
+     * 行の内容は表示される時に {@link TableItemCreator#update} でセットされます
      */
     protected void setTableBody() {
-        TableItemCreator creator = this.getTableItemCreator();
-        creator.init();
-        // 表示最大件数を制限する
-        int numPrintItems = Math.min(MAX_PRINT_ITEMS, this.body.size());
-        for (int i = 0; i < numPrintItems; i++) {
-            Comparable[] line = this.body.get(i);
-            creator.create(this.table, line, i);
-        }
+        this.creator = this.getTableItemCreator();
+        this.creator.init();
+        this.table.setItemCount(this.body.size());
+        this.table.clearAll();
+    }
+
+    /**
+     * 表示している行の内容を返します
+     * 
+     * @param index テーブルの行番号
+     * @return 行の内容
+     */
+    protected Comparable[] getRow(int index) {
+        return this.body.get(this.order[index]);
     }
 
     /**
-     * テーブルボディーをクリアする
+     * 表示している順に全ての行の内容を返します
+     * 
+     * @return 行の内容
      */
-    protected void disposeTableBody() {
-        this.table.removeAll();
-        /*
-        TableItem[] items = this.table.getItems();
-        for (int i = 0; i < items.length; i++) {
-            items[i].dispose();
-        }
-        */
+    public List<Comparable[]> getRows() {
+        List<Comparable[]> rows = new ArrayList<Comparable[]>(this.order.length);
+        for (int i = 0; i < this.order.length; ++i) {
+            rows.add(this.getRow(i));
+        }
+        return rows;
     }
 
     /**
@@ -449,9 +466,6 @@ public abstract class AbstractTableDialog extends WindowBase {
     protected final String getTitle() {
         String title = this.getTitleMain();
         if ((this.body != null) && (this.table != null)) {
-            if (this.table.getItemCount() != this.body.size()) {
-                title += " " + this.body.size() + "件中" + this.table.getItemCount() + "件のみ表示";
-            }
             int selectionCount = this.table.getSelectionCount();
             if (selectionCount > 1) {
                 title += " " + selectionCount + "件選択中";
@@ -616,7 +630,6 @@ public abstract class AbstractTableDialog extends WindowBase {
 
         //this.shell.setRedraw(false); // shellだと速くならない
         this.table.setRedraw(false);
-        this.disposeTableBody();
 
         for (int i = 0; i < this.orderflgs.length; i++) {
             this.orderflgs[i] = false;
@@ -646,17 +659,48 @@ public abstract class AbstractTableDialog extends WindowBase {
         }
     }
 
+    /**
+     * 表示順を作る（body の並びは変えない）
+     * 全部のソートキーをまとめた比較で1回だけ安定ソートします
+     */
     private void sortBody() {
+        List<Comparable[]> body = this.body;
+        Integer[] indices = new Integer[body.size()];
+        for (int i = 0; i < indices.length; ++i) {
+            indices[i] = i;
+        }
         TableConfigBean.SortKey[] sortKeys = this.getConfig().getSortKeys();
         if (sortKeys != null) {
-            for (int i = sortKeys.length - 1; i >= 0; --i) {
-                if (sortKeys[i] != null) {
-                    this.comparator.setIndex(sortKeys[i].index);
-                    this.comparator.setOrder(sortKeys[i].order);
-                    Collections.sort(this.body, this.comparator);
+            List<SortColumn> columnList = new ArrayList<SortColumn>();
+            for (TableConfigBean.SortKey key : sortKeys) {
+                if (key != null) {
+                    columnList.add(new SortColumn(body, key.index, key.order));
                 }
             }
+            if (!columnList.isEmpty()) {
+                final SortColumn[] columns = columnList.toArray(new SortColumn[columnList.size()]);
+                Arrays.sort(indices, new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer o1, Integer o2) {
+                        int i1 = o1;
+                        int i2 = o2;
+                        for (SortColumn column : columns) {
+                            int ret = column.compare(i1, i2);
+                            if (ret != 0) {
+                                return ret;
+                            }
+                        }
+                        // 元の順番を保つ
+                        return Integer.compare(i1, i2);
+                    }
+                });
+            }
+        }
+        int[] order = new int[indices.length];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = indices[i];
         }
+        this.order = order;
     }
 
     private void enableCyclicReload() {
@@ -678,76 +722,80 @@ public abstract class AbstractTableDialog extends WindowBase {
     }
 
     /**
-     * テーブルをソートする{@link java.util.Comparator}です。
+     * ソートする列のキー
+     * 行ごとの値を1回だけ取り出して long にしておき、ソート中は compareTo を呼びません。
+     * null は昇順・降順に関係なく最後にします。
      */
-    protected class TableComparator implements Comparator<Comparable[]> {
-
-        /** ソート設定済みフラグ */
-        private boolean confflg;
-        /** 列位置 */
-        private int index;
-        /** 昇順・降順フラグ */
-        private boolean order;
+    private static final class SortColumn {
+        private final long[] keys;
+        private final boolean[] nulls;
+        private final boolean order;
+
+        SortColumn(List<Comparable[]> body, int index, boolean order) {
+            int size = body.size();
+            this.keys = new long[size];
+            this.nulls = new boolean[size];
+            this.order = order;
 
-        @Override
-        public final int compare(Comparable[] o1, Comparable[] o2) {
-            Comparable o1c = o1[this.index];
-            Comparable o2c = o2[this.index];
-            if (o1c == null) {
-                if (o2c == null) {
-                    return 0;
+            Comparable[] values = new Comparable[size];
+            boolean integral = true;
+            for (int i = 0; i < size; ++i) {
+                Comparable value = body.get(i)[index];
+                values[i] = value;
+                if (value == null) {
+                    this.nulls[i] = true;
                 }
-                else {
-                    return 1;
+                else if (!((value instanceof Integer) || (value instanceof Long))) {
+                    integral = false;
                 }
             }
-            else if (o2c == null) {
-                return -1;
+            if (integral) {
+                // 整数はそのままキーにする
+                for (int i = 0; i < size; ++i) {
+                    if (values[i] != null) {
+                        this.keys[i] = ((Number) values[i]).longValue();
+                    }
+                }
+            }
+            else {
+                this.rank(values);
             }
-            int ret = o1[this.index].compareTo(o2[this.index]);
-            return this.order ? ret : -ret;
         }
 
-        /**
-         * 列位置をセットする
-         * @param index
-         */
-        public final void setIndex(int index) {
-            this.index = index;
-            this.confflg = true;
+        /** 値の順位をキーにする（等しい値は同じ順位） */
+        @SuppressWarnings("unchecked")
+        private void rank(final Comparable[] values) {
+            List<Integer> indices = new ArrayList<Integer>(values.length);
+            for (int i = 0; i < values.length; ++i) {
+                if (values[i] != null) {
+                    indices.add(i);
+                }
+            }
+            Collections.sort(indices, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return values[o1].compareTo(values[o2]);
+                }
+            });
+            long rank = 0;
+            for (int i = 0; i < indices.size(); ++i) {
+                int cur = indices.get(i);
+                if ((i > 0) && (values[indices.get(i - 1)].compareTo(values[cur]) != 0)) {
+                    rank++;
+                }
+                this.keys[cur] = rank;
+            }
         }
 
-        /**
-         * 昇順・降順フラグをセットする
-         * @param order
-         */
-        public final void setOrder(boolean order) {
-            this.order = order;
-            this.confflg = true;
-        }
-
-        /**
-         * ソート設定済みフラグ
-         * @return
-         */
-        public final boolean getHasSetConfig() {
-            return this.confflg;
-        }
-
-        /**
-         * 比較する
-         * 
-         * @param o1
-         * @param o2
-         * @param order
-         * @return
-         */
-        private <T extends Comparable<? super T>> int compareTo(T o1, T o2, boolean order) {
-            if (this.order) {
-                return o1.compareTo(o2);
-            } else {
-                return o2.compareTo(o1);
+        int compare(int o1, int o2) {
+            if (this.nulls[o1]) {
+                return this.nulls[o2] ? 0 : 1;
             }
+            else if (this.nulls[o2]) {
+                return -1;
+            }
+            int ret = Long.compare(this.keys[o1], this.keys[o2]);
+            return this.order ? ret : -ret;
         }
     }
 
@@ -809,8 +857,9 @@ public abstract class AbstractTableDialog extends WindowBase {
                 @Override
                 public void run() {
                     if (!CyclicReloadTask.this.dialog.shell.isDisposed()) {
-                        // 見えているときだけ処理する
-                        if (CyclicReloadTask.this.dialog.shell.isVisible()) {
+                        // 見えているときだけ処理する（最小化している時も飛ばす）
+                        if (CyclicReloadTask.this.dialog.shell.isVisible()
+                                && !CyclicReloadTask.this.dialog.shell.getMinimized()) {
                             CyclicReloadTask.this.dialog.reloadTable();
                         }
                     }
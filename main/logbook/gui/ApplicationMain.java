@@ -18,6 +18,7 @@ import logbook.config.ItemMasterConfig;
 import logbook.config.ShipConfig;
 import logbook.config.ShipGroupConfig;
 import logbook.constants.AppConstants;
+import logbook.data.DataProxy;
 import logbook.data.context.GlobalContext;
 import logbook.dto.BattleExDto;
 import logbook.dto.DockDto;
@@ -37,8 +38,10 @@ import logbook.gui.widgets.FleetComposite;
 import logbook.internal.BattleResultServer;
 import logbook.internal.EnemyData;
 import logbook.internal.Item;
+import logbook.internal.LogWriter;
 import logbook.internal.MasterData;
 import logbook.internal.Ship;
+import logbook.server.proxy.AssetCache;
 import logbook.server.proxy.DatabaseClient;
 import logbook.server.proxy.ProxyServer;
 import logbook.thread.ThreadManager;
@@ -49,6 +52,7 @@ import logbook.util.SwtUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
 import org.eclipse.swt.custom.CTabFolder;
 import org.eclipse.swt.custom.CTabItem;
 import org.eclipse.swt.events.SelectionAdapter;
@@ -99,6 +103,11 @@ public final class ApplicationMain extends WindowBase {
     }
 
     public static void logPrint(final String mes) {
+        if (main == null) {
+            // 画面なしで動かしている（リプレイなど）
+            LOG.info(mes);
+            return;
+        }
         if (main.display.getThread() == Thread.currentThread()) {
             main.printMessage(mes);
         }
@@ -112,6 +121,34 @@ public final class ApplicationMain extends WindowBase {
         }
     }
 
+    /**
+     * 表示スレッドで実行します
+     * 表示スレッド以外から呼ばれた場合は非同期に実行します
+     * 
+     * @param task 処理
+     */
+    public static void runOnDisplay(Runnable task) {
+        if (main == null) {
+            // 画面なしで動かしている（リプレイなど）
+            return;
+        }
+        Display display = main.display;
+        if (display.isDisposed()) {
+            // 終了処理中
+            return;
+        }
+        if (display.getThread() == Thread.currentThread()) {
+            task.run();
+        }
+        else {
+            try {
+                display.asyncExec(task);
+            } catch (SWTException e) {
+                // 終了処理中
+            }
+        }
+    }
+
     public static ApplicationMain main;
     public static boolean disableUpdate;
 
@@ -246,6 +283,8 @@ public final class ApplicationMain extends WindowBase {
     private Label errorLabel;
     /** コンソール **/
     private org.eclipse.swt.widgets.List console;
+    /** コンソールに最後に表示した進捗の行 **/
+    private String progressLine;
 
     /**
      * Launch the application.
@@ -538,6 +577,15 @@ public final class ApplicationMain extends WindowBase {
                 new CreatePacFileDialog(ApplicationMain.this.dummyHolder).open();
             }
         });
+        // その他-通信の統計
+        MenuItem proxyStatistics = new MenuItem(etcmenu, SWT.NONE);
+        proxyStatistics.setText("通信の統計");
+        proxyStatistics.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                ApplicationMain.this.showProxyStatistics();
+            }
+        });
         // セパレータ 
         new MenuItem(etcmenu, SWT.SEPARATOR);
         // その他-ツール
@@ -1179,12 +1227,44 @@ public final class ApplicationMain extends WindowBase {
         ThreadManager.start();
     }
 
+    /**
+     * プロキシサーバーの状態とキャッシュ・ログ書き込みの統計を表示します
+     */
+    private void showProxyStatistics() {
+        StringBuilder sb = new StringBuilder(ProxyServer.getStatistics());
+        String cache = AssetCache.getCurrentStatistics();
+        if (!cache.isEmpty()) {
+            sb.append("\n").append(cache);
+        }
+        String database = DatabaseClient.getCurrentStatistics();
+        if (!database.isEmpty()) {
+            sb.append("\n").append(database);
+        }
+        String writer = LogWriter.getCurrentStatistics();
+        if (!writer.isEmpty()) {
+            sb.append("\n").append(writer);
+        }
+        String battleLog = BattleResultServer.getCurrentStatistics();
+        if (!battleLog.isEmpty()) {
+            sb.append("\n").append(battleLog);
+        }
+        MessageBox box = new MessageBox(this.shell, SWT.OK | SWT.ICON_INFORMATION);
+        box.setText("通信の統計");
+        box.setMessage(sb.toString());
+        box.open();
+    }
+
     private static void endThread() {
         // リソースを開放する
         SWTResourceManager.dispose();
         // プロキシサーバーをシャットダウンする
         ProxyServer.end();
+        AssetCache.end();
         DatabaseClient.end();
+        // 受け取ったデータを反映する
+        DataProxy.end();
+        // 書き込み待ちの報告書・出撃ログを書き込む
+        LogWriter.end();
         // ホットキーを解除
         JIntellitypeWrapper.cleanup();
     }
@@ -1469,6 +1549,26 @@ public final class ApplicationMain extends WindowBase {
         }
         this.console.add(LOG_DATE_FORMAT.format(new Date()) + "  " + message);
         this.console.setSelection(this.console.getItemCount() - 1);
+        this.progressLine = null;
+    }
+
+    /**
+     * 進捗をコンソールに表示します
+     * 直前に表示したのが進捗の場合はその行を書き換えます
+     * @param message コンソールに表示するメッセージ
+     */
+    public void printProgressMessage(final String message) {
+        if (disableUpdate || this.console.isDisposed())
+            return;
+        int last = this.console.getItemCount() - 1;
+        if ((this.progressLine != null) && (last >= 0) && this.progressLine.equals(this.console.getItem(last))) {
+            this.progressLine = LOG_DATE_FORMAT.format(new Date()) + "  " + message;
+            this.console.setItem(last, this.progressLine);
+        }
+        else {
+            this.printMessage(message);
+            this.progressLine = this.console.getItem(this.console.getItemCount() - 1);
+        }
     }
 
     // 出撃更新 //
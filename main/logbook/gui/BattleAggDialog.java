@@ -1,7 +1,6 @@
 package logbook.gui;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
@@ -15,12 +14,8 @@ import logbook.config.AppConfig;
 import logbook.config.bean.TableConfigBean;
 import logbook.dto.BattleAggDetailsDto;
 import logbook.dto.BattleAggUnitDto;
-import logbook.dto.BattleResultDto;
-import logbook.dto.MapCellDto;
-import logbook.dto.ResultRank;
 import logbook.gui.listener.TreeKeyShortcutAdapter;
 import logbook.gui.listener.TreeToClipboardAdapter;
-import logbook.internal.BattleAggDate;
 import logbook.internal.BattleAggUnit;
 import logbook.internal.BattleResultServer;
 
@@ -258,78 +253,14 @@ public class BattleAggDialog extends WindowBase {
      * @return 集計結果
      */
     private Map<BattleAggUnit, BattleAggUnitDto> load() {
-        Map<BattleAggUnit, BattleAggUnitDto> aggMap = new EnumMap<>(BattleAggUnit.class);
-        // 今日
-        Calendar today = BattleAggDate.TODAY.get();
-        // 先週
-        Calendar lastWeek = BattleAggDate.LAST_WEEK.get();
-        // 先月
-        Calendar lastMonth = BattleAggDate.LAST_MONTH.get();
-        // 読み込む最小の日付(>=)
-        Calendar min = lastMonth;
-
-        // 海戦・ドロップ報告書読み込み
+        // 海戦・ドロップ報告書の日ごとの集計から読み込み
         try {
-            for (BattleResultDto dto : BattleResultServer.get().getList()) {
-                Calendar date = BattleAggDate.fromDate(dto.getBattleDate());
-                MapCellDto mapCell = dto.getMapCell();
-                ResultRank rank = dto.getRank();
-                // 演習はスキップ
-                if (mapCell == null)
-                    continue;
-
-                // 読み込む最小の日付未満の場合は読み飛ばす
-                if (min.compareTo(date) > 0) {
-                    continue;
-                }
-
-                // デイリー集計
-                this.agg(BattleAggUnit.DAILY, aggMap, today, Calendar.DAY_OF_YEAR, date, mapCell, rank);
-                // ウィークリー集計
-                this.agg(BattleAggUnit.WEEKLY, aggMap, today, Calendar.WEEK_OF_YEAR, date, mapCell, rank);
-                // マンスリー集計
-                this.agg(BattleAggUnit.MONTHLY, aggMap, today, Calendar.MONTH, date, mapCell, rank);
-                // 先週の集計
-                this.agg(BattleAggUnit.LAST_WEEK, aggMap, lastWeek, Calendar.WEEK_OF_YEAR, date, mapCell,
-                        rank);
-                // 先月の集計
-                this.agg(BattleAggUnit.LAST_MONTH, aggMap, lastMonth, Calendar.MONTH, date, mapCell, rank);
-            }
-
+            return BattleResultServer.get().getAggregate();
         } catch (Exception e) {
             ApplicationMain.main.printMessage("出撃統計作成に失敗しました");
             LOG.warn("出撃統計作成に失敗", e);
         }
-        return aggMap;
-    }
-
-    /**
-     * 集計する
-     * 
-     * @param unit 集計単位(デイリーなど)
-     * @param to 集計結果
-     * @param std 基準日
-     * @param field {@link Calendar#get(int)}のフィールド値
-     * @param target 集計対象の日付
-     * @param area 海域
-     * @param rank ランク
-     * @param isStart 出撃
-     * @param isBoss ボス
-     */
-    private void agg(BattleAggUnit unit, Map<BattleAggUnit, BattleAggUnitDto> to, Calendar std, int field,
-            Calendar target, MapCellDto area, ResultRank rank) {
-        int stdn = std.get(field);
-        int tarn = target.get(field);
-        //if (std.get(field) == target.get(field))
-        if (stdn == tarn)
-        {
-            BattleAggUnitDto aggUnit = to.get(unit);
-            if (aggUnit == null) {
-                aggUnit = new BattleAggUnitDto();
-                to.put(unit, aggUnit);
-            }
-            aggUnit.add(area, rank);
-        }
+        return new EnumMap<>(BattleAggUnit.class);
     }
 
     /**
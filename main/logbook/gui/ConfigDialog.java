@@ -213,6 +213,17 @@ public final class ConfigDialog extends Dialog {
         });
         battleLogdirBtn.setText("選択...");
 
+        Label logSyncLabel = new Label(compositeSystem, SWT.NONE);
+        logSyncLabel.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+        logSyncLabel.setText("ログ書き込み時の同期");
+
+        final Combo logSyncCombo = new Combo(compositeSystem, SWT.READ_ONLY);
+        logSyncCombo.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 2, 1));
+        logSyncCombo.add("しない(速い)");
+        logSyncCombo.add("まとめて書き込むごと");
+        logSyncCombo.add("1件ごと(安全)");
+        logSyncCombo.select(AppConfig.get().getLogSyncMode());
+
         final Button hidewindow = new Button(compositeSystem, SWT.CHECK);
         hidewindow.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 3, 1));
         hidewindow.setText("最小化時にタスクトレイに格納");
@@ -826,6 +837,116 @@ public final class ConfigDialog extends Dialog {
         databaseLogButton.setText("データベースへの送信をログ出力する");
         databaseLogButton.setSelection(AppConfig.get().isDatabaseSendLog());
 
+        final Button useAssetCacheButton = new Button(compositeProxy, SWT.CHECK);
+        useAssetCacheButton.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 4, 1));
+        useAssetCacheButton.setText("ゲームの画像や音声をキャッシュする");
+        useAssetCacheButton.setSelection(AppConfig.get().isUseAssetCache());
+
+        Label assetCacheSizeLabel = new Label(compositeProxy, SWT.NONE);
+        assetCacheSizeLabel.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+        assetCacheSizeLabel.setText("最大サイズ(MB):");
+
+        final Spinner assetCacheSizeSpinner = new Spinner(compositeProxy, SWT.BORDER);
+        assetCacheSizeSpinner.setMaximum(65536);
+        assetCacheSizeSpinner.setMinimum(16);
+        assetCacheSizeSpinner.setSelection(AppConfig.get().getAssetCacheSize());
+        GridData gdAssetCacheSizeSpinner = new GridData(SWT.LEFT, SWT.CENTER, false, false, 3, 1);
+        gdAssetCacheSizeSpinner.widthHint = 55;
+        assetCacheSizeSpinner.setLayoutData(gdAssetCacheSizeSpinner);
+
+        Label proxyServerLabel = new Label(compositeProxy, SWT.NONE);
+        proxyServerLabel.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 4, 1));
+        proxyServerLabel.setText("プロキシサーバーの性能設定");
+
+        Label proxyAcceptorsLabel = new Label(compositeProxy, SWT.NONE);
+        proxyAcceptorsLabel.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+        proxyAcceptorsLabel.setText("アクセプタ数*");
+
+        final Spinner proxyAcceptorsSpinner = new Spinner(compositeProxy, SWT.BORDER);
+        proxyAcceptorsSpinner.setMaximum(16);
+        proxyAcceptorsSpinner.setMinimum(1);
+        proxyAcceptorsSpinner.setSelection(AppConfig.get().getProxyAcceptors());
+        GridData gdProxyAcceptorsSpinner = new GridData(SWT.LEFT, SWT.CENTER, false, false, 1, 1);
+        gdProxyAcceptorsSpinner.widthHint = 55;
+        proxyAcceptorsSpinner.setLayoutData(gdProxyAcceptorsSpinner);
+
+        Label proxySelectorsLabel = new Label(compositeProxy, SWT.NONE);
+        proxySelectorsLabel.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+        proxySelectorsLabel.setText("セレクタ数*");
+
+        final Spinner proxySelectorsSpinner = new Spinner(compositeProxy, SWT.BORDER);
+        proxySelectorsSpinner.setMaximum(16);
+        proxySelectorsSpinner.setMinimum(1);
+        proxySelectorsSpinner.setSelection(AppConfig.get().getProxySelectors());
+        GridData gdProxySelectorsSpinner = new GridData(SWT.LEFT, SWT.CENTER, false, false, 1, 1);
+        gdProxySelectorsSpinner.widthHint = 55;
+        proxySelectorsSpinner.setLayoutData(gdProxySelectorsSpinner);
+
+        Label proxyMinThreadsLabel = new Label(compositeProxy, SWT.NONE);
+        proxyMinThreadsLabel.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+        proxyMinThreadsLabel.setText("最小スレッド数*");
+
+        final Spinner proxyMinThreadsSpinner = new Spinner(compositeProxy, SWT.BORDER);
+        proxyMinThreadsSpinner.setMaximum(100);
+        proxyMinThreadsSpinner.setMinimum(1);
+        proxyMinThreadsSpinner.setSelection(AppConfig.get().getProxyMinThreads());
+        GridData gdProxyMinThreadsSpinner = new GridData(SWT.LEFT, SWT.CENTER, false, false, 1, 1);
+        gdProxyMinThreadsSpinner.widthHint = 55;
+        proxyMinThreadsSpinner.setLayoutData(gdProxyMinThreadsSpinner);
+
+        Label proxyMaxThreadsLabel = new Label(compositeProxy, SWT.NONE);
+        proxyMaxThreadsLabel.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+        proxyMaxThreadsLabel.setText("最大スレッド数*");
+
+        final Spinner proxyMaxThreadsSpinner = new Spinner(compositeProxy, SWT.BORDER);
+        proxyMaxThreadsSpinner.setMaximum(1000);
+        proxyMaxThreadsSpinner.setMinimum(4);
+        proxyMaxThreadsSpinner.setSelection(AppConfig.get().getProxyMaxThreads());
+        GridData gdProxyMaxThreadsSpinner = new GridData(SWT.LEFT, SWT.CENTER, false, false, 1, 1);
+        gdProxyMaxThreadsSpinner.widthHint = 55;
+        proxyMaxThreadsSpinner.setLayoutData(gdProxyMaxThreadsSpinner);
+
+        Label proxyIdleTimeoutLabel = new Label(compositeProxy, SWT.NONE);
+        proxyIdleTimeoutLabel.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+        proxyIdleTimeoutLabel.setText("アイドル時間(秒)*");
+
+        final Spinner proxyIdleTimeoutSpinner = new Spinner(compositeProxy, SWT.BORDER);
+        proxyIdleTimeoutSpinner.setMaximum(3600);
+        proxyIdleTimeoutSpinner.setMinimum(1);
+        proxyIdleTimeoutSpinner.setSelection(AppConfig.get().getProxyIdleTimeout());
+        GridData gdProxyIdleTimeoutSpinner = new GridData(SWT.LEFT, SWT.CENTER, false, false, 1, 1);
+        gdProxyIdleTimeoutSpinner.widthHint = 55;
+        proxyIdleTimeoutSpinner.setLayoutData(gdProxyIdleTimeoutSpinner);
+
+        Label upstreamMaxConnectionsLabel = new Label(compositeProxy, SWT.NONE);
+        upstreamMaxConnectionsLabel.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+        upstreamMaxConnectionsLabel.setText("接続数上限(0:既定)*");
+
+        final Spinner upstreamMaxConnectionsSpinner = new Spinner(compositeProxy, SWT.BORDER);
+        upstreamMaxConnectionsSpinner.setMaximum(1000);
+        upstreamMaxConnectionsSpinner.setMinimum(0);
+        upstreamMaxConnectionsSpinner.setSelection(AppConfig.get().getUpstreamMaxConnections());
+        GridData gdUpstreamMaxConnectionsSpinner = new GridData(SWT.LEFT, SWT.CENTER, false, false, 1, 1);
+        gdUpstreamMaxConnectionsSpinner.widthHint = 55;
+        upstreamMaxConnectionsSpinner.setLayoutData(gdUpstreamMaxConnectionsSpinner);
+
+        final Button upstreamKeepAliveButton = new Button(compositeProxy, SWT.CHECK);
+        upstreamKeepAliveButton.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 4, 1));
+        upstreamKeepAliveButton.setText("ゲームサーバーへの接続を使いまわす(Keep-Alive)");
+        upstreamKeepAliveButton.setSelection(AppConfig.get().isUpstreamKeepAlive());
+
+        Label upstreamWarmConnectionsLabel = new Label(compositeProxy, SWT.NONE);
+        upstreamWarmConnectionsLabel.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+        upstreamWarmConnectionsLabel.setText("先に繋いでおく接続数:");
+
+        final Spinner upstreamWarmConnectionsSpinner = new Spinner(compositeProxy, SWT.BORDER);
+        upstreamWarmConnectionsSpinner.setMaximum(8);
+        upstreamWarmConnectionsSpinner.setMinimum(0);
+        upstreamWarmConnectionsSpinner.setSelection(AppConfig.get().getUpstreamWarmConnections());
+        GridData gdUpstreamWarmConnectionsSpinner = new GridData(SWT.LEFT, SWT.CENTER, false, false, 3, 1);
+        gdUpstreamWarmConnectionsSpinner.widthHint = 55;
+        upstreamWarmConnectionsSpinner.setLayoutData(gdUpstreamWarmConnectionsSpinner);
+
         // Development タブ
         Composite compositeDevelopment = new Composite(this.composite, SWT.NONE);
         this.compositeMap.put("development", compositeDevelopment);
@@ -913,6 +1034,7 @@ public final class ConfigDialog extends Dialog {
                 */
                 AppConfig.get().setReportPath(reportDir.getText());
                 AppConfig.get().setBattleLogPath(battlelogDir.getText());
+                AppConfig.get().setLogSyncMode(logSyncCombo.getSelectionIndex());
                 AppConfig.get().setUpdateCheck(checkUpdate.getSelection());
                 AppConfig.get().setAllowOnlyFromLocalhost(onlyFromLocalhost.getSelection());
                 // maintab
@@ -981,6 +1103,16 @@ public final class ConfigDialog extends Dialog {
                 AppConfig.get().setSendDatabase(sendDatabaseButton.getSelection());
                 AppConfig.get().setDatabaseSendLog(databaseLogButton.getSelection());
                 AppConfig.get().setAccessKey(accessKeyText.getText());
+                AppConfig.get().setUseAssetCache(useAssetCacheButton.getSelection());
+                AppConfig.get().setAssetCacheSize(assetCacheSizeSpinner.getSelection());
+                AppConfig.get().setProxyAcceptors(proxyAcceptorsSpinner.getSelection());
+                AppConfig.get().setProxySelectors(proxySelectorsSpinner.getSelection());
+                AppConfig.get().setProxyMinThreads(proxyMinThreadsSpinner.getSelection());
+                AppConfig.get().setProxyMaxThreads(proxyMaxThreadsSpinner.getSelection());
+                AppConfig.get().setProxyIdleTimeout(proxyIdleTimeoutSpinner.getSelection());
+                AppConfig.get().setUpstreamMaxConnections(upstreamMaxConnectionsSpinner.getSelection());
+                AppConfig.get().setUpstreamKeepAlive(upstreamKeepAliveButton.getSelection());
+                AppConfig.get().setUpstreamWarmConnections(upstreamWarmConnectionsSpinner.getSelection());
                 // push notify
                 AppConfig.get().setNotifyProwl(prowl.getSelection());
                 AppConfig.get().setProwlAPIKey(prowlAPIKey.getText());
@@ -1,21 +1,13 @@
 package logbook.gui;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipException;
-import java.util.zip.ZipOutputStream;
 
-import logbook.dto.BattleExDto;
 import logbook.dto.BattleResultDto;
 import logbook.gui.logic.BattleHtmlGenerator;
+import logbook.gui.logic.BattleReportExporter;
 import logbook.gui.logic.CreateReportLogic;
 import logbook.gui.logic.TableItemCreator;
 import logbook.gui.logic.TableRowHeader;
@@ -23,7 +15,6 @@ import logbook.internal.BattleResultFilter;
 import logbook.internal.BattleResultServer;
 import logbook.internal.TimeSpanKind;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.swt.SWT;
@@ -47,8 +38,6 @@ public final class DropReportTable extends AbstractTableDialog {
     /** ロガー */
     private static final Logger LOG = LogManager.getLogger(DropReportTable.class);
 
-    private static DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HHmmss.SSS");
-
     private BattleResultFilter filter = new BattleResultFilter();
 
     private BattleFilterDialog battleFilterDialog;
@@ -112,35 +101,23 @@ public final class DropReportTable extends AbstractTableDialog {
     }
 
     private BattleResultDto getItemFromIndex(int index) {
-        TableRowHeader rowHeader = (TableRowHeader) DropReportTable.this.body.get(index)[0];
+        TableRowHeader rowHeader = (TableRowHeader) this.getRow(index)[0];
         return (BattleResultDto) rowHeader.get();
     }
 
     private String getBattleTitle(BattleResultDto item) {
-        if (item.isPractice()) {
-            return "演習報告: " + item.getEnemyName();
-        }
-        return "会敵報告: " + item.getMapCell().detailedString();
+        return BattleReportExporter.getTitle(item);
     }
 
     private String getOutputFileName(BattleResultDto item) {
-        String rank = item.getRank().toString();
-        if (item.isPractice()) {
-            return dateFormat.format(item.getBattleDate()) + "演習" + rank;
-        }
-        else {
-            int[] map = item.getMapCell().getMap();
-            return dateFormat.format(item.getBattleDate()) +
-                    " " + map[0] + "-" + map[1] + "-" + map[2] + " " + rank;
-        }
+        return BattleReportExporter.getFileName(item);
     }
 
     private String getHTMLOfItem(BattleResultDto item, boolean forFile) {
         String title = this.getBattleTitle(item);
-        BattleExDto detail = BattleResultServer.get().getBattleDetail(item);
         try {
             BattleHtmlGenerator gen = new BattleHtmlGenerator();
-            return gen.generateHTML(title, item, detail, forFile);
+            return gen.generateHTML(title, item, BattleResultServer.get().getBattleDetail(item), forFile);
         } catch (IOException e) {
             LOG.warn("会敵報告作成に失敗: CSSファイル読み込みに失敗しました", e);
         } catch (Exception e) {
@@ -153,7 +130,12 @@ public final class DropReportTable extends AbstractTableDialog {
     private void writeToFile(BattleResultDto item, File file) {
         Shell shell = this.getShell();
         try {
-            FileUtils.writeStringToFile(file, this.getHTMLOfItem(item, true), "UTF-8");
+            if (!BattleReportExporter.writeFile(item, file)) {
+                MessageBox messageBox = new MessageBox(shell, SWT.ICON_ERROR);
+                messageBox.setText("書き込めませんでした");
+                messageBox.setMessage("戦闘結果が不完全なため会敵報告を作成できません");
+                messageBox.open();
+            }
         } catch (IOException ex) {
             MessageBox messageBox = new MessageBox(shell, SWT.ICON_ERROR);
             messageBox.setText("書き込めませんでした");
@@ -164,30 +146,9 @@ public final class DropReportTable extends AbstractTableDialog {
 
     private void writeToZipFile(List<BattleResultDto> items, File file) {
         Shell shell = this.getShell();
-        ZipOutputStream zipOutStream = null;
-        List<String> failedList = new ArrayList<String>();
         try {
-            zipOutStream = new ZipOutputStream(
-                    new BufferedOutputStream(new FileOutputStream(file)));
-            for (BattleResultDto item : items) {
-                String fileName = this.getOutputFileName(item) + ".html";
-                String html = this.getHTMLOfItem(item, true);
-                if (html != null) {
-                    final ZipEntry entry = new ZipEntry(fileName);
-                    try {
-                        zipOutStream.putNextEntry(entry);
-                        zipOutStream.write(html.getBytes(Charset.forName("UTF-8")));
-                        zipOutStream.closeEntry();
-                    } catch (ZipException e) {
-                        failedList.add(fileName);
-                    }
-                }
-                else {
-                    failedList.add(fileName);
-                }
-            }
-            zipOutStream.finish();
-            zipOutStream.close();
+            // 生成は並列、書き込みは選択順
+            List<String> failedList = BattleReportExporter.writeZipFile(items, file);
             if (failedList.size() > 0) {
                 StringBuilder sb = new StringBuilder("以下のファイルを書き込めませんでした\r\n");
                 for (String failedFile : failedList) {
@@ -203,14 +164,6 @@ public final class DropReportTable extends AbstractTableDialog {
             messageBox.setText("書き込めませんでした");
             messageBox.setMessage(ex.toString());
             messageBox.open();
-        } finally {
-            if (zipOutStream != null) {
-                try {
-                    zipOutStream.close();
-                } catch (IOException e) {
-                    //
-                }
-            }
         }
     }
 
@@ -41,7 +41,6 @@ import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.MenuItem;
 import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
-import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
 import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
@@ -233,16 +232,14 @@ public final class ShipFilterGroupDialog extends AbstractTableDialog implements
             }
 
             @Override
-            public TableItem create(Table table, Comparable[] text, int count) {
+            public void update(TableItem item, Comparable[] text, int count) {
                 ShipDto ship = (ShipDto) ((TableRowHeader) text[0]).get();
-                TableItem item = new TableItem(table, SWT.NONE);
                 // 偶数行に背景色を付ける
                 if ((count % 2) != 0) {
                     item.setBackground(SWTResourceManager.getColor(AppConstants.ROW_BACKGROUND));
                 }
                 item.setBackground(6, CreateReportLogic.getTableCondColor(ship.getEstimatedCond()));
                 item.setText(CreateReportLogic.toStringArray(text));
-                return item;
             }
         };
     }
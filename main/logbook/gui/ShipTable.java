@@ -12,6 +12,7 @@ import logbook.gui.logic.CreateReportLogic;
 import logbook.gui.logic.ShipGroupListener;
 import logbook.gui.logic.ShipGroupObserver;
 import logbook.gui.logic.TableItemCreator;
+import logbook.gui.logic.TableRowHeader;
 
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.swt.SWT;
@@ -30,7 +31,6 @@ import org.eclipse.swt.widgets.MenuItem;
 import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.TableColumn;
-import org.eclipse.swt.widgets.TableItem;
 
 /**
  * 所有艦娘一覧テーブル
@@ -121,8 +121,8 @@ public final class ShipTable extends AbstractTableDialog implements ShipGroupLis
             @Override
             public void widgetSelected(SelectionEvent e) {
                 StringBuilder sb = new StringBuilder();
-                for (TableItem item : ShipTable.this.table.getSelection()) {
-                    sb.append(String.valueOf(((ShipDto) item.getData()).getId())).append(", ");
+                for (ShipDto ship : ShipTable.this.getSelection()) {
+                    sb.append(String.valueOf(ship.getId())).append(", ");
                 }
                 Clipboard clipboard = new Clipboard(Display.getDefault());
                 clipboard.setContents(new Object[] { sb.toString() }, new Transfer[] { TextTransfer.getInstance() });
@@ -134,8 +134,8 @@ public final class ShipTable extends AbstractTableDialog implements ShipGroupLis
             @Override
             public void widgetSelected(SelectionEvent e) {
                 StringBuilder sb = new StringBuilder();
-                for (TableItem item : ShipTable.this.table.getSelection()) {
-                    sb.append("\"").append(((ShipDto) item.getData()).getName()).append("\", ");
+                for (ShipDto ship : ShipTable.this.getSelection()) {
+                    sb.append("\"").append(ship.getName()).append("\", ");
                 }
                 Clipboard clipboard = new Clipboard(Display.getDefault());
                 clipboard.setContents(new Object[] { sb.toString() }, new Transfer[] { TextTransfer.getInstance() });
@@ -266,10 +266,10 @@ public final class ShipTable extends AbstractTableDialog implements ShipGroupLis
     }
 
     private List<ShipDto> getSelection() {
+        // 仮想テーブルなので表示されていない行の TableItem にはデータが無い
         List<ShipDto> ships = new ArrayList<>();
-        TableItem[] tableItems = ShipTable.this.table.getSelection();
-        for (int i = 0; i < tableItems.length; i++) {
-            ShipDto dto = (ShipDto) tableItems[i].getData();
+        for (int index : ShipTable.this.table.getSelectionIndices()) {
+            ShipDto dto = (ShipDto) ((TableRowHeader) this.getRow(index)[0]).get();
             ships.add(dto);
         }
         return ships;
@@ -8,10 +8,12 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.Arrays;
 
+import logbook.config.AppConfig;
+import logbook.data.CaptureJournal;
 import logbook.data.Data;
+import logbook.data.DataProxy;
 import logbook.data.DataType;
 import logbook.data.TestData;
-import logbook.data.context.GlobalContext;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.MouseEvent;
@@ -30,6 +32,8 @@ import org.eclipse.swt.widgets.Text;
  * 
  * テストデータを食べさせる
  * JSON保存先のパスをセットしてリセットを押すと準備ができます。
+ * フォルダにジャーナル(journal_*.lbj)がある場合はジャーナルを、無い場合はJSONファイルを読み込みます。
+ * 「ジャーナルに変換」を押すとフォルダのJSONファイルをJSON保存先のジャーナルに変換します。
  * マウスホイールを回すとJSONファイルを食べさせます。
  * 各種ボタンで一気に食べさせることもできます。
  * 
@@ -44,6 +48,8 @@ public class TestDataFeeder extends WindowBase {
     private Text filepathText;
     private Label statusLabel;
     private String[] fileList;
+    private CaptureJournal.Reader journal;
+    private int numData;
     private int currentIndex;
 
     public TestDataFeeder(WindowBase parent) {
@@ -133,6 +139,15 @@ public class TestDataFeeder extends WindowBase {
             }
         });
 
+        Button btn5 = new Button(shell, SWT.NONE);
+        btn5.setText("ジャーナルに変換");
+        btn5.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent event) {
+                TestDataFeeder.this.convertToJournal();
+            }
+        });
+
         this.statusLabel = new Label(shell, SWT.NONE);
         this.statusLabel.setLayoutData(new GridData(
                 GridData.FILL_HORIZONTAL, SWT.CENTER, true, false, 2, 1));
@@ -148,41 +163,103 @@ public class TestDataFeeder extends WindowBase {
     }
 
     private void updateLabel() {
-        this.statusLabel.setText(String.valueOf(this.currentIndex) + "/" + this.fileList.length);
+        this.statusLabel.setText(String.valueOf(this.currentIndex) + "/" + this.numData);
         this.getShell().layout();
     }
 
     private void resetFilePath() {
+        this.closeJournal();
         File dir = new File(this.filepathText.getText());
-        File[] files = dir.listFiles();
-        this.fileList = new String[files.length];
-        for (int i = 0; i < files.length; ++i) {
-            this.fileList[i] = files[i].getAbsolutePath();
-        }
-        Arrays.sort(this.fileList);
+        this.fileList = null;
+        this.numData = 0;
         this.currentIndex = 0;
+        if (CaptureJournal.listSegments(dir).length > 0) {
+            try {
+                this.journal = new CaptureJournal.Reader(dir);
+                this.numData = this.journal.count();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        else {
+            File[] files = dir.listFiles();
+            if (files == null) {
+                return;
+            }
+            this.fileList = new String[files.length];
+            for (int i = 0; i < files.length; ++i) {
+                this.fileList[i] = files[i].getAbsolutePath();
+            }
+            Arrays.sort(this.fileList);
+            this.numData = this.fileList.length;
+        }
 
         this.updateLabel();
     }
 
+    private void closeJournal() {
+        if (this.journal != null) {
+            try {
+                this.journal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            this.journal = null;
+        }
+    }
+
+    private void convertToJournal() {
+        File src = new File(this.filepathText.getText());
+        File dst = new File(AppConfig.get().getStoreJsonPath());
+        try {
+            int count = CaptureJournal.importJsonFiles(src, dst);
+            this.statusLabel.setText(count + "個のJSONを変換しました");
+        } catch (IOException e) {
+            this.statusLabel.setText("変換に失敗しました");
+            e.printStackTrace();
+        }
+        this.getShell().layout();
+    }
+
+    /**
+     * 次のデータを読み込みます
+     * @return データ（終わりか読み込めなかった場合は null ）
+     */
+    private Data nextData() {
+        if (this.currentIndex >= this.numData) {
+            return null;
+        }
+        this.currentIndex++;
+        try {
+            if (this.journal != null) {
+                return this.journal.next();
+            }
+            return new TestData(this.fileList[this.currentIndex - 1]);
+        } catch (ParseException | IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private boolean isReady() {
+        return (this.fileList != null) || (this.journal != null);
+    }
+
     private void readAll() {
-        if (this.fileList == null) {
+        if (!this.isReady()) {
             return;
         }
         // まずは100個
-        int end = Math.min(this.currentIndex + 1000, this.fileList.length);
-        for (; this.currentIndex < end;) {
-            String filepath = this.fileList[this.currentIndex++];
-            try {
-                Data data = new TestData(filepath);
-                GlobalContext.updateContext(data);
-            } catch (ParseException | IOException | IllegalArgumentException e) {
-                e.printStackTrace();
+        int end = Math.min(this.currentIndex + 1000, this.numData);
+        while (this.currentIndex < end) {
+            Data data = this.nextData();
+            if (data != null) {
+                DataProxy.add(data);
             }
         }
         this.updateLabel();
         // 末尾再帰？？
-        if (this.currentIndex < this.fileList.length) {
+        if (this.currentIndex < this.numData) {
             this.getShell().getDisplay().asyncExec(new Runnable() {
                 @Override
                 public void run() {
@@ -198,32 +275,26 @@ public class TestDataFeeder extends WindowBase {
     }
 
     private void nextUntil(DataType type) {
-        if (this.fileList == null)
+        if (!this.isReady())
             return;
-        for (; this.currentIndex < this.fileList.length;) {
-            String filepath = this.fileList[this.currentIndex++];
-            try {
-                Data data = new TestData(filepath);
-                GlobalContext.updateContext(data);
+        while (this.currentIndex < this.numData) {
+            Data data = this.nextData();
+            if (data != null) {
+                DataProxy.add(data);
                 this.updateLabel();
                 if (data.getDataType() == type) {
                     break;
                 }
-            } catch (ParseException | IOException | IllegalArgumentException e) {
-                e.printStackTrace();
             }
         }
     }
 
     private void feedJson() {
-        if ((this.fileList != null) && (this.currentIndex < this.fileList.length)) {
-            String filepath = this.fileList[this.currentIndex++];
-            try {
-                Data data = new TestData(filepath);
-                GlobalContext.updateContext(data);
+        if (this.isReady() && (this.currentIndex < this.numData)) {
+            Data data = this.nextData();
+            if (data != null) {
+                DataProxy.add(data);
                 this.updateLabel();
-            } catch (ParseException | IOException | IllegalArgumentException e) {
-                e.printStackTrace();
             }
         }
     }
@@ -4,6 +4,7 @@ import java.util.List;
 
 import logbook.config.AppConfig;
 import logbook.config.ShipGroupConfig;
+import logbook.data.DataProxy;
 import logbook.data.context.GlobalContext;
 import logbook.dto.CreateItemDto;
 import logbook.dto.GetShipDto;
@@ -43,6 +44,15 @@ public final class BackgroundInitializer extends Thread {
         this.setName("logbook_async_load_battle_log");
     }
 
+    private void printProgress(final String message) {
+        this.display.asyncExec(new Runnable() {
+            @Override
+            public void run() {
+                BackgroundInitializer.this.main.printProgressMessage(message);
+            }
+        });
+    }
+
     @Override
     public void run() {
         ApplicationMain.sysPrint("バックグラウンド初期化開始");
@@ -73,15 +83,23 @@ public final class BackgroundInitializer extends Thread {
         ApplicationMain.sysPrint("設定ファイル読み込み完了");
 
         try {
-            // 出撃ログファイル読み込み
-            final int numLogRecord = BattleResultServer.get().size();
-            ApplicationMain.sysPrint("出撃ログ読み込み完了");
-            this.display.asyncExec(new Runnable() {
+            // 出撃ログファイル読み込み（進捗は0.2秒ごとにコンソールの同じ行に表示）
+            final int numLogRecord = BattleResultServer.load(new BattleResultServer.LoadListener() {
+                private long lastUpdate;
+
                 @Override
-                public void run() {
-                    BackgroundInitializer.this.main.printMessage("出撃ログ読み込み完了(" + numLogRecord + "件)");
+                public synchronized void progress(int files, int totalFiles, int records) {
+                    long now = System.currentTimeMillis();
+                    if ((files < totalFiles) && ((now - this.lastUpdate) < 200)) {
+                        return;
+                    }
+                    this.lastUpdate = now;
+                    BackgroundInitializer.this.printProgress("出撃ログ読み込み中(" + files + "/" + totalFiles
+                            + "ファイル " + records + "件)");
                 }
-            });
+            }).size();
+            ApplicationMain.sysPrint("出撃ログ読み込み完了");
+            this.printProgress("出撃ログ読み込み完了(" + numLogRecord + "件)");
         } catch (Exception e) {
             LOG.warn("出撃ログの読み込みに失敗しました (" + AppConfig.get().getBattleLogPath() + ")", e);
         }
@@ -108,7 +126,8 @@ public final class BackgroundInitializer extends Thread {
 
             ApplicationMain.logPrint("バックグラウンド初期化完了");
 
-            this.display.asyncExec(new Runnable() {
+            // GlobalContext は更新スレッドで更新する
+            DataProxy.post(new Runnable() {
                 @Override
                 public void run() {
                     if (createItemList != null) {
@@ -3,8 +3,10 @@ package logbook.gui.listener;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import logbook.gui.AbstractTableDialog;
 import logbook.gui.logic.CreateReportLogic;
 
 import org.eclipse.swt.SWT;
@@ -13,8 +15,6 @@ import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
-import org.eclipse.swt.widgets.Table;
-import org.eclipse.swt.widgets.TableItem;
 
 /**
  * テーブルをCSVファイルに保存するアダプターです
@@ -31,21 +31,21 @@ public final class TableToCsvSaveAdapter extends SelectionAdapter {
     /** ヘッダー */
     private final String[] header;
 
-    /** テーブル */
-    private final Table table;
+    /** テーブルのダイアログ */
+    private final AbstractTableDialog dialog;
 
     /**
      * コンストラクター
      * 
      * @param shell シェル
      * @param name ファイル名
-     * @param table テーブル
+     * @param dialog テーブルのダイアログ
      */
-    public TableToCsvSaveAdapter(Shell shell, String name, String[] header, Table table) {
+    public TableToCsvSaveAdapter(Shell shell, String name, String[] header, AbstractTableDialog dialog) {
         this.shell = shell;
         this.name = name;
         this.header = header;
-        this.table = table;
+        this.dialog = dialog;
     }
 
     @Override
@@ -65,14 +65,10 @@ public final class TableToCsvSaveAdapter extends SelectionAdapter {
                 }
             }
             try {
+                // 仮想テーブルの行を全部作らないようにテーブルではなく表示している内容から書き込む
                 List<Comparable[]> body = new ArrayList<Comparable[]>();
-                TableItem[] items = this.table.getItems();
-                for (TableItem item : items) {
-                    String[] colums = new String[this.header.length];
-                    for (int i = 0; i < colums.length; i++) {
-                        colums[i] = item.getText(i);
-                    }
-                    body.add(colums);
+                for (Comparable[] row : this.dialog.getRows()) {
+                    body.add(Arrays.copyOf(row, this.header.length));
                 }
 
                 CreateReportLogic.writeCsv(file, this.header, body, false);
@@ -4,6 +4,7 @@
 package logbook.gui.logic;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -34,7 +35,8 @@ public class BattleHtmlGenerator extends HTMLGenerator {
         return "colspan=\"" + span + "\"";
     }
 
-    private static DateFormat dateFormat = new SimpleDateFormat(AppConstants.DATE_FORMAT);
+    /** 並列に生成できるようにインスタンスごとに持つ */
+    private final DateFormat dateFormat = new SimpleDateFormat(AppConstants.DATE_FORMAT);
 
     private static String[] BOX_CLASS = new String[] { "box" };
 
@@ -855,13 +857,47 @@ public class BattleHtmlGenerator extends HTMLGenerator {
         this.end(); // table
     }
 
+    public BattleHtmlGenerator() {
+        super();
+    }
+
+    /**
+     * @param out 出力先 {@link #writeHTML(String, BattleResultDto, BattleExDto, boolean)} で書き込みます
+     */
+    public BattleHtmlGenerator(Writer out) {
+        super(out);
+    }
+
     /** 戦闘結果が不完全の場合はnullが返ることがある */
     public String generateHTML(String title, BattleResultDto result, BattleExDto battle, boolean genCharset)
             throws IOException
     {
-        if (battle.isCompleteResult() == false) {
+        if (this.generate(title, result, battle, genCharset) == false) {
             return null;
         }
+        return this.result();
+    }
+
+    /**
+     * 出力先に書き込みます
+     * @return 戦闘結果が不完全で何も書き込まなかった場合は false
+     */
+    public boolean writeHTML(String title, BattleResultDto result, BattleExDto battle, boolean genCharset)
+            throws IOException
+    {
+        if (this.generate(title, result, battle, genCharset) == false) {
+            return false;
+        }
+        this.flush();
+        return true;
+    }
+
+    private boolean generate(String title, BattleResultDto result, BattleExDto battle, boolean genCharset)
+            throws IOException
+    {
+        if (battle.isCompleteResult() == false) {
+            return false;
+        }
 
         this.genHeader(title, genCharset);
         this.begin("body", null);
@@ -869,7 +905,7 @@ public class BattleHtmlGenerator extends HTMLGenerator {
         String[] sectionTitleClass = new String[] { "sec-title" };
 
         // タイトル
-        String time = dateFormat.format(result.getBattleDate());
+        String time = this.dateFormat.format(result.getBattleDate());
         String header;
         if (battle.isPractice()) {
             header = "「" + battle.getEnemyName() + "」との演習 (" + time + ")";
@@ -934,6 +970,6 @@ public class BattleHtmlGenerator extends HTMLGenerator {
         }
 
         this.end(); // body
-        return this.result();
+        return true;
     }
 }
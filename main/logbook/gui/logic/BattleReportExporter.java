@@ -0,0 +1,203 @@
+package logbook.gui.logic;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import logbook.dto.BattleExDto;
+import logbook.dto.BattleResultDto;
+import logbook.internal.BattleResultServer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * 会敵報告をまとめて書き出します
+ *
+ * 報告の生成はワーカースレッドで並列に行い、ZIPファイルへの書き込みは呼び出したスレッドだけが選択順に行います。
+ * 戦闘の詳細は {@link #CHUNK_SIZE} 件ずつまとめて読み込み、先行して生成する件数はスレッド数の数倍までに抑えます。
+ *
+ * @author Nekopanda
+ */
+public final class BattleReportExporter {
+
+    /** ロガー */
+    private static final Logger LOG = LogManager.getLogger(BattleReportExporter.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** 戦闘の詳細をまとめて読み込む件数 */
+    private static final int CHUNK_SIZE = 256;
+
+    /** スレッドあたりの先行して生成する件数 */
+    private static final int WINDOW_PER_THREAD = 4;
+
+    private static DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HHmmss.SSS");
+
+    /**
+     * @param item 戦闘
+     * @return 報告のタイトル
+     */
+    public static String getTitle(BattleResultDto item) {
+        if (item.isPractice()) {
+            return "演習報告: " + item.getEnemyName();
+        }
+        return "会敵報告: " + item.getMapCell().detailedString();
+    }
+
+    /**
+     * 呼び出すのはUIスレッドと書き込みのスレッドだけ（DateFormatを共有しているので）
+     * @param item 戦闘
+     * @return 出力するファイル名（拡張子なし）
+     */
+    public static String getFileName(BattleResultDto item) {
+        String rank = item.getRank().toString();
+        if (item.isPractice()) {
+            return dateFormat.format(item.getBattleDate()) + "演習" + rank;
+        }
+        else {
+            int[] map = item.getMapCell().getMap();
+            return dateFormat.format(item.getBattleDate()) +
+                    " " + map[0] + "-" + map[1] + "-" + map[2] + " " + rank;
+        }
+    }
+
+    /**
+     * 1件をHTMLファイルに書き出します
+     *
+     * @param item 戦闘
+     * @param file 書き出すファイル
+     * @return 戦闘結果が不完全で書き出せなかった場合は false
+     */
+    public static boolean writeFile(BattleResultDto item, File file) throws IOException {
+        // 書き出せない場合にファイルを作らないように先にメモリ上に生成する
+        byte[] html = new Render(item, BattleResultServer.get().getBattleDetail(item)).call();
+        if (html == null) {
+            return false;
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(html);
+        }
+        return true;
+    }
+
+    /**
+     * まとめてZIPファイルに書き出します
+     *
+     * @param items 戦闘（この順番で書き込みます）
+     * @param file 書き出すファイル
+     * @return 書き出せなかったファイル名
+     */
+    public static List<String> writeZipFile(List<BattleResultDto> items, File file) throws IOException {
+        int threads = Math.max(1, Math.min(items.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "BattleReportExporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            List<String> failedList = write(items, zip, pool, threads * WINDOW_PER_THREAD);
+            zip.finish();
+            return failedList;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<String> write(List<BattleResultDto> items, ZipOutputStream zip,
+            ExecutorService pool, int window) throws IOException {
+        List<String> failedList = new ArrayList<String>();
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<Future<byte[]>>(window);
+        BattleExDto[] details = null;
+        int chunkStart = 0;
+        int submitted = 0;
+        for (int i = 0; i < items.size(); ++i) {
+            // 先行して生成を始めておく
+            while ((submitted < items.size()) && (inFlight.size() < window)) {
+                if ((details == null) || (submitted >= (chunkStart + details.length))) {
+                    chunkStart = submitted;
+                    details = BattleResultServer.get().getBattleDetails(
+                            items.subList(chunkStart, Math.min(items.size(), chunkStart + CHUNK_SIZE)));
+                }
+                inFlight.addLast(pool.submit(new Render(items.get(submitted), details[submitted - chunkStart])));
+                submitted++;
+            }
+
+            String fileName = getFileName(items.get(i)) + ".html";
+            byte[] html = take(inFlight.removeFirst());
+            if (html != null) {
+                try {
+                    zip.putNextEntry(new ZipEntry(fileName));
+                    zip.write(html);
+                    zip.closeEntry();
+                } catch (ZipException e) {
+                    failedList.add(fileName);
+                }
+            }
+            else {
+                failedList.add(fileName);
+            }
+        }
+        return failedList;
+    }
+
+    private static byte[] take(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("中断されました", e);
+        } catch (ExecutionException e) {
+            LOG.warn("会敵報告作成に失敗", e.getCause());
+            return null;
+        }
+    }
+
+    /** 1件をメモリ上に生成する */
+    private static final class Render implements Callable<byte[]> {
+        private final BattleResultDto item;
+        private final BattleExDto detail;
+
+        Render(BattleResultDto item, BattleExDto detail) {
+            this.item = item;
+            this.detail = detail;
+        }
+
+        @Override
+        public byte[] call() throws IOException {
+            if (this.detail == null) {
+                return null;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+            Writer out = new OutputStreamWriter(bytes, UTF8);
+            if (!new BattleHtmlGenerator(out).writeHTML(getTitle(this.item), this.item, this.detail, true)) {
+                return null;
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -9,22 +9,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.text.DateFormat;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 import logbook.config.AppConfig;
 import logbook.constants.AppConstants;
@@ -36,7 +33,6 @@ import logbook.dto.DockDto;
 import logbook.dto.EnemyShipDto;
 import logbook.dto.GetShipDto;
 import logbook.dto.ItemDto;
-import logbook.dto.ItemInfoDto;
 import logbook.dto.LostEntityDto;
 import logbook.dto.MaterialDto;
 import logbook.dto.MissionResultDto;
@@ -44,14 +40,13 @@ import logbook.dto.QuestDto;
 import logbook.dto.ResourceItemDto;
 import logbook.dto.ShipDto;
 import logbook.dto.ShipFilterDto;
-import logbook.dto.ShipInfoDto;
 import logbook.dto.ShipParameters;
 import logbook.dto.UseItemDto;
 import logbook.internal.BattleResultFilter;
 import logbook.internal.BattleResultServer;
+import logbook.internal.LogWriter;
 import logbook.internal.MasterData;
 import logbook.internal.Ship;
-import logbook.util.ReportUtils;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -59,9 +54,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
-import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.wb.swt.SWTResourceManager;
 
@@ -91,14 +84,12 @@ public final class CreateReportLogic {
         }
 
         @Override
-        public TableItem create(Table table, Comparable[] text, int count) {
-            TableItem item = new TableItem(table, SWT.NONE);
+        public void update(TableItem item, Comparable[] text, int count) {
             // 偶数行に背景色を付ける
             if ((count % 2) != 0) {
                 item.setBackground(SWTResourceManager.getColor(AppConstants.ROW_BACKGROUND));
             }
             item.setText(toStringArray(text));
-            return item;
         }
     };
 
@@ -116,12 +107,10 @@ public final class CreateReportLogic {
         }
 
         @Override
-        public TableItem create(Table table, Comparable[] text, int count) {
+        public void update(TableItem item, Comparable[] text, int count) {
             // 艦娘
             ShipDto ship = (ShipDto) ((TableRowHeader) text[0]).get();
 
-            TableItem item = new TableItem(table, SWT.NONE);
-
             item.setData(ship);
 
             // 偶数行に背景色を付ける
@@ -159,8 +148,6 @@ public final class CreateReportLogic {
             */
 
             item.setText(toStringArray(text));
-
-            return item;
         }
     };
 
@@ -412,109 +399,13 @@ public final class CreateReportLogic {
                 "装備してる艦娘" };
     }
 
-    private static class ItemInfo {
-        public ItemInfoDto item;
-        public int count = 0;
-        public int locked = 0;
-        public int maxLevel = 0;
-        public Map<ShipDto, Integer> shipMap = new TreeMap<>();
-
-        public ItemInfo(ItemInfoDto item) {
-            this.item = item;
-        }
-
-        @Override
-        public String toString() {
-            StringBuilder sb = new StringBuilder();
-            int count = 0;
-            // 持っている個数で個数ソート
-            List<Entry<ShipDto, Integer>> sorted = new ArrayList<>(this.shipMap.entrySet());
-            Collections.sort(sorted, new Comparator<Entry<ShipDto, Integer>>() {
-                @Override
-                public int compare(Entry<ShipDto, Integer> o1, Entry<ShipDto, Integer> o2) {
-                    return -Integer.compare(o1.getValue(), o2.getValue());
-                }
-            });
-            for (Entry<ShipDto, Integer> entry : sorted) {
-                if (count++ != 0) {
-                    sb.append(",");
-                }
-                sb.append(entry.getKey().getFriendlyName()).append("x").append(entry.getValue());
-            }
-            // 長さ制限
-            if (sb.length() > 100) {
-                sb.setLength(100);
-                sb.append(" ...");
-            }
-            return sb.toString();
-        }
-    }
-
     /**
      * 所有装備一覧の内容
      * 
      * @return 内容
      */
     public static List<Comparable[]> getItemListBody() {
-        Map<Integer, ItemInfo> itemCountMap = new HashMap<Integer, ItemInfo>();
-
-        // 装備の個数を計算
-        for (ItemDto item : GlobalContext.getItemMap().values()) {
-            ItemInfo info = itemCountMap.get(item.getSlotitemId());
-            if (info == null) {
-                info = new ItemInfo(item.getInfo());
-                itemCountMap.put(item.getSlotitemId(), info);
-            }
-            info.count++;
-            if (item.isLocked()) {
-                info.locked++;
-            }
-            info.maxLevel = Math.max(info.maxLevel, item.getLevel());
-        }
-
-        // 艦娘が持っている個数を計算
-        for (ShipDto ship : GlobalContext.getShipMap().values()) {
-            for (ItemInfoDto item : ship.getItem()) {
-                if (item != null) {
-                    ItemInfo info = itemCountMap.get(item.getId());
-                    if (info != null) {
-                        Integer count = info.shipMap.get(ship);
-                        if (count == null) {
-                            count = 1;
-                        }
-                        else {
-                            count++;
-                        }
-                        info.shipMap.put(ship, count);
-                    }
-                }
-            }
-        }
-
-        List<ItemInfo> countitems = new ArrayList<ItemInfo>(itemCountMap.values());
-        Collections.sort(countitems, new Comparator<ItemInfo>() {
-            @Override
-            public int compare(ItemInfo o1, ItemInfo o2) {
-                return Integer.compare(o1.count, o2.count);
-            }
-        });
-
-        List<Comparable[]> body = new ArrayList<Comparable[]>();
-
-        int count = 0;
-        for (ItemInfo itemInfo : countitems) {
-            ItemInfoDto item = itemInfo.item;
-            ShipParameters param = item.getParam();
-            String level = (itemInfo.maxLevel != 0) ? "★+" + itemInfo.maxLevel : null;
-            count++;
-            body.add(new Comparable[] { count, item.getName(), item.getTypeName(), itemInfo.count,
-                    itemInfo.locked, level, param.getHoug(),
-                    param.getHoum(), param.getLeng(), param.getLuck(), param.getHouk(), param.getBaku(),
-                    param.getRaig(), param.getSaku(), param.getTais(), param.getTyku(), param.getSouk(),
-                    itemInfo.toString()
-            });
-        }
-        return body;
+        return ItemListModel.get().getBody();
     }
 
     /**
@@ -610,224 +501,8 @@ public final class CreateReportLogic {
      * @return 内容
      */
     public static List<Comparable[]> getShipListBody(boolean specdiff, ShipFilterDto filter) {
-        Set<Integer> missionSet = GlobalContext.getMissionShipSet();
-        List<Comparable[]> body = new ArrayList<Comparable[]>();
-        int count = 0;
-        for (ShipWithSortNumber shipObj : getShipWithSortNumber()) {
-            ShipDto ship = shipObj.ship;
-
-            if ((filter != null) && !shipFilter(ship, filter, missionSet)) {
-                continue;
-            }
-
-            ShipInfoDto shipInfo = Ship.get(String.valueOf(ship.getShipId()));
-
-            count++;
-
-            String fleet = null;
-            if (ship.isFleetMember()) {
-                fleet = String.valueOf(ship.getFleetid()) + "-" + String.valueOf(ship.getFleetpos() + 1);
-            }
-
-            String now = null;
-            if (missionSet.contains(ship.getId())) {
-                now = "遠征中";
-            }
-            else if (GlobalContext.isNdock(ship.getId())) {
-                now = "入渠中";
-            }
-
-            ShipParameters param = new ShipParameters();
-            if (specdiff) {
-                // 成長の余地 = (装備なしのMAX) + (装備による上昇分) - (装備込の現在値)
-                param.add(ship.getMax());
-                param.add(ship.getSlotParam());
-                param.subtract(ship.getParam());
-            }
-            else {
-                param.add(ship.getParam());
-            }
-
-            // HP1あたりの時間
-            long dockTime = ship.getDocktime();
-            long unitSeconds = ((long) (dockTime
-                    / (float) (ship.getMaxhp() - ship.getNowhp()) / 1000));
-            // 損傷
-            String damage = "";
-            if (ship.isBadlyDamage()) {
-                damage = "大破";
-            } else if (ship.isHalfDamage()) {
-                damage = "中破";
-            } else if (ship.isSlightDamage()) {
-                damage = "小破";
-            }
-
-            // 艦載機数
-            List<ItemDto> slotItems = ship.getItem2();
-            String[] slotNames = new String[4];
-            HpString[] onSlotString = new HpString[4];
-            int[] onSlot = ship.getOnSlot();
-            int[] maxEq = shipInfo.getMaxeq();
-            int slotNum = ship.getSlotNum();
-            for (int i = 0; i < slotNum; ++i) {
-                ItemDto item = slotItems.get(i);
-                if (ship.canEquipPlane()) { // 飛行機を装備できる場合だけ
-                    int cur = ((item != null) && item.isPlane()) ? onSlot[i] : 0;
-                    int max = maxEq != null ? maxEq[i] : 0;
-                    onSlotString[i] = new HpString(cur, max);
-                }
-                if (item != null) {
-                    slotNames[i] = item.getFriendlyName();
-                }
-            }
-
-            body.add(new Comparable[] {
-                    new TableRowHeader(count, ship),
-                    ship.getId(),
-                    ship.getLocked() ? "♥" : "",
-                    fleet,
-                    getPageNumber(shipObj.sortNumber[0]),
-                    getPageNumber(shipObj.sortNumber[1]),
-                    getPageNumber(shipObj.sortNumber[2]),
-                    getPageNumber(shipObj.sortNumber[3]),
-                    ship.getName(),
-                    ship.getType(),
-                    ship.getCharId(),
-                    now,
-                    ship.getCond(),
-                    (ship.getCond() < 49) ? new TimeString(ship.getCondClearTime().getTime()) : null,
-                    new HpString(ship.getNowhp(), ship.getMaxhp()),
-                    new HpString(ship.getFuel(), ship.getFuelMax()),
-                    new HpString(ship.getBull(), ship.getBullMax()),
-                    dockTime > 0 ? new TimeLogic(ship.getDocktime()) : null,
-                    dockTime > 0 ? ship.getDockfuel() : null,
-                    dockTime > 0 ? ship.getDockmetal() : null,
-                    damage,
-                    dockTime > 0 ? TimeLogic.fromSeconds(unitSeconds) : null,
-                    ship.getLv(),
-                    ship.getNext(),
-                    ship.getExp(),
-                    ship.getSeiku(),
-                    new SakutekiString(ship),
-                    slotNames[0],
-                    onSlotString[0],
-                    slotNames[1],
-                    onSlotString[1],
-                    slotNames[2],
-                    onSlotString[2],
-                    slotNames[3],
-                    onSlotString[3],
-                    ship.getMaxhp(),
-                    ship.getFuelMax(),
-                    ship.getBullMax(),
-                    param.getKaryoku(),
-                    param.getRaisou(),
-                    param.getTaiku(),
-                    param.getSoukou(),
-                    param.getKaihi(),
-                    param.getTaisen(),
-                    param.getSakuteki(),
-                    param.getLucky()
-            });
-        }
-        return body;
-    }
-
-    private static IntegerPair getPageNumber(int index) {
-        return new IntegerPair((index / 10) + 1, (index % 10) + 1, "-");
-    }
-
-    public static class ShipWithSortNumber {
-        public ShipDto ship;
-        /** Lv順, 艦種順, NEW順, 修理順 (ゼロ始まり) */
-        public int[] sortNumber = new int[4];
-
-        public ShipWithSortNumber(ShipDto ship) {
-            this.ship = ship;
-        }
-    }
-
-    private static class ShipComparatorBase implements Comparator<ShipWithSortNumber> {
-        @Override
-        public int compare(ShipWithSortNumber o1, ShipWithSortNumber o2) {
-            int ret = Integer.compare(o1.ship.getSortno(), o2.ship.getSortno());
-            if (ret == 0) {
-                ret = Integer.compare(o1.ship.getId(), o2.ship.getId());
-            }
-            return ret;
-        }
-    }
-
-    private static void genSortNumber(List<ShipWithSortNumber> list, int index, Comparator<ShipWithSortNumber> comp) {
-        Collections.sort(list, comp);
-        for (int i = 0; i < list.size(); ++i) {
-            list.get(i).sortNumber[index] = i;
-        }
-    }
-
-    public static List<ShipWithSortNumber> getShipWithSortNumber() {
-        List<ShipWithSortNumber> ships = new ArrayList<ShipWithSortNumber>();
-        for (ShipDto ship : GlobalContext.getShipMap().values()) {
-            ships.add(new ShipWithSortNumber(ship));
-        }
-        // Lv順
-        genSortNumber(ships, 0, new ShipComparatorBase() {
-            @Override
-            public int compare(ShipWithSortNumber o1, ShipWithSortNumber o2) {
-                int ret = -Integer.compare(o1.ship.getLv(), o2.ship.getLv());
-                if (ret == 0) {
-                    return super.compare(o1, o2);
-                }
-                return ret;
-            }
-        });
-        // 艦種順
-        genSortNumber(ships, 1, new Comparator<ShipWithSortNumber>() {
-            @Override
-            public int compare(ShipWithSortNumber o1, ShipWithSortNumber o2) {
-                int ret = -Integer.compare(o1.ship.getShipInfo().getStype(), o2.ship.getShipInfo().getStype());
-                if (ret == 0) {
-                    ret = Integer.compare(o1.ship.getSortno(), o2.ship.getSortno());
-                    /*// Lv順の後に安定ソートするので
-                    if (ret == 0) {
-                        ret = -Integer.compare(o1.ship.getLv(), o2.ship.getLv());
-                        if (ret == 0) {
-                            ret = Integer.compare(o1.ship.getId(), o2.ship.getId());
-                        }
-                    }
-                    */
-                }
-                return ret;
-            }
-        });
-        // NEW
-        genSortNumber(ships, 2, new ShipComparatorBase() {
-            @Override
-            public int compare(ShipWithSortNumber o1, ShipWithSortNumber o2) {
-                return -Integer.compare(o1.ship.getId(), o2.ship.getId());
-            }
-        });
-        // 修理順
-        genSortNumber(ships, 3, new ShipComparatorBase() {
-            @Override
-            public int compare(ShipWithSortNumber o1, ShipWithSortNumber o2) {
-                double o1rate = (double) o1.ship.getNowhp() / (double) o1.ship.getMaxhp();
-                double o2rate = (double) o2.ship.getNowhp() / (double) o2.ship.getMaxhp();
-                int ret = Double.compare(o1rate, o2rate);
-                if (ret == 0) {
-                    return super.compare(o1, o2);
-                }
-                return ret;
-            }
-        });
-        // 最後にID順にしておく
-        Collections.sort(ships, new Comparator<ShipWithSortNumber>() {
-            @Override
-            public int compare(ShipWithSortNumber o1, ShipWithSortNumber o2) {
-                return Integer.compare(o1.ship.getId(), o2.ship.getId());
-            }
-        });
-        return ships;
+        // 変わった艦娘の行だけ作り直す
+        return ShipListModel.get(specdiff).getBody(filter);
     }
 
     /**
@@ -1091,256 +766,17 @@ public final class CreateReportLogic {
         return ret;
     }
 
-    /**
-     * 艦娘をフィルタします
-     * 
-     * @param ship 艦娘
-     * @param filter フィルターオブジェクト
-     * @return フィルタ結果
-     */
-    private static boolean shipFilter(ShipDto ship, ShipFilterDto filter, Set<Integer> missionSet) {
-        // テキストでフィルタ
-        if (!StringUtils.isEmpty(filter.nametext)) {
-            // 検索ワード
-            String[] words = StringUtils.split(filter.nametext, " ");
-            // 検索対象
-            // 名前
-            String name = ship.getName();
-            // 艦種
-            String type = ship.getType();
-            // 装備
-            List<ItemInfoDto> item = ship.getItem();
-
-            // テキストが入力されている場合処理する
-            if (filter.regexp) {
-                // 正規表現で検索
-                for (int i = 0; i < words.length; i++) {
-                    Pattern pattern;
-                    try {
-                        pattern = Pattern.compile(words[i]);
-                    } catch (PatternSyntaxException e) {
-                        // 無効な正規表現はfalseを返す
-                        return false;
-                    }
-                    boolean find = false;
-
-                    // 名前で検索
-                    find = find ? find : pattern.matcher(name).find();
-                    // 艦種で検索
-                    find = find ? find : pattern.matcher(type).find();
-                    // 装備で検索
-                    for (ItemInfoDto itemDto : item) {
-                        if ((itemDto == null) || (itemDto.getName() == null)) {
-                            find = find ? find : false;
-                        } else {
-                            find = find ? find : pattern.matcher(itemDto.getName()).find();
-                        }
-                    }
-
-                    if (!find) {
-                        // どれにもマッチしない場合
-                        return false;
-                    }
-                }
-            } else {
-                // 部分一致で検索する
-                for (int i = 0; i < words.length; i++) {
-                    boolean find = false;
-
-                    // 名前で検索
-                    find = find ? find : name.indexOf(words[i]) != -1;
-                    // 艦種で検索
-                    find = find ? find : type.indexOf(words[i]) != -1;
-                    // 装備で検索
-                    for (ItemInfoDto itemDto : item) {
-                        if ((itemDto == null) || (itemDto.getName() == null)) {
-                            find = find ? find : false;
-                        } else {
-                            find = find ? find : itemDto.getName().indexOf(words[i]) != -1;
-                        }
-                    }
-
-                    if (!find) {
-                        // どれにもマッチしない場合
-                        return false;
-                    }
-                }
-            }
-        }
-        // 艦種でフィルタ
-        if (!filter.destroyer) {
-            if ("駆逐艦".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.lightCruiser) {
-            if ("軽巡洋艦".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.torpedoCruiser) {
-            if ("重雷装巡洋艦".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.heavyCruiser) {
-            if ("重巡洋艦".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.flyingDeckCruiser) {
-            if ("航空巡洋艦".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.seaplaneTender) {
-            if ("水上機母艦".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.escortCarrier) {
-            if ("軽空母".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.carrier) {
-            if ("正規空母".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.battleship) {
-            if ("戦艦".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.flyingDeckBattleship) {
-            if ("航空戦艦".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.submarine) {
-            if ("潜水艦".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.carrierSubmarine) {
-            if ("潜水空母".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.landingship) {
-            if ("揚陸艦".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.armoredcarrier) {
-            if ("装甲空母".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.repairship) {
-            if ("工作艦".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.submarineTender) {
-            if ("潜水母艦".equals(ship.getType())) {
-                return false;
-            }
-        }
-        if (!filter.trainingCruiser) {
-            if ("練習巡洋艦".equals(ship.getType())) {
-                return false;
-            }
-        }
-        // グループでフィルタ
-        if (filter.group != null) {
-            if (!filter.group.getShips().contains(ship.getId())) {
-                return false;
-            }
-        }
-        // 装備でフィルタ
-        if (!StringUtils.isEmpty(filter.itemname)) {
-            List<ItemInfoDto> item = ship.getItem();
-            boolean hit = false;
-            for (ItemInfoDto itemDto : item) {
-                if (itemDto != null) {
-                    if (filter.itemname.equals(itemDto.getName())) {
-                        hit = true;
-                        break;
-                    }
-                }
-            }
-            if (!hit) {
-                return false;
-            }
-        }
-        // 艦隊に所属
-        if (!filter.onfleet) {
-            if (!StringUtils.isEmpty(ship.getFleetid())) {
-                return false;
-            }
-        }
-        // 艦隊に非所属
-        if (!filter.notonfleet) {
-            if (StringUtils.isEmpty(ship.getFleetid())) {
-                return false;
-            }
-        }
-        // 鍵付き
-        if (!filter.locked) {
-            if (ship.getLocked()) {
-                return false;
-            }
-        }
-        // 鍵付きではない
-        if (!filter.notlocked) {
-            if (!ship.getLocked()) {
-                return false;
-            }
-        }
-        if (!filter.mission || !filter.notmission) {
-            boolean isMission = missionSet.contains(ship.getId());
-            // 遠征中
-            if (!filter.mission && isMission) {
-                return false;
-            }
-            // 遠征中ではない
-            if (!filter.notmission && !isMission) {
-                return false;
-            }
-        }
-        if (!filter.needbath || !filter.notneedbath) {
-            boolean needBath = (ship.getDocktime() > 0) && !GlobalContext.isNdock(ship.getId());
-            // 要修理
-            if (!filter.needbath && needBath) {
-                return false;
-            }
-            // 修理の必要なし
-            if (!filter.notneedbath && !needBath) {
-                return false;
-            }
-        }
-        return true;
-    }
-
     /**
      * 海戦・ドロップ報告書を書き込む
      * 
      * @param dto 海戦・ドロップ報告
      */
     public static void storeBattleResultReport(BattleExDto dto) {
-        try {
-            List<BattleExDto> dtoList = Collections.singletonList(dto);
-
-            File report = getStoreFile(AppConstants.LOG_BATTLE_RESULT, AppConstants.LOG_BATTLE_RESULT_ALT);
+        List<BattleExDto> dtoList = Collections.singletonList(dto);
 
-            CreateReportLogic.writeCsvStripFirstColumn(report,
-                    CreateReportLogic.getBattleResultStoreHeader(),
-                    CreateReportLogic.getBattleResultStoreBody(dtoList), true);
-        } catch (IOException e) {
-            LOG.warn("報告書の保存に失敗しました", e);
-        }
+        storeReport(AppConstants.LOG_BATTLE_RESULT, AppConstants.LOG_BATTLE_RESULT_ALT,
+                CreateReportLogic.getBattleResultStoreHeader(),
+                CreateReportLogic.getBattleResultStoreBody(dtoList));
     }
 
     /**
@@ -1349,17 +785,11 @@ public final class CreateReportLogic {
      * @param dto 建造報告
      */
     public static void storeCreateShipReport(GetShipDto dto) {
-        try {
-            List<GetShipDto> dtoList = Collections.singletonList(dto);
-
-            File report = getStoreFile(AppConstants.LOG_CREATE_SHIP, AppConstants.LOG_CREATE_SHIP_ALT);
+        List<GetShipDto> dtoList = Collections.singletonList(dto);
 
-            CreateReportLogic.writeCsvStripFirstColumn(report,
-                    CreateReportLogic.getCreateShipHeader(),
-                    CreateReportLogic.getCreateShipBody(dtoList), true);
-        } catch (IOException e) {
-            LOG.warn("報告書の保存に失敗しました", e);
-        }
+        storeReport(AppConstants.LOG_CREATE_SHIP, AppConstants.LOG_CREATE_SHIP_ALT,
+                CreateReportLogic.getCreateShipHeader(),
+                CreateReportLogic.getCreateShipBody(dtoList));
     }
 
     /**
@@ -1389,17 +819,11 @@ public final class CreateReportLogic {
      * @param dto 開発報告
      */
     public static void storeCreateItemReport(CreateItemDto dto) {
-        try {
-            List<CreateItemDto> dtoList = Collections.singletonList(dto);
+        List<CreateItemDto> dtoList = Collections.singletonList(dto);
 
-            File report = getStoreFile(AppConstants.LOG_CREATE_ITEM, AppConstants.LOG_CREATE_ITEM_ALT);
-
-            CreateReportLogic.writeCsvStripFirstColumn(report,
-                    CreateReportLogic.getCreateItemHeader(),
-                    CreateReportLogic.getCreateItemBody(dtoList), true);
-        } catch (IOException e) {
-            LOG.warn("報告書の保存に失敗しました", e);
-        }
+        storeReport(AppConstants.LOG_CREATE_ITEM, AppConstants.LOG_CREATE_ITEM_ALT,
+                CreateReportLogic.getCreateItemHeader(),
+                CreateReportLogic.getCreateItemBody(dtoList));
     }
 
     /**
@@ -1429,17 +853,11 @@ public final class CreateReportLogic {
      * @param dto 遠征結果
      */
     public static void storeMissionReport(MissionResultDto dto) {
-        try {
-            List<MissionResultDto> dtoList = Collections.singletonList(dto);
+        List<MissionResultDto> dtoList = Collections.singletonList(dto);
 
-            File report = getStoreFile(AppConstants.LOG_MISSION, AppConstants.LOG_MISSION_ALT);
-
-            CreateReportLogic.writeCsvStripFirstColumn(report,
-                    CreateReportLogic.getMissionResultHeader(),
-                    CreateReportLogic.getMissionResultBody(dtoList), true);
-        } catch (IOException e) {
-            LOG.warn("報告書の保存に失敗しました", e);
-        }
+        storeReport(AppConstants.LOG_MISSION, AppConstants.LOG_MISSION_ALT,
+                CreateReportLogic.getMissionResultHeader(),
+                CreateReportLogic.getMissionResultBody(dtoList));
     }
 
     /**
@@ -1469,18 +887,12 @@ public final class CreateReportLogic {
      * @param material 資材
      */
     public static void storeMaterialReport(MaterialDto material) {
-        try {
-            if (material != null) {
-                List<MaterialDto> dtoList = Collections.singletonList(material);
-
-                File report = getStoreFile(AppConstants.LOG_RESOURCE, AppConstants.LOG_RESOURCE_ALT);
+        if (material != null) {
+            List<MaterialDto> dtoList = Collections.singletonList(material);
 
-                CreateReportLogic.writeCsvStripFirstColumn(report,
-                        CreateReportLogic.getMaterialHeader(),
-                        CreateReportLogic.getMaterialStoreBody(dtoList), true);
-            }
-        } catch (IOException e) {
-            LOG.warn("報告書の保存に失敗しました", e);
+            storeReport(AppConstants.LOG_RESOURCE, AppConstants.LOG_RESOURCE_ALT,
+                    CreateReportLogic.getMaterialHeader(),
+                    CreateReportLogic.getMaterialStoreBody(dtoList));
         }
     }
 
@@ -1490,46 +902,64 @@ public final class CreateReportLogic {
      * @param dtoList 解体・廃棄情報
      */
     public static void storeLostReport(List<LostEntityDto> dtoList) {
-        try {
-            if (dtoList != null) {
-                File report = getStoreFile("解体・廃棄ログ.csv", "解体・廃棄ログ_alternativefile.csv");
-
-                CreateReportLogic.writeCsvStripFirstColumn(report,
-                        CreateReportLogic.getLostHeader(),
-                        CreateReportLogic.getLostStoreBody(dtoList), true);
-            }
-        } catch (IOException e) {
-            LOG.warn("報告書の保存に失敗しました", e);
+        if (dtoList != null) {
+            storeReport("解体・廃棄ログ.csv", "解体・廃棄ログ_alternativefile.csv",
+                    CreateReportLogic.getLostHeader(),
+                    CreateReportLogic.getLostStoreBody(dtoList));
         }
     }
 
     /**
-     * 書き込み先のファイルを返します
+     * 報告書に追記します
+     * 書き込みは {@link LogWriter} のスレッドで行います
      * 
      * @param name ファイル名
      * @param altername 代替ファイル名
-     * @return File
-     * @throws IOException
+     * @param header ヘッダー
+     * @param body 内容
      */
-    private static File getStoreFile(String name, String altername) throws IOException {
-        // 報告書の保存先にファイルを保存します
+    private static void storeReport(String name, String altername, String[] header, List<Comparable[]> body) {
         File report = new File(FilenameUtils.concat(AppConfig.get().getReportPath(), name));
-        File dir = report.getParentFile();
-        if ((dir == null) || !(dir.exists() || dir.mkdirs())) {
-            // 報告書の保存先ディレクトリが無く、ディレクトリの作成に失敗した場合はカレントフォルダにファイルを保存
-            report = new File(name);
-        }
-        if (ReportUtils.isLocked(report)) {
-            // ロックされている場合は代替ファイルに書き込みます
-            report = new File(FilenameUtils.concat(report.getParent(), altername));
+        LogWriter.write(new ReportRecord(report, altername, header, body));
+    }
+
+    /**
+     * 報告書のCSVに追記するレコード(最初の列を取り除く)
+     */
+    private static final class ReportRecord extends LogWriter.Record {
+        private final byte[] header;
+        private final byte[] body;
+
+        ReportRecord(File file, String altername, String[] header, List<Comparable[]> body) {
+            super(file, altername);
+            // 報告書の項番を除く
+            this.header = (StringUtils.join(Arrays.copyOfRange(header, 1, header.length), ',') + "\r\n")
+                    .getBytes(AppConstants.CHARSET);
+            StringBuilder sb = new StringBuilder();
+            for (Comparable[] colums : body) {
+                sb.append(StringUtils.join(toStringArray(Arrays.copyOfRange(colums, 1, colums.length)), ','));
+                sb.append("\r\n");
+            }
+            this.body = sb.toString().getBytes(AppConstants.CHARSET);
         }
-        else {
-            File alt_report = new File(FilenameUtils.concat(report.getParent(), altername));
-            if (alt_report.exists() && !ReportUtils.isLocked(alt_report) && (FileUtils.sizeOf(alt_report) > 0)) {
-                mergeAltFile(report, alt_report);
+
+        @Override
+        protected void write(File file, File storeFile, FileChannel channel) throws IOException {
+            if (channel.size() <= 0) {
+                writeFully(channel, ByteBuffer.wrap(this.header));
             }
+            writeFully(channel, ByteBuffer.wrap(this.body));
+        }
+
+        @Override
+        protected void merge(File file, File altFile) throws IOException {
+            mergeAltFile(file, altFile);
+        }
+
+        @Override
+        protected void failed(Exception e) {
+            LOG.warn("報告書の保存に失敗しました", e);
         }
-        return report;
     }
 
     /**
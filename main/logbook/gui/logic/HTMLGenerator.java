@@ -3,14 +3,15 @@
  */
 package logbook.gui.logic;
 
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
 import logbook.constants.AppConstants;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.FileUtils;
 
 /**
  * @author Nekopanda
@@ -21,8 +22,47 @@ public class HTMLGenerator {
     private final List<String> tagStack = new ArrayList<String>();
     private int nestedCount = 0;
 
+    /** 出力先（null の場合は result() で文字列として取り出す） */
+    private final Writer out;
+    /** 出力先への書き込みで最初に発生した例外 */
+    private IOException error;
+
     private static String TAB = "    ";
 
+    /** 出力先がある場合はこの大きさを超えたら書き出す */
+    private static final int FLUSH_SIZE = 8 * 1024;
+
+    /** CSSファイルの内容（更新日時と大きさが変わったら読み直す） */
+    private static String cssCache;
+    private static long cssLastModified;
+    private static long cssLength;
+
+    public HTMLGenerator() {
+        this.out = null;
+    }
+
+    /**
+     * @param out 出力先 生成した分から書き込んでいきます
+     */
+    public HTMLGenerator(Writer out) {
+        this.out = out;
+    }
+
+    private static synchronized String getCss() throws IOException {
+        File file = AppConstants.BATTLE_LOG_CSS_FILE;
+        if (!file.exists()) {
+            return null;
+        }
+        long lastModified = file.lastModified();
+        long length = file.length();
+        if ((cssCache == null) || (lastModified != cssLastModified) || (length != cssLength)) {
+            cssCache = FileUtils.readFileToString(file);
+            cssLastModified = lastModified;
+            cssLength = length;
+        }
+        return cssCache;
+    }
+
     public void genHeader(String title, boolean genCharset) throws IOException {
         this.sb.append("<!DOCTYPE html>").append("\r\n");
         this.sb.append("<html>").append("\r\n");
@@ -32,18 +72,51 @@ public class HTMLGenerator {
         }
         this.sb.append("<title>").append(title).append("</title>").append("\r\n");
         this.sb.append("<style type=\"text/css\">").append("\r\n");
-        if (AppConstants.BATTLE_LOG_CSS_FILE.exists()) {
-            String css = IOUtils.toString(new FileInputStream(AppConstants.BATTLE_LOG_CSS_FILE));
+        String css = getCss();
+        if (css != null) {
             this.sb.append(css);
         }
         this.sb.append("</style>").append("\r\n");
         this.sb.append("</head>").append("\r\n");
+        this.spill();
     }
 
     public String result() {
         return this.sb.toString();
     }
 
+    /**
+     * 出力先に残りを書き込みます
+     * @throws IOException 途中の書き込みで失敗していた場合も投げます
+     */
+    public void flush() throws IOException {
+        if (this.out != null) {
+            this.write();
+            if (this.error != null) {
+                throw this.error;
+            }
+            this.out.flush();
+        }
+    }
+
+    /** 溜まっていたら出力先に書き込む */
+    private void spill() {
+        if ((this.out != null) && (this.sb.length() >= FLUSH_SIZE)) {
+            this.write();
+        }
+    }
+
+    private void write() {
+        if (this.error == null) {
+            try {
+                this.out.append(this.sb);
+            } catch (IOException e) {
+                this.error = e;
+            }
+        }
+        this.sb.setLength(0);
+    }
+
     private void genIndent() {
         for (int i = 0; i < this.nestedCount; ++i) {
             this.sb.append(TAB);
@@ -70,6 +143,7 @@ public class HTMLGenerator {
         this.sb.append("<").append(tag);
         this.genClass(cls);
         this.sb.append(">").append("\r\n");
+        this.spill();
     }
 
     public void end() {
@@ -78,6 +152,7 @@ public class HTMLGenerator {
         int tagIndex = this.tagStack.size() - 1;
         this.sb.append("</").append(this.tagStack.get(tagIndex)).append(">").append("\r\n");
         this.tagStack.remove(tagIndex);
+        this.spill();
     }
 
     public void inline(String tag, String option, String innerText, String[] cls) {
@@ -89,6 +164,7 @@ public class HTMLGenerator {
             this.sb.append(innerText);
         }
         this.sb.append("</").append(tag).append(">").append("\r\n");
+        this.spill();
     }
 
     public void inline(String tag, String innerText, String[] cls) {
@@ -100,6 +176,7 @@ public class HTMLGenerator {
             this.sb.append(innerText);
         }
         this.sb.append("</").append(tag).append(">").append("\r\n");
+        this.spill();
     }
 
     public void inline(String tag, String[] cls) {
@@ -107,5 +184,6 @@ public class HTMLGenerator {
         this.sb.append("<").append(tag);
         this.genClass(cls);
         this.sb.append(">").append("\r\n");
+        this.spill();
     }
 }
@@ -18,6 +18,20 @@ public class IntegerPair implements Comparable<IntegerPair> {
         this.separator = separator;
     }
 
+    /**
+     * @return now
+     */
+    public int getNow() {
+        return this.now;
+    }
+
+    /**
+     * @return max
+     */
+    public int getMax() {
+        return this.max;
+    }
+
     @Override
     public String toString() {
         return String.valueOf(this.now) + this.separator + String.valueOf(this.max);
@@ -0,0 +1,338 @@
+package logbook.gui.logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import logbook.data.context.GlobalContext;
+import logbook.dto.ItemDto;
+import logbook.dto.ItemInfoDto;
+import logbook.dto.ShipDto;
+import logbook.dto.ShipParameters;
+
+/**
+ * 所有装備一覧の行を装備の種類ごとに保持して、変わった種類の行だけを作り直します
+ *
+ * 装備の変更は ItemDto が増えた・減った・差し替わったか（装備一覧・廃棄・近代化改修・改修など）と
+ * {@link ItemDto#getRevision()}（ロックの書き換え）で、艦娘の持っている装備の変更は
+ * ShipDto が差し替わったかと {@link ShipDto#getRevision()} で判断します。
+ *
+ * @author Nekopanda
+ */
+public final class ItemListModel {
+
+    private static final ItemListModel INSTANCE = new ItemListModel();
+
+    /** 装備1つ分（数え直す時に引く値を持っておく） */
+    private static final class ItemState {
+        ItemDto item;
+        int revision;
+        int slotitemId;
+        boolean locked;
+        int level;
+    }
+
+    /** 艦娘1隻分 */
+    private static final class ShipState {
+        ShipDto ship;
+        int revision;
+        /** 持っている装備の slotitem_id */
+        int[] slotitemIds;
+    }
+
+    /** 装備している艦娘と個数 */
+    private static final class Holder {
+        final ShipDto ship;
+        int count;
+
+        Holder(ShipDto ship) {
+            this.ship = ship;
+        }
+    }
+
+    /** 装備の種類1つ分 */
+    private static final class Row {
+        final int slotitemId;
+        ItemInfoDto info;
+        int count;
+        int locked;
+        /** 改修レベルごとの個数 */
+        int[] levels = new int[11];
+        /** 艦娘ID順 */
+        final Map<Integer, Holder> holders = new TreeMap<Integer, Holder>();
+        /** No. 以外の列（変わったら null ） */
+        Comparable[] cells;
+
+        Row(int slotitemId) {
+            this.slotitemId = slotitemId;
+        }
+
+        void addLevel(int level, int delta) {
+            if (level >= this.levels.length) {
+                int[] levels = new int[level + 1];
+                System.arraycopy(this.levels, 0, levels, 0, this.levels.length);
+                this.levels = levels;
+            }
+            this.levels[level] += delta;
+        }
+
+        int maxLevel() {
+            for (int i = this.levels.length - 1; i > 0; --i) {
+                if (this.levels[i] > 0) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /** 個数順 */
+    private static final Comparator<Row> ORDER = new Comparator<Row>() {
+        @Override
+        public int compare(Row o1, Row o2) {
+            int ret = Integer.compare(o1.count, o2.count);
+            return (ret == 0) ? Integer.compare(o1.slotitemId, o2.slotitemId) : ret;
+        }
+    };
+
+    /** 持っている個数の多い順（同じ個数は艦娘ID順のまま） */
+    private static final Comparator<Holder> HOLDER_ORDER = new Comparator<Holder>() {
+        @Override
+        public int compare(Holder o1, Holder o2) {
+            return -Integer.compare(o1.count, o2.count);
+        }
+    };
+
+    /** 装備ID → 装備 */
+    private final Map<Integer, ItemState> items = new HashMap<Integer, ItemState>();
+
+    /** 艦娘ID → 艦娘 */
+    private final Map<Integer, ShipState> ships = new HashMap<Integer, ShipState>();
+
+    /** slotitem_id → 行 */
+    private final Map<Integer, Row> rows = new HashMap<Integer, Row>();
+
+    private ItemListModel() {
+    }
+
+    /**
+     * @return モデル
+     */
+    public static ItemListModel get() {
+        return INSTANCE;
+    }
+
+    /**
+     * 最新の状態に合わせて所有装備一覧の内容を返します
+     *
+     * @return 内容
+     */
+    public synchronized List<Comparable[]> getBody() {
+        this.updateItems();
+        this.updateShips();
+
+        List<Row> sorted = new ArrayList<Row>(this.rows.size());
+        for (Row row : this.rows.values()) {
+            // 装備一覧にない種類は艦娘が持っていても表示しない
+            if (row.count > 0) {
+                sorted.add(row);
+            }
+        }
+        Collections.sort(sorted, ORDER);
+
+        List<Comparable[]> body = new ArrayList<Comparable[]>(sorted.size());
+        int count = 0;
+        for (Row row : sorted) {
+            if (row.cells == null) {
+                row.cells = createCells(row);
+            }
+            Comparable[] line = row.cells.clone();
+            line[0] = ++count;
+            body.add(line);
+        }
+        return body;
+    }
+
+    /** 変わった装備だけ数え直す */
+    private void updateItems() {
+        Map<Integer, ItemDto> itemMap = GlobalContext.getItemMap();
+
+        // なくなった装備
+        Iterator<Map.Entry<Integer, ItemState>> it = this.items.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, ItemState> entry = it.next();
+            if (itemMap.get(entry.getKey()) == null) {
+                this.removeItem(entry.getValue());
+                it.remove();
+            }
+        }
+
+        for (ItemDto item : itemMap.values()) {
+            ItemState state = this.items.get(item.getId());
+            if ((state != null) && (state.item == item) && (state.revision == item.getRevision())) {
+                continue;
+            }
+            if (state == null) {
+                state = new ItemState();
+                this.items.put(item.getId(), state);
+            }
+            else {
+                this.removeItem(state);
+            }
+            state.item = item;
+            state.revision = item.getRevision();
+            state.slotitemId = item.getSlotitemId();
+            state.locked = item.isLocked();
+            state.level = item.getLevel();
+
+            Row row = this.getRow(state.slotitemId);
+            if ((row.info == null) || (row.count == 0)) {
+                row.info = item.getInfo();
+            }
+            row.count++;
+            if (state.locked) {
+                row.locked++;
+            }
+            row.addLevel(state.level, 1);
+            row.cells = null;
+        }
+    }
+
+    private void removeItem(ItemState state) {
+        Row row = this.rows.get(state.slotitemId);
+        row.count--;
+        if (state.locked) {
+            row.locked--;
+        }
+        row.addLevel(state.level, -1);
+        row.cells = null;
+        this.removeIfEmpty(row);
+    }
+
+    /** 変わった艦娘の持っている装備だけ数え直す */
+    private void updateShips() {
+        Map<Integer, ShipDto> shipMap = GlobalContext.getShipMap();
+
+        // いなくなった艦娘
+        Iterator<Map.Entry<Integer, ShipState>> it = this.ships.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, ShipState> entry = it.next();
+            if (shipMap.get(entry.getKey()) == null) {
+                this.removeShip(entry.getValue());
+                it.remove();
+            }
+        }
+
+        for (ShipDto ship : shipMap.values()) {
+            ShipState state = this.ships.get(ship.getId());
+            if ((state != null) && (state.ship == ship) && (state.revision == ship.getRevision())) {
+                continue;
+            }
+            if (state == null) {
+                state = new ShipState();
+                this.ships.put(ship.getId(), state);
+            }
+            else {
+                this.removeShip(state);
+            }
+            state.ship = ship;
+            state.revision = ship.getRevision();
+
+            List<ItemInfoDto> slotItems = ship.getItem();
+            int[] slotitemIds = new int[slotItems.size()];
+            int numItems = 0;
+            for (int i = 0; i < slotItems.size(); ++i) {
+                ItemInfoDto item = slotItems.get(i);
+                if (item != null) {
+                    slotitemIds[numItems++] = item.getId();
+                }
+            }
+            state.slotitemIds = (numItems == slotitemIds.length) ? slotitemIds : copyOf(slotitemIds, numItems);
+
+            for (int slotitemId : state.slotitemIds) {
+                Row row = this.getRow(slotitemId);
+                Holder holder = row.holders.get(ship.getId());
+                if (holder == null) {
+                    holder = new Holder(ship);
+                    row.holders.put(ship.getId(), holder);
+                }
+                holder.count++;
+                row.cells = null;
+            }
+        }
+    }
+
+    private void removeShip(ShipState state) {
+        for (int slotitemId : state.slotitemIds) {
+            Row row = this.rows.get(slotitemId);
+            Holder holder = row.holders.get(state.ship.getId());
+            if (--holder.count == 0) {
+                row.holders.remove(state.ship.getId());
+            }
+            row.cells = null;
+            this.removeIfEmpty(row);
+        }
+    }
+
+    private Row getRow(int slotitemId) {
+        Row row = this.rows.get(slotitemId);
+        if (row == null) {
+            row = new Row(slotitemId);
+            this.rows.put(slotitemId, row);
+        }
+        return row;
+    }
+
+    private void removeIfEmpty(Row row) {
+        if ((row.count == 0) && row.holders.isEmpty()) {
+            this.rows.remove(row.slotitemId);
+        }
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+    /** No. 以外の列を作る */
+    private static Comparable[] createCells(Row row) {
+        ItemInfoDto item = row.info;
+        ShipParameters param = item.getParam();
+        int maxLevel = row.maxLevel();
+        String level = (maxLevel != 0) ? "★+" + maxLevel : null;
+        return new Comparable[] { null, item.getName(), item.getTypeName(), row.count,
+                row.locked, level, param.getHoug(),
+                param.getHoum(), param.getLeng(), param.getLuck(), param.getHouk(), param.getBaku(),
+                param.getRaig(), param.getSaku(), param.getTais(), param.getTyku(), param.getSouk(),
+                getHolderString(row)
+        };
+    }
+
+    /** 装備してる艦娘 */
+    private static String getHolderString(Row row) {
+        List<Holder> sorted = new ArrayList<Holder>(row.holders.values());
+        // 持っている個数で個数ソート
+        Collections.sort(sorted, HOLDER_ORDER);
+        StringBuilder sb = new StringBuilder();
+        int count = 0;
+        for (Holder holder : sorted) {
+            if (count++ != 0) {
+                sb.append(",");
+            }
+            sb.append(holder.ship.getFriendlyName()).append("x").append(holder.count);
+            // 長さ制限
+            if (sb.length() > 100) {
+                sb.setLength(100);
+                sb.append(" ...");
+                break;
+            }
+        }
+        return sb.toString();
+    }
+}
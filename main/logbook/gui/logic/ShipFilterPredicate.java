@@ -0,0 +1,228 @@
+package logbook.gui.logic;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import logbook.data.context.GlobalContext;
+import logbook.dto.ItemInfoDto;
+import logbook.dto.ShipDto;
+import logbook.dto.ShipFilterDto;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * {@link ShipFilterDto} を艦娘の判定用にまとめたもの
+ *
+ * 検索ワードの分割と正規表現のコンパイル、艦種のビットマスク、グループと遠征中の艦娘のビットセットを
+ * 最初に1回だけ作っておくので、艦娘ごとの判定ではオブジェクトを作りません。
+ * Matcher を使い回すので同じインスタンスを複数のスレッドから使うことはできません。
+ *
+ * @author Nekopanda
+ */
+public final class ShipFilterPredicate {
+
+    /** 艦種のビット（ShipFilterDto の艦種フラグの順） */
+    private static final Map<String, Integer> TYPE_BITS = new HashMap<String, Integer>();
+    static {
+        String[] types = new String[] { "駆逐艦", "軽巡洋艦", "重雷装巡洋艦", "重巡洋艦", "航空巡洋艦", "水上機母艦",
+                "軽空母", "正規空母", "戦艦", "航空戦艦", "潜水艦", "潜水空母", "揚陸艦", "装甲空母", "工作艦", "潜水母艦",
+                "練習巡洋艦" };
+        for (int i = 0; i < types.length; ++i) {
+            TYPE_BITS.put(types[i], i);
+        }
+    }
+
+    private final ShipFilterDto filter;
+
+    /** 検索ワード（正規表現の場合は null ） */
+    private final String[] words;
+
+    /** 検索ワードの正規表現 */
+    private final Matcher[] matchers;
+
+    /** 正規表現が無効（何も表示しない） */
+    private final boolean invalid;
+
+    /** 表示しない艦種のビット */
+    private final int excludedTypes;
+
+    /** グループの艦娘 */
+    private final BitSet group;
+
+    /** 遠征中の艦娘 */
+    private final BitSet mission;
+
+    /**
+     * @param filter フィルター
+     * @param missionSet 遠征中の艦娘
+     */
+    public ShipFilterPredicate(ShipFilterDto filter, Set<Integer> missionSet) {
+        this.filter = filter;
+
+        String[] words = null;
+        Matcher[] matchers = null;
+        boolean invalid = false;
+        if (!StringUtils.isEmpty(filter.nametext)) {
+            words = StringUtils.split(filter.nametext, " ");
+            if (filter.regexp) {
+                matchers = new Matcher[words.length];
+                try {
+                    for (int i = 0; i < words.length; i++) {
+                        matchers[i] = Pattern.compile(words[i]).matcher("");
+                    }
+                } catch (PatternSyntaxException e) {
+                    // 無効な正規表現は何も表示しない
+                    invalid = true;
+                }
+                words = null;
+            }
+        }
+        this.words = words;
+        this.matchers = matchers;
+        this.invalid = invalid;
+
+        boolean[] flags = new boolean[] { filter.destroyer, filter.lightCruiser, filter.torpedoCruiser,
+                filter.heavyCruiser, filter.flyingDeckCruiser, filter.seaplaneTender, filter.escortCarrier,
+                filter.carrier, filter.battleship, filter.flyingDeckBattleship, filter.submarine,
+                filter.carrierSubmarine, filter.landingship, filter.armoredcarrier, filter.repairship,
+                filter.submarineTender, filter.trainingCruiser };
+        int excludedTypes = 0;
+        for (int i = 0; i < flags.length; ++i) {
+            if (!flags[i]) {
+                excludedTypes |= 1 << i;
+            }
+        }
+        this.excludedTypes = excludedTypes;
+
+        if (filter.group != null) {
+            this.group = new BitSet();
+            for (int id : filter.group.getShips()) {
+                this.group.set(id);
+            }
+        }
+        else {
+            this.group = null;
+        }
+
+        this.mission = new BitSet();
+        for (int id : missionSet) {
+            this.mission.set(id);
+        }
+    }
+
+    /**
+     * @param ship 艦娘
+     * @return 表示する場合 true
+     */
+    public boolean test(ShipDto ship) {
+        ShipFilterDto filter = this.filter;
+        // テキストでフィルタ
+        if (this.invalid) {
+            return false;
+        }
+        if ((this.words != null) || (this.matchers != null)) {
+            String name = ship.getName();
+            String type = ship.getType();
+            List<ItemInfoDto> items = ship.getItem();
+            int numWords = (this.words != null) ? this.words.length : this.matchers.length;
+            for (int i = 0; i < numWords; i++) {
+                // 名前, 艦種, 装備のどれかにマッチすること
+                if (!this.find(i, name) && !this.find(i, type) && !this.findItem(i, items)) {
+                    return false;
+                }
+            }
+        }
+        // 艦種でフィルタ
+        if (this.excludedTypes != 0) {
+            Integer bit = TYPE_BITS.get(ship.getType());
+            if ((bit != null) && ((this.excludedTypes & (1 << bit)) != 0)) {
+                return false;
+            }
+        }
+        // グループでフィルタ
+        if ((this.group != null) && !this.group.get(ship.getId())) {
+            return false;
+        }
+        // 装備でフィルタ
+        if (!StringUtils.isEmpty(filter.itemname)) {
+            List<ItemInfoDto> items = ship.getItem();
+            boolean hit = false;
+            for (int i = 0; i < items.size(); i++) {
+                ItemInfoDto item = items.get(i);
+                if ((item != null) && filter.itemname.equals(item.getName())) {
+                    hit = true;
+                    break;
+                }
+            }
+            if (!hit) {
+                return false;
+            }
+        }
+        boolean onFleet = !StringUtils.isEmpty(ship.getFleetid());
+        // 艦隊に所属
+        if (!filter.onfleet && onFleet) {
+            return false;
+        }
+        // 艦隊に非所属
+        if (!filter.notonfleet && !onFleet) {
+            return false;
+        }
+        // 鍵付き
+        if (!filter.locked && ship.getLocked()) {
+            return false;
+        }
+        // 鍵付きではない
+        if (!filter.notlocked && !ship.getLocked()) {
+            return false;
+        }
+        if (!filter.mission || !filter.notmission) {
+            boolean isMission = this.mission.get(ship.getId());
+            // 遠征中
+            if (!filter.mission && isMission) {
+                return false;
+            }
+            // 遠征中ではない
+            if (!filter.notmission && !isMission) {
+                return false;
+            }
+        }
+        if (!filter.needbath || !filter.notneedbath) {
+            boolean needBath = (ship.getDocktime() > 0) && !GlobalContext.isNdock(ship.getId());
+            // 要修理
+            if (!filter.needbath && needBath) {
+                return false;
+            }
+            // 修理の必要なし
+            if (!filter.notneedbath && !needBath) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean find(int word, String text) {
+        if (text == null) {
+            return false;
+        }
+        if (this.words != null) {
+            return text.indexOf(this.words[word]) != -1;
+        }
+        return this.matchers[word].reset(text).find();
+    }
+
+    private boolean findItem(int word, List<ItemInfoDto> items) {
+        for (int i = 0; i < items.size(); i++) {
+            ItemInfoDto item = items.get(i);
+            if ((item != null) && this.find(word, item.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
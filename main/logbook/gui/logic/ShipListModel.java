@@ -0,0 +1,346 @@
+package logbook.gui.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import logbook.data.context.GlobalContext;
+import logbook.dto.ItemDto;
+import logbook.dto.ShipDto;
+import logbook.dto.ShipFilterDto;
+import logbook.dto.ShipInfoDto;
+import logbook.dto.ShipParameters;
+import logbook.internal.Ship;
+
+/**
+ * 所有艦娘一覧の行を艦娘ごとに保持して、変わった艦娘の行だけを作り直します
+ *
+ * 艦娘の変更は ShipDto が差し替わったか（母港・ship2・ship3・近代化改修など）と
+ * {@link ShipDto#getRevision()}（補給・入渠・被弾・ロックなどの書き換え）で判断します。
+ * Lv順などの並び順は4つのソート済みの索引を追加・削除だけで保ち、順位は二分探索で求めます。
+ * 艦隊・遠征中・入渠中など艦娘以外の状態で決まる列は取り出す時に埋めます。
+ *
+ * @author Nekopanda
+ */
+public final class ShipListModel {
+
+    /** 取り出す時に埋める列 */
+    private static final int COLUMN_HEADER = 0;
+    private static final int COLUMN_FLEET = 3;
+    private static final int COLUMN_SORT_NUMBER = 4;
+    private static final int COLUMN_NOW = 11;
+
+    /** 並び順の計算に使う値（ShipDto は書き換えられるので行を作った時の値を持っておく） */
+    private static final class SortKey {
+        final int id;
+        final int lv;
+        final int sortno;
+        final int stype;
+        final double hpRate;
+
+        SortKey(ShipDto ship) {
+            this.id = ship.getId();
+            this.lv = ship.getLv();
+            this.sortno = ship.getSortno();
+            this.stype = ship.getShipInfo().getStype();
+            this.hpRate = (double) ship.getNowhp() / (double) ship.getMaxhp();
+        }
+    }
+
+    /** sortno, ID の順 */
+    private static int compareBase(SortKey o1, SortKey o2) {
+        int ret = Integer.compare(o1.sortno, o2.sortno);
+        if (ret == 0) {
+            ret = Integer.compare(o1.id, o2.id);
+        }
+        return ret;
+    }
+
+    /** Lv順, 艦種順, NEW順, 修理順 */
+    @SuppressWarnings("unchecked")
+    private static final List<Comparator<SortKey>> ORDERS = Arrays.asList(
+            new Comparator<SortKey>() {
+                @Override
+                public int compare(SortKey o1, SortKey o2) {
+                    int ret = -Integer.compare(o1.lv, o2.lv);
+                    return (ret == 0) ? compareBase(o1, o2) : ret;
+                }
+            },
+            new Comparator<SortKey>() {
+                @Override
+                public int compare(SortKey o1, SortKey o2) {
+                    int ret = -Integer.compare(o1.stype, o2.stype);
+                    if (ret == 0) {
+                        ret = Integer.compare(o1.sortno, o2.sortno);
+                        if (ret == 0) {
+                            // Lv順の後に安定ソートしていたのと同じ
+                            ret = -Integer.compare(o1.lv, o2.lv);
+                            if (ret == 0) {
+                                ret = Integer.compare(o1.id, o2.id);
+                            }
+                        }
+                    }
+                    return ret;
+                }
+            },
+            new Comparator<SortKey>() {
+                @Override
+                public int compare(SortKey o1, SortKey o2) {
+                    return -Integer.compare(o1.id, o2.id);
+                }
+            },
+            new Comparator<SortKey>() {
+                @Override
+                public int compare(SortKey o1, SortKey o2) {
+                    int ret = Double.compare(o1.hpRate, o2.hpRate);
+                    return (ret == 0) ? compareBase(o1, o2) : ret;
+                }
+            });
+
+    // ORDERS より後に作る
+    private static final ShipListModel NORMAL = new ShipListModel(false);
+
+    private static final ShipListModel SPECDIFF = new ShipListModel(true);
+
+    /** 艦娘1隻分 */
+    private static final class Row {
+        ShipDto ship;
+        int revision;
+        SortKey key;
+        /** 取り出す時に埋める列以外 */
+        Comparable[] cells;
+    }
+
+    private final boolean specdiff;
+
+    /** ID順 */
+    private final Map<Integer, Row> rows = new TreeMap<Integer, Row>();
+
+    /** 並び順ごとのソート済みの索引 */
+    private final List<List<SortKey>> orders = new ArrayList<List<SortKey>>();
+
+    private final List<IntegerPair> pageNumbers = new ArrayList<IntegerPair>();
+
+    private ShipListModel(boolean specdiff) {
+        this.specdiff = specdiff;
+        for (int i = 0; i < ORDERS.size(); ++i) {
+            this.orders.add(new ArrayList<SortKey>());
+        }
+    }
+
+    /**
+     * @param specdiff 成長余地
+     * @return モデル
+     */
+    public static ShipListModel get(boolean specdiff) {
+        return specdiff ? SPECDIFF : NORMAL;
+    }
+
+    /**
+     * 最新の状態に合わせて所有艦娘一覧の内容を返します
+     *
+     * @param filter フィルター（null可）
+     * @return 内容
+     */
+    public synchronized List<Comparable[]> getBody(ShipFilterDto filter) {
+        this.update();
+
+        Set<Integer> missionSet = GlobalContext.getMissionShipSet();
+        Set<Integer> ndockSet = GlobalContext.getNDockShipSet();
+        ShipFilterPredicate predicate = (filter != null) ? new ShipFilterPredicate(filter, missionSet) : null;
+        List<Comparable[]> body = new ArrayList<Comparable[]>(this.rows.size());
+        int count = 0;
+        for (Row row : this.rows.values()) {
+            ShipDto ship = row.ship;
+            if ((predicate != null) && !predicate.test(ship)) {
+                continue;
+            }
+            count++;
+
+            Comparable[] line = row.cells.clone();
+            line[COLUMN_HEADER] = new TableRowHeader(count, ship);
+            if (ship.isFleetMember()) {
+                line[COLUMN_FLEET] = String.valueOf(ship.getFleetid()) + "-" + String.valueOf(ship.getFleetpos() + 1);
+            }
+            for (int i = 0; i < ORDERS.size(); ++i) {
+                line[COLUMN_SORT_NUMBER + i] = this.getPageNumber(this.rank(i, row.key));
+            }
+            if (missionSet.contains(ship.getId())) {
+                line[COLUMN_NOW] = "遠征中";
+            }
+            else if (ndockSet.contains(ship.getId())) {
+                line[COLUMN_NOW] = "入渠中";
+            }
+            body.add(line);
+        }
+        return body;
+    }
+
+    /** 変わった艦娘の行だけ作り直す */
+    private void update() {
+        Map<Integer, ShipDto> shipMap = GlobalContext.getShipMap();
+
+        // いなくなった艦娘
+        Iterator<Map.Entry<Integer, Row>> it = this.rows.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Row> entry = it.next();
+            if (shipMap.get(entry.getKey()) == null) {
+                this.removeKey(entry.getValue().key);
+                it.remove();
+            }
+        }
+
+        for (ShipDto ship : shipMap.values()) {
+            Row row = this.rows.get(ship.getId());
+            if ((row != null) && (row.ship == ship) && (row.revision == ship.getRevision())) {
+                continue;
+            }
+            if (row == null) {
+                row = new Row();
+                this.rows.put(ship.getId(), row);
+            }
+            else {
+                this.removeKey(row.key);
+            }
+            row.ship = ship;
+            row.revision = ship.getRevision();
+            row.key = new SortKey(ship);
+            row.cells = this.createCells(ship);
+            this.addKey(row.key);
+        }
+    }
+
+    private void addKey(SortKey key) {
+        for (int i = 0; i < ORDERS.size(); ++i) {
+            List<SortKey> list = this.orders.get(i);
+            int index = Collections.binarySearch(list, key, ORDERS.get(i));
+            list.add((index < 0) ? (-index - 1) : index, key);
+        }
+    }
+
+    private void removeKey(SortKey key) {
+        for (int i = 0; i < ORDERS.size(); ++i) {
+            List<SortKey> list = this.orders.get(i);
+            int index = Collections.binarySearch(list, key, ORDERS.get(i));
+            if (index >= 0) {
+                list.remove(index);
+            }
+        }
+    }
+
+    private int rank(int order, SortKey key) {
+        return Collections.binarySearch(this.orders.get(order), key, ORDERS.get(order));
+    }
+
+    private IntegerPair getPageNumber(int index) {
+        while (this.pageNumbers.size() <= index) {
+            int i = this.pageNumbers.size();
+            this.pageNumbers.add(new IntegerPair((i / 10) + 1, (i % 10) + 1, "-"));
+        }
+        return this.pageNumbers.get(index);
+    }
+
+    /** 艦娘だけで決まる列を作る */
+    private Comparable[] createCells(ShipDto ship) {
+        ShipInfoDto shipInfo = Ship.get(String.valueOf(ship.getShipId()));
+
+        ShipParameters param = new ShipParameters();
+        if (this.specdiff) {
+            // 成長の余地 = (装備なしのMAX) + (装備による上昇分) - (装備込の現在値)
+            param.add(ship.getMax());
+            param.add(ship.getSlotParam());
+            param.subtract(ship.getParam());
+        }
+        else {
+            param.add(ship.getParam());
+        }
+
+        // HP1あたりの時間
+        long dockTime = ship.getDocktime();
+        long unitSeconds = ((long) (dockTime
+                / (float) (ship.getMaxhp() - ship.getNowhp()) / 1000));
+        // 損傷
+        String damage = "";
+        if (ship.isBadlyDamage()) {
+            damage = "大破";
+        } else if (ship.isHalfDamage()) {
+            damage = "中破";
+        } else if (ship.isSlightDamage()) {
+            damage = "小破";
+        }
+
+        // 艦載機数
+        List<ItemDto> slotItems = ship.getItem2();
+        String[] slotNames = new String[4];
+        HpString[] onSlotString = new HpString[4];
+        int[] onSlot = ship.getOnSlot();
+        int[] maxEq = shipInfo.getMaxeq();
+        int slotNum = ship.getSlotNum();
+        for (int i = 0; i < slotNum; ++i) {
+            ItemDto item = slotItems.get(i);
+            if (ship.canEquipPlane()) { // 飛行機を装備できる場合だけ
+                int cur = ((item != null) && item.isPlane()) ? onSlot[i] : 0;
+                int max = maxEq != null ? maxEq[i] : 0;
+                onSlotString[i] = new HpString(cur, max);
+            }
+            if (item != null) {
+                slotNames[i] = item.getFriendlyName();
+            }
+        }
+
+        return new Comparable[] {
+                null,
+                ship.getId(),
+                ship.getLocked() ? "♥" : "",
+                null,
+                null,
+                null,
+                null,
+                null,
+                ship.getName(),
+                ship.getType(),
+                ship.getCharId(),
+                null,
+                ship.getCond(),
+                (ship.getCond() < 49) ? new TimeString(ship.getCondClearTime().getTime()) : null,
+                new HpString(ship.getNowhp(), ship.getMaxhp()),
+                new HpString(ship.getFuel(), ship.getFuelMax()),
+                new HpString(ship.getBull(), ship.getBullMax()),
+                dockTime > 0 ? new TimeLogic(ship.getDocktime()) : null,
+                dockTime > 0 ? ship.getDockfuel() : null,
+                dockTime > 0 ? ship.getDockmetal() : null,
+                damage,
+                dockTime > 0 ? TimeLogic.fromSeconds(unitSeconds) : null,
+                ship.getLv(),
+                ship.getNext(),
+                ship.getExp(),
+                ship.getSeiku(),
+                new SakutekiString(ship),
+                slotNames[0],
+                onSlotString[0],
+                slotNames[1],
+                onSlotString[1],
+                slotNames[2],
+                onSlotString[2],
+                slotNames[3],
+                onSlotString[3],
+                ship.getMaxhp(),
+                ship.getFuelMax(),
+                ship.getBullMax(),
+                param.getKaryoku(),
+                param.getRaisou(),
+                param.getTaiku(),
+                param.getSoukou(),
+                param.getKaihi(),
+                param.getTaisen(),
+                param.getSakuteki(),
+                param.getLucky()
+        };
+    }
+}
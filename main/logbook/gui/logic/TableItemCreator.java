@@ -1,15 +1,29 @@
 package logbook.gui.logic;
 
+import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableItem;
 
 /**
- * テーブルの行を作成するインターフェイスです
+ * テーブルの行を作成するクラスです
  *
  */
-public interface TableItemCreator {
+public abstract class TableItemCreator {
 
-    void init();
+    public abstract void init();
 
-    TableItem create(Table table, Comparable[] text, int count);
+    public TableItem create(Table table, Comparable[] text, int count) {
+        TableItem item = new TableItem(table, SWT.NONE);
+        this.update(item, text, count);
+        return item;
+    }
+
+    /**
+     * 行に内容をセットします（仮想テーブルでは表示される時に呼ばれます）
+     * 
+     * @param item 行
+     * @param text 内容
+     * @param count 行番号
+     */
+    public abstract void update(TableItem item, Comparable[] text, int count);
 }
@@ -0,0 +1,120 @@
+package logbook.internal;
+
+import java.util.Calendar;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import logbook.constants.AppConstants;
+import logbook.dto.BattleAggUnitDto;
+import logbook.dto.MapCellDto;
+import logbook.dto.ResultRank;
+
+/**
+ * 出撃統計を日ごとに集計しておき、必要な期間の日だけを合算します
+ *
+ * 日の区切りは {@link BattleAggDate} と同じ任務の更新タイミング(05:00JST)です。
+ */
+final class BattleAggregator {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /** 日 -> その日の集計 */
+    private final TreeMap<Long, BattleAggUnitDto> days = new TreeMap<>();
+
+    /**
+     * 戦闘を集計に加えます
+     *
+     * @param time 戦闘の時刻
+     * @param mapCell マス（演習の場合は null ）
+     * @param rank ランク
+     */
+    void add(long time, MapCellDto mapCell, ResultRank rank) {
+        // 演習はスキップ
+        if (mapCell == null) {
+            return;
+        }
+        Long day = toDay(time);
+        BattleAggUnitDto dayAgg = this.days.get(day);
+        if (dayAgg == null) {
+            dayAgg = new BattleAggUnitDto();
+            this.days.put(day, dayAgg);
+        }
+        dayAgg.add(mapCell, rank);
+    }
+
+    /**
+     * 集計単位ごとの集計結果を返します
+     *
+     * @return 集計結果
+     */
+    Map<BattleAggUnit, BattleAggUnitDto> aggregate() {
+        Map<BattleAggUnit, BattleAggUnitDto> aggMap = new EnumMap<>(BattleAggUnit.class);
+        // 今日
+        long today = toDay(BattleAggDate.TODAY.get());
+        // 今週の月曜
+        long thisWeek = toDay(getWeekStart(BattleAggDate.TODAY.get()));
+        // 先週の月曜
+        long lastWeek = toDay(getWeekStart(BattleAggDate.LAST_WEEK.get()));
+        // 先月の1日
+        Calendar lastMonthCal = BattleAggDate.LAST_MONTH.get();
+        long lastMonth = toDay(lastMonthCal);
+        lastMonthCal.add(Calendar.MONTH, 1);
+        // 今月の1日
+        long thisMonth = toDay(lastMonthCal);
+        lastMonthCal.add(Calendar.MONTH, 1);
+        // 来月の1日
+        long nextMonth = toDay(lastMonthCal);
+
+        // 先月より前の集計はもう使わない
+        this.days.headMap(lastMonth).clear();
+
+        this.agg(BattleAggUnit.DAILY, aggMap, today, today + 1);
+        this.agg(BattleAggUnit.WEEKLY, aggMap, thisWeek, thisWeek + 7);
+        this.agg(BattleAggUnit.MONTHLY, aggMap, thisMonth, nextMonth);
+        this.agg(BattleAggUnit.LAST_WEEK, aggMap, lastWeek, lastWeek + 7);
+        this.agg(BattleAggUnit.LAST_MONTH, aggMap, lastMonth, thisMonth);
+        return aggMap;
+    }
+
+    /**
+     * @return 集計する最小の時刻(これ以前の戦闘は集計に加える必要がない)
+     */
+    static long getMinTime() {
+        return BattleAggDate.LAST_MONTH.get().getTimeInMillis();
+    }
+
+    /** [from, to) の日を合算 */
+    private void agg(BattleAggUnit unit, Map<BattleAggUnit, BattleAggUnitDto> to, long from, long until) {
+        Map<Long, BattleAggUnitDto> range = this.days.subMap(from, until);
+        if (range.isEmpty()) {
+            return;
+        }
+        BattleAggUnitDto aggUnit = new BattleAggUnitDto();
+        for (BattleAggUnitDto dayAgg : range.values()) {
+            aggUnit.add(dayAgg);
+        }
+        to.put(unit, aggUnit);
+    }
+
+    /** 週の始まり(月曜)に戻す */
+    private static Calendar getWeekStart(Calendar cal) {
+        int back = ((cal.get(Calendar.DAY_OF_WEEK) - cal.getFirstDayOfWeek()) + 7) % 7;
+        cal.add(Calendar.DAY_OF_MONTH, -back);
+        return cal;
+    }
+
+    private static long toDay(Calendar cal) {
+        return toDay(cal.getTimeInMillis());
+    }
+
+    private static long toDay(long time) {
+        long local = time + AppConstants.TIME_ZONE_MISSION.getOffset(time);
+        long day = local / DAY_MILLIS;
+        if ((local % DAY_MILLIS) < 0) {
+            --day;
+        }
+        return day;
+    }
+}
@@ -0,0 +1,137 @@
+package logbook.internal;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import logbook.dto.BattleExDto;
+
+/**
+ * 読み込んだ戦闘の詳細のキャッシュ
+ *
+ * 出撃ログファイルとファイル上の位置をキーに、推定したメモリ量の合計が上限を超えないように
+ * 最近使っていないものから捨てます（LRU）。
+ *
+ * @author Nekopanda
+ */
+final class BattleDetailCache {
+
+    /** ファイル上の大きさからメモリ上の大きさを推定する倍率 */
+    private static final int EXPANSION = 8;
+
+    /** 1件あたりのオブジェクトの固定分 */
+    private static final long OVERHEAD = 4 * 1024;
+
+    private static final class Key {
+        private final File file;
+        private final long offset;
+
+        Key(File file, long offset) {
+            this.file = file;
+            this.offset = offset;
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.file.hashCode() * 31) + (int) (this.offset ^ (this.offset >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return (this.offset == other.offset) && this.file.equals(other.file);
+        }
+    }
+
+    private static final class Entry {
+        private final BattleExDto battle;
+        private final long bytes;
+
+        Entry(BattleExDto battle, long bytes) {
+            this.battle = battle;
+            this.bytes = bytes;
+        }
+    }
+
+    private final Map<Key, Entry> map = new LinkedHashMap<Key, Entry>(64, 0.75f, true);
+
+    private final long maxBytes;
+
+    private long bytes;
+
+    private long hits;
+
+    private long misses;
+
+    private long loads;
+
+    private long evictions;
+
+    /**
+     * @param maxBytes 推定メモリ量の上限
+     */
+    BattleDetailCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param file 出撃ログファイル
+     * @param offset ファイル上の位置
+     * @return キャッシュにある場合は戦闘の詳細、無い場合は null
+     */
+    synchronized BattleExDto get(File file, long offset) {
+        Entry entry = this.map.get(new Key(file, offset));
+        if (entry != null) {
+            this.hits++;
+            return entry.battle;
+        }
+        this.misses++;
+        return null;
+    }
+
+    /**
+     * @param file 出撃ログファイル
+     * @param offset ファイル上の位置
+     * @return キャッシュにあるか（ヒット数には数えない）
+     */
+    synchronized boolean contains(File file, long offset) {
+        return this.map.containsKey(new Key(file, offset));
+    }
+
+    /**
+     * @param file 出撃ログファイル
+     * @param offset ファイル上の位置
+     * @param battle 戦闘の詳細
+     * @param size ファイル上の大きさ
+     */
+    synchronized void put(File file, long offset, BattleExDto battle, long size) {
+        long entryBytes = (size * EXPANSION) + OVERHEAD;
+        Entry old = this.map.put(new Key(file, offset), new Entry(battle, entryBytes));
+        if (old != null) {
+            this.bytes -= old.bytes;
+        }
+        this.bytes += entryBytes;
+        this.loads++;
+        Iterator<Entry> it = this.map.values().iterator();
+        while ((this.bytes > this.maxBytes) && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            this.bytes -= eldest.bytes;
+            this.evictions++;
+        }
+    }
+
+    /**
+     * @return 統計
+     */
+    synchronized String getStatistics() {
+        long total = this.hits + this.misses;
+        return String.format("戦闘詳細キャッシュ: %d件 %dKB/%dKB ヒット%d ミス%d(%.1f%%) 読込%d 破棄%d",
+                this.map.size(), this.bytes / 1024, this.maxBytes / 1024, this.hits, this.misses,
+                (total > 0) ? ((this.hits * 100.0) / total) : 0.0, this.loads, this.evictions);
+    }
+}
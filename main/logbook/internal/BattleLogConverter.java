@@ -0,0 +1,80 @@
+/**
+ *
+ */
+package logbook.internal;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+
+import com.dyuproject.protostuff.LinkedBuffer;
+
+/**
+ * 旧形式の出撃ログファイル(.dat)を辞書付きの新形式に変換します
+ *
+ * 航海日誌を終了してから実行してください。元のファイルは .dat.bak として残します。
+ * 使い方: BattleLogConverter [出撃ログのフォルダ]
+ */
+public class BattleLogConverter {
+
+    /**
+     * @param args 出撃ログのフォルダ
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("使い方: BattleLogConverter [出撃ログのフォルダ]");
+            return;
+        }
+        File dir = new File(args[0]);
+        if (!dir.isDirectory()) {
+            System.out.println("フォルダがありません: " + dir.getPath());
+            return;
+        }
+        LinkedBuffer buffer = LinkedBuffer.allocate(128 * 1024);
+        int numFiles = 0;
+        int numRecords = 0;
+        long before = 0;
+        long after = 0;
+        for (File file : FileUtils.listFiles(dir, new String[] { "dat" }, true)) {
+            try {
+                if (BattleLogFormat.isCurrentFormat(file)) {
+                    continue;
+                }
+                long size = file.length();
+                numRecords += convert(file, buffer);
+                before += size;
+                after += file.length();
+                ++numFiles;
+                System.out.println("変換しました: " + file.getPath());
+            } catch (IOException e) {
+                System.out.println("変換に失敗しました: " + file.getPath() + " (" + e + ")");
+            }
+        }
+        System.out.println("完了 " + numFiles + "ファイル " + numRecords + "件 (" + before + " bytes -> " + after
+                + " bytes)");
+    }
+
+    /**
+     * ファイルを変換して置き換えます
+     *
+     * @param file 旧形式のファイル
+     * @param buffer バッファ
+     * @return 変換したレコード数
+     * @throws IOException
+     */
+    public static int convert(File file, LinkedBuffer buffer) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        File bak = new File(file.getPath() + ".bak");
+        FileUtils.deleteQuietly(tmp);
+        try {
+            int count = BattleLogFormat.convert(file, tmp, buffer);
+            FileUtils.deleteQuietly(bak);
+            FileUtils.moveFile(file, bak);
+            FileUtils.moveFile(tmp, file);
+            return count;
+        } finally {
+            FileUtils.deleteQuietly(tmp);
+        }
+    }
+}
@@ -0,0 +1,499 @@
+/**
+ *
+ */
+package logbook.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import logbook.dto.BattleExDto;
+import logbook.dto.ItemInfoDto;
+import logbook.dto.ShipInfoDto;
+
+import com.dyuproject.protostuff.Input;
+import com.dyuproject.protostuff.LinkedBuffer;
+import com.dyuproject.protostuff.Output;
+import com.dyuproject.protostuff.Pipe;
+import com.dyuproject.protostuff.ProtostuffIOUtil;
+import com.dyuproject.protostuff.Schema;
+import com.dyuproject.protostuff.WireFormat.FieldType;
+import com.dyuproject.protostuff.runtime.DefaultIdStrategy;
+import com.dyuproject.protostuff.runtime.Delegate;
+import com.dyuproject.protostuff.runtime.RuntimeSchema;
+
+/**
+ * 出撃ログファイル(.dat)の読み書き
+ *
+ * <pre>
+ * 旧形式: [長さ][BattleExDto] の繰り返し
+ * 新形式: [ヘッダ] の後に [種類][長さ][本体] の繰り返し
+ *   種類 'S' ShipInfoDto の辞書エントリ
+ *   種類 'I' ItemInfoDto の辞書エントリ
+ *   種類 'R' BattleExDto （ShipInfoDto と ItemInfoDto は辞書のIDだけ）
+ * </pre>
+ *
+ * 旧形式のレコードは長さが0にならないので、レコードの境界にある 0x00 はヘッダの始まりです。
+ * ヘッダから次のヘッダまでを1つのセグメントとし、辞書のIDはセグメントの中で有効です。
+ * 代替ファイルのマージでファイルが連結されても、旧形式のファイルに追記しても読めます。
+ */
+final class BattleLogFormat {
+
+    /** ヘッダ（先頭の 0x00 で旧形式のレコードと区別する） */
+    private static final byte[] HEADER = new byte[] { 0x00, 'L', 'B', 'D', 2 };
+
+    private static final byte ENTRY_SHIP = 'S';
+    private static final byte ENTRY_ITEM = 'I';
+    private static final byte RECORD = 'R';
+
+    /** 旧形式のスキーマ */
+    private static final Schema<BattleExDto> LEGACY_SCHEMA = RuntimeSchema.getSchema(BattleExDto.class);
+    private static final Schema<ShipInfoDto> SHIP_SCHEMA = RuntimeSchema.getSchema(ShipInfoDto.class);
+    private static final Schema<ItemInfoDto> ITEM_SCHEMA = RuntimeSchema.getSchema(ItemInfoDto.class);
+
+    /** 新形式のスキーマ（ShipInfoDto と ItemInfoDto を辞書のIDで書く） */
+    private static final Schema<BattleExDto> SCHEMA;
+
+    /** 読み書き中の辞書（Delegate はスレッド間で共有されるため） */
+    private static final ThreadLocal<Dictionary> CURRENT = new ThreadLocal<Dictionary>();
+
+    static {
+        DefaultIdStrategy strategy = new DefaultIdStrategy();
+        strategy.registerDelegate(new DictionaryDelegate<ShipInfoDto>(ShipInfoDto.class));
+        strategy.registerDelegate(new DictionaryDelegate<ItemInfoDto>(ItemInfoDto.class));
+        SCHEMA = RuntimeSchema.getSchema(BattleExDto.class, strategy);
+    }
+
+    /** 読み込んだレコードを受け取る */
+    interface RecordHandler {
+        /**
+         * @param segment レコードが属するセグメントの位置（旧形式は -1 ）
+         * @param offset レコードの位置
+         * @param battle 戦闘
+         */
+        void handle(long segment, long offset, BattleExDto battle);
+    }
+
+    /** セグメント内の辞書 */
+    private static final class Dictionary {
+        private final List<Object> entries = new ArrayList<Object>();
+        private final Map<ByteBuffer, Integer> ids = new HashMap<ByteBuffer, Integer>();
+        /** まだファイルに書いていないエントリ */
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        private final LinkedBuffer buffer = LinkedBuffer.allocate(4 * 1024);
+
+        Object get(int id) throws IOException {
+            if ((id < 0) || (id >= this.entries.size())) {
+                throw new IOException("出撃ログの辞書にないIDです: " + id);
+            }
+            return this.entries.get(id);
+        }
+
+        void add(Object entry) {
+            this.entries.add(entry);
+        }
+
+        /** 内容が同じエントリは同じIDにする */
+        <T> int idOf(T value, Schema<T> schema, byte type) throws IOException {
+            byte[] bytes;
+            try {
+                bytes = ProtostuffIOUtil.toByteArray(value, schema, this.buffer);
+            } finally {
+                this.buffer.clear();
+            }
+            ByteBuffer key = ByteBuffer.wrap(bytes);
+            Integer id = this.ids.get(key);
+            if (id == null) {
+                id = this.entries.size();
+                this.entries.add(value);
+                this.ids.put(key, id);
+                this.pending.write(type);
+                writeRawVarint32(this.pending, bytes.length);
+                this.pending.write(bytes);
+            }
+            return id;
+        }
+    }
+
+    /** ShipInfoDto や ItemInfoDto を辞書のIDで読み書きする */
+    private static final class DictionaryDelegate<T> implements Delegate<T> {
+        private final Class<T> typeClass;
+
+        DictionaryDelegate(Class<T> typeClass) {
+            this.typeClass = typeClass;
+        }
+
+        @Override
+        public FieldType getFieldType() {
+            return FieldType.UINT32;
+        }
+
+        @Override
+        public T readFrom(Input input) throws IOException {
+            return this.typeClass.cast(current().get(input.readUInt32()));
+        }
+
+        @Override
+        public void writeTo(Output output, int number, T value, boolean repeated) throws IOException {
+            int id;
+            if (value instanceof ShipInfoDto) {
+                id = current().idOf((ShipInfoDto) value, SHIP_SCHEMA, ENTRY_SHIP);
+            }
+            else {
+                id = current().idOf((ItemInfoDto) value, ITEM_SCHEMA, ENTRY_ITEM);
+            }
+            output.writeUInt32(number, id, repeated);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output, int number, boolean repeated)
+                throws IOException {
+            output.writeUInt32(number, input.readUInt32(), repeated);
+        }
+
+        @Override
+        public Class<?> typeClass() {
+            return this.typeClass;
+        }
+
+        private static Dictionary current() throws IOException {
+            Dictionary dict = CURRENT.get();
+            if (dict == null) {
+                throw new IOException("出撃ログの辞書がありません");
+            }
+            return dict;
+        }
+    }
+
+    /**
+     * 新形式で追記する
+     * 最後に書いたファイルの辞書を覚えておき、ファイルが変わっていなければ同じセグメントに追記します
+     */
+    static final class Writer {
+        private File file;
+        private long length;
+        private long segment;
+        private Dictionary dict;
+
+        /**
+         * @param file 出撃ログファイル
+         * @param channel 追記用に開いた file のチャネル
+         * @param battle 戦闘
+         * @param buffer バッファ
+         * @return {セグメントの位置, レコードの位置}
+         * @throws IOException
+         */
+        long[] append(File file, FileChannel channel, BattleExDto battle, LinkedBuffer buffer) throws IOException {
+            long length = channel.size();
+            boolean newSegment = (this.dict == null) || !file.equals(this.file) || (this.length != length);
+            Dictionary dict = newSegment ? new Dictionary() : this.dict;
+            // 次に失敗したらセグメントを作り直す
+            this.dict = null;
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            CURRENT.set(dict);
+            try {
+                ProtostuffIOUtil.writeDelimitedTo(record, battle, SCHEMA, buffer);
+            } finally {
+                CURRENT.remove();
+                buffer.clear();
+            }
+
+            ByteArrayOutputStream frames = new ByteArrayOutputStream();
+            if (newSegment) {
+                frames.write(HEADER);
+            }
+            dict.pending.writeTo(frames);
+            dict.pending.reset();
+            long offset = length + frames.size();
+            frames.write(RECORD);
+            record.writeTo(frames);
+
+            ByteBuffer buf = ByteBuffer.wrap(frames.toByteArray());
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+
+            this.file = file;
+            this.length = length + frames.size();
+            this.segment = newSegment ? length : this.segment;
+            this.dict = dict;
+            return new long[] { this.segment, offset };
+        }
+    }
+
+    /**
+     * ファイルのレコードを全部読み込みます
+     *
+     * @param file 出撃ログファイル
+     * @param buffer バッファ
+     * @param handler レコードを受け取る
+     * @throws IOException
+     */
+    static void readAll(File file, LinkedBuffer buffer, RecordHandler handler) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            read(input, 0, -1, 0, buffer, handler);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * 指定位置のレコードを1つ読み込みます
+     *
+     * @param file 出撃ログファイル
+     * @param segment セグメントの位置（旧形式は -1 ）
+     * @param offset レコードの位置
+     * @param buffer バッファ
+     * @return 戦闘（見つからない場合は null ）
+     * @throws IOException
+     */
+    static BattleExDto readRecord(File file, long segment, long offset, LinkedBuffer buffer) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            if (segment < 0) {
+                input.getChannel().position(offset);
+                BattleExDto battle = LEGACY_SCHEMA.newMessage();
+                ProtostuffIOUtil.mergeDelimitedFrom(input, battle, LEGACY_SCHEMA, buffer);
+                return battle;
+            }
+            // セグメントの辞書を読みながら目的のレコードまで進む
+            final BattleExDto[] result = new BattleExDto[1];
+            read(input, segment, offset, 1, buffer, new RecordHandler() {
+                @Override
+                public void handle(long segment, long offset, BattleExDto battle) {
+                    result[0] = battle;
+                }
+            });
+            return result[0];
+        } finally {
+            buffer.clear();
+            input.close();
+        }
+    }
+
+    /**
+     * 指定位置のレコードとその後ろのレコードを読み込みます（先読み用）
+     *
+     * @param file 出撃ログファイル
+     * @param segment セグメントの位置（旧形式は -1 ）
+     * @param offset 最初のレコードの位置
+     * @param count 読み込む最大のレコード数
+     * @param buffer バッファ
+     * @param handler レコードを受け取る（最初は offset のレコード）
+     * @return 読み込んだレコードのファイル上のバイト数（ handler に渡した順）
+     * @throws IOException
+     */
+    static List<Long> readRecords(File file, long segment, long offset, int count, LinkedBuffer buffer,
+            final RecordHandler handler) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            final FileChannel channel = input.getChannel();
+            final List<Long> sizes = new ArrayList<Long>(count);
+            // 旧形式はセグメントが無いのでレコードから読み始める
+            read(input, (segment < 0) ? offset : segment, offset, count, buffer, new RecordHandler() {
+                @Override
+                public void handle(long segment, long offset, BattleExDto battle) {
+                    try {
+                        // handler はレコードを読み込んだ直後に呼ばれる
+                        sizes.add(channel.position() - offset);
+                    } catch (IOException e) {
+                        sizes.add(0L);
+                    }
+                    handler.handle(segment, offset, battle);
+                }
+            });
+            return sizes;
+        } finally {
+            buffer.clear();
+            input.close();
+        }
+    }
+
+    /**
+     * 旧形式のファイルを新形式に変換します
+     *
+     * @param src 旧形式のファイル
+     * @param dst 書き込み先
+     * @param buffer バッファ
+     * @return 変換したレコード数
+     * @throws IOException
+     */
+    static int convert(File src, final File dst, final LinkedBuffer buffer) throws IOException {
+        final Writer writer = new Writer();
+        final IOException[] error = new IOException[1];
+        final int[] count = new int[1];
+        final FileOutputStream output = new FileOutputStream(dst, true);
+        try {
+            readAll(src, buffer, new RecordHandler() {
+                @Override
+                public void handle(long segment, long offset, BattleExDto battle) {
+                    if (error[0] != null) {
+                        return;
+                    }
+                    try {
+                        writer.append(dst, output.getChannel(), battle, buffer);
+                        ++count[0];
+                    } catch (IOException e) {
+                        error[0] = e;
+                    }
+                }
+            });
+        } finally {
+            output.close();
+        }
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return count[0];
+    }
+
+    /**
+     * @return 新形式のヘッダで始まっているか
+     */
+    static boolean isCurrentFormat(File file) throws IOException {
+        if (file.length() < HEADER.length) {
+            return false;
+        }
+        FileInputStream input = new FileInputStream(file);
+        try {
+            byte[] head = new byte[HEADER.length];
+            readFully(input, head);
+            return Arrays.equals(head, HEADER);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * start から読み込み、target の位置から limit 個のレコードを渡す（ target が -1 なら全部渡す）
+     */
+    private static void read(FileInputStream input, long start, long target, int limit, LinkedBuffer buffer,
+            RecordHandler handler) throws IOException {
+        FileChannel channel = input.getChannel();
+        channel.position(start);
+        long segment = -1;
+        Dictionary dict = null;
+        int delivered = 0;
+        while (input.available() > 0) {
+            long pos = channel.position();
+            int first = input.read();
+            if (first == 0) {
+                // セグメントの始まり
+                byte[] header = new byte[HEADER.length];
+                header[0] = 0;
+                readFully(input, header, 1, header.length - 1);
+                if (!Arrays.equals(header, HEADER)) {
+                    throw new IOException("出撃ログのヘッダが不正です: " + pos);
+                }
+                segment = pos;
+                dict = new Dictionary();
+                continue;
+            }
+            if (dict == null) {
+                // 旧形式のレコード
+                channel.position(pos);
+                BattleExDto battle = LEGACY_SCHEMA.newMessage();
+                ProtostuffIOUtil.mergeDelimitedFrom(input, battle, LEGACY_SCHEMA, buffer);
+                buffer.clear();
+                if ((target == -1) || (target == pos) || (delivered > 0)) {
+                    handler.handle(-1, pos, battle);
+                    if ((target != -1) && (++delivered >= limit)) {
+                        return;
+                    }
+                }
+                continue;
+            }
+            switch (first) {
+            case ENTRY_SHIP: {
+                ShipInfoDto entry = SHIP_SCHEMA.newMessage();
+                ProtostuffIOUtil.mergeDelimitedFrom(input, entry, SHIP_SCHEMA, buffer);
+                buffer.clear();
+                dict.add(entry);
+                break;
+            }
+            case ENTRY_ITEM: {
+                ItemInfoDto entry = ITEM_SCHEMA.newMessage();
+                ProtostuffIOUtil.mergeDelimitedFrom(input, entry, ITEM_SCHEMA, buffer);
+                buffer.clear();
+                dict.add(entry);
+                break;
+            }
+            case RECORD:
+                if ((target == -1) || (target == pos) || (delivered > 0)) {
+                    BattleExDto battle = SCHEMA.newMessage();
+                    CURRENT.set(dict);
+                    try {
+                        ProtostuffIOUtil.mergeDelimitedFrom(input, battle, SCHEMA, buffer);
+                    } finally {
+                        CURRENT.remove();
+                        buffer.clear();
+                    }
+                    handler.handle(segment, pos, battle);
+                    if ((target != -1) && (++delivered >= limit)) {
+                        return;
+                    }
+                }
+                else {
+                    // 読み飛ばす
+                    int size = readRawVarint32(input);
+                    channel.position(channel.position() + size);
+                }
+                break;
+            default:
+                throw new IOException("出撃ログの形式が不正です: " + pos);
+            }
+        }
+    }
+
+    private static void readFully(InputStream input, byte[] bytes) throws IOException {
+        readFully(input, bytes, 0, bytes.length);
+    }
+
+    private static void readFully(InputStream input, byte[] bytes, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = input.read(bytes, off, len);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            off += n;
+            len -= n;
+        }
+    }
+
+    private static int readRawVarint32(InputStream input) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = input.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("出撃ログの長さが不正です");
+    }
+
+    private static void writeRawVarint32(OutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+}
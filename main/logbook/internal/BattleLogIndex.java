@@ -0,0 +1,308 @@
+/**
+ *
+ */
+package logbook.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import logbook.dto.BattleExDto;
+import logbook.dto.BattleResultDto;
+import logbook.dto.MapCellDto;
+import logbook.dto.ResultRank;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.dyuproject.protostuff.LinkedBuffer;
+
+/**
+ * 出撃ログファイル(.dat)のインデックス
+ *
+ * .dat ファイルと同じ場所に .idx ファイルを作成し、戦闘の概要とファイル上の位置を保存します。
+ * 起動時はインデックスだけをメモリマップで読み込み、戦闘の詳細は必要になった時に位置を指定して読み込みます
+ * （ファイルの形式は {@link BattleLogFormat} ）。
+ * .dat ファイルのサイズか更新日時が変わっている場合はインデックスを作り直します。
+ */
+final class BattleLogIndex {
+    /** ロガー */
+    private static final Logger LOG = LogManager.getLogger(BattleLogIndex.class);
+
+    /** インデックスファイルの拡張子 */
+    private static final String EXTENSION = "idx";
+
+    private static final int MAGIC = 0x4C424958; // "LBIX"
+
+    /** フォーマットを変えたら上げること */
+    private static final int VERSION = 2;
+
+    /** magic, version, size, mtime, レコード数, 行数, checksum */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 8;
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /** インデックスの1行（完全な戦闘結果1つ） */
+    static final class Row {
+        /** ファイル内のレコード番号 */
+        final int index;
+        /** レコードが属するセグメントの位置（旧形式は -1 ） */
+        final long segment;
+        /** ファイル内の位置 */
+        final long offset;
+        /** 概要 */
+        final BattleResultDto summary;
+
+        Row(int index, long segment, long offset, BattleResultDto summary) {
+            this.index = index;
+            this.segment = segment;
+            this.offset = offset;
+            this.summary = summary;
+        }
+    }
+
+    /** ファイル内の全レコード数（不完全な戦闘結果を含む） */
+    private final int numRecords;
+
+    private final List<Row> rows;
+
+    private BattleLogIndex(int numRecords, List<Row> rows) {
+        this.numRecords = numRecords;
+        this.rows = rows;
+    }
+
+    /**
+     * @return ファイル内の全レコード数
+     */
+    int getNumRecords() {
+        return this.numRecords;
+    }
+
+    /**
+     * @return 完全な戦闘結果の行
+     */
+    List<Row> getRows() {
+        return Collections.unmodifiableList(this.rows);
+    }
+
+    /**
+     * 出撃ログファイルのインデックスを取得します
+     * インデックスが無いか古い場合は出撃ログファイルを読み込んで作り直します
+     *
+     * @param file 出撃ログファイル
+     * @param buffer 読み込みに使うバッファ
+     * @return インデックス
+     * @throws IOException 出撃ログファイルの読み込みに失敗した場合
+     */
+    static BattleLogIndex load(File file, LinkedBuffer buffer) throws IOException {
+        File indexFile = getIndexFile(file);
+        long length = file.length();
+        long lastModified = file.lastModified();
+        if (indexFile.exists()) {
+            try {
+                BattleLogIndex index = read(indexFile, length, lastModified);
+                if (index != null) {
+                    return index;
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("出撃ログのインデックスが壊れています (" + indexFile.getPath() + ")", e);
+            }
+        }
+        BattleLogIndex index = build(file, buffer);
+        try {
+            write(indexFile, index, length, lastModified);
+        } catch (IOException e) {
+            LOG.warn("出撃ログのインデックスの書き込みに失敗しました (" + indexFile.getPath() + ")", e);
+        }
+        return index;
+    }
+
+    private static File getIndexFile(File file) {
+        return new File(FilenameUtils.removeExtension(file.getPath()) + "." + EXTENSION);
+    }
+
+    /** 出撃ログファイルを全部読み込んでインデックスを作成 */
+    private static BattleLogIndex build(File file, LinkedBuffer buffer) throws IOException {
+        final List<Row> rows = new ArrayList<Row>();
+        final int[] numRecords = new int[1];
+        BattleLogFormat.readAll(file, buffer, new BattleLogFormat.RecordHandler() {
+            @Override
+            public void handle(long segment, long offset, BattleExDto battle) {
+                if (battle.isCompleteResult()) {
+                    rows.add(new Row(numRecords[0], segment, offset, new BattleResultDto(battle)));
+                }
+                ++numRecords[0];
+            }
+        });
+        return new BattleLogIndex(numRecords[0], rows);
+    }
+
+    /** インデックスファイルを読み込む（古い場合は null ） */
+    private static BattleLogIndex read(File indexFile, long length, long lastModified) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            // 古いインデックスはマップせずに捨てる（マップしたままだと上書きできない環境があるため）
+            if ((raf.readInt() != MAGIC) || (raf.readInt() != VERSION)) {
+                return null;
+            }
+            if ((raf.readLong() != length) || (raf.readLong() != lastModified)) {
+                return null;
+            }
+            int numRecords = raf.readInt();
+            int numRows = raf.readInt();
+            long checksum = raf.readLong();
+
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE, channel.size() - HEADER_SIZE);
+
+            // 本体のチェックサムを確認
+            CRC32 crc = new CRC32();
+            byte[] chunk = new byte[8192];
+            ByteBuffer body = map.duplicate();
+            while (body.hasRemaining()) {
+                int len = Math.min(chunk.length, body.remaining());
+                body.get(chunk, 0, len);
+                crc.update(chunk, 0, len);
+            }
+            if (crc.getValue() != checksum) {
+                LOG.warn("出撃ログのインデックスのチェックサムが一致しません (" + indexFile.getPath() + ")");
+                return null;
+            }
+
+            List<Row> rows = new ArrayList<Row>(numRows);
+            for (int i = 0; i < numRows; ++i) {
+                int index = map.getInt();
+                long segment = map.getLong();
+                long offset = map.getLong();
+                rows.add(new Row(index, segment, offset, readSummary(map)));
+            }
+            return new BattleLogIndex(numRecords, rows);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /** インデックスファイルを書き込む */
+    private static void write(File indexFile, BattleLogIndex index, long length, long lastModified)
+            throws IOException {
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+        for (Row row : index.rows) {
+            body.writeInt(row.index);
+            body.writeLong(row.segment);
+            body.writeLong(row.offset);
+            writeSummary(body, row.summary);
+        }
+        body.flush();
+        byte[] bytes = bodyBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        DataOutputStream output = new DataOutputStream(new FileOutputStream(indexFile));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(length);
+            output.writeLong(lastModified);
+            output.writeInt(index.numRecords);
+            output.writeInt(index.rows.size());
+            output.writeLong(crc.getValue());
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static void writeSummary(DataOutputStream out, BattleResultDto dto) throws IOException {
+        out.writeLong(dto.getBattleDate().getTime());
+        writeString(out, dto.getQuestName());
+        out.writeByte(dto.getRank().ordinal());
+        MapCellDto mapCell = dto.getMapCell();
+        out.writeBoolean(mapCell != null);
+        if (mapCell != null) {
+            int[] map = mapCell.getMap();
+            out.writeInt(map[0]);
+            out.writeInt(map[1]);
+            out.writeInt(map[2]);
+            out.writeInt(mapCell.getEnemyId());
+            out.writeInt(mapCell.getColorNo());
+            out.writeInt(mapCell.getBosscellNo());
+            out.writeBoolean(mapCell.isStart());
+        }
+        writeString(out, dto.getEnemyName());
+        writeString(out, dto.getDropType());
+        writeString(out, dto.getDropName());
+        out.writeBoolean(dto.isHasTaiha());
+        out.writeBoolean(dto.isCombined());
+        writeString(out, dto.getMvp());
+        writeString(out, dto.getMvpCombined());
+        writeString(out, dto.getFlagShip());
+        writeString(out, dto.getFlagShipCombined());
+        out.writeBoolean(dto.isNoSpaceForShip());
+    }
+
+    private static BattleResultDto readSummary(ByteBuffer in) {
+        Date battleDate = new Date(in.getLong());
+        String questName = readString(in);
+        ResultRank rank = ResultRank.values()[in.get()];
+        MapCellDto mapCell = null;
+        if (in.get() != 0) {
+            int[] map = new int[] { in.getInt(), in.getInt(), in.getInt() };
+            int enemyId = in.getInt();
+            int colorNo = in.getInt();
+            int bosscellNo = in.getInt();
+            boolean start = in.get() != 0;
+            mapCell = new MapCellDto(map, enemyId, colorNo, bosscellNo, start);
+        }
+        String enemyName = readString(in);
+        String dropType = readString(in);
+        String dropName = readString(in);
+        boolean hasTaiha = in.get() != 0;
+        boolean isCombined = in.get() != 0;
+        String mvp = readString(in);
+        String mvpCombined = readString(in);
+        String flagShip = readString(in);
+        String flagShipCombined = readString(in);
+        boolean noSpaceForShip = in.get() != 0;
+        return new BattleResultDto(battleDate, questName, rank, mapCell, enemyName, dropType, dropName,
+                hasTaiha, isCombined, mvp, mvpCombined, flagShip, flagShipCombined, noSpaceForShip);
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+        }
+        else {
+            byte[] bytes = str.getBytes(CHARSET);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int len = in.getInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        in.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+}
@@ -0,0 +1,192 @@
+package logbook.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.dyuproject.protostuff.LinkedBuffer;
+
+/**
+ * 出撃ログファイルを並列に読み込みます
+ *
+ * ファイルごとのインデックスを fork-join プールで読み込み（バッファはワーカーごとに1つ）、
+ * ファイルごとに時刻でソートした行を k-way マージしながら {@link BattleResultStore} に追加します。
+ * 同じ時刻の行はファイルのパス順で最初のものだけを残すので、読み込みの順番によらず結果は同じになります。
+ *
+ * @author Nekopanda
+ */
+final class BattleLogLoader {
+
+    private static final Logger LOG = LogManager.getLogger(BattleLogLoader.class);
+
+    /** ファイル1つ分の読み込み結果 */
+    private static final class Run {
+        final File file;
+        /** パス順の番号（同じ時刻の行の優先順位） */
+        final int order;
+        final int numRecords;
+        /** 時刻で安定ソートした行 */
+        final List<BattleLogIndex.Row> rows;
+        int pos;
+
+        Run(File file, int order, BattleLogIndex index) {
+            this.file = file;
+            this.order = order;
+            this.numRecords = index.getNumRecords();
+            List<BattleLogIndex.Row> rows = new ArrayList<BattleLogIndex.Row>(index.getRows());
+            // 追記順なのでほとんどソート済み
+            Collections.sort(rows, new Comparator<BattleLogIndex.Row>() {
+                @Override
+                public int compare(BattleLogIndex.Row o1, BattleLogIndex.Row o2) {
+                    return Long.compare(o1.summary.getBattleDate().getTime(), o2.summary.getBattleDate().getTime());
+                }
+            });
+            this.rows = rows;
+        }
+
+        long time() {
+            return this.rows.get(this.pos).summary.getBattleDate().getTime();
+        }
+    }
+
+    private final BattleResultServer.LoadListener listener;
+
+    private final AtomicInteger loadedFiles = new AtomicInteger();
+
+    private final AtomicInteger loadedRows = new AtomicInteger();
+
+    private int totalFiles;
+
+    /**
+     * @param listener 進捗を受け取る（null 可）
+     */
+    BattleLogLoader(BattleResultServer.LoadListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * フォルダ以下の出撃ログファイルを全部読み込んで store に追加します
+     *
+     * @param dir 出撃ログのフォルダ
+     * @param store 追加先
+     * @param numRecordsMap ファイルごとの全レコード数を入れる
+     */
+    void load(File dir, BattleResultStore store, Map<String, Integer> numRecordsMap) {
+        if (!dir.exists()) {
+            return;
+        }
+        Collection<File> found = FileUtils.listFiles(dir, new String[] { "dat" }, true);
+        File[] files = found.toArray(new File[found.size()]);
+        // 重複の判定がファイルの列挙順に依存しないように
+        Arrays.sort(files);
+        this.totalFiles = files.length;
+        if (files.length == 0) {
+            return;
+        }
+
+        List<Run> runs = this.decode(files);
+
+        // ファイルごとのソート済みの行をマージする（同じ時刻はパス順で先のファイルが先）
+        PriorityQueue<Run> queue = new PriorityQueue<Run>(Math.max(1, runs.size()), new Comparator<Run>() {
+            @Override
+            public int compare(Run o1, Run o2) {
+                int c = Long.compare(o1.time(), o2.time());
+                return (c != 0) ? c : Integer.compare(o1.order, o2.order);
+            }
+        });
+        for (Run run : runs) {
+            numRecordsMap.put(run.file.getPath(), run.numRecords);
+            if (!run.rows.isEmpty()) {
+                queue.add(run);
+            }
+        }
+        long lastTime = Long.MIN_VALUE;
+        boolean first = true;
+        while (!queue.isEmpty()) {
+            Run run = queue.poll();
+            BattleLogIndex.Row row = run.rows.get(run.pos++);
+            long time = row.summary.getBattleDate().getTime();
+            if (first || (time != lastTime)) {
+                store.add(row.summary, run.file, row.index, row.segment, row.offset);
+                lastTime = time;
+                first = false;
+            }
+            if (run.pos < run.rows.size()) {
+                queue.add(run);
+            }
+        }
+    }
+
+    /** ファイルを並列に読み込む */
+    private List<Run> decode(File[] files) {
+        int parallelism = Math.max(1, Math.min(files.length, Runtime.getRuntime().availableProcessors()));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        // ワーカーごとのバッファ（プールと一緒に捨てる）
+        final ThreadLocal<LinkedBuffer> buffers = new ThreadLocal<LinkedBuffer>() {
+            @Override
+            protected LinkedBuffer initialValue() {
+                return LinkedBuffer.allocate(128 * 1024);
+            }
+        };
+        try {
+            List<Callable<Run>> tasks = new ArrayList<Callable<Run>>(files.length);
+            for (int i = 0; i < files.length; i++) {
+                final File file = files[i];
+                final int order = i;
+                tasks.add(new Callable<Run>() {
+                    @Override
+                    public Run call() throws IOException {
+                        LinkedBuffer buffer = buffers.get();
+                        try {
+                            return BattleLogLoader.this.loaded(new Run(file, order, BattleLogIndex.load(file, buffer)));
+                        } finally {
+                            buffer.clear();
+                        }
+                    }
+                });
+            }
+            List<Run> runs = new ArrayList<Run>(files.length);
+            List<Future<Run>> futures = pool.invokeAll(tasks);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    runs.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    LOG.warn("出撃ログの読み込みに失敗しました (" + files[i].getPath() + ")", e.getCause());
+                    this.loaded(null);
+                }
+            }
+            return runs;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** 1ファイル読み終わった */
+    private Run loaded(Run run) {
+        int files = this.loadedFiles.incrementAndGet();
+        int rows = (run != null) ? this.loadedRows.addAndGet(run.rows.size()) : this.loadedRows.get();
+        if (this.listener != null) {
+            this.listener.progress(files, this.totalFiles, rows);
+        }
+        return run;
+    }
+}
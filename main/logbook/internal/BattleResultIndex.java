@@ -0,0 +1,186 @@
+/**
+ *
+ */
+package logbook.internal;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link BattleResultFilter} で検索するための {@link BattleResultStore} の索引
+ *
+ * 時刻は行の並び（時刻順）を二分探索し、マップ・マス・ドロップ艦・ランク・演習は行番号のビットマップで持ちます。
+ * フィルタはビットマップの積と時刻の範囲で求めます。
+ */
+final class BattleResultIndex {
+
+    private final BattleResultStore store;
+
+    /** (海域 << 8) | マップ -> 行 */
+    private final Map<Integer, BitSet> mapIndex = new HashMap<Integer, BitSet>();
+    /** マス -> 行 */
+    private final Map<Integer, BitSet> cellIndex = new HashMap<Integer, BitSet>();
+    /** ドロップ艦名のID -> 行 */
+    private final Map<Integer, BitSet> dropIndex = new HashMap<Integer, BitSet>();
+    /** ランク -> 行 */
+    private final BitSet[] rankIndex;
+    /** 演習の行 */
+    private final BitSet practiceIndex = new BitSet();
+
+    /** 行が時刻順に並んでいるか */
+    private boolean sorted = true;
+
+    BattleResultIndex(BattleResultStore store, int numRanks) {
+        this.store = store;
+        this.rankIndex = new BitSet[numRanks];
+        for (int i = 0; i < numRanks; ++i) {
+            this.rankIndex[i] = new BitSet();
+        }
+        for (int i = 0; i < store.size(); ++i) {
+            this.add(i);
+        }
+    }
+
+    /**
+     * 行を索引に追加します
+     *
+     * @param row {@link BattleResultStore} に追加された行番号
+     */
+    void add(int row) {
+        if ((row > 0) && (this.store.getTime(row - 1) > this.store.getTime(row))) {
+            // 時計が戻った場合など。以降は時刻の範囲を全行から探す
+            this.sorted = false;
+        }
+        if (this.store.isPractice(row)) {
+            this.practiceIndex.set(row);
+        }
+        else {
+            int map = this.store.getMap(row);
+            get(this.mapIndex, map >>> 8).set(row);
+            get(this.cellIndex, BattleResultStore.getCell(map)).set(row);
+        }
+        get(this.dropIndex, this.store.getDropName(row)).set(row);
+        this.rankIndex[this.store.getRank(row)].set(row);
+    }
+
+    /**
+     * フィルタにマッチした行を返します
+     *
+     * @param filter フィルタ
+     * @return 行番号のビットマップ
+     */
+    BitSet find(BattleResultFilter filter) {
+        long fromTime = Long.MIN_VALUE;
+        long toTime = Long.MAX_VALUE;
+        if (filter.fromTime != null) {
+            fromTime = Math.max(fromTime, filter.fromTime.getTime());
+        }
+        if (filter.toTime != null) {
+            toTime = Math.min(toTime, filter.toTime.getTime());
+        }
+        if (filter.timeSpan != null) {
+            fromTime = Math.max(fromTime, filter.timeSpan.getFrom().getTime());
+            toTime = Math.min(toTime, filter.timeSpan.getTo().getTime());
+        }
+
+        BitSet result = this.findTimeRange(fromTime, toTime);
+        if (filter.dropShip != null) {
+            int dropShip = this.store.getStrings().find(filter.dropShip);
+            and(result, (dropShip != -1) ? this.dropIndex.get(dropShip) : null);
+        }
+        if (filter.map != null) {
+            and(result, this.mapIndex.get((filter.map.getNow() << 8) | filter.map.getMax()));
+        }
+        if (filter.cell != null) {
+            and(result, this.cellIndex.get(filter.cell));
+        }
+        if (filter.rank != null) {
+            result.and(this.rankIndex[filter.rank.ordinal()]);
+        }
+        if (filter.printPractice != null) {
+            if (filter.printPractice) {
+                result.and(this.practiceIndex);
+            }
+            else {
+                result.andNot(this.practiceIndex);
+            }
+        }
+        return result;
+    }
+
+    /** 時刻が [fromTime, toTime] の行 */
+    private BitSet findTimeRange(long fromTime, long toTime) {
+        BitSet result = new BitSet();
+        int size = this.store.size();
+        if (fromTime > toTime) {
+            return result;
+        }
+        if (this.sorted) {
+            int from = this.lowerBound(fromTime);
+            int to = this.upperBound(toTime);
+            if (from < to) {
+                result.set(from, to);
+            }
+        }
+        else {
+            for (int i = 0; i < size; ++i) {
+                long time = this.store.getTime(i);
+                if ((time >= fromTime) && (time <= toTime)) {
+                    result.set(i);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** time 以上の最初の行 */
+    private int lowerBound(long time) {
+        int lo = 0;
+        int hi = this.store.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.store.getTime(mid) < time) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** time より後の最初の行 */
+    private int upperBound(long time) {
+        int lo = 0;
+        int hi = this.store.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.store.getTime(mid) <= time) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static BitSet get(Map<Integer, BitSet> index, int key) {
+        BitSet bits = index.get(key);
+        if (bits == null) {
+            bits = new BitSet();
+            index.put(key, bits);
+        }
+        return bits;
+    }
+
+    private static void and(BitSet result, BitSet bits) {
+        if (bits == null) {
+            result.clear();
+        }
+        else {
+            result.and(bits);
+        }
+    }
+}
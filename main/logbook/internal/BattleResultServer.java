@@ -9,24 +9,27 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import logbook.constants.AppConstants;
+import logbook.dto.BattleAggUnitDto;
 import logbook.dto.BattleExDto;
 import logbook.dto.BattleResultDto;
+import logbook.dto.ResultRank;
 import logbook.gui.logic.IntegerPair;
-import logbook.util.ReportUtils;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -35,9 +38,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.dyuproject.protostuff.LinkedBuffer;
-import com.dyuproject.protostuff.ProtostuffIOUtil;
-import com.dyuproject.protostuff.Schema;
-import com.dyuproject.protostuff.runtime.RuntimeSchema;
 
 /**
  * @author Nekopanda
@@ -49,18 +49,11 @@ public class BattleResultServer {
 
     private static DateFormat format = new SimpleDateFormat(AppConstants.BATTLE_LOGFILE_DATE_FORMAT);
 
-    private static Schema<BattleExDto> schema = RuntimeSchema.getSchema(BattleExDto.class);
+    /** 詳細のキャッシュの上限(推定バイト数) */
+    private static final long DETAIL_CACHE_SIZE = 32 * 1024 * 1024;
 
-    private static class BattleResult extends BattleResultDto {
-        public File file;
-        public int index;
-
-        BattleResult(BattleExDto dto, File file, int index) {
-            super(dto);
-            this.file = file;
-            this.index = index;
-        }
-    }
+    /** 詳細を読み込む時に先読みするレコード数（目的のレコードを含む） */
+    private static final int DETAIL_READ_AHEAD = 8;
 
     private static String logPath = null;
     private static volatile BattleResultServer instance = null;
@@ -73,11 +66,35 @@ public class BattleResultServer {
         instance = null;
     }
 
+    /**
+     * 出撃ログの読み込みの進捗を受け取る
+     */
+    public static interface LoadListener {
+        /**
+         * ファイルを1つ読み込むたびに読み込みスレッドから呼ばれます
+         *
+         * @param files 読み込んだファイル数
+         * @param totalFiles 全ファイル数
+         * @param records 読み込んだ戦闘結果の数（重複を含む）
+         */
+        void progress(int files, int totalFiles, int records);
+    }
+
     public static BattleResultServer get() {
+        return load(null);
+    }
+
+    /**
+     * まだ読み込んでいない場合は出撃ログを読み込みます
+     *
+     * @param listener 進捗を受け取る（null 可、既に読み込み済みの場合は呼ばれない）
+     * @return 出撃ログ
+     */
+    public static BattleResultServer load(LoadListener listener) {
         if (instance == null) {
             synchronized (BattleResultServer.class) {
                 if (instance == null) {
-                    instance = new BattleResultServer(logPath);
+                    instance = new BattleResultServer(logPath, listener);
                 }
             }
         }
@@ -87,6 +104,11 @@ public class BattleResultServer {
     // member
     private final String path;
     private final LinkedBuffer buffer = LinkedBuffer.allocate(128 * 1024);
+    // 読み込んだ詳細（読み込みは buffer で同期する）
+    private final BattleDetailCache detailCache = new BattleDetailCache(DETAIL_CACHE_SIZE);
+    // 書き込みは LogWriter のスレッドで行う
+    private final LinkedBuffer writeBuffer = LinkedBuffer.allocate(128 * 1024);
+    private final BattleLogFormat.Writer writer = new BattleLogFormat.Writer();
 
     // フィルタ用
     private Date firstBattleTime;
@@ -95,252 +117,376 @@ public class BattleResultServer {
     private final Set<IntegerPair> mapList = new TreeSet<IntegerPair>();
     private final Set<Integer> cellList = new TreeSet<Integer>();
 
-    private final List<BattleResult> resultList = new ArrayList<BattleResult>();
+    private final BattleResultStore store = new BattleResultStore();
+    private final BattleResultIndex index;
     private final Map<String, Integer> numRecordsMap = new HashMap<String, Integer>();
+    /** まだファイルに書き込まれていない行 -> 戦闘（ store と一緒に store でロックする） */
+    private final Map<Integer, BattleExDto> pending = new HashMap<Integer, BattleExDto>();
 
-    // 重複検出用
-    private final Set<Date> resultDateSet = new HashSet<Date>();
-
-    // キャッシュ
-    private File cachedFile;
-    private List<BattleExDto> cachedResult;
+    // 出撃統計（最初に必要になった時に作る）
+    private BattleAggregator aggregator;
 
-    private BattleResultServer(String path) {
+    private BattleResultServer(String path, LoadListener listener) {
         this.path = path;
-        // ファイルを読み込んで resultList を作成
-        File dir = new File(path);
-        if (dir.exists()) {
-            for (File file : FileUtils.listFiles(dir, new String[] { "dat" }, true)) {
-                try {
-                    List<BattleExDto> result = this.readResultFile(file);
-                    for (int i = 0; i < result.size(); ++i) {
-                        BattleExDto dto = result.get(i);
-                        if (dto.isCompleteResult() && !this.resultDateSet.contains(dto.getBattleDate())) {
-                            this.resultDateSet.add(dto.getBattleDate());
-                            this.resultList.add(new BattleResult(dto, file, i));
-                        }
-                    }
-                    this.numRecordsMap.put(file.getPath(), result.size());
-                } catch (IOException e) {
-                    LOG.warn("出撃ログの読み込みに失敗しました (" + file.getPath() + ")", e);
-                }
-            }
-        }
+        // インデックスを並列に読み込み、時刻順にマージして store を作成（重複はパス順で先のファイルを残す）
+        new BattleLogLoader(listener).load(new File(path), this.store, this.numRecordsMap);
+        this.index = new BattleResultIndex(this.store, ResultRank.values().length);
 
         // フィルタ用パラメータを計算
         this.firstBattleTime = new Date();
         this.lastBattleTime = new Date(0);
-        for (BattleResult battle : this.resultList) {
-            this.update(battle);
+        for (int i = 0; i < this.store.size(); ++i) {
+            this.update(i);
         }
-
-        // 時刻でソート
-        Collections.sort(this.resultList, new Comparator<BattleResult>() {
-            @Override
-            public int compare(BattleResult arg0, BattleResult arg1) {
-                return Long.compare(
-                        arg0.getBattleDate().getTime(), arg1.getBattleDate().getTime());
-            }
-        });
     }
 
-    private void update(BattleResultDto battle) {
-        Date battleDate = battle.getBattleDate();
-        if (battleDate.before(this.firstBattleTime)) {
-            this.firstBattleTime = battleDate;
+    private void update(int row) {
+        long battleTime = this.store.getTime(row);
+        if (battleTime < this.firstBattleTime.getTime()) {
+            this.firstBattleTime = new Date(battleTime);
         }
-        if (battleDate.after(this.lastBattleTime)) {
-            this.lastBattleTime = battleDate;
+        if (battleTime > this.lastBattleTime.getTime()) {
+            this.lastBattleTime = new Date(battleTime);
         }
-        if (battle.isPractice() == false) {
-            String dropName = battle.getDropName();
-            int[] map = battle.getMapCell().getMap();
+        if (this.store.isPractice(row) == false) {
+            String dropName = this.store.getStrings().get(this.store.getDropName(row));
+            int map = this.store.getMap(row);
 
-            if (battle.isDropFlag()) {
+            if ((dropName != null) && (dropName.length() > 0)) {
                 this.dropShipList.add(dropName);
             }
-            this.mapList.add(new IntegerPair(map[0], map[1], "-"));
-            this.cellList.add(map[2]);
-        }
-    }
-
-    private List<BattleExDto> readResultFile(File file) throws IOException {
-        List<BattleExDto> result = new ArrayList<BattleExDto>();
-        FileInputStream input = new FileInputStream(file);
-        while (input.available() > 0) {
-            BattleExDto battle = schema.newMessage();
-            ProtostuffIOUtil.mergeDelimitedFrom(input, battle, schema, this.buffer);
-            result.add(battle);
+            this.mapList.add(new IntegerPair(BattleResultStore.getArea(map), BattleResultStore.getMapNo(map), "-"));
+            this.cellList.add(BattleResultStore.getCell(map));
         }
-        input.close();
-        return result;
     }
 
-    public void addNewResult(BattleExDto dto) {
+    public synchronized void addNewResult(BattleExDto dto) {
         File file = new File(FilenameUtils.concat(this.path, format.format(dto.getBattleDate()) + ".dat"));
-        try {
-            FileOutputStream output = null;
-            try {
-                // ファイルとリストに追加
-                output = new FileOutputStream(getStoreFile(file), true);
-                ProtostuffIOUtil.writeDelimitedTo(output, dto, schema, this.buffer);
-                this.buffer.clear();
-            } catch (IOException e) {
-                LOG.warn("出撃ログの書き込みに失敗しました", e);
-            } finally {
-                if (output != null) {
-                    output.close();
-                }
-            }
-        } catch (IOException e) {
-            LOG.warn("出撃ログファイルの後処理に失敗しました", e);
-        }
-        // ファイルとリストに追加
+        int row = -1;
+        // リストに追加
         if (dto.isCompleteResult()) {
             Integer index = this.numRecordsMap.get(file.getPath());
             if (index == null) {
                 index = new Integer(0);
             }
-            BattleResult resultEntry = new BattleResult(dto, file, index);
-            this.update(resultEntry);
-            this.resultList.add(resultEntry);
-            this.numRecordsMap.put(file.getPath(), index + 1);
-            // キャッシュされているときはキャッシュにも追加
-            if ((this.cachedFile != null) && file.equals(this.cachedFile)) {
-                this.cachedResult.add(dto);
+            BattleResultDto summary = new BattleResultDto(dto);
+            synchronized (this.store) {
+                // ファイル上の位置は書き込んだ時に決まる
+                row = this.store.add(summary, file, index, -1, -1);
+                this.pending.put(row, dto);
+            }
+            this.index.add(row);
+            this.update(row);
+            if (this.aggregator != null) {
+                this.aggregator.add(summary.getBattleDate().getTime(), summary.getMapCell(), summary.getRank());
             }
+            this.numRecordsMap.put(file.getPath(), index + 1);
         }
+        // ファイルへの追記は LogWriter のスレッドで行う
+        LogWriter.write(new BattleRecord(file, dto, row));
     }
 
-    public int size() {
-        return this.resultList.size();
+    /**
+     * 出撃ログファイルに追記するレコード
+     */
+    private final class BattleRecord extends LogWriter.Record {
+        private final BattleExDto battle;
+        private final int row;
+
+        BattleRecord(File file, BattleExDto battle, int row) {
+            super(file, getAltFile(file).getName());
+            this.battle = battle;
+            this.row = row;
+        }
+
+        @Override
+        protected void write(File file, File storeFile, FileChannel channel) throws IOException {
+            BattleResultServer server = BattleResultServer.this;
+            // 代替ファイルは後で本体の末尾にマージされるので、本体からの位置で覚えておく
+            long base = storeFile.equals(file) ? 0 : file.length();
+            long[] pos = server.writer.append(storeFile, channel, this.battle, server.writeBuffer);
+            if (this.row != -1) {
+                synchronized (server.store) {
+                    server.store.setPosition(this.row, base + pos[0], base + pos[1]);
+                    server.pending.remove(this.row);
+                }
+            }
+        }
+
+        @Override
+        protected void merge(File file, File altFile) throws IOException {
+            mergeAltFile(file, altFile);
+        }
+
+        @Override
+        protected void failed(Exception e) {
+            LOG.warn("出撃ログの書き込みに失敗しました", e);
+            if (this.row != -1) {
+                BattleResultServer server = BattleResultServer.this;
+                synchronized (server.store) {
+                    server.pending.remove(this.row);
+                }
+            }
+        }
     }
 
-    public BattleResultDto[] getList() {
-        return this.resultList.toArray(new BattleResultDto[this.resultList.size()]);
+    public synchronized int size() {
+        return this.store.size();
     }
 
-    public List<BattleResultDto> getFilteredList(BattleResultFilter filter) {
-        List<BattleResultDto> list = new ArrayList<BattleResultDto>();
-        for (BattleResult result : this.resultList) {
-            BattleResultDto dto = result;
-            if (this.matchFilter(filter, dto)) {
-                list.add(dto);
-            }
+    public synchronized BattleResultDto[] getList() {
+        BattleResultDto[] list = new BattleResultDto[this.store.size()];
+        for (int i = 0; i < list.length; ++i) {
+            list[i] = this.store.get(i);
         }
         return list;
     }
 
-    /** 出撃ログがフィルタにマッチしているかどうか
-     * @param filter
-     * @param dto
-     * @return
+    /**
+     * フィルタにマッチした出撃ログを返します
+     * 返されるリストは要素にアクセスした時に概要を作ります
      */
-    private boolean matchFilter(BattleResultFilter filter, BattleResultDto dto) {
-        if ((filter.fromTime != null) && filter.fromTime.after(dto.getBattleDate())) {
-            return false;
-        }
-        if ((filter.toTime != null) && filter.toTime.before(dto.getBattleDate())) {
-            return false;
-        }
-        if ((filter.dropShip != null) && (filter.dropShip.equals(dto.getDropName()) == false)) {
-            return false;
-        }
-        if (filter.timeSpan != null) {
-            Date from = filter.timeSpan.getFrom();
-            Date to = filter.timeSpan.getTo();
-            if (from.after(dto.getBattleDate())) {
-                return false;
+    public synchronized List<BattleResultDto> getFilteredList(BattleResultFilter filter) {
+        final int[] rows = this.findRows(filter);
+        final BattleResultStore store = this.store;
+        return new AbstractList<BattleResultDto>() {
+            @Override
+            public BattleResultDto get(int index) {
+                synchronized (BattleResultServer.this) {
+                    return store.get(rows[index]);
+                }
             }
-            if (to.before(dto.getBattleDate())) {
-                return false;
+
+            @Override
+            public int size() {
+                return rows.length;
             }
+        };
+    }
+
+    /** フィルタにマッチした行番号 */
+    private int[] findRows(BattleResultFilter filter) {
+        BitSet bits = this.index.find(filter);
+        int[] rows = new int[bits.cardinality()];
+        int n = 0;
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            rows[n++] = i;
         }
-        if ((filter.map != null)) {
-            if (dto.isPractice()) {
-                return false;
-            }
-            int[] battleMap = dto.getMapCell().getMap();
-            if (filter.map.compareTo(new IntegerPair(battleMap[0], battleMap[1], "-")) != 0) {
-                return false;
+        return rows;
+    }
+
+    /**
+     * 出撃統計を返します
+     * 初回は先月以降の出撃ログから日ごとの集計を作り、以降は {@link #addNewResult(BattleExDto)} で更新します
+     */
+    public synchronized Map<BattleAggUnit, BattleAggUnitDto> getAggregate() {
+        if (this.aggregator == null) {
+            BattleAggregator aggregator = new BattleAggregator();
+            BattleResultFilter filter = new BattleResultFilter();
+            filter.fromTime = new Date(BattleAggregator.getMinTime());
+            filter.printPractice = false;
+            for (BattleResultDto dto : this.getFilteredList(filter)) {
+                aggregator.add(dto.getBattleDate().getTime(), dto.getMapCell(), dto.getRank());
             }
+            this.aggregator = aggregator;
         }
-        if ((filter.cell != null)) {
-            if (dto.isPractice()) {
-                return false;
-            }
-            int[] battleMap = dto.getMapCell().getMap();
-            if (filter.cell != battleMap[2]) {
-                return false;
+        return this.aggregator.aggregate();
+    }
+
+    /** 詳細を読み込む（失敗したら null ） */
+    public BattleExDto getBattleDetail(BattleResultDto summary) {
+        int row = ((BattleResultStore.Summary) summary).row;
+        File file;
+        long segment;
+        long offset;
+        synchronized (this.store) {
+            BattleExDto battle = this.pending.get(row);
+            if (battle != null) {
+                // まだ書き込まれていない
+                return battle;
             }
+            file = this.store.getFile(row);
+            segment = this.store.getSegment(row);
+            offset = this.store.getOffset(row);
         }
-        if ((filter.rank != null) && (filter.rank.equals(dto.getRank()) == false)) {
-            return false;
+        if (offset < 0) {
+            return null;
         }
-        if (filter.printPractice != null) {
-            // 排他的論理和です
-            if (dto.isPractice() ^ filter.printPractice) {
-                return false;
+        BattleExDto cached = this.detailCache.get(file, offset);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            File readFile = file;
+            long shift = 0;
+            long length = file.length();
+            if (offset >= length) {
+                // まだ代替ファイルにある
+                readFile = getAltFile(file);
+                shift = length;
+                if ((offset - shift) >= readFile.length()) {
+                    return null;
+                }
+            }
+            // 後ろのレコードも先読みしてキャッシュに入れる
+            final List<BattleExDto> battles = new ArrayList<BattleExDto>(DETAIL_READ_AHEAD);
+            final List<Long> offsets = new ArrayList<Long>(DETAIL_READ_AHEAD);
+            List<Long> sizes;
+            synchronized (this.buffer) {
+                sizes = BattleLogFormat.readRecords(readFile,
+                        (segment >= 0) ? (segment - shift) : -1, offset - shift, DETAIL_READ_AHEAD, this.buffer,
+                        new BattleLogFormat.RecordHandler() {
+                            @Override
+                            public void handle(long segment, long offset, BattleExDto battle) {
+                                battles.add(battle);
+                                offsets.add(offset);
+                            }
+                        });
+            }
+            BattleExDto result = null;
+            for (int i = 0; i < battles.size(); ++i) {
+                long pos = offsets.get(i) + shift;
+                if (pos == offset) {
+                    result = battles.get(i);
+                }
+                else if (this.detailCache.contains(file, pos)) {
+                    continue;
+                }
+                this.detailCache.put(file, pos, battles.get(i), sizes.get(i));
             }
+            return result;
+        } catch (IOException e) {
+            LOG.warn("出撃ログの読み込みに失敗しました (" + file.getPath() + ")", e);
+            return null;
         }
-        return true;
     }
 
-    /** 詳細を読み込む（失敗したら null ） */
-    public BattleExDto getBattleDetail(BattleResultDto summary) {
-        BattleResult result = (BattleResult) summary;
-        if ((this.cachedFile == null) || (result.file.equals(this.cachedFile) == false)) {
-            this.cachedFile = result.file;
+    /** まとめて読み込む時の1レコード分 */
+    private static final class DetailRequest {
+        final long segment;
+        final int index;
+        /** このレコードを返す summaries の位置 */
+        final List<Integer> targets = new ArrayList<Integer>(1);
+
+        DetailRequest(long segment, int index) {
+            this.segment = segment;
+            this.index = index;
+        }
+    }
+
+    /**
+     * 複数の詳細をまとめて読み込みます
+     * ファイルごとにまとめて、なるべく1つのファイルを1回で読み込みます
+     *
+     * @param summaries 概要
+     * @return 詳細（ summaries と同じ順番、読み込めなかったものは null ）
+     */
+    public BattleExDto[] getBattleDetails(List<BattleResultDto> summaries) {
+        BattleExDto[] details = new BattleExDto[summaries.size()];
+        // ファイルごとに位置の順に並べる
+        Map<File, TreeMap<Long, DetailRequest>> byFile = new LinkedHashMap<File, TreeMap<Long, DetailRequest>>();
+        List<Integer> others = new ArrayList<Integer>();
+        synchronized (this.store) {
+            for (int i = 0; i < details.length; ++i) {
+                int row = ((BattleResultStore.Summary) summaries.get(i)).row;
+                File file = this.store.getFile(row);
+                long offset = this.store.getOffset(row);
+                if (this.pending.containsKey(row) || (offset < 0) || (offset >= file.length())
+                        || this.detailCache.contains(file, offset)) {
+                    // 書き込み前、代替ファイルにある、キャッシュにあるものは1件ずつ
+                    others.add(i);
+                    continue;
+                }
+                TreeMap<Long, DetailRequest> offsets = byFile.get(file);
+                if (offsets == null) {
+                    offsets = new TreeMap<Long, DetailRequest>();
+                    byFile.put(file, offsets);
+                }
+                DetailRequest request = offsets.get(offset);
+                if (request == null) {
+                    request = new DetailRequest(this.store.getSegment(row), this.store.getIndex(row));
+                    offsets.put(offset, request);
+                }
+                request.targets.add(i);
+            }
+        }
+        for (int i : others) {
+            details[i] = this.getBattleDetail(summaries.get(i));
+        }
+        for (Map.Entry<File, TreeMap<Long, DetailRequest>> entry : byFile.entrySet()) {
+            File file = entry.getKey();
+            TreeMap<Long, DetailRequest> offsets = entry.getValue();
+            DetailRequest first = offsets.firstEntry().getValue();
+            // 最初から最後までのレコード数
+            int span = (offsets.lastEntry().getValue().index - first.index) + 1;
+            if ((span <= 0) || (span > (offsets.size() * 4))) {
+                // まばらなので1件ずつ読む（目的のレコード以外はデコードしない）
+                for (DetailRequest request : offsets.values()) {
+                    BattleExDto battle = this.getBattleDetail(summaries.get(request.targets.get(0)));
+                    for (int i : request.targets) {
+                        details[i] = battle;
+                    }
+                }
+                continue;
+            }
+            // 最初のレコードから最後のレコードまで1回で読む
+            final Map<Long, BattleExDto> found = new HashMap<Long, BattleExDto>();
+            final Set<Long> wanted = offsets.keySet();
             try {
-                this.cachedResult = this.readResultFile(result.file);
+                synchronized (this.buffer) {
+                    BattleLogFormat.readRecords(file, first.segment, offsets.firstKey(), span, this.buffer,
+                            new BattleLogFormat.RecordHandler() {
+                                @Override
+                                public void handle(long segment, long offset, BattleExDto battle) {
+                                    if (wanted.contains(offset)) {
+                                        found.put(offset, battle);
+                                    }
+                                }
+                            });
+                }
             } catch (IOException e) {
-                return null;
+                LOG.warn("出撃ログの読み込みに失敗しました (" + file.getPath() + ")", e);
+            }
+            for (Map.Entry<Long, DetailRequest> target : offsets.entrySet()) {
+                BattleExDto battle = found.get(target.getKey());
+                for (int i : target.getValue().targets) {
+                    details[i] = battle;
+                }
             }
         }
-        if (this.cachedResult.size() <= result.index) {
-            return null;
-        }
-        return this.cachedResult.get(result.index);
+        return details;
     }
 
-    public Date getFirstBattleTime() {
+    /**
+     * @return 詳細のキャッシュの統計（まだ出撃ログを読み込んでいない場合は空）
+     */
+    public static String getCurrentStatistics() {
+        BattleResultServer server = instance;
+        return (server != null) ? server.detailCache.getStatistics() : "";
+    }
+
+    public synchronized Date getFirstBattleTime() {
         return this.firstBattleTime;
     }
 
-    public Date getLastBattleTime() {
+    public synchronized Date getLastBattleTime() {
         return this.lastBattleTime;
     }
 
-    public List<String> getDropShipList() {
+    public synchronized List<String> getDropShipList() {
         return new ArrayList<String>(this.dropShipList);
     }
 
-    public List<IntegerPair> getMapList() {
+    public synchronized List<IntegerPair> getMapList() {
         return new ArrayList<IntegerPair>(this.mapList);
     }
 
-    public List<Integer> getCellList() {
+    public synchronized List<Integer> getCellList() {
         return new ArrayList<Integer>(this.cellList);
     }
 
-    private static File getStoreFile(File file) throws IOException {
-        // 報告書の保存先にファイルを保存します
-        File dir = file.getParentFile();
-        if ((dir == null) || !(dir.exists() || dir.mkdirs())) {
-            // 報告書の保存先ディレクトリが無く、ディレクトリの作成に失敗した場合はカレントフォルダにファイルを保存
-            file = new File(file.getName());
-        }
-        File altFile = new File(FilenameUtils.removeExtension(file.getPath()) + "_alternativefile.dat");
-        if (ReportUtils.isLocked(file)) {
-            // ロックされている場合は代替ファイルに書き込みます
-            file = altFile;
-        }
-        else {
-            if (altFile.exists() && !ReportUtils.isLocked(altFile) && (FileUtils.sizeOf(altFile) > 0)) {
-                mergeAltFile(file, altFile);
-            }
-        }
-        return file;
+    private static File getAltFile(File file) {
+        return new File(FilenameUtils.removeExtension(file.getPath()) + "_alternativefile.dat");
     }
 
     /**
@@ -0,0 +1,316 @@
+/**
+ *
+ */
+package logbook.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import logbook.dto.BattleResultDto;
+import logbook.dto.MapCellDto;
+import logbook.dto.ResultRank;
+
+/**
+ * 出撃ログの概要を列ごとにプリミティブ配列で保持します
+ *
+ * 1戦闘ごとに {@link BattleResultDto} を持つとヒープを大量に消費するため、
+ * 文字列はIDに置き換えて配列に詰めておき、必要な時にだけ {@link BattleResultDto} を作ります。
+ */
+final class BattleResultStore {
+
+    private static final ResultRank[] RANKS = ResultRank.values();
+
+    // flags
+    private static final byte FLAG_MAP = 0x01;
+    private static final byte FLAG_START = 0x02;
+    private static final byte FLAG_TAIHA = 0x04;
+    private static final byte FLAG_COMBINED = 0x08;
+    private static final byte FLAG_NO_SPACE = 0x10;
+
+    /** 行番号を持った概要 */
+    static final class Summary extends BattleResultDto {
+        final int row;
+
+        Summary(int row, Date battleDate, String questName, ResultRank rank, MapCellDto mapCell,
+                String enemyName, String dropType, String dropName, boolean hasTaiha, boolean isCombined,
+                String mvp, String mvpCombined, String flagShip, String flagShipCombined,
+                boolean noSpaceForShip) {
+            super(battleDate, questName, rank, mapCell, enemyName, dropType, dropName, hasTaiha, isCombined,
+                    mvp, mvpCombined, flagShip, flagShipCombined, noSpaceForShip);
+            this.row = row;
+        }
+    }
+
+    /** 文字列をIDに置き換えるためのテーブル（ID 0 は null ） */
+    static final class StringPool {
+        private final List<String> values = new ArrayList<String>();
+        private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+        StringPool() {
+            this.values.add(null);
+        }
+
+        int intern(String str) {
+            if (str == null) {
+                return 0;
+            }
+            Integer id = this.ids.get(str);
+            if (id == null) {
+                id = this.values.size();
+                this.values.add(str);
+                this.ids.put(str, id);
+            }
+            return id;
+        }
+
+        /** 登録されていない場合は -1 */
+        int find(String str) {
+            if (str == null) {
+                return 0;
+            }
+            Integer id = this.ids.get(str);
+            return (id != null) ? id : -1;
+        }
+
+        String get(int id) {
+            return this.values.get(id);
+        }
+
+        int size() {
+            return this.values.size();
+        }
+    }
+
+    private final StringPool strings = new StringPool();
+    private final List<File> files = new ArrayList<File>();
+    private final Map<File, Integer> fileIds = new HashMap<File, Integer>();
+
+    private int size = 0;
+
+    // 列
+    private long[] time = new long[0];
+    /** (海域 << 16) | (マップ << 8) | マス */
+    private int[] map = new int[0];
+    private int[] enemyId = new int[0];
+    private byte[] colorNo = new byte[0];
+    private byte[] bosscellNo = new byte[0];
+    private byte[] rank = new byte[0];
+    private byte[] flags = new byte[0];
+    private int[] questName = new int[0];
+    private int[] enemyName = new int[0];
+    private int[] dropType = new int[0];
+    private int[] dropName = new int[0];
+    private int[] flagShip = new int[0];
+    private int[] flagShipCombined = new int[0];
+    private int[] mvp = new int[0];
+    private int[] mvpCombined = new int[0];
+    // ファイル上の位置
+    private int[] file = new int[0];
+    private int[] index = new int[0];
+    private long[] segment = new long[0];
+    private long[] offset = new long[0];
+
+    /**
+     * @return 件数
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * 戦闘の概要を追加します
+     *
+     * @param dto 概要
+     * @param file 出撃ログファイル
+     * @param index ファイル内のレコード番号
+     * @param segment レコードが属するセグメントの位置
+     * @param offset ファイル内の位置
+     * @return 追加した行番号
+     */
+    int add(BattleResultDto dto, File file, int index, long segment, long offset) {
+        this.ensureCapacity(this.size + 1);
+        int row = this.size++;
+        MapCellDto mapCell = dto.getMapCell();
+        byte f = 0;
+        if (mapCell != null) {
+            int[] m = mapCell.getMap();
+            this.map[row] = packMap(m[0], m[1], m[2]);
+            this.enemyId[row] = mapCell.getEnemyId();
+            this.colorNo[row] = (byte) mapCell.getColorNo();
+            this.bosscellNo[row] = (byte) mapCell.getBosscellNo();
+            f |= FLAG_MAP;
+            if (mapCell.isStart()) {
+                f |= FLAG_START;
+            }
+        }
+        if (dto.isHasTaiha()) {
+            f |= FLAG_TAIHA;
+        }
+        if (dto.isCombined()) {
+            f |= FLAG_COMBINED;
+        }
+        if (dto.isNoSpaceForShip()) {
+            f |= FLAG_NO_SPACE;
+        }
+        this.flags[row] = f;
+        this.time[row] = dto.getBattleDate().getTime();
+        this.rank[row] = (byte) dto.getRank().ordinal();
+        this.questName[row] = this.strings.intern(dto.getQuestName());
+        this.enemyName[row] = this.strings.intern(dto.getEnemyName());
+        this.dropType[row] = this.strings.intern(dto.getDropType());
+        this.dropName[row] = this.strings.intern(dto.getDropName());
+        this.flagShip[row] = this.strings.intern(dto.getFlagShip());
+        this.flagShipCombined[row] = this.strings.intern(dto.getFlagShipCombined());
+        this.mvp[row] = this.strings.intern(dto.getMvp());
+        this.mvpCombined[row] = this.strings.intern(dto.getMvpCombined());
+        this.file[row] = this.internFile(file);
+        this.index[row] = index;
+        this.segment[row] = segment;
+        this.offset[row] = offset;
+        return row;
+    }
+
+    /**
+     * 行の概要を作ります
+     *
+     * @param row 行番号
+     * @return 概要
+     */
+    Summary get(int row) {
+        MapCellDto mapCell = null;
+        if ((this.flags[row] & FLAG_MAP) != 0) {
+            int m = this.map[row];
+            mapCell = new MapCellDto(new int[] { getArea(m), getMapNo(m), getCell(m) },
+                    this.enemyId[row], this.colorNo[row], this.bosscellNo[row],
+                    (this.flags[row] & FLAG_START) != 0);
+        }
+        return new Summary(row, new Date(this.time[row]),
+                this.strings.get(this.questName[row]),
+                RANKS[this.rank[row]],
+                mapCell,
+                this.strings.get(this.enemyName[row]),
+                this.strings.get(this.dropType[row]),
+                this.strings.get(this.dropName[row]),
+                (this.flags[row] & FLAG_TAIHA) != 0,
+                (this.flags[row] & FLAG_COMBINED) != 0,
+                this.strings.get(this.mvp[row]),
+                this.strings.get(this.mvpCombined[row]),
+                this.strings.get(this.flagShip[row]),
+                this.strings.get(this.flagShipCombined[row]),
+                (this.flags[row] & FLAG_NO_SPACE) != 0);
+    }
+
+    long getTime(int row) {
+        return this.time[row];
+    }
+
+    boolean isPractice(int row) {
+        return this.questName[row] == 0;
+    }
+
+    /** @return (海域 << 16) | (マップ << 8) | マス */
+    int getMap(int row) {
+        return this.map[row];
+    }
+
+    int getRank(int row) {
+        return this.rank[row];
+    }
+
+    int getDropName(int row) {
+        return this.dropName[row];
+    }
+
+    File getFile(int row) {
+        return this.files.get(this.file[row]);
+    }
+
+    int getIndex(int row) {
+        return this.index[row];
+    }
+
+    long getSegment(int row) {
+        return this.segment[row];
+    }
+
+    long getOffset(int row) {
+        return this.offset[row];
+    }
+
+    /**
+     * ファイル上の位置を設定します
+     *
+     * @param row 行番号
+     * @param segment レコードが属するセグメントの位置
+     * @param offset ファイル内の位置
+     */
+    void setPosition(int row, long segment, long offset) {
+        this.segment[row] = segment;
+        this.offset[row] = offset;
+    }
+
+    StringPool getStrings() {
+        return this.strings;
+    }
+
+    static int packMap(int area, int no, int cell) {
+        return (area << 16) | (no << 8) | cell;
+    }
+
+    static int getArea(int map) {
+        return map >>> 16;
+    }
+
+    static int getMapNo(int map) {
+        return (map >>> 8) & 0xFF;
+    }
+
+    static int getCell(int map) {
+        return map & 0xFF;
+    }
+
+    private int internFile(File file) {
+        Integer id = this.fileIds.get(file);
+        if (id == null) {
+            id = this.files.size();
+            this.files.add(file);
+            this.fileIds.put(file, id);
+        }
+        return id;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (this.time.length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, Math.max(16, this.time.length * 2));
+        this.resize(newCapacity);
+    }
+
+    private void resize(int capacity) {
+        this.time = Arrays.copyOf(this.time, capacity);
+        this.map = Arrays.copyOf(this.map, capacity);
+        this.enemyId = Arrays.copyOf(this.enemyId, capacity);
+        this.colorNo = Arrays.copyOf(this.colorNo, capacity);
+        this.bosscellNo = Arrays.copyOf(this.bosscellNo, capacity);
+        this.rank = Arrays.copyOf(this.rank, capacity);
+        this.flags = Arrays.copyOf(this.flags, capacity);
+        this.questName = Arrays.copyOf(this.questName, capacity);
+        this.enemyName = Arrays.copyOf(this.enemyName, capacity);
+        this.dropType = Arrays.copyOf(this.dropType, capacity);
+        this.dropName = Arrays.copyOf(this.dropName, capacity);
+        this.flagShip = Arrays.copyOf(this.flagShip, capacity);
+        this.flagShipCombined = Arrays.copyOf(this.flagShipCombined, capacity);
+        this.mvp = Arrays.copyOf(this.mvp, capacity);
+        this.mvpCombined = Arrays.copyOf(this.mvpCombined, capacity);
+        this.file = Arrays.copyOf(this.file, capacity);
+        this.index = Arrays.copyOf(this.index, capacity);
+        this.segment = Arrays.copyOf(this.segment, capacity);
+        this.offset = Arrays.copyOf(this.offset, capacity);
+    }
+}
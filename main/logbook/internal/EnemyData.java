@@ -14,7 +14,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import logbook.constants.AppConstants;
 import logbook.gui.ApplicationMain;
@@ -35,7 +35,7 @@ public class EnemyData {
 
     /** ロガー */
     private static final Logger LOG = LogManager.getLogger(EnemyData.class);
-    private static Map<Integer, EnemyData> ENEMY = new TreeMap<Integer, EnemyData>();
+    private static Map<Integer, EnemyData> ENEMY = new ConcurrentSkipListMap<Integer, EnemyData>();
 
     /** 変更があったか */
     private static boolean modified = false;
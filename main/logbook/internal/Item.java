@@ -2,9 +2,9 @@ package logbook.internal;
 
 import java.io.IOException;
 import java.io.OutputStreamWriter;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import logbook.config.ItemMasterConfig;
 import logbook.dto.ItemInfoDto;
@@ -24,7 +24,7 @@ public class Item {
     /**
      * アイテムプリセット値
      */
-    private static final Map<Integer, ItemInfoDto> ITEM = new HashMap<Integer, ItemInfoDto>() {
+    private static final Map<Integer, ItemInfoDto> ITEM = new ConcurrentHashMap<Integer, ItemInfoDto>() {
         {
             this.put(1, new ItemInfoDto(1, 1, 1, 0, 0, 0, 1, 0, 0, 1, 0, "12cm単装砲", 0, 0, 0, 0,
                     0, 0, 0, 0, 0, 0, 1));
@@ -0,0 +1,360 @@
+/**
+ *
+ */
+package logbook.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import logbook.config.AppConfig;
+import logbook.util.ReportUtils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * 報告書や出撃ログへの追記をまとめて行うスレッド
+ *
+ * 追記はキューに入れるだけで呼び出し元には戻り、このスレッドがキューに溜まった分をファイルごとにまとめて、
+ * 1回ファイルを開くだけで書き込みます。ロックの確認と代替ファイルのマージもここで行います。
+ * キューが一杯の時は空くまで呼び出し元を待たせます。
+ *
+ * @author Nekopanda
+ */
+public final class LogWriter extends Thread {
+
+    private static final Logger LOG = LogManager.getLogger(LogWriter.class);
+
+    /** キューに入れられる件数 */
+    private static final int QUEUE_SIZE = 256;
+
+    /** 1回にまとめて書き込む最大件数 */
+    private static final int MAX_BATCH = 64;
+
+    /** 同期モード: 同期しない(OSに任せる) */
+    public static final int SYNC_NONE = 0;
+    /** 同期モード: まとめて書き込むごとに同期 */
+    public static final int SYNC_BATCH = 1;
+    /** 同期モード: 1件ごとに同期 */
+    public static final int SYNC_EACH = 2;
+
+    private static LogWriter instance = null;
+
+    /**
+     * 追記するレコード
+     */
+    public static abstract class Record {
+        private final File file;
+        private final String altername;
+
+        /**
+         * @param file 書き込み先のファイル
+         * @param altername ファイルがロックされている時に書き込む代替ファイルの名前
+         */
+        protected Record(File file, String altername) {
+            this.file = file;
+            this.altername = altername;
+        }
+
+        /**
+         * 追記します
+         *
+         * @param file 書き込み先のファイル（ロックされている場合も本体のファイル）
+         * @param storeFile 実際に書き込むファイル（本体か代替ファイル）
+         * @param channel 追記用に開いた storeFile のチャネル
+         * @throws IOException
+         */
+        protected abstract void write(File file, File storeFile, FileChannel channel) throws IOException;
+
+        /**
+         * 代替ファイルを本体にマージして削除します
+         *
+         * @param file ファイル本体
+         * @param altFile 代替ファイル
+         * @throws IOException
+         */
+        protected abstract void merge(File file, File altFile) throws IOException;
+
+        /**
+         * 書き込みに失敗した時に呼ばれます
+         *
+         * @param e 例外
+         */
+        protected void failed(Exception e) {
+            LOG.warn("ファイルの書き込みに失敗しました (" + this.file.getPath() + ")", e);
+        }
+
+        /**
+         * チャネルに全部書き込みます
+         */
+        protected static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+    }
+
+    private static synchronized LogWriter getInstance() {
+        if (instance == null) {
+            instance = new LogWriter();
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * レコードを書き込みキューに入れます
+     * キューが一杯の場合は空くまで待ちます
+     *
+     * @param record レコード
+     */
+    public static void write(Record record) {
+        getInstance().enqueue(record);
+    }
+
+    /**
+     * キューに入っているレコードを全部書き込むまで待ちます
+     *
+     * @param timeout 最大の待ち時間(ミリ秒)
+     * @return 全部書き込めた場合は true
+     */
+    public static boolean flush(long timeout) {
+        LogWriter writer;
+        synchronized (LogWriter.class) {
+            writer = instance;
+        }
+        if (writer == null) {
+            return true;
+        }
+        try {
+            return writer.waitFor(writer.numEnqueued.get(), timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * キューに入っているレコードを書き込んでからスレッドを終了します
+     */
+    public static synchronized void end() {
+        if (instance != null) {
+            if (!flush(TimeUnit.SECONDS.toMillis(30))) {
+                LOG.warn("書き込みが終わらないまま終了します (残り" + instance.queue.size() + "件)");
+            }
+            instance.endRequested = true;
+            instance.interrupt();
+            try {
+                instance.join();
+                LOG.info(instance.getStatistics());
+                instance = null;
+            } catch (InterruptedException e) {
+                LOG.fatal("LogWriterスレッド終了時に何かのエラー", e);
+            }
+        }
+    }
+
+    /**
+     * @return 統計情報（スレッドが動いていない場合は空文字）
+     */
+    public static synchronized String getCurrentStatistics() {
+        return (instance != null) ? instance.getStatistics() : "";
+    }
+
+    private final BlockingQueue<Record> queue = new ArrayBlockingQueue<Record>(QUEUE_SIZE);
+
+    private volatile boolean endRequested = false;
+
+    private final Object lock = new Object();
+
+    // 統計
+    private final AtomicLong numEnqueued = new AtomicLong();
+    private final AtomicLong numBlocked = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final AtomicLong maxQueued = new AtomicLong();
+    private long numWritten = 0;
+    private long numFailed = 0;
+    private long numBatches = 0;
+    private long numOpens = 0;
+
+    private LogWriter() {
+        this.setName("logbook_log_writer");
+        this.setDaemon(true);
+    }
+
+    private void enqueue(Record record) {
+        if (!this.queue.offer(record)) {
+            // 書き込みが追いついていないので待つ
+            this.numBlocked.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                while (!this.queue.offer(record, 1, TimeUnit.SECONDS)) {
+                    if (!this.isAlive()) {
+                        record.failed(new IOException("書き込みスレッドが終了しています"));
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                record.failed(new IOException("書き込みキューへの追加が中断されました"));
+                return;
+            } finally {
+                this.blockedNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+        this.numEnqueued.incrementAndGet();
+        long queued = this.queue.size();
+        long max;
+        while (queued > (max = this.maxQueued.get())) {
+            if (this.maxQueued.compareAndSet(max, queued)) {
+                break;
+            }
+        }
+    }
+
+    /** 書き込んだ件数が count 以上になるまで待つ */
+    private boolean waitFor(long count, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (this.lock) {
+            while ((this.numWritten + this.numFailed) < count) {
+                long wait = deadline - System.currentTimeMillis();
+                if ((wait <= 0) || !this.isAlive()) {
+                    return false;
+                }
+                this.lock.wait(wait);
+            }
+        }
+        return true;
+    }
+
+    private String getStatistics() {
+        synchronized (this.lock) {
+            return "LogWriter: " + this.numWritten + "件書き込み, " + this.numFailed + "件失敗, "
+                    + this.numBatches + "回のまとめ書き, " + this.numOpens + "回ファイルを開く, "
+                    + "キュー最大" + this.maxQueued.get() + "件, "
+                    + "待ち" + this.numBlocked.get() + "回 ("
+                    + TimeUnit.NANOSECONDS.toMillis(this.blockedNanos.get()) + "ms)";
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Record> batch = new ArrayList<Record>(MAX_BATCH);
+        try {
+            while (true) {
+                batch.add(this.queue.take());
+                this.queue.drainTo(batch, MAX_BATCH - 1);
+                this.writeBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            if (!this.endRequested) {
+                LOG.fatal("スレッドが異常終了しました", e);
+            }
+        } catch (Exception e) {
+            LOG.fatal("スレッドが異常終了しました", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void writeBatch(List<Record> batch) {
+        // ファイルごとにまとめる（同じファイルの中では順番を保つ）
+        Map<File, List<Record>> groups = new LinkedHashMap<File, List<Record>>();
+        for (Record record : batch) {
+            List<Record> group = groups.get(record.file);
+            if (group == null) {
+                group = new ArrayList<Record>();
+                groups.put(record.file, group);
+            }
+            group.add(record);
+        }
+        int syncMode = AppConfig.get().getLogSyncMode();
+        int written = 0;
+        int failed = 0;
+        int opens = 0;
+        for (List<Record> group : groups.values()) {
+            FileChannel channel = null;
+            File file = null;
+            File storeFile = null;
+            try {
+                Record first = group.get(0);
+                file = getFile(first.file);
+                storeFile = getStoreFile(file, first);
+                channel = new FileOutputStream(storeFile, true).getChannel();
+                ++opens;
+            } catch (IOException | RuntimeException e) {
+                for (Record record : group) {
+                    record.failed(e);
+                }
+                failed += group.size();
+                continue;
+            }
+            try {
+                for (Record record : group) {
+                    try {
+                        record.write(file, storeFile, channel);
+                        if (syncMode == SYNC_EACH) {
+                            channel.force(false);
+                        }
+                        ++written;
+                    } catch (IOException | RuntimeException e) {
+                        record.failed(e);
+                        ++failed;
+                    }
+                }
+                if (syncMode == SYNC_BATCH) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                LOG.warn("ファイルの同期に失敗しました (" + storeFile.getPath() + ")", e);
+            } finally {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOG.warn("ファイルを閉じられませんでした (" + storeFile.getPath() + ")", e);
+                }
+            }
+        }
+        synchronized (this.lock) {
+            this.numWritten += written;
+            this.numFailed += failed;
+            this.numOpens += opens;
+            this.numBatches++;
+            this.lock.notifyAll();
+        }
+    }
+
+    /** 保存先ディレクトリを作れない場合はカレントフォルダ */
+    private static File getFile(File file) {
+        File dir = file.getParentFile();
+        if ((dir == null) || !(dir.exists() || dir.mkdirs())) {
+            // 報告書の保存先ディレクトリが無く、ディレクトリの作成に失敗した場合はカレントフォルダにファイルを保存
+            return new File(file.getName());
+        }
+        return file;
+    }
+
+    /** ロックされている場合は代替ファイル */
+    private static File getStoreFile(File file, Record record) throws IOException {
+        File altFile = new File(file.getAbsoluteFile().getParentFile(), record.altername);
+        if (ReportUtils.isLocked(file)) {
+            // ロックされている場合は代替ファイルに書き込みます
+            return altFile;
+        }
+        if (altFile.exists() && !ReportUtils.isLocked(altFile) && (altFile.length() > 0)) {
+            record.merge(file, altFile);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,711 @@
+package logbook.server.proxy;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import logbook.config.AppConfig;
+import logbook.constants.AppConstants;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.HttpOutput;
+
+/**
+ * ゲームの画像や音声などのディスクキャッシュ
+ *
+ * /kcsapi/ 以外のGETのレスポンスを内容のハッシュをファイル名にして保存し、
+ * Cache-Control, Expires, ETag, Last-Modified に従って、新しいうちはキャッシュから返し、古くなったら条件付きGETで確認します。
+ * 合計の大きさが設定を超えたら最後に使われてから一番時間が経ったものから削除します。
+ *
+ * @author Nekopanda
+ */
+public final class AssetCache {
+
+    private static final Logger LOG = LogManager.getLogger(AssetCache.class);
+
+    /** 索引のファイル名 */
+    private static final String INDEX_FILE_NAME = "index.txt";
+
+    /** 書き込み中のファイル名の接頭辞 */
+    private static final String TEMP_PREFIX = "tmp-";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final long MB = 1024 * 1024;
+
+    private static AssetCache instance = null;
+
+    /**
+     * キャッシュのエントリ
+     */
+    private static final class Entry {
+        private String url;
+        private String hash;
+        private long size;
+        /** この時刻までは確認せずに返す */
+        private long expires;
+        private String etag;
+        private String lastModified;
+        private String contentType;
+        private String contentEncoding;
+        private String cacheControl;
+        /** Vary: Accept-Encoding の場合は保存した時のリクエストの Accept-Encoding （それ以外は null ） */
+        private String varyEncoding;
+
+        /** ロックの外で読むための複製（確認で書き換えられるため） */
+        private Entry copy() {
+            Entry copy = new Entry();
+            copy.url = this.url;
+            copy.hash = this.hash;
+            copy.size = this.size;
+            copy.expires = this.expires;
+            copy.etag = this.etag;
+            copy.lastModified = this.lastModified;
+            copy.contentType = this.contentType;
+            copy.contentEncoding = this.contentEncoding;
+            copy.cacheControl = this.cacheControl;
+            copy.varyEncoding = this.varyEncoding;
+            return copy;
+        }
+    }
+
+    /**
+     * レスポンスをキャッシュに書き込む途中の状態
+     */
+    public final class Store {
+        private final Entry entry;
+        private final File tempFile;
+        private final FileChannel channel;
+        private final MessageDigest digest;
+        private boolean failed = false;
+
+        private Store(Entry entry, File tempFile) throws IOException {
+            this.entry = entry;
+            this.tempFile = tempFile;
+            this.channel = new FileOutputStream(tempFile).getChannel();
+            this.digest = newDigest();
+        }
+
+        /**
+         * レスポンスの内容を書き込みます
+         */
+        public void write(byte[] buffer, int offset, int length) {
+            if (this.failed) {
+                return;
+            }
+            try {
+                this.entry.size += length;
+                if (this.entry.size > AssetCache.this.getMaxEntrySize()) {
+                    // 大きすぎるのでキャッシュしない
+                    this.failed = true;
+                    return;
+                }
+                this.digest.update(buffer, offset, length);
+                ByteBuffer buf = ByteBuffer.wrap(buffer, offset, length);
+                while (buf.hasRemaining()) {
+                    this.channel.write(buf);
+                }
+            } catch (IOException e) {
+                LOG.warn("キャッシュの書き込みに失敗しました (" + this.entry.url + ")", e);
+                this.failed = true;
+            }
+        }
+
+        /**
+         * レスポンスが完了したのでキャッシュに追加します
+         */
+        public void commit() {
+            this.close();
+            if (this.failed) {
+                this.tempFile.delete();
+                return;
+            }
+            this.entry.hash = toHex(this.digest.digest());
+            AssetCache.this.put(this.entry, this.tempFile);
+        }
+
+        /**
+         * レスポンスが失敗したので書き込んだ内容を捨てます
+         */
+        public void abort() {
+            this.close();
+            this.tempFile.delete();
+        }
+
+        private void close() {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                this.failed = true;
+            }
+        }
+    }
+
+    /**
+     * @return キャッシュ（使わない設定の場合は null ）
+     */
+    public static AssetCache get() {
+        if (!AppConfig.get().isUseAssetCache()) {
+            return null;
+        }
+        return getInstance();
+    }
+
+    private static synchronized AssetCache getInstance() {
+        if (instance == null) {
+            instance = new AssetCache(AppConstants.ASSET_CACHE_DIR);
+            instance.load();
+        }
+        return instance;
+    }
+
+    /**
+     * 索引を保存します
+     */
+    public static synchronized void end() {
+        if (instance != null) {
+            instance.save();
+            LOG.info(instance.getStatistics());
+            instance = null;
+        }
+    }
+
+    /**
+     * @return 統計情報（キャッシュを使っていない場合は空文字）
+     */
+    public static synchronized String getCurrentStatistics() {
+        return (instance != null) ? instance.getStatistics() : "";
+    }
+
+    private final File dir;
+
+    /** アクセス順に並んだエントリ */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(256, 0.75f, true);
+
+    /** ファイルごとの参照しているエントリ数 */
+    private final Map<String, Integer> references = new HashMap<String, Integer>();
+
+    /** ファイルの合計の大きさ */
+    private long totalSize = 0;
+
+    private int tempCounter = 0;
+
+    // 統計
+    private final AtomicLong numHits = new AtomicLong();
+    private final AtomicLong numRevalidated = new AtomicLong();
+    private final AtomicLong numMisses = new AtomicLong();
+    private final AtomicLong numStored = new AtomicLong();
+    private final AtomicLong numEvicted = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    private AssetCache(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * キャッシュの対象となるリクエストかを調べます
+     *
+     * @param request リクエスト
+     * @return 対象の場合true
+     */
+    public static boolean isTarget(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return "GET".equals(request.getMethod())
+                && (uri != null) && !uri.startsWith("/kcsapi/")
+                && (request.getHeader(HttpHeader.RANGE.asString()) == null)
+                && (request.getHeader(HttpHeader.AUTHORIZATION.asString()) == null);
+    }
+
+    /**
+     * キャッシュにあればキャッシュから返します。古くなっている場合は条件付きGETで確認します。
+     *
+     * @param request リクエスト
+     * @param response レスポンス
+     * @param client 確認に使うHttpClient
+     * @return キャッシュから返した場合true（この場合はプロキシしない）
+     */
+    public boolean serve(HttpServletRequest request, HttpServletResponse response, HttpClient client)
+            throws IOException {
+        String url = getUrl(request);
+        Entry entry;
+        Entry current;
+        synchronized (this) {
+            entry = this.entries.get(url);
+            current = (entry != null) ? entry.copy() : null;
+        }
+        if ((current == null)
+                || ((current.varyEncoding != null) && !current.varyEncoding.equals(getAcceptEncoding(request)))) {
+            // Accept-Encoding が違う場合はプロキシしたレスポンスで置き換える
+            this.numMisses.incrementAndGet();
+            return false;
+        }
+        if (System.currentTimeMillis() >= current.expires) {
+            // 古くなっているので確認する
+            if ((client == null) || ((current.etag == null) && (current.lastModified == null))) {
+                this.numMisses.incrementAndGet();
+                return false;
+            }
+            entry = this.revalidate(request, entry, current, client);
+            if (entry == null) {
+                this.numMisses.incrementAndGet();
+                return false;
+            }
+            this.numRevalidated.incrementAndGet();
+        }
+        else {
+            this.numHits.incrementAndGet();
+        }
+        return this.send(request, response, entry);
+    }
+
+    /**
+     * レスポンスのヘッダを見てキャッシュに書き込むかを決めます
+     *
+     * @param request リクエスト
+     * @param status レスポンスのステータス
+     * @param headers レスポンスのヘッダ
+     * @return 書き込む場合は書き込み先（書き込まない場合は null ）
+     */
+    public Store beginStore(HttpServletRequest request, int status, HttpFields headers) {
+        if (status != HttpStatus.OK_200) {
+            return null;
+        }
+        String cacheControl = headers.get(HttpHeader.CACHE_CONTROL);
+        if (hasDirective(cacheControl, "no-store") || hasDirective(cacheControl, "private")
+                || headers.containsKey(HttpHeader.SET_COOKIE.asString())) {
+            return null;
+        }
+        String vary = headers.get(HttpHeader.VARY);
+        if ((vary != null) && !vary.trim().equalsIgnoreCase("Accept-Encoding")) {
+            return null;
+        }
+        long length = headers.getLongField(HttpHeader.CONTENT_LENGTH.asString());
+        if (length > this.getMaxEntrySize()) {
+            return null;
+        }
+        Entry entry = new Entry();
+        entry.url = getUrl(request);
+        entry.contentType = headers.get(HttpHeader.CONTENT_TYPE);
+        entry.contentEncoding = headers.get(HttpHeader.CONTENT_ENCODING);
+        if (vary != null) {
+            entry.varyEncoding = getAcceptEncoding(request);
+        }
+        updateValidators(entry, headers);
+        try {
+            return new Store(entry, this.newTempFile());
+        } catch (IOException e) {
+            LOG.warn("キャッシュのファイルを作れません", e);
+            return null;
+        }
+    }
+
+    /** 条件付きGETで確認する（ current は entry の複製）。変わっていた場合は新しい内容を保存する */
+    private Entry revalidate(HttpServletRequest request, Entry entry, Entry current, HttpClient client) {
+        try {
+            Request check = client.newRequest(current.url)
+                    .timeout(30, TimeUnit.SECONDS);
+            String userAgent = request.getHeader(HttpHeader.USER_AGENT.asString());
+            if (userAgent != null) {
+                check.agent(userAgent);
+            }
+            String referer = request.getHeader(HttpHeader.REFERER.asString());
+            if (referer != null) {
+                check.header(HttpHeader.REFERER, referer);
+            }
+            String acceptEncoding = request.getHeader(HttpHeader.ACCEPT_ENCODING.asString());
+            if (acceptEncoding != null) {
+                check.header(HttpHeader.ACCEPT_ENCODING, acceptEncoding);
+            }
+            if (current.etag != null) {
+                check.header(HttpHeader.IF_NONE_MATCH, current.etag);
+            }
+            if (current.lastModified != null) {
+                check.header(HttpHeader.IF_MODIFIED_SINCE, current.lastModified);
+            }
+            ContentResponse result = check.send();
+            if (result.getStatus() == HttpStatus.NOT_MODIFIED_304) {
+                // 変わっていないので期限だけ更新する
+                synchronized (this) {
+                    updateValidators(entry, result.getHeaders());
+                }
+                return entry;
+            }
+            Store store = this.beginStore(request, result.getStatus(), result.getHeaders());
+            if (store == null) {
+                return null;
+            }
+            byte[] content = result.getContent();
+            store.write(content, 0, content.length);
+            store.commit();
+            synchronized (this) {
+                return this.entries.get(current.url);
+            }
+        } catch (Exception e) {
+            // 確認できなかった場合は普通にプロキシする
+            LOG.debug("キャッシュの確認に失敗しました (" + current.url + ")", e);
+            return null;
+        }
+    }
+
+    /** キャッシュのファイルをレスポンスとして送る */
+    private boolean send(HttpServletRequest request, HttpServletResponse response, Entry cached)
+            throws IOException {
+        FileChannel channel;
+        Entry entry;
+        synchronized (this) {
+            // 削除されないようにロックの中で開く
+            File file = new File(this.dir, cached.hash);
+            if (!file.isFile()) {
+                this.remove(cached);
+                return false;
+            }
+            channel = new FileInputStream(file).getChannel();
+            // 確認で書き換えられないようにヘッダに使う値を写しておく
+            entry = cached.copy();
+        }
+        try {
+            // ブラウザが持っている場合は304を返す
+            String ifNoneMatch = request.getHeader(HttpHeader.IF_NONE_MATCH.asString());
+            String ifModifiedSince = request.getHeader(HttpHeader.IF_MODIFIED_SINCE.asString());
+            boolean notModified = (ifNoneMatch != null)
+                    ? ifNoneMatch.equals(entry.etag)
+                    : ((ifModifiedSince != null) && ifModifiedSince.equals(entry.lastModified));
+
+            response.setStatus(notModified ? HttpStatus.NOT_MODIFIED_304 : HttpStatus.OK_200);
+            if (entry.etag != null) {
+                response.setHeader(HttpHeader.ETAG.asString(), entry.etag);
+            }
+            if (entry.lastModified != null) {
+                response.setHeader(HttpHeader.LAST_MODIFIED.asString(), entry.lastModified);
+            }
+            if (entry.cacheControl != null) {
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), entry.cacheControl);
+            }
+            if (notModified) {
+                return true;
+            }
+            if (entry.contentType != null) {
+                response.setContentType(entry.contentType);
+            }
+            if (entry.contentEncoding != null) {
+                response.setHeader(HttpHeader.CONTENT_ENCODING.asString(), entry.contentEncoding);
+            }
+            response.setHeader(HttpHeader.CONTENT_LENGTH.asString(), String.valueOf(channel.size()));
+
+            ServletOutputStream out = response.getOutputStream();
+            if (out instanceof HttpOutput) {
+                // ファイルをマップしてヒープにコピーせずに送る
+                ((HttpOutput) out).sendContent(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+            else {
+                ByteBuffer buf = ByteBuffer.allocate(8192);
+                while (channel.read(buf) != -1) {
+                    out.write(buf.array(), 0, buf.position());
+                    buf.clear();
+                }
+            }
+            this.bytesServed.addAndGet(entry.size);
+            return true;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /** 書き込み終わったエントリを追加する */
+    private synchronized void put(Entry entry, File tempFile) {
+        File file = new File(this.dir, entry.hash);
+        if (this.references.containsKey(entry.hash) || (file.isFile() && (file.length() == entry.size))) {
+            // 同じ内容のファイルがある
+            tempFile.delete();
+        }
+        else if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            return;
+        }
+        // 同じファイルを参照している場合に削除しないように先に参照を増やす
+        this.addReference(entry.hash, entry.size);
+        Entry old = this.entries.put(entry.url, entry);
+        if (old != null) {
+            this.release(old.hash, old.size);
+        }
+        this.numStored.incrementAndGet();
+        this.evict();
+    }
+
+    private synchronized void remove(Entry entry) {
+        if (this.entries.get(entry.url) == entry) {
+            this.entries.remove(entry.url);
+            this.release(entry.hash, entry.size);
+        }
+    }
+
+    private void addReference(String hash, long size) {
+        Integer count = this.references.get(hash);
+        if (count == null) {
+            this.references.put(hash, 1);
+            this.totalSize += size;
+        }
+        else {
+            this.references.put(hash, count + 1);
+        }
+    }
+
+    /** 参照がなくなったファイルを削除する */
+    private void release(String hash, long size) {
+        Integer count = this.references.get(hash);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            this.references.put(hash, count - 1);
+            return;
+        }
+        this.references.remove(hash);
+        // ファイルが消えていても合計がずれないように保存した時の大きさを引く
+        this.totalSize -= size;
+        File file = new File(this.dir, hash);
+        if (!file.delete()) {
+            // 送信中などで削除できなかったファイルは次回起動時に削除される
+            LOG.debug("キャッシュのファイルを削除できませんでした (" + hash + ")");
+        }
+    }
+
+    /** 上限を超えている分を古いものから削除する */
+    private void evict() {
+        long limit = this.getMaxSize();
+        Iterator<Entry> it = this.entries.values().iterator();
+        while ((this.totalSize > limit) && it.hasNext()) {
+            Entry entry = it.next();
+            it.remove();
+            this.release(entry.hash, entry.size);
+            this.numEvicted.incrementAndGet();
+        }
+    }
+
+    private long getMaxSize() {
+        return Math.max(1, AppConfig.get().getAssetCacheSize()) * MB;
+    }
+
+    /** 1つのファイルは上限の1/8まで */
+    private long getMaxEntrySize() {
+        return this.getMaxSize() / 8;
+    }
+
+    private synchronized File newTempFile() throws IOException {
+        if (!this.dir.exists() && !this.dir.mkdirs()) {
+            throw new IOException("キャッシュのフォルダを作れません");
+        }
+        return new File(this.dir, TEMP_PREFIX + (this.tempCounter++));
+    }
+
+    /** 索引を読み込み、索引にないファイルを削除する */
+    private synchronized void load() {
+        File index = new File(this.dir, INDEX_FILE_NAME);
+        if (index.isFile()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(index), UTF8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] cols = line.split("\t", -1);
+                    if (cols.length < 10) {
+                        // Accept-Encoding の列がない古い索引は使わない
+                        continue;
+                    }
+                    Entry entry = new Entry();
+                    entry.url = cols[0];
+                    entry.hash = cols[1];
+                    entry.size = Long.parseLong(cols[2]);
+                    entry.expires = Long.parseLong(cols[3]);
+                    entry.etag = emptyToNull(cols[4]);
+                    entry.lastModified = emptyToNull(cols[5]);
+                    entry.contentType = emptyToNull(cols[6]);
+                    entry.contentEncoding = emptyToNull(cols[7]);
+                    entry.cacheControl = emptyToNull(cols[8]);
+                    entry.varyEncoding = emptyToNull(cols[9]);
+                    if (new File(this.dir, entry.hash).isFile()) {
+                        this.entries.put(entry.url, entry);
+                        this.addReference(entry.hash, entry.size);
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                LOG.warn("キャッシュの索引を読み込めませんでした", e);
+            }
+        }
+        File[] files = this.dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (!name.equals(INDEX_FILE_NAME) && !this.references.containsKey(name)) {
+                    file.delete();
+                }
+            }
+        }
+        this.evict();
+    }
+
+    /** 索引を古い順に保存する */
+    private synchronized void save() {
+        if (!this.dir.exists() && !this.dir.mkdirs()) {
+            return;
+        }
+        File index = new File(this.dir, INDEX_FILE_NAME);
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(index), UTF8))) {
+            for (Entry entry : this.entries.values()) {
+                writer.print(clean(entry.url) + "\t" + entry.hash + "\t" + entry.size + "\t" + entry.expires + "\t"
+                        + clean(entry.etag) + "\t" + clean(entry.lastModified) + "\t" + clean(entry.contentType)
+                        + "\t" + clean(entry.contentEncoding) + "\t" + clean(entry.cacheControl)
+                        + "\t" + clean(entry.varyEncoding) + "\n");
+            }
+        } catch (IOException e) {
+            LOG.warn("キャッシュの索引を保存できませんでした", e);
+        }
+    }
+
+    private String getStatistics() {
+        long hits = this.numHits.get() + this.numRevalidated.get();
+        long total = hits + this.numMisses.get();
+        long ratio = (total > 0) ? ((hits * 100) / total) : 0;
+        synchronized (this) {
+            return "AssetCache: ヒット率" + ratio + "% (ヒット" + this.numHits.get() + "件, 確認してヒット"
+                    + this.numRevalidated.get() + "件, ミス" + this.numMisses.get() + "件), "
+                    + "節約" + (this.bytesServed.get() / MB) + "MB, "
+                    + this.numStored.get() + "件保存, " + this.numEvicted.get() + "件削除, "
+                    + this.entries.size() + "件 " + (this.totalSize / MB) + "MB使用";
+        }
+    }
+
+    /** 新しさの期限と検証用のヘッダを更新する */
+    private static void updateValidators(Entry entry, HttpFields headers) {
+        String etag = headers.get(HttpHeader.ETAG);
+        if (etag != null) {
+            entry.etag = etag;
+        }
+        String lastModified = headers.get(HttpHeader.LAST_MODIFIED);
+        if (lastModified != null) {
+            entry.lastModified = lastModified;
+        }
+        String cacheControl = headers.get(HttpHeader.CACHE_CONTROL);
+        if (cacheControl != null) {
+            entry.cacheControl = cacheControl;
+        }
+        entry.expires = getExpires(entry, headers);
+    }
+
+    /** Cache-Control, Expires, Last-Modifiedから新しい期限を求める */
+    private static long getExpires(Entry entry, HttpFields headers) {
+        long now = System.currentTimeMillis();
+        String cacheControl = entry.cacheControl;
+        if (hasDirective(cacheControl, "no-cache") || hasDirective(cacheControl, "must-revalidate")) {
+            return 0;
+        }
+        long maxAge = getDirectiveValue(cacheControl, "max-age");
+        if (maxAge >= 0) {
+            return now + TimeUnit.SECONDS.toMillis(maxAge);
+        }
+        long expires = headers.getDateField(HttpHeader.EXPIRES.asString());
+        if (expires >= 0) {
+            return expires;
+        }
+        long lastModified = headers.getDateField(HttpHeader.LAST_MODIFIED.asString());
+        if (lastModified >= 0) {
+            // 期限が無い場合は最終更新からの経過時間の1割を期限にする
+            return now + ((now - lastModified) / 10);
+        }
+        return 0;
+    }
+
+    private static boolean hasDirective(String cacheControl, String name) {
+        if (cacheControl == null) {
+            return false;
+        }
+        for (String directive : cacheControl.split(",")) {
+            String d = directive.trim();
+            if (d.equalsIgnoreCase(name) || d.toLowerCase().startsWith(name + "=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getDirectiveValue(String cacheControl, String name) {
+        if (cacheControl == null) {
+            return -1;
+        }
+        for (String directive : cacheControl.split(",")) {
+            String d = directive.trim().toLowerCase();
+            if (d.startsWith(name + "=")) {
+                try {
+                    return Long.parseLong(d.substring(name.length() + 1).replace("\"", ""));
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String getUrl(HttpServletRequest request) {
+        String query = request.getQueryString();
+        String url = request.getRequestURL().toString();
+        return (query != null) ? (url + "?" + query) : url;
+    }
+
+    /** 比較用に正規化した Accept-Encoding （無い場合は identity ） */
+    private static String getAcceptEncoding(HttpServletRequest request) {
+        String value = request.getHeader(HttpHeader.ACCEPT_ENCODING.asString());
+        if ((value == null) || value.trim().isEmpty()) {
+            return "identity";
+        }
+        return value.replace(" ", "").replace("\t", "").toLowerCase();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static String clean(String value) {
+        return (value == null) ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
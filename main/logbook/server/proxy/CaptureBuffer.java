@@ -0,0 +1,269 @@
+package logbook.server.proxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+
+/**
+ * レスポンスのキャプチャ
+ *
+ * 受け取った内容をプールから借りたバッファのリストに溜めます。
+ * 全体を1つのバイト配列にまとめずに、バッファから直接読み込んだり解凍したりできます。
+ * 使い終わったら {@link #release()} でバッファをプールに返してください。
+ */
+final class CaptureBuffer {
+
+    /** 1つのバッファの大きさ */
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final ByteBufferPool pool;
+
+    /** 書き込みモードのバッファ */
+    private final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+
+    private int size = 0;
+
+    /**
+     * @param pool バッファのプール
+     */
+    CaptureBuffer(ByteBufferPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 追記します
+     */
+    void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            ByteBuffer buf = this.buffers.isEmpty() ? null : this.buffers.get(this.buffers.size() - 1);
+            if ((buf == null) || !buf.hasRemaining()) {
+                // Inflaterに配列をそのまま渡せるようにヒープのバッファを使う
+                buf = this.pool.acquire(CHUNK_SIZE, false);
+                buf.clear();
+                this.buffers.add(buf);
+            }
+            int n = Math.min(len, buf.remaining());
+            buf.put(b, off, n);
+            off += n;
+            len -= n;
+            this.size += n;
+        }
+    }
+
+    /**
+     * @return キャプチャしたバイト数
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @return キャプチャした内容を読み込むストリーム
+     */
+    InputStream newInputStream() {
+        return new BufferInputStream();
+    }
+
+    /**
+     * @return キャプチャしたgzipを解凍しながら読み込むストリーム
+     */
+    InputStream newGzipInputStream() throws IOException {
+        return new GzipInputStream();
+    }
+
+    /**
+     * @param stream 読み込むストリーム
+     * @return ストリームの内容全部
+     */
+    static byte[] toByteArray(InputStream stream, int sizeHint) throws IOException {
+        byte[] result = new byte[Math.max(sizeHint, 64)];
+        int length = 0;
+        int n;
+        while ((n = stream.read(result, length, result.length - length)) != -1) {
+            length += n;
+            if (length == result.length) {
+                byte[] grown = new byte[result.length * 2];
+                System.arraycopy(result, 0, grown, 0, length);
+                result = grown;
+            }
+        }
+        if (length == result.length) {
+            return result;
+        }
+        byte[] exact = new byte[length];
+        System.arraycopy(result, 0, exact, 0, length);
+        return exact;
+    }
+
+    /**
+     * バッファをプールに返します
+     */
+    void release() {
+        for (ByteBuffer buf : this.buffers) {
+            this.pool.release(buf);
+        }
+        this.buffers.clear();
+        this.size = 0;
+    }
+
+    /** 読み込みモードにした index 番目のバッファ */
+    private ByteBuffer readable(int index) {
+        ByteBuffer buf = this.buffers.get(index).duplicate();
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * バッファを順番に読み込むストリーム
+     */
+    private class BufferInputStream extends InputStream {
+
+        private int index = 0;
+
+        private ByteBuffer current = null;
+
+        /** 読み込めるバッファ（終わりの場合は null ） */
+        private ByteBuffer current() {
+            while ((this.current == null) || !this.current.hasRemaining()) {
+                if (this.index >= CaptureBuffer.this.buffers.size()) {
+                    return null;
+                }
+                this.current = CaptureBuffer.this.readable(this.index++);
+            }
+            return this.current;
+        }
+
+        @Override
+        public int read() {
+            ByteBuffer buf = this.current();
+            return (buf == null) ? -1 : (buf.get() & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer buf = this.current();
+            if (buf == null) {
+                return -1;
+            }
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+    }
+
+    /**
+     * gzipのヘッダを読み飛ばしてから、バッファを {@link Inflater} に直接渡して解凍するストリーム
+     */
+    private class GzipInputStream extends InputStream {
+
+        private static final int FHCRC = 2;
+        private static final int FEXTRA = 4;
+        private static final int FNAME = 8;
+        private static final int FCOMMENT = 16;
+
+        private final Inflater inflater = new Inflater(true);
+
+        private int index = 0;
+
+        private boolean finished = false;
+
+        private final byte[] single = new byte[1];
+
+        GzipInputStream() throws IOException {
+            BufferInputStream header = new BufferInputStream();
+            if ((header.read() != 0x1f) || (header.read() != 0x8b) || (header.read() != 8)) {
+                throw new ZipException("gzipではありません");
+            }
+            int flags = header.read();
+            // MTIME, XFL, OS
+            skip(header, 6);
+            if ((flags & FEXTRA) != 0) {
+                int xlen = header.read() | (header.read() << 8);
+                skip(header, xlen);
+            }
+            if ((flags & FNAME) != 0) {
+                skipString(header);
+            }
+            if ((flags & FCOMMENT) != 0) {
+                skipString(header);
+            }
+            if ((flags & FHCRC) != 0) {
+                skip(header, 2);
+            }
+            // ヘッダの残りのバッファを渡す
+            this.index = header.index;
+            ByteBuffer rest = header.current;
+            if ((rest != null) && rest.hasRemaining()) {
+                this.inflater.setInput(rest.array(), rest.arrayOffset() + rest.position(), rest.remaining());
+            }
+        }
+
+        private void skip(InputStream in, int n) throws IOException {
+            for (int i = 0; i < n; i++) {
+                if (in.read() == -1) {
+                    throw new ZipException("gzipのヘッダが壊れています");
+                }
+            }
+        }
+
+        private void skipString(InputStream in) throws IOException {
+            int read;
+            while ((read = in.read()) != 0) {
+                if (read == -1) {
+                    throw new ZipException("gzipのヘッダが壊れています");
+                }
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            return (this.read(this.single, 0, 1) == -1) ? -1 : (this.single[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                while (!this.finished) {
+                    int n = this.inflater.inflate(b, off, len);
+                    if (n > 0) {
+                        return n;
+                    }
+                    if (this.inflater.finished()) {
+                        this.finished = true;
+                    }
+                    else if (this.inflater.needsDictionary()) {
+                        throw new ZipException("辞書が必要なデータは解凍できません");
+                    }
+                    else if (this.inflater.needsInput()) {
+                        if (this.index >= CaptureBuffer.this.buffers.size()) {
+                            throw new ZipException("gzipのデータが途中で終わっています");
+                        }
+                        ByteBuffer buf = CaptureBuffer.this.readable(this.index++);
+                        this.inflater.setInput(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+                    }
+                }
+                return -1;
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            this.inflater.end();
+        }
+    }
+}
@@ -1,8 +1,16 @@
 package logbook.server.proxy;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import logbook.config.AppConfig;
@@ -13,21 +21,44 @@ import logbook.gui.ApplicationMain;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.jetty.client.HttpClient;
-import org.eclipse.jetty.client.api.ContentResponse;
-import org.eclipse.jetty.client.api.Request;
-import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BytesContentProvider;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.util.UrlEncoded;
-import org.eclipse.swt.widgets.Display;
 
 /**
  * 艦これ統計データベースに送信する
+ *
+ * 送信するデータは一旦ファイルに追記してから、古い順に送信します。
+ * 送信は同時にいくつか行い、HttpClientの接続を使いまわします。
+ * 失敗した場合は間隔を倍々にしながら同じデータを送り直すので、通信できない間や終了中のデータも次回起動時に送信します。
  * @author Nekopanda
  */
 public class DatabaseClient extends Thread {
     private static final Logger LOG = LogManager.getLogger(DatabaseClient.class);
     private static DatabaseClient instance = null;
 
+    /** 送信先 */
+    private static final String ENDPOINT = "http://api.kancolle-db.net/2/";
+
+    /** 同時に送信する数 */
+    private static final int MAX_IN_FLIGHT = 4;
+
+    /** 送り直すまでの最初の間隔(ミリ秒) */
+    private static final long MIN_BACKOFF = 1000;
+
+    /** 送り直すまでの最大の間隔(ミリ秒) */
+    private static final long MAX_BACKOFF = TimeUnit.MINUTES.toMillis(10);
+
+    /** ファイルに書き込むまでのメモリ上のキューの大きさ */
+    private static final int QUEUE_SIZE = 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** 終了を知らせるイベント（割り込むとファイルのチャネルが閉じてしまうため） */
+    private static final Object END_EVENT = new Object();
+
     private static final String[] sendDatabaseUrls = new String[]
     {
             "api_port/port",
@@ -56,31 +87,64 @@ public class DatabaseClient extends Thread {
 
     private static synchronized DatabaseClient getInstance() {
         if (instance == null) {
-            instance = new DatabaseClient();
+            instance = new DatabaseClient(AppConstants.DATABASE_SPOOL_FILE, ENDPOINT);
             instance.start();
         }
         return instance;
     }
 
-    public static void send(UndefinedData data) {
-        if (AppConfig.get().isSendDatabase() && (AppConfig.get().getAccessKey().length() > 0)) {
+    /**
+     * @return 送信するデータのパス
+     */
+    static String[] getTargetPaths() {
+        String[] paths = new String[sendDatabaseUrls.length];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = "/kcsapi/" + sendDatabaseUrls[i];
+        }
+        return paths;
+    }
+
+    /**
+     * 送信するデータかを調べます
+     * 
+     * @param url URL
+     * @return 送信するデータの場合true
+     */
+    public static boolean isTarget(String url) {
+        if (isEnabled()) {
             for (String entry : sendDatabaseUrls)
             {
-                if (data.getUrl().endsWith(entry))
+                if (url.endsWith(entry))
                 {
-                    getInstance().dataQueue.offer(data);
-                    break;
+                    return true;
                 }
             }
         }
+        return false;
+    }
+
+    /**
+     * @return 送信する設定か
+     */
+    private static boolean isEnabled() {
+        return AppConfig.get().isSendDatabase() && (AppConfig.get().getAccessKey().length() > 0);
+    }
+
+    public static void send(UndefinedData data) {
+        if ((data.getResponse() != null) && isTarget(data.getUrl())) {
+            getInstance().enqueue(data);
+        }
     }
 
+    /**
+     * メモリ上のキューにあるデータをファイルに書き込んでから終了します
+     * 送信中のデータは次回起動時に送り直します
+     */
     public static synchronized void end() {
         if (instance != null) {
-            instance.endRequested = true;
-            instance.interrupt();
             try {
-                instance.join();
+                instance.terminate();
+                LOG.info(instance.getStatistics());
                 instance = null;
             } catch (InterruptedException e) {
                 LOG.fatal("DatabaseClientスレッド終了時に何かのエラー", e);
@@ -88,31 +152,237 @@ public class DatabaseClient extends Thread {
         }
     }
 
+    /**
+     * @return 統計情報（スレッドが動いていない場合は空文字）
+     */
+    public static synchronized String getCurrentStatistics() {
+        return (instance != null) ? instance.getStatistics() : "";
+    }
+
     /** この正規表現イミフになりつつある・・・ */
     private final Pattern apiTokenPattern = Pattern
             .compile("&api(_|%5F)token=[0-9a-f]+|api(_|%5F)token=[0-9a-f]+&?");
 
-    private final BlockingQueue<UndefinedData> dataQueue = new ArrayBlockingQueue<UndefinedData>(32);
+    /** 送信するデータと送信結果 */
+    private final BlockingQueue<Object> events = new LinkedBlockingQueue<Object>();
+
+    /** 送信結果 */
+    private static final class Completion {
+        private final DatabaseSpool.Payload payload;
+        private final boolean success;
+        /** 送り直しても成功しない失敗 */
+        private final boolean rejected;
+        private final String errorReason;
+
+        private Completion(DatabaseSpool.Payload payload, boolean success, boolean rejected, String errorReason) {
+            this.payload = payload;
+            this.success = success;
+            this.rejected = rejected;
+            this.errorReason = errorReason;
+        }
+    }
+
+    private final File spoolFile;
+
+    private final String endpoint;
 
     private HttpClient httpClient = null;
 
-    private boolean endRequested = false;
+    private volatile boolean endRequested = false;
+
+    // 以下はこのスレッドからだけ使う
+    private DatabaseSpool spool;
+
+    /** 送信中か送り直し待ちのデータ (ファイル内の位置 → データ) */
+    private final TreeMap<Long, DatabaseSpool.Payload> unacked = new TreeMap<Long, DatabaseSpool.Payload>();
+
+    /** 送り直すデータ */
+    private final Deque<DatabaseSpool.Payload> retryQueue = new ArrayDeque<DatabaseSpool.Payload>();
+
+    private int inFlight = 0;
+
+    private long backoff = 0;
 
-    private Request createRequest(UndefinedData data) throws UnsupportedEncodingException {
+    private long nextAttempt = 0;
+
+    // 統計
+    private final AtomicLong numQueued = new AtomicLong();
+    private final AtomicLong numDropped = new AtomicLong();
+    private final AtomicLong numSent = new AtomicLong();
+    private final AtomicLong numRetried = new AtomicLong();
+    private final AtomicLong numRejected = new AtomicLong();
+    private volatile long pendingBytes = 0;
+    private volatile int pendingCount = 0;
+
+    /**
+     * 送信先を指定して作ります（普段は {@link #send(UndefinedData)} が送信先のスレッドを作ります）
+     * 
+     * @param spoolFile 送信するデータを溜めておくファイル
+     * @param endpoint 送信先のURL
+     */
+    public DatabaseClient(File spoolFile, String endpoint) {
+        this.spoolFile = spoolFile;
+        this.endpoint = endpoint;
+        this.setName("logbook_database_client");
+        this.setDaemon(true);
+    }
+
+    /**
+     * データをキューに入れます（一杯の場合は捨てます）
+     * 
+     * @param data データ
+     */
+    public void enqueue(UndefinedData data) {
+        String url = data.getFullUrl();
+        String request = (data.getRequest() != null) ? new String(data.getRequest(), UTF8) : "";
+        String response = new String(data.getResponse(), UTF8);
         // api_tokenを取り除く
-        String origRequest = new String(data.getRequest(), "UTF-8");
-        String sendRequestBody = this.apiTokenPattern.matcher(origRequest).replaceAll("");
-        String sendResponseBody = new String(data.getResponse(), "UTF-8");
+        request = this.apiTokenPattern.matcher(request).replaceAll("");
+        if (this.events.size() >= QUEUE_SIZE) {
+            this.numDropped.incrementAndGet();
+            return;
+        }
+        this.events.offer(new DatabaseSpool.Payload(url, request, response));
+        this.numQueued.incrementAndGet();
+    }
+
+    /**
+     * メモリ上のキューにあるデータをファイルに書き込んでスレッドを終了させ、終わるまで待ちます
+     */
+    public void terminate() throws InterruptedException {
+        this.endRequested = true;
+        this.events.offer(END_EVENT);
+        this.join();
+    }
+
+    /**
+     * @return 統計情報
+     */
+    public String getStatistics() {
+        return "DatabaseClient: " + this.numSent.get() + "件送信, " + this.numRetried.get() + "回送り直し, "
+                + this.numRejected.get() + "件拒否, " + this.numDropped.get() + "件破棄, "
+                + "未送信" + this.pendingCount + "件 (" + (this.pendingBytes / 1024) + "KB), "
+                + "待ち時間" + this.backoff + "ms";
+    }
+
+    private byte[] createBody(DatabaseSpool.Payload payload) throws UnsupportedEncodingException {
         UrlEncoded body = new UrlEncoded();
         body.add("token", AppConfig.get().getAccessKey());
         // このクライアントのエージェントキー
         body.add("agent", "6nENnnGzRgSTVeuU652r");
-        body.add("url", data.getFullUrl());
-        body.add("requestbody", sendRequestBody);
-        body.add("responsebody", sendResponseBody); // 
-        return this.httpClient.POST("http://api.kancolle-db.net/2/")
+        body.add("url", payload.url);
+        body.add("requestbody", payload.request);
+        body.add("responsebody", payload.response); // 
+        return body.encode().getBytes("UTF-8");
+    }
+
+    /** データを送信する。結果はイベントのキューに入る */
+    private void dispatch(final DatabaseSpool.Payload payload) throws UnsupportedEncodingException {
+        this.inFlight++;
+        this.httpClient.POST(this.endpoint)
                 .agent("logbook/v" + AppConstants.VERSION)
-                .content(new StringContentProvider(body.encode()), "application/x-www-form-urlencoded");
+                .timeout(60, TimeUnit.SECONDS)
+                .content(new BytesContentProvider(this.createBody(payload)), "application/x-www-form-urlencoded")
+                .send(new Response.CompleteListener() {
+                    @Override
+                    public void onComplete(Result result) {
+                        Completion completion;
+                        if (result.isFailed()) {
+                            completion = new Completion(payload, false, false, String.valueOf(result.getFailure()
+                                    .getMessage()));
+                        }
+                        else {
+                            int status = result.getResponse().getStatus();
+                            boolean success = HttpStatus.isSuccess(status);
+                            // リクエストの内容が悪い場合は送り直さない
+                            boolean rejected = HttpStatus.isClientError(status)
+                                    && (status != HttpStatus.REQUEST_TIMEOUT_408) && (status != 429);
+                            completion = new Completion(payload, success, rejected, result.getResponse().getReason());
+                        }
+                        DatabaseClient.this.events.offer(completion);
+                    }
+                });
+    }
+
+    private void onCompletion(Completion completion) throws IOException {
+        this.inFlight--;
+        final DatabaseSpool.Payload payload = completion.payload;
+        if (this.unacked.get(payload.offset) != payload) {
+            // 送信しない設定になって捨てたデータ
+            return;
+        }
+        if (completion.success || completion.rejected) {
+            this.unacked.remove(payload.offset);
+            if (completion.success) {
+                // 成功したら待ち時間をリセット
+                this.backoff = 0;
+                this.numSent.incrementAndGet();
+                // ログに出す
+                if (AppConfig.get().isDatabaseSendLog()) {
+                    String url = payload.url;
+                    ApplicationMain.logPrint("DBへ送信しました(" + url.substring(url.lastIndexOf('/') + 1) + ")");
+                }
+            }
+            else {
+                this.numRejected.incrementAndGet();
+                LOG.warn("データベースへの送信が拒否されました. " + completion.errorReason);
+            }
+            // 先頭から続けて送信済みになった所までファイルから消す
+            this.spool.commit(this.unacked.isEmpty() ? this.spool.getReadPosition() : this.unacked.firstKey());
+        }
+        else {
+            // 少し時間をおいて送り直す
+            this.backoff = (this.backoff == 0) ? MIN_BACKOFF : Math.min(this.backoff * 2, MAX_BACKOFF);
+            this.nextAttempt = System.currentTimeMillis() + this.backoff;
+            this.retryQueue.addFirst(payload);
+            this.numRetried.incrementAndGet();
+            if (this.backoff >= MAX_BACKOFF) {
+                LOG.warn("データベースへの送信に失敗しました. " + completion.errorReason);
+            }
+        }
+    }
+
+    /** 送信しない設定になったら送っていないデータを捨てる */
+    private void discardIfDisabled() throws IOException {
+        if (isEnabled() || (this.unacked.isEmpty() && (this.spool.getPendingBytes() == 0))) {
+            return;
+        }
+        this.unacked.clear();
+        this.retryQueue.clear();
+        this.spool.clear();
+        this.backoff = 0;
+        this.nextAttempt = 0;
+        LOG.info("データベースに送信しない設定になったので未送信のデータを破棄しました");
+    }
+
+    /** 送れるだけ送信する */
+    private void dispatchPending() throws IOException {
+        if (this.endRequested || !isEnabled() || (System.currentTimeMillis() < this.nextAttempt)) {
+            return;
+        }
+        // 失敗が続いている間は1件ずつ確認する
+        int limit = (this.backoff > 0) ? 1 : MAX_IN_FLIGHT;
+        while (this.inFlight < limit) {
+            DatabaseSpool.Payload payload = this.retryQueue.pollFirst();
+            if (payload == null) {
+                if (!this.spool.hasNext() || ((payload = this.spool.next()) == null)) {
+                    break;
+                }
+                this.unacked.put(payload.offset, payload);
+            }
+            this.dispatch(payload);
+        }
+    }
+
+    private void updatePending() throws IOException {
+        this.pendingBytes = this.spool.getPendingBytes();
+        int queued = 0;
+        for (Object event : this.events) {
+            if (event instanceof DatabaseSpool.Payload) {
+                queued++;
+            }
+        }
+        this.pendingCount = this.unacked.size() + queued;
     }
 
     /* (非 Javadoc)
@@ -121,72 +391,64 @@ public class DatabaseClient extends Thread {
     @Override
     public void run() {
         try {
-            int skipCount = 0;
-            int errorCount = 0;
+            this.spool = new DatabaseSpool(this.spoolFile);
             this.httpClient = new HttpClient();
             this.httpClient.start();
 
-            while (true) {
-                final UndefinedData data = this.dataQueue.take();
-                if (skipCount > 0) {
-                    --skipCount;
-                    continue;
+            while (!this.endRequested) {
+                this.discardIfDisabled();
+                this.dispatchPending();
+                this.updatePending();
+                long wait = this.nextAttempt - System.currentTimeMillis();
+                if ((wait <= 0) || (wait > 1000)) {
+                    wait = 1000;
                 }
-                for (int retly = 0;; ++retly) {
-                    String errorReason = null;
-                    try {
-                        ContentResponse response = this.createRequest(data).send();
-                        if (HttpStatus.isSuccess(response.getStatus())) {
-                            // 成功したらエラーカウンタをリセット
-                            skipCount = errorCount = 0;
-                            // ログに出す
-                            if (AppConfig.get().isDatabaseSendLog()) {
-                                Display.getDefault().asyncExec(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        if (!ApplicationMain.main.getShell().isDisposed()) {
-                                            String url = data.getUrl();
-                                            ApplicationMain.main.printMessage("DBへ送信しました("
-                                                    + url.substring(url.lastIndexOf('/') + 1) + ")");
-                                        }
-                                    }
-                                });
-                            }
-                            break;
-                        }
-                        else {
-                            errorReason = response.getReason();
+                Object event = this.events.poll(wait, TimeUnit.MILLISECONDS);
+                while (event != null) {
+                    if (event instanceof DatabaseSpool.Payload) {
+                        // 先にファイルに書き込む（送信しない設定になっていたら捨てる）
+                        if (isEnabled()) {
+                            this.spool.append((DatabaseSpool.Payload) event);
                         }
-                    } catch (Exception e) {
-                        errorReason = e.getMessage();
                     }
-                    if (errorReason != null) {
-                        // 少し時間をおいてリトライ
-                        Thread.sleep(1000);
-                        if (retly >= 4) {
-                            // リトライが多すぎたらエラーにする
-                            skipCount = (errorCount++) * 4;
-                            LOG.warn("データベースへの送信に失敗しました. " + errorReason);
-                            if (skipCount > 0) {
-                                LOG.warn("以降 " + skipCount + " 個の送信をスキップします.");
-                            }
-                            break;
-                        }
+                    else if (event instanceof Completion) {
+                        this.onCompletion((Completion) event);
                     }
+                    event = this.events.poll();
                 }
             }
 
-        } catch (Exception e) {
+        } catch (InterruptedException e) {
             if (!this.endRequested) {
                 LOG.fatal("スレッドが異常終了しました", e);
             }
+        } catch (Exception e) {
+            LOG.fatal("スレッドが異常終了しました", e);
         } finally {
-            if (this.httpClient != null) {
-                try {
-                    this.httpClient.stop();
-                } catch (Exception e) {
-                    LOG.fatal("HttpClientの終了に失敗", e);
+            this.shutdown();
+        }
+    }
+
+    /** まだファイルに書き込んでいないデータを書き込んで閉じる */
+    private void shutdown() {
+        if (this.spool != null) {
+            try {
+                Object event;
+                while ((event = this.events.poll()) != null) {
+                    if (event instanceof DatabaseSpool.Payload) {
+                        this.spool.append((DatabaseSpool.Payload) event);
+                    }
                 }
+                this.spool.close();
+            } catch (IOException e) {
+                LOG.warn("送信するデータを保存できませんでした", e);
+            }
+        }
+        if (this.httpClient != null) {
+            try {
+                this.httpClient.stop();
+            } catch (Exception e) {
+                LOG.fatal("HttpClientの終了に失敗", e);
             }
         }
     }
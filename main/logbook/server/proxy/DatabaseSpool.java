@@ -0,0 +1,268 @@
+package logbook.server.proxy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * 統計データベースに送るデータを溜めておく追記専用のファイル
+ *
+ * 1件ごとに [全体の長さ(int)][圧縮したデータ] を追記します。
+ * 送信し終わった先頭の位置は別のファイルに保存し、全部送り終わったらファイルを空にします。
+ * 書き込み途中で終了して壊れた末尾は読み込み時に切り捨てます。
+ * {@link DatabaseClient} のスレッドからだけ使います。
+ *
+ * @author Nekopanda
+ */
+final class DatabaseSpool {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** 送信済みの位置がこれより後ろになったら詰める */
+    private static final long COMPACT_THRESHOLD = 16 * 1024 * 1024;
+
+    /**
+     * 送信するデータ
+     */
+    static final class Payload {
+        /** ファイル内の位置 */
+        long offset = -1;
+        /** 次のデータの位置 */
+        long end = -1;
+
+        final String url;
+        final String request;
+        final String response;
+
+        Payload(String url, String request, String response) {
+            this.url = url;
+            this.request = request;
+            this.response = response;
+        }
+    }
+
+    private final File file;
+
+    private final File posFile;
+
+    private final RandomAccessFile raf;
+
+    private final FileChannel channel;
+
+    /** 送信し終わった先頭の位置 */
+    private long head;
+
+    /** 次に読み込む位置 */
+    private long readPosition;
+
+    /**
+     * @param file 溜めておくファイル
+     */
+    DatabaseSpool(File file) throws IOException {
+        this.file = file;
+        this.posFile = new File(file.getPath() + ".pos");
+        File dir = file.getAbsoluteFile().getParentFile();
+        if ((dir != null) && !dir.exists()) {
+            dir.mkdirs();
+        }
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = this.raf.getChannel();
+        this.head = 0;
+        if (this.posFile.isFile()) {
+            try {
+                this.head = Long.parseLong(FileUtils.readFileToString(this.posFile, "UTF-8").trim());
+            } catch (NumberFormatException e) {
+                this.head = 0;
+            }
+        }
+        this.head = Math.max(0, Math.min(this.head, this.channel.size()));
+        this.readPosition = this.head;
+    }
+
+    /**
+     * データを末尾に追記します
+     */
+    void append(Payload payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            writeString(out, payload.url);
+            writeString(out, payload.request);
+            writeString(out, payload.response);
+        } finally {
+            deflater.end();
+        }
+        byte[] data = bytes.toByteArray();
+        ByteBuffer buf = ByteBuffer.allocate(4 + data.length);
+        buf.putInt(data.length).put(data).flip();
+        long position = this.channel.size();
+        while (buf.hasRemaining()) {
+            position += this.channel.write(buf, position);
+        }
+    }
+
+    /**
+     * @return まだ読み込んでいないデータがあるか
+     */
+    boolean hasNext() throws IOException {
+        return this.readPosition < this.channel.size();
+    }
+
+    /**
+     * 次のデータを読み込みます
+     *
+     * @return データ（無いか末尾が壊れている場合は null ）
+     */
+    Payload next() throws IOException {
+        long size = this.channel.size();
+        if ((this.readPosition + 4) > size) {
+            this.truncateTail(size);
+            return null;
+        }
+        ByteBuffer lengthBuf = ByteBuffer.allocate(4);
+        this.readFully(lengthBuf, this.readPosition);
+        int length = lengthBuf.getInt(0);
+        if ((length < 0) || ((this.readPosition + 4 + length) > size)) {
+            this.truncateTail(size);
+            return null;
+        }
+        ByteBuffer data = ByteBuffer.allocate(length);
+        this.readFully(data, this.readPosition + 4);
+        Payload payload;
+        Inflater inflater = new Inflater();
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(data.array()), inflater))) {
+            payload = new Payload(readString(in), readString(in), readString(in));
+        } catch (ZipException | EOFException e) {
+            this.truncateTail(size);
+            return null;
+        } finally {
+            inflater.end();
+        }
+        payload.offset = this.readPosition;
+        payload.end = this.readPosition + 4 + length;
+        this.readPosition = payload.end;
+        return payload;
+    }
+
+    /**
+     * 送信し終わった先頭の位置を進めます
+     *
+     * @param head 新しい先頭（これより前は全部送信済み）
+     */
+    void commit(long head) throws IOException {
+        if (head <= this.head) {
+            return;
+        }
+        this.head = head;
+        long size = this.channel.size();
+        if ((this.head >= size) && (this.readPosition >= size)) {
+            // 全部送り終わったので空にする
+            this.channel.truncate(0);
+            this.head = 0;
+            this.readPosition = 0;
+        }
+        else if ((this.head >= COMPACT_THRESHOLD) && (this.head == this.readPosition)) {
+            // 送信中のデータが無い時だけ詰める（位置がずれるため）
+            this.compact();
+        }
+        FileUtils.writeStringToFile(this.posFile, String.valueOf(this.head), "UTF-8");
+    }
+
+    /**
+     * 送信していないデータも含めて全部捨てます
+     */
+    void clear() throws IOException {
+        this.channel.truncate(0);
+        this.head = 0;
+        this.readPosition = 0;
+        FileUtils.writeStringToFile(this.posFile, String.valueOf(this.head), "UTF-8");
+    }
+
+    /**
+     * @return 次に読み込む位置
+     */
+    long getReadPosition() {
+        return this.readPosition;
+    }
+
+    /**
+     * @return 送信し終わっていないデータのバイト数
+     */
+    long getPendingBytes() throws IOException {
+        return this.channel.size() - this.head;
+    }
+
+    void close() throws IOException {
+        this.channel.force(false);
+        this.raf.close();
+    }
+
+    /** 送信済みの部分をファイルから取り除く */
+    private void compact() throws IOException {
+        long size = this.channel.size();
+        long shift = this.head;
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        long src = shift;
+        long dst = 0;
+        while (src < size) {
+            buf.clear();
+            int n = this.channel.read(buf, src);
+            if (n <= 0) {
+                break;
+            }
+            buf.flip();
+            while (buf.hasRemaining()) {
+                dst += this.channel.write(buf, dst);
+            }
+            src += n;
+        }
+        this.channel.truncate(size - shift);
+        this.head = 0;
+        this.readPosition -= shift;
+    }
+
+    /** 壊れた末尾を切り捨てる */
+    private void truncateTail(long size) throws IOException {
+        if (this.readPosition < size) {
+            this.channel.truncate(this.readPosition);
+        }
+    }
+
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = this.channel.read(buf, position);
+            if (n < 0) {
+                throw new IOException("予期しないファイルの終わり (" + this.file.getPath() + ")");
+            }
+            position += n;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -1,5 +1,7 @@
 package logbook.server.proxy;
 
+import logbook.data.DataType;
+
 /**
  * 動作に必要なデータのみ取得するためのフィルターです。
  *
@@ -21,6 +23,23 @@ public class Filter {
     /** setAttribute用のキー(Content-Encoding) */
     public static final String CONTENT_ENCODING = "logbook.content-encoding";
 
+    /** setAttribute用のキー(キャプチャするリクエストか) */
+    public static final String CAPTURE = "logbook.capture";
+
+    /** キャプチャするAPIのパス */
+    private static final PathTrie CAPTURE_PATHS = new PathTrie();
+
+    static {
+        for (DataType type : DataType.values()) {
+            if (type.getUrl() != null) {
+                CAPTURE_PATHS.add(type.getUrl());
+            }
+        }
+        for (String path : DatabaseClient.getTargetPaths()) {
+            CAPTURE_PATHS.add(path);
+        }
+    }
+
     private static String serverName;
 
     /**
@@ -81,4 +100,16 @@ public class Filter {
         }
         return false;
     }
+
+    /**
+     * <p>
+     * キャプチャするAPIのパスかを調べます<br>
+     * 同定できるデータと統計データベースに送信するデータのパス以外はキャプチャしません
+     * 
+     * @param uri リクエストのURI
+     * @return キャプチャするAPIのパスか
+     */
+    public static boolean isCapturePath(String uri) {
+        return (uri != null) && CAPTURE_PATHS.contains(uri);
+    }
 }
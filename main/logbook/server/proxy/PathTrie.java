@@ -0,0 +1,68 @@
+package logbook.server.proxy;
+
+import java.util.Arrays;
+
+/**
+ * パスの集合を文字単位のトライ木で持ちます
+ *
+ * 調べるパスを1文字ずつたどるだけで、部分文字列や Map のキーを作らずに含まれているかを判定できます。
+ * 作成後は変更しないので、複数のスレッドから同時に調べても問題ありません。
+ */
+final class PathTrie {
+
+    private final Node root = new Node();
+
+    private static final class Node {
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+
+        private Node child(char c) {
+            char[] labels = this.labels;
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == c) {
+                    return this.children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node addChild(char c) {
+            Node node = this.child(c);
+            if (node == null) {
+                int n = this.labels.length;
+                this.labels = Arrays.copyOf(this.labels, n + 1);
+                this.children = Arrays.copyOf(this.children, n + 1);
+                node = new Node();
+                this.labels[n] = c;
+                this.children[n] = node;
+            }
+            return node;
+        }
+    }
+
+    /**
+     * パスを追加します
+     *
+     * @param path パス
+     */
+    void add(String path) {
+        Node node = this.root;
+        for (int i = 0; i < path.length(); i++) {
+            node = node.addChild(path.charAt(i));
+        }
+        node.terminal = true;
+    }
+
+    /**
+     * @param path パス
+     * @return パスが含まれている場合true
+     */
+    boolean contains(String path) {
+        Node node = this.root;
+        for (int i = 0; (i < path.length()) && (node != null); i++) {
+            node = node.child(path.charAt(i));
+        }
+        return (node != null) && node.terminal;
+    }
+}
@@ -1,5 +1,8 @@
 package logbook.server.proxy;
 
+import logbook.config.AppConfig;
+import logbook.config.bean.AppConfigBean;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.jetty.proxy.ConnectHandler;
@@ -18,17 +21,43 @@ public final class ProxyServer {
 
     private static final Logger LOG = LogManager.getLogger(ProxyServer.class);
 
+    /** APIの接続のアイドル時間(ミリ秒) */
+    private static final int API_IDLE_TIMEOUT = 5 * 60 * 1000;
+
     private static Server server;
 
+    private static StatisticsThreadPool threadpool;
+
+    private static ServerConnector connector;
+
+    /**
+     * キューの長さを取得できるスレッドプール
+     */
+    private static final class StatisticsThreadPool extends QueuedThreadPool {
+        private StatisticsThreadPool(int maxThreads, int minThreads) {
+            // スレッドのアイドル時間はライブラリの既定値のまま
+            super(maxThreads, minThreads);
+        }
+
+        private int getQueueSize() {
+            return this.getQueue().size();
+        }
+    }
+
     public static void start(int port) {
         try {
-            QueuedThreadPool threadpool = new QueuedThreadPool();
-            threadpool.setMinThreads(2);
+            AppConfigBean config = AppConfig.get();
+            int maxThreads = Math.max(config.getProxyMaxThreads(), 4);
+            int minThreads = Math.min(Math.max(config.getProxyMinThreads(), 1), maxThreads);
+            int idleTimeout = Math.max(config.getProxyIdleTimeout(), 1) * 1000;
+            threadpool = new StatisticsThreadPool(maxThreads, minThreads);
 
             server = new Server(threadpool);
 
-            ServerConnector connector = new ServerConnector(server, 1, 1);
+            connector = new ServerConnector(server,
+                    Math.max(config.getProxyAcceptors(), 1), Math.max(config.getProxySelectors(), 1));
             connector.setPort(port);
+            connector.setIdleTimeout(idleTimeout);
             server.setConnectors(new Connector[] { connector });
             /*// httpsをプロキシできないので下のコードに移行
                         ServletHandler servletHandler = new ServletHandler();
@@ -43,7 +72,16 @@ public final class ProxyServer {
 
             // httpはこっちのハンドラでプロキシ
             ServletContextHandler context = new ServletContextHandler(proxy, "/", ServletContextHandler.SESSIONS);
-            ServletHolder proxyServlet = new ServletHolder(new ReverseProxyServlet());
+            // ゲームのAPIは画像などとは別のHttpClientにして、接続のプールを分ける
+            ServletHolder apiServlet = newProxyServlet(config, idleTimeout);
+            apiServlet.setName("api");
+            apiServlet.setInitParameter(ReverseProxyServlet.INIT_API_PROFILE, "true");
+            // APIの接続はなるべく切らない
+            apiServlet.setInitParameter("idleTimeout", String.valueOf(Math.max(idleTimeout, API_IDLE_TIMEOUT)));
+            context.addServlet(apiServlet, "/kcsapi/*");
+
+            ServletHolder proxyServlet = newProxyServlet(config, idleTimeout);
+            proxyServlet.setName("asset");
             context.addServlet(proxyServlet, "/*");
 
             server.start();
@@ -53,15 +91,50 @@ public final class ProxyServer {
         }
     }
 
+    private static ServletHolder newProxyServlet(AppConfigBean config, int idleTimeout) {
+        ServletHolder holder = new ServletHolder(new ReverseProxyServlet());
+        // ゲームサーバーへの接続の設定
+        if (config.getUpstreamMaxConnections() > 0) {
+            holder.setInitParameter("maxConnections", String.valueOf(config.getUpstreamMaxConnections()));
+        }
+        holder.setInitParameter("idleTimeout", String.valueOf(idleTimeout));
+        return holder;
+    }
+
     public static void end() {
         try {
             if (server != null) {
                 server.stop();
                 server.join();
                 server = null;
+                threadpool = null;
+                connector = null;
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * @return スレッドプールと接続の状態と応答時間の分布
+     */
+    public static String getStatistics() {
+        StringBuilder sb = new StringBuilder();
+        StatisticsThreadPool pool = threadpool;
+        if (pool != null) {
+            int threads = pool.getThreads();
+            sb.append("スレッド: ").append(threads - pool.getIdleThreads()).append("/").append(threads)
+                    .append(" (最大").append(pool.getMaxThreads()).append(")")
+                    .append(" キュー: ").append(pool.getQueueSize())
+                    .append(pool.isLowOnThreads() ? " スレッド不足" : "").append("\n");
+        }
+        ServerConnector conn = connector;
+        if (conn != null) {
+            sb.append("接続: ").append(conn.getConnectedEndPoints().size())
+                    .append(" (アクセプタ").append(conn.getAcceptors())
+                    .append(", セレクタ").append(conn.getSelectorManager().getSelectorCount()).append(")\n");
+        }
+        sb.append(ProxyStatistics.getLatencies());
+        return sb.toString();
+    }
 }
@@ -0,0 +1,111 @@
+package logbook.server.proxy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * プロキシの種類ごとの応答時間の分布
+ *
+ * @author Nekopanda
+ */
+public final class ProxyStatistics {
+
+    /** 経路 */
+    public static enum Route {
+        /** ゲームのAPI */
+        API("API"),
+        /** 画像などのAPI以外 */
+        ASSET("その他"),
+        /** キャッシュから返したもの */
+        CACHE("キャッシュ");
+
+        private final String name;
+
+        private Route(String name) {
+            this.name = name;
+        }
+    }
+
+    /** 分布の区切り(ミリ秒) */
+    private static final long[] BOUNDS = { 10, 50, 100, 250, 500, 1000, 5000 };
+
+    private static final Histogram[] HISTOGRAMS = new Histogram[Route.values().length];
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new Histogram();
+        }
+    }
+
+    /**
+     * 応答時間の分布
+     */
+    private static final class Histogram {
+        private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void add(long nanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int index = 0;
+            while ((index < BOUNDS.length) && (millis >= BOUNDS[index])) {
+                index++;
+            }
+            this.counts.incrementAndGet(index);
+            this.count.incrementAndGet();
+            this.totalNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = this.maxNanos.get())) {
+                if (this.maxNanos.compareAndSet(max, nanos)) {
+                    break;
+                }
+            }
+        }
+
+        private String format(String name) {
+            long n = this.count.get();
+            StringBuilder sb = new StringBuilder();
+            sb.append(name).append(": ").append(n).append("件");
+            if (n > 0) {
+                sb.append(" 平均").append(TimeUnit.NANOSECONDS.toMillis(this.totalNanos.get() / n)).append("ms");
+                sb.append(" 最大").append(TimeUnit.NANOSECONDS.toMillis(this.maxNanos.get())).append("ms");
+                sb.append(" [");
+                for (int i = 0; i <= BOUNDS.length; i++) {
+                    if (i > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append((i < BOUNDS.length) ? ("<" + BOUNDS[i]) : (">=" + BOUNDS[BOUNDS.length - 1]));
+                    sb.append("ms:").append(this.counts.get(i));
+                }
+                sb.append("]");
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 応答時間を記録します
+     *
+     * @param route 経路
+     * @param nanos リクエストを受け取ってから応答が終わるまでの時間(ナノ秒)
+     */
+    public static void record(Route route, long nanos) {
+        HISTOGRAMS[route.ordinal()].add(nanos);
+    }
+
+    /**
+     * @return 経路ごとの応答時間の分布
+     */
+    public static String getLatencies() {
+        StringBuilder sb = new StringBuilder();
+        for (Route route : Route.values()) {
+            if (sb.length() > 0) {
+                sb.append("\n");
+            }
+            sb.append(HISTOGRAMS[route.ordinal()].format(route.name));
+        }
+        return sb.toString();
+    }
+}
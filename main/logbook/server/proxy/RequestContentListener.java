@@ -1,7 +1,6 @@
 package logbook.server.proxy;
 
 import java.nio.ByteBuffer;
-import java.util.Arrays;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -28,9 +27,14 @@ public final class RequestContentListener implements ContentListener {
      */
     @Override
     public void onContent(Request request, ByteBuffer buffer) {
-        if (((buffer.limit() > 0) && (buffer.limit() <= Filter.MAX_POST_FIELD_SIZE))
+        int length = buffer.remaining();
+        if (((length > 0) && (length <= Filter.MAX_POST_FIELD_SIZE))
+                && (this.httpRequest.getAttribute(Filter.CAPTURE) != null)
                 && Filter.isNeed(request.getHost())) {
-            this.httpRequest.setAttribute(Filter.REQUEST_BODY, Arrays.copyOf(buffer.array(), buffer.limit()));
+            // バッファは再利用されるので、ちょうどの大きさの配列に1回だけコピーする
+            byte[] body = new byte[length];
+            buffer.slice().get(body);
+            this.httpRequest.setAttribute(Filter.REQUEST_BODY, body);
         }
     }
 }
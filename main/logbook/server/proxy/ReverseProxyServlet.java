@@ -1,11 +1,9 @@
 package logbook.server.proxy;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.net.InetAddress;
-import java.util.zip.GZIPInputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -19,12 +17,16 @@ import logbook.data.UndefinedData;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.HttpRequest;
 import org.eclipse.jetty.client.api.ProxyConfiguration;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
 import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.MappedByteBufferPool;
 import org.eclipse.jetty.proxy.ProxyServlet;
 
 /**
@@ -33,12 +35,41 @@ import org.eclipse.jetty.proxy.ProxyServlet;
  */
 public final class ReverseProxyServlet extends ProxyServlet {
 
+    private static final Logger LOG = LogManager.getLogger(ReverseProxyServlet.class);
+
+    /** setAttribute用のキー(キャッシュへの書き込み) */
+    private static final String ASSET_CACHE = "logbook.asset-cache";
+
+    /** setAttribute用のキー(リクエストを受け取った時刻) */
+    private static final String START_TIME = "logbook.start-time";
+
+    /** 初期化パラメータ: ゲームのAPI専用のサーブレットか */
+    public static final String INIT_API_PROFILE = "logbook.api";
+
     /** ライブラリバグ対応 (HttpRequest#queryを上書きする) */
     private static final Field QUERY_FIELD = getDeclaredField(HttpRequest.class, "query");
 
     /** ローカルループバックアドレスからの接続のみ受け入れる */
     private final boolean allowOnlyFromLocalhost = AppConfig.get().isAllowOnlyFromLocalhost();
 
+    /** キャプチャに使うバッファのプール (HttpClientのプールを共有する) */
+    private volatile ByteBufferPool bufferPool;
+
+    /** 転送に使うHttpClient */
+    private volatile HttpClient httpClient;
+
+    /** ゲームサーバーへの接続を温める (API専用のサーブレットのみ) */
+    private UpstreamWarmer warmer;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        if (Boolean.parseBoolean(this.getServletConfig().getInitParameter(INIT_API_PROFILE))
+                && (this.httpClient != null)) {
+            this.warmer = new UpstreamWarmer(this.httpClient);
+        }
+    }
+
     /*
      * リモートホストがローカルループバックアドレス以外の場合400を返し通信しない
      */
@@ -49,6 +80,28 @@ public final class ReverseProxyServlet extends ProxyServlet {
             response.setStatus(400);
             return;
         }
+        long start = System.nanoTime();
+        request.setAttribute(START_TIME, start);
+        // キャプチャするかはURIだけで先に決めておく
+        if (Filter.isCapturePath(request.getRequestURI())) {
+            request.setAttribute(Filter.CAPTURE, Boolean.TRUE);
+        }
+        if ((this.warmer != null) && Filter.isServerDetected()
+                && Filter.getServerName().equals(request.getServerName())) {
+            this.warmer.touch(request.getServerName(), request.getServerPort(),
+                    request.getHeader(HttpHeader.USER_AGENT.asString()));
+        }
+        if (AssetCache.isTarget(request)) {
+            // ゲームの画像などはキャッシュにあればキャッシュから返す
+            AssetCache cache = AssetCache.get();
+            if (cache != null) {
+                if (cache.serve(request, response, this.httpClient)) {
+                    ProxyStatistics.record(ProxyStatistics.Route.CACHE, System.nanoTime() - start);
+                    return;
+                }
+                request.setAttribute(ASSET_CACHE, cache);
+            }
+        }
         super.service(request, response);
     }
 
@@ -67,6 +120,11 @@ public final class ReverseProxyServlet extends ProxyServlet {
         proxyRequest.header(HttpHeader.X_FORWARDED_SERVER, null);
         proxyRequest.header("Origin", null);
 
+        if (!AppConfig.get().isUpstreamKeepAlive()) {
+            // 接続を使いまわさない
+            proxyRequest.header(HttpHeader.CONNECTION, "close");
+        }
+
         String queryString = ((org.eclipse.jetty.server.Request) request).getQueryString();
         fixQueryString(proxyRequest, queryString);
 
@@ -85,6 +143,28 @@ public final class ReverseProxyServlet extends ProxyServlet {
         return super.filterResponseHeader(request, headerName, headerValue);
     }
 
+    /*
+     * レスポンスのヘッダが帰ってきた
+     */
+    @Override
+    protected void onResponseHeaders(HttpServletRequest request, HttpServletResponse response,
+            Response proxyResponse) {
+        super.onResponseHeaders(request, response, proxyResponse);
+
+        // キャッシュできるレスポンスならキャッシュに書き込み始める
+        AssetCache cache = (AssetCache) request.getAttribute(ASSET_CACHE);
+        if (cache != null) {
+            AssetCache.Store store = cache.beginStore(request, proxyResponse.getStatus(),
+                    proxyResponse.getHeaders());
+            if (store != null) {
+                request.setAttribute(ASSET_CACHE, store);
+            }
+            else {
+                request.removeAttribute(ASSET_CACHE);
+            }
+        }
+    }
+
     /*
      * レスポンスが帰ってきた
      */
@@ -95,14 +175,19 @@ public final class ReverseProxyServlet extends ProxyServlet {
 
         // フィルタークラスで必要かどうかを判別後、必要であれば内容をキャプチャする
         // 注意: 1回のリクエストで複数回の応答が帰ってくるので全ての応答をキャプチャする必要がある
-        if (Filter.isNeed(request.getServerName(), response.getContentType())) {
-            ByteArrayOutputStream stream = (ByteArrayOutputStream) request.getAttribute(Filter.RESPONSE_BODY);
-            if (stream == null) {
-                stream = new ByteArrayOutputStream();
-                request.setAttribute(Filter.RESPONSE_BODY, stream);
+        if ((request.getAttribute(Filter.CAPTURE) != null)
+                && Filter.isNeed(request.getServerName(), response.getContentType())) {
+            CaptureBuffer capture = (CaptureBuffer) request.getAttribute(Filter.RESPONSE_BODY);
+            if (capture == null) {
+                capture = new CaptureBuffer(this.getBufferPool());
+                request.setAttribute(Filter.RESPONSE_BODY, capture);
             }
-            // ストリームに書き込む
-            stream.write(buffer, offset, length);
+            // プールのバッファに書き込む
+            capture.write(buffer, offset, length);
+        }
+        Object store = request.getAttribute(ASSET_CACHE);
+        if (store instanceof AssetCache.Store) {
+            ((AssetCache.Store) store).write(buffer, offset, length);
         }
 
         super.onResponseContent(request, response, proxyResponse, buffer, offset, length);
@@ -115,42 +200,124 @@ public final class ReverseProxyServlet extends ProxyServlet {
     protected void onResponseSuccess(HttpServletRequest request, HttpServletResponse response,
             Response proxyResponse) {
 
-        if (Filter.isNeed(request.getServerName(), response.getContentType())) {
-            byte[] postField = (byte[]) request.getAttribute(Filter.REQUEST_BODY);
-            ByteArrayOutputStream stream = (ByteArrayOutputStream) request.getAttribute(Filter.RESPONSE_BODY);
-            if (stream != null) {
-                byte[] responseBody = stream.toByteArray();
-
-                // 圧縮されていたら解凍する
-                String contentEncoding = (String) request.getAttribute(Filter.CONTENT_ENCODING);
-                if ((contentEncoding != null) && contentEncoding.equals("gzip")) {
-                    try {
-                        responseBody = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(responseBody)));
-                    } catch (IOException e) {
-                        //
-                    }
+        CaptureBuffer capture = (CaptureBuffer) request.getAttribute(Filter.RESPONSE_BODY);
+        if (capture != null) {
+            try {
+                if (Filter.isNeed(request.getServerName(), response.getContentType())) {
+                    this.processCapture(request, capture);
                 }
+            } finally {
+                // DataProxyに渡し終わったのでバッファを返す
+                request.removeAttribute(Filter.RESPONSE_BODY);
+                capture.release();
+            }
+        }
+        Object store = request.getAttribute(ASSET_CACHE);
+        if (store instanceof AssetCache.Store) {
+            request.removeAttribute(ASSET_CACHE);
+            ((AssetCache.Store) store).commit();
+        }
+        this.recordLatency(request);
+        super.onResponseSuccess(request, response, proxyResponse);
+    }
+
+    /*
+     * レスポンスが失敗した
+     */
+    @Override
+    protected void onResponseFailure(HttpServletRequest request, HttpServletResponse response,
+            Response proxyResponse, Throwable failure) {
+        CaptureBuffer capture = (CaptureBuffer) request.getAttribute(Filter.RESPONSE_BODY);
+        if (capture != null) {
+            request.removeAttribute(Filter.RESPONSE_BODY);
+            capture.release();
+        }
+        Object store = request.getAttribute(ASSET_CACHE);
+        if (store instanceof AssetCache.Store) {
+            request.removeAttribute(ASSET_CACHE);
+            ((AssetCache.Store) store).abort();
+        }
+        this.recordLatency(request);
+        super.onResponseFailure(request, response, proxyResponse, failure);
+    }
+
+    /**
+     * キャプチャした内容をデータにしてキューに追加します
+     */
+    private void processCapture(HttpServletRequest request, CaptureBuffer capture) {
+        byte[] postField = (byte[]) request.getAttribute(Filter.REQUEST_BODY);
+        String url = request.getRequestURI();
+        InputStream stream = null;
+        try {
+            // 圧縮されていたらバッファから直接解凍する
+            String contentEncoding = (String) request.getAttribute(Filter.CONTENT_ENCODING);
+            if ((contentEncoding != null) && contentEncoding.equals("gzip")) {
+                stream = capture.newGzipInputStream();
+            }
+            else {
+                stream = capture.newInputStream();
+            }
 
-                UndefinedData rawData = new UndefinedData(request.getRequestURL().toString(),
-                        request.getRequestURI(), postField, responseBody);
+            UndefinedData rawData;
+            if (DatabaseClient.isTarget(url)) {
+                // 統計データベースに送る場合はキューに入れるのでバイト配列にする
+                byte[] responseBody = CaptureBuffer.toByteArray(stream, capture.size());
+                rawData = new UndefinedData(request.getRequestURL().toString(), url, postField, responseBody);
 
                 // 統計データベース(http://kancolle-db.net/)に送信する
                 DatabaseClient.send(rawData);
+            }
+            else {
+                rawData = new UndefinedData(request.getRequestURL().toString(), url, postField, stream);
+            }
 
-                // キャプチャしたバイト配列は何のデータかを決定する
-                Data data = rawData.toDefinedData();
-                if (data.getDataType() != DataType.UNDEFINED) {
-                    // 定義済みのデータの場合にキューに追加する
-                    DataProxy.add(data);
+            // キャプチャしたバイト配列は何のデータかを決定する
+            Data data = rawData.toDefinedData();
+            if (data.getDataType() != DataType.UNDEFINED) {
+                // 定義済みのデータの場合にキューに追加する
+                DataProxy.add(data);
 
-                    // サーバー名が不明の場合、サーバー名をセットする
-                    if (!Filter.isServerDetected()) {
-                        Filter.setServerName(request.getServerName());
-                    }
+                // サーバー名が不明の場合、サーバー名をセットする
+                if (!Filter.isServerDetected()) {
+                    Filter.setServerName(request.getServerName());
                 }
             }
+        } catch (IOException e) {
+            LOG.warn("レスポンスの解凍に失敗しました (" + url + ")", e);
+        } finally {
+            IOUtils.closeQuietly(stream);
         }
-        super.onResponseSuccess(request, response, proxyResponse);
+    }
+
+    /**
+     * 応答時間を記録します
+     */
+    private void recordLatency(HttpServletRequest request) {
+        Long start = (Long) request.getAttribute(START_TIME);
+        if (start != null) {
+            String uri = request.getRequestURI();
+            ProxyStatistics.Route route = ((uri != null) && uri.startsWith("/kcsapi/"))
+                    ? ProxyStatistics.Route.API : ProxyStatistics.Route.ASSET;
+            ProxyStatistics.record(route, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return キャプチャに使うバッファのプール
+     */
+    private ByteBufferPool getBufferPool() {
+        ByteBufferPool pool = this.bufferPool;
+        if (pool == null) {
+            HttpClient client = this.httpClient;
+            if (client != null) {
+                pool = client.getByteBufferPool();
+            }
+            if (pool == null) {
+                pool = new MappedByteBufferPool();
+            }
+            this.bufferPool = pool;
+        }
+        return pool;
     }
 
     /*
@@ -159,6 +326,7 @@ public final class ReverseProxyServlet extends ProxyServlet {
     @Override
     protected HttpClient newHttpClient() {
         HttpClient client = super.newHttpClient();
+        this.httpClient = client;
         // プロキシを設定する
         if (AppConfig.get().isUseProxy()) {
             // ポート
@@ -0,0 +1,152 @@
+package logbook.server.proxy;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+import logbook.config.AppConfig;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.http.HttpMethod;
+
+/**
+ * ゲームサーバーへの接続を温めておきます
+ *
+ * ゲームサーバーが検出されたら名前解決と接続を先に済ませ、
+ * APIの通信が続いている間は定期的に軽いリクエスト(HEAD)を送ってアイドルで切断されないようにします。
+ * 接続はAPI用のHttpClientのプールに戻るので、次のAPIの通信はその接続を使います。
+ * ゲームが送らないリクエストをサーバーに送ることになるので、設定で接続数を指定した場合だけ動作し、
+ * 接続を使いまわさない設定の場合は何もしません。
+ *
+ * @author Nekopanda
+ */
+final class UpstreamWarmer {
+
+    private static final Logger LOG = LogManager.getLogger(UpstreamWarmer.class);
+
+    /** 温め直す間隔(秒) */
+    private static final long INTERVAL = 20;
+
+    /** 最後のAPIからこの時間(分)が過ぎたら温めるのをやめる */
+    private static final long ACTIVE_PERIOD = 10;
+
+    private final HttpClient client;
+
+    private String host;
+
+    private int port;
+
+    /** APIのリクエストと同じ User-Agent を使う */
+    private String userAgent;
+
+    private long lastUsed;
+
+    private boolean scheduled = false;
+
+    /**
+     * @param client API用のHttpClient
+     */
+    UpstreamWarmer(HttpClient client) {
+        this.client = client;
+    }
+
+    /**
+     * APIの通信があったことを知らせます
+     *
+     * @param host ゲームサーバー
+     * @param port ポート
+     * @param userAgent APIのリクエストの User-Agent
+     */
+    synchronized void touch(String host, int port, String userAgent) {
+        if (!isEnabled()) {
+            return;
+        }
+        this.lastUsed = System.currentTimeMillis();
+        this.userAgent = userAgent;
+        if (host.equals(this.host) && (port == this.port)) {
+            return;
+        }
+        this.host = host;
+        this.port = port;
+        if (!this.scheduled) {
+            this.scheduled = true;
+            this.client.getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    UpstreamWarmer.this.resolve();
+                    UpstreamWarmer.this.warm();
+                }
+            });
+        }
+    }
+
+    private static boolean isEnabled() {
+        return (AppConfig.get().getUpstreamWarmConnections() > 0) && AppConfig.get().isUpstreamKeepAlive();
+    }
+
+    /** 名前解決を先に済ませる */
+    private void resolve() {
+        String target;
+        if (AppConfig.get().isUseProxy()) {
+            target = AppConfig.get().getProxyHost();
+        }
+        else {
+            synchronized (this) {
+                target = this.host;
+            }
+        }
+        try {
+            InetAddress.getByName(target);
+        } catch (UnknownHostException e) {
+            LOG.debug("名前解決に失敗しました (" + target + ")", e);
+        }
+    }
+
+    /** 待機させる数だけ同時にリクエストを送って接続をプールに入れ、次を予約する */
+    private void warm() {
+        String host;
+        int port;
+        String userAgent;
+        synchronized (this) {
+            long idle = System.currentTimeMillis() - this.lastUsed;
+            if (!this.client.isRunning() || !isEnabled() || (idle > TimeUnit.MINUTES.toMillis(ACTIVE_PERIOD))) {
+                // 通信していない間は温めない（次のAPIで再開する）
+                this.scheduled = false;
+                this.host = null;
+                return;
+            }
+            host = this.host;
+            port = this.port;
+            userAgent = this.userAgent;
+        }
+        int connections = AppConfig.get().getUpstreamWarmConnections();
+        for (int i = 0; i < connections; i++) {
+            Request request = this.client.newRequest(host, port)
+                    .method(HttpMethod.HEAD)
+                    .path("/")
+                    .timeout(INTERVAL, TimeUnit.SECONDS);
+            if (userAgent != null) {
+                request.agent(userAgent);
+            }
+            request.send(new Response.CompleteListener() {
+                @Override
+                public void onComplete(Result result) {
+                    if (result.isFailed()) {
+                        LOG.debug("接続の準備に失敗しました", result.getFailure());
+                    }
+                }
+            });
+        }
+        this.client.getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                UpstreamWarmer.this.warm();
+            }
+        }, INTERVAL, TimeUnit.SECONDS);
+    }
+}
@@ -16,6 +16,8 @@ import javax.json.JsonObject;
 import javax.json.JsonReader;
 
 import logbook.config.ShipConfig;
+import logbook.data.CaptureJournal;
+import logbook.data.DataType;
 import logbook.dto.BattleExDto;
 import logbook.dto.BattlePhaseKind;
 import logbook.dto.ResultRank;
@@ -28,11 +30,29 @@ import com.dyuproject.protostuff.Schema;
 import com.dyuproject.protostuff.runtime.RuntimeSchema;
 
 /**
+ * キャプチャした戦闘の結果判定を確認します
+ *
+ * キャプチャのジャーナルがあればジャーナルから、無い場合は古い形式の *.json ファイルから読み込みます。
+ *
  * @author Nekopanda
  *
  */
 public class BattleRankChecker {
 
+    private final FileOutputStream output;
+
+    private final Schema<BattleExDto> schema = RuntimeSchema.getSchema(BattleExDto.class);
+
+    private final LinkedBuffer buffer = LinkedBuffer.allocate(128 * 1024);
+
+    private BattleExDto battle = null;
+
+    private int resultCount = 0;
+
+    private BattleRankChecker(FileOutputStream output) {
+        this.output = output;
+    }
+
     /**
      * @param args
      */
@@ -40,105 +60,121 @@ public class BattleRankChecker {
         ShipConfig.load();
 
         File dir = new File(args[0]);
-        File[] files = dir.listFiles();
-        String[] fileNameList = new String[files.length];
-        for (int i = 0; i < files.length; ++i) {
-            fileNameList[i] = files[i].getAbsolutePath();
-        }
-        Arrays.sort(fileNameList);
-        int resultCount = 0;
         int[] rankCount = new int[10];
-        try {
-            FileOutputStream output = new FileOutputStream("dump-data.dat");
-            Schema<BattleExDto> schema = RuntimeSchema.getSchema(BattleExDto.class);
-            LinkedBuffer buffer = LinkedBuffer.allocate(128 * 1024);
-            BattleExDto battle = null;
-            for (int i = 0; i < fileNameList.length; ++i) {
-                String fileName = fileNameList[i];
-                boolean ignore = false;
-                boolean isBattleResult = false;
-                BattlePhaseKind kind = BattlePhaseKind.BATTLE;
-
-                if (fileName.endsWith("COMBINED_BATTLE_MIDNIGHT.json")) {
-                    kind = BattlePhaseKind.COMBINED_MIDNIGHT;
-                }
-                else if (fileName.endsWith("COMBINED_BATTLE_SP_MIDNIGHT.json")) {
-                    kind = BattlePhaseKind.COMBINED_SP_MIDNIGHT;
-                }
-                else if (fileName.endsWith("COMBINED_BATTLE.json")) {
-                    kind = BattlePhaseKind.COMBINED_BATTLE;
-                }
-                else if (fileName.endsWith("COMBINED_AIR_BATTLE.json")) {
-                    kind = BattlePhaseKind.COMBINED_AIR;
-                }
-                else if (fileName.endsWith("PRACTICE_BATTLE_MIDNIGHT.json")) {
-                    kind = BattlePhaseKind.MIDNIGHT;
-                }
-                else if (fileName.endsWith("PRACTICE_BATTLE.json")) {
-                    kind = BattlePhaseKind.BATTLE;
-                }
-                else if (fileName.endsWith("BATTLE_NIGHT_TO_DAY.json")) {
-                    kind = BattlePhaseKind.NIGHT_TO_DAY;
-                }
-                else if (fileName.endsWith("BATTLE_SP_MIDNIGHT.json")) {
-                    kind = BattlePhaseKind.SP_MIDNIGHT;
-                }
-                else if (fileName.endsWith("BATTLE_MIDNIGHT.json")) {
-                    kind = BattlePhaseKind.MIDNIGHT;
-                }
-                else if (fileName.endsWith("BATTLE.json")) {
-                    kind = BattlePhaseKind.BATTLE;
-                }
-                else if (fileName.endsWith("BATTLE_RESULT.json")) {
-                    isBattleResult = true;
-                }
-                else if (fileName.endsWith("COMBINED_BATTLE_RESULT.json")) {
-                    isBattleResult = true;
-                }
-                else if (fileName.endsWith("PRACTICE_BATTLE_RESULT.json")) {
-                    isBattleResult = true;
+        try (FileOutputStream output = new FileOutputStream("dump-data.dat")) {
+            BattleRankChecker checker = new BattleRankChecker(output);
+            if (CaptureJournal.listSegments(dir).length > 0) {
+                try (CaptureJournal.Reader reader = new CaptureJournal.Reader(dir)) {
+                    CaptureJournal.JournalData data;
+                    while ((data = reader.next()) != null) {
+                        checker.process(data.getDataType(), data.getJsonObject());
+                    }
                 }
-                else {
-                    ignore = true;
+            }
+            else {
+                File[] files = dir.listFiles();
+                String[] fileNameList = new String[files.length];
+                for (int i = 0; i < files.length; ++i) {
+                    fileNameList[i] = files[i].getAbsolutePath();
                 }
-
-                if (ignore == false) {
-                    String jsonString = FileUtils.readFileToString(new File(fileName), Charset.forName("MS932"));
-                    JsonReader jsonreader = Json.createReader(new StringReader(jsonString));
-                    JsonObject json = jsonreader.readObject();
-                    JsonObject data = json.getJsonObject("api_data");
-                    if (data == null)
+                Arrays.sort(fileNameList);
+                for (String fileName : fileNameList) {
+                    DataType type = getDataType(fileName);
+                    if (type == null) {
                         continue;
-                    if (isBattleResult == false) {
-                        if (battle == null) {
-                            battle = new BattleExDto(new Date());
-                        }
-                        battle.addPhase(data, kind);
                     }
-                    else if (battle != null) {
-                        battle.setResult(data, null);
-                        // ランクが合っているかチェック
-                        ResultRank estimatedRank = battle.getLastPhase().getEstimatedRank();
-                        if (!battle.getRank().equals(estimatedRank.rank())) {
-                            System.out.println("戦闘結果判定ミス: 正解ランク:" + battle.getRank() + " "
-                                    + battle.getLastPhase().getRankCalcInfo(battle));
-                        }
-
-                        ProtostuffIOUtil.writeDelimitedTo(output, battle, schema, buffer);
-                        buffer.clear();
-
-                        battle = null;
-                        ++resultCount;
+                    String jsonString = FileUtils.readFileToString(new File(fileName), Charset.forName("MS932"));
+                    try (JsonReader jsonreader = Json.createReader(new StringReader(jsonString))) {
+                        checker.process(type, jsonreader.readObject());
                     }
-                    jsonreader.close();
                 }
             }
-            output.close();
-            System.out.println(resultCount + "件の戦闘結果を処理");
+            System.out.println(checker.resultCount + "件の戦闘結果を処理");
             System.out.println(Arrays.toString(rankCount));
         } catch (IOException e) {
             System.out.println("なんかエラーっぽい");
             e.printStackTrace();
         }
     }
+
+    /** 古い形式のファイル名の末尾からデータの種類を求める（戦闘に関係ない場合は null ） */
+    private static DataType getDataType(String fileName) {
+        DataType found = null;
+        for (DataType type : DataType.values()) {
+            if (fileName.endsWith(type.name() + ".json")
+                    && ((found == null) || (type.name().length() > found.name().length()))) {
+                found = type;
+            }
+        }
+        return found;
+    }
+
+    private void process(DataType type, JsonObject json) throws IOException {
+        BattlePhaseKind kind;
+        switch (type) {
+        case COMBINED_BATTLE_MIDNIGHT:
+            kind = BattlePhaseKind.COMBINED_MIDNIGHT;
+            break;
+        case COMBINED_BATTLE_SP_MIDNIGHT:
+            kind = BattlePhaseKind.COMBINED_SP_MIDNIGHT;
+            break;
+        case COMBINED_BATTLE:
+            kind = BattlePhaseKind.COMBINED_BATTLE;
+            break;
+        case COMBINED_AIR_BATTLE:
+            kind = BattlePhaseKind.COMBINED_AIR;
+            break;
+        case PRACTICE_BATTLE_MIDNIGHT:
+            kind = BattlePhaseKind.MIDNIGHT;
+            break;
+        case PRACTICE_BATTLE:
+            kind = BattlePhaseKind.BATTLE;
+            break;
+        case BATTLE_NIGHT_TO_DAY:
+            kind = BattlePhaseKind.NIGHT_TO_DAY;
+            break;
+        case BATTLE_SP_MIDNIGHT:
+            kind = BattlePhaseKind.SP_MIDNIGHT;
+            break;
+        case BATTLE_MIDNIGHT:
+            kind = BattlePhaseKind.MIDNIGHT;
+            break;
+        case BATTLE:
+            kind = BattlePhaseKind.BATTLE;
+            break;
+        case BATTLE_RESULT:
+        case COMBINED_BATTLE_RESULT:
+        case PRACTICE_BATTLE_RESULT:
+            kind = null;
+            break;
+        default:
+            return;
+        }
+
+        JsonObject data = json.getJsonObject("api_data");
+        if (data == null) {
+            return;
+        }
+        if (kind != null) {
+            if (this.battle == null) {
+                this.battle = new BattleExDto(new Date());
+            }
+            this.battle.addPhase(data, kind);
+        }
+        else if (this.battle != null) {
+            this.battle.setResult(data, null);
+            // ランクが合っているかチェック
+            ResultRank estimatedRank = this.battle.getLastPhase().getEstimatedRank();
+            if (!this.battle.getRank().equals(estimatedRank.rank())) {
+                System.out.println("戦闘結果判定ミス: 正解ランク:" + this.battle.getRank() + " "
+                        + this.battle.getLastPhase().getRankCalcInfo(this.battle));
+            }
+
+            ProtostuffIOUtil.writeDelimitedTo(this.output, this.battle, this.schema, this.buffer);
+            this.buffer.clear();
+
+            this.battle = null;
+            ++this.resultCount;
+        }
+    }
 }
@@ -0,0 +1,313 @@
+/**
+ *
+ */
+package logbook.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import logbook.config.AppConfig;
+import logbook.data.UndefinedData;
+import logbook.server.proxy.DatabaseClient;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+/**
+ * 統計データベースへの送信をローカルの仮の送信先に対して確認します
+ *
+ * 使い方: DatabaseClientChecker
+ *
+ * 確認すること
+ * <ul>
+ * <li>送信できない間に溜めたデータを、次に起動した時に古い順に全部送り、ファイルを空にする</li>
+ * <li>失敗した場合は間隔を倍々にしながら送り直す</li>
+ * <li>送信しない設定にしたら溜めていたデータを捨て、それ以上送らない</li>
+ * </ul>
+ * 1つでも違っていたら終了コード1で終わります。
+ *
+ * @author Nekopanda
+ */
+public class DatabaseClientChecker {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** 待つ最大の時間(ミリ秒) */
+    private static final long TIMEOUT = 20000;
+
+    /** 送信するデータのパス */
+    private static final String[] PATHS = new String[] {
+            "/kcsapi/api_port/port",
+            "/kcsapi/api_get_member/ship2",
+            "/kcsapi/api_req_map/start"
+    };
+
+    /**
+     * 受け取った送信
+     */
+    private static final class Attempt {
+        private final long time;
+        private final String url;
+        private final int status;
+
+        private Attempt(long time, String url, int status) {
+            this.time = time;
+            this.url = url;
+            this.status = status;
+        }
+    }
+
+    /**
+     * 仮の送信先
+     */
+    private static final class Stub extends AbstractHandler {
+        private final List<Attempt> attempts = new ArrayList<Attempt>();
+
+        /** この回数だけ失敗を返す（負の場合はずっと失敗） */
+        private int failures = 0;
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request,
+                HttpServletResponse response) throws IOException {
+            String url = request.getParameter("url");
+            int status;
+            synchronized (this) {
+                if (this.failures != 0) {
+                    if (this.failures > 0) {
+                        this.failures--;
+                    }
+                    status = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+                }
+                else {
+                    status = HttpServletResponse.SC_OK;
+                }
+                this.attempts.add(new Attempt(System.currentTimeMillis(), url, status));
+                this.notifyAll();
+            }
+            response.setStatus(status);
+            baseRequest.setHandled(true);
+        }
+
+        private synchronized void reset(int failures) {
+            this.attempts.clear();
+            this.failures = failures;
+        }
+
+        private synchronized List<Attempt> getAttempts() {
+            return new ArrayList<Attempt>(this.attempts);
+        }
+
+        /** 成功した送信の url */
+        private synchronized List<String> getReceived() {
+            List<String> received = new ArrayList<String>();
+            for (Attempt attempt : this.attempts) {
+                if (attempt.status == HttpServletResponse.SC_OK) {
+                    received.add(attempt.url);
+                }
+            }
+            return received;
+        }
+
+        /** 送信が count 回来るまで待つ */
+        private synchronized boolean awaitAttempts(int count) throws InterruptedException {
+            long limit = System.currentTimeMillis() + TIMEOUT;
+            while (this.attempts.size() < count) {
+                long wait = limit - System.currentTimeMillis();
+                if (wait <= 0) {
+                    return false;
+                }
+                this.wait(wait);
+            }
+            return true;
+        }
+
+        /** 成功した送信が count 件になるまで待つ */
+        private boolean awaitReceived(int count) throws InterruptedException {
+            long limit = System.currentTimeMillis() + TIMEOUT;
+            synchronized (this) {
+                while (this.getReceived().size() < count) {
+                    long wait = limit - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        return false;
+                    }
+                    this.wait(wait);
+                }
+            }
+            return true;
+        }
+    }
+
+    private final Stub stub = new Stub();
+
+    private final File dir;
+
+    private String endpoint;
+
+    private int numErrors = 0;
+
+    private DatabaseClientChecker(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        AppConfig.load();
+        AppConfig.get().setSendDatabase(true);
+        AppConfig.get().setAccessKey("checker");
+        AppConfig.get().setDatabaseSendLog(false);
+
+        File dir = File.createTempFile("logbook-dbclient", "");
+        dir.delete();
+        dir.mkdirs();
+        DatabaseClientChecker checker = new DatabaseClientChecker(dir);
+        Server server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(checker.stub);
+        try {
+            server.start();
+            checker.endpoint = "http://127.0.0.1:" + connector.getLocalPort() + "/2/";
+
+            checker.checkSpoolReplay();
+            checker.checkBackoff();
+            checker.checkOptOut();
+        } finally {
+            server.stop();
+            FileUtils.deleteQuietly(dir);
+        }
+        if (checker.numErrors > 0) {
+            System.out.println(checker.numErrors + "件の確認に失敗しました");
+            System.exit(1);
+        }
+        System.out.println("全部の確認に成功しました");
+    }
+
+    /** 送信できない間に溜めたデータを次の起動で送る */
+    private void checkSpoolReplay() throws Exception {
+        System.out.println("溜めたデータの送信");
+        File spoolFile = new File(this.dir, "replay.dat");
+
+        // 送信先が失敗を返す間に終了する
+        this.stub.reset(-1);
+        DatabaseClient client = new DatabaseClient(spoolFile, this.endpoint);
+        client.start();
+        for (String path : PATHS) {
+            client.enqueue(createData(path));
+        }
+        this.check(this.stub.awaitAttempts(1), "送信されません");
+        client.terminate();
+        this.check(spoolFile.length() > 0, "送信できなかったデータがファイルに残っていません");
+
+        // 次の起動で全部送る
+        this.stub.reset(0);
+        client = new DatabaseClient(spoolFile, this.endpoint);
+        client.start();
+        this.check(this.stub.awaitReceived(PATHS.length), "溜めたデータが全部送信されません");
+        this.check(this.awaitEmpty(spoolFile), "送信し終わったのにファイルが空になりません");
+        client.terminate();
+        this.check(this.stub.getReceived().equals(urls()), "送信した順番が違います: " + this.stub.getReceived());
+        System.out.println("  " + client.getStatistics());
+    }
+
+    /** 失敗した場合は間隔を倍々にしながら送り直す */
+    private void checkBackoff() throws Exception {
+        System.out.println("送り直し");
+        File spoolFile = new File(this.dir, "backoff.dat");
+        int failures = 3;
+
+        this.stub.reset(failures);
+        DatabaseClient client = new DatabaseClient(spoolFile, this.endpoint);
+        client.start();
+        client.enqueue(createData(PATHS[0]));
+        this.check(this.stub.awaitReceived(1), "送り直したデータが送信されません");
+        this.check(this.awaitEmpty(spoolFile), "送信し終わったのにファイルが空になりません");
+        client.terminate();
+
+        List<Attempt> attempts = this.stub.getAttempts();
+        this.check(attempts.size() == (failures + 1), "送信の回数が違います: " + attempts.size());
+        long expected = 1000;
+        for (int i = 1; i < attempts.size(); ++i) {
+            long interval = attempts.get(i).time - attempts.get(i - 1).time;
+            System.out.println("  " + i + "回目の送り直しまで " + interval + "ms");
+            // タイマーの誤差は許す
+            this.check(interval >= ((expected * 9) / 10), "送り直しの間隔が短すぎます: " + interval + "ms");
+            expected *= 2;
+        }
+        System.out.println("  " + client.getStatistics());
+    }
+
+    /** 送信しない設定にしたら溜めていたデータを捨てる */
+    private void checkOptOut() throws Exception {
+        System.out.println("送信しない設定");
+        File spoolFile = new File(this.dir, "optout.dat");
+
+        this.stub.reset(-1);
+        DatabaseClient client = new DatabaseClient(spoolFile, this.endpoint);
+        client.start();
+        for (String path : PATHS) {
+            client.enqueue(createData(path));
+        }
+        this.check(this.stub.awaitAttempts(1), "送信されません");
+
+        AppConfig.get().setSendDatabase(false);
+        try {
+            this.check(this.awaitEmpty(spoolFile), "溜めていたデータが捨てられません");
+            int numAttempts = this.stub.getAttempts().size();
+            client.enqueue(createData(PATHS[0]));
+            // 送り直しの間隔より長く待つ
+            Thread.sleep(3000);
+            this.check(spoolFile.length() == 0, "送信しない設定なのにファイルに書き込まれました");
+            this.check(this.stub.getAttempts().size() == numAttempts, "送信しない設定なのに送信されました");
+            client.terminate();
+        } finally {
+            AppConfig.get().setSendDatabase(true);
+        }
+        System.out.println("  " + client.getStatistics());
+    }
+
+    /** ファイルが空になるまで待つ */
+    private boolean awaitEmpty(File file) throws InterruptedException {
+        long limit = System.currentTimeMillis() + TIMEOUT;
+        while (file.length() > 0) {
+            if (System.currentTimeMillis() >= limit) {
+                return false;
+            }
+            Thread.sleep(100);
+        }
+        return true;
+    }
+
+    private void check(boolean ok, String message) {
+        if (!ok) {
+            System.out.println("  NG: " + message);
+            this.numErrors++;
+        }
+    }
+
+    private static UndefinedData createData(String path) {
+        String url = "http://203.104.209.7" + path;
+        return new UndefinedData(url, path, "api_verno=1&api_token=0123456789abcdef".getBytes(UTF8),
+                "svdata={\"api_result\":1}".getBytes(UTF8));
+    }
+
+    private static List<String> urls() {
+        List<String> urls = new ArrayList<String>();
+        for (String path : PATHS) {
+            urls.add("http://203.104.209.7" + path);
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,321 @@
+/**
+ *
+ */
+package logbook.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import logbook.config.AppConfig;
+import logbook.data.CaptureJournal;
+import logbook.data.Data;
+import logbook.data.DataType;
+import logbook.data.TestData;
+import logbook.data.UndefinedData;
+import logbook.data.context.GlobalContext;
+import logbook.dto.BattleResultDto;
+import logbook.dto.DockDto;
+import logbook.dto.ItemDto;
+import logbook.dto.NdockDto;
+import logbook.dto.ShipDto;
+import logbook.internal.BattleResultServer;
+import logbook.internal.LogWriter;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * 保存した通信を画面なしで高速に再生します
+ *
+ * 使い方: ReplayEngine &lt;キャプチャのフォルダ&gt; [正解ファイル] [-update]
+ *
+ * フォルダにジャーナル(journal_*.lbj)がある場合はジャーナルを、無い場合はJSONファイルを読み込みます。
+ * リクエストが記録されているデータは本番と同じく UndefinedData.toDefinedData() で同定してから
+ * GlobalContext.updateContext() に渡します。
+ * 終わったら DataType ごとの処理時間と、最後の状態（艦娘、装備、艦隊、入渠、戦闘結果）を出力します。
+ * 正解ファイルを指定すると最後の状態を比較し、違っていたら終了コード1で終わります。
+ * 正解ファイルが無いか -update を付けた場合は正解ファイルを書き込みます。
+ *
+ * ログや戦闘結果は一時フォルダに出力するので、普段のログには追加されません。
+ *
+ * @author Nekopanda
+ */
+public class ReplayEngine {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** 違いを表示する最大の数 */
+    private static final int MAX_DIFF_LINES = 50;
+
+    /**
+     * DataType ごとの処理時間
+     */
+    private static final class Stat {
+        private int count;
+        private long parseNanos;
+        private long updateNanos;
+        private long maxNanos;
+
+        private void add(long parse, long update) {
+            this.count++;
+            this.parseNanos += parse;
+            this.updateNanos += update;
+            this.maxNanos = Math.max(this.maxNanos, parse + update);
+        }
+    }
+
+    private final Map<DataType, Stat> stats = new EnumMap<DataType, Stat>(DataType.class);
+
+    private int numEvents;
+
+    private int numErrors;
+
+    private long totalNanos;
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("使い方: ReplayEngine <キャプチャのフォルダ> [正解ファイル] [-update]");
+            System.exit(2);
+        }
+        File dir = new File(args[0]);
+        File golden = (args.length >= 2) ? new File(args[1]) : null;
+        boolean update = (args.length >= 3) && "-update".equals(args[2]);
+
+        File outDir = setup();
+        ReplayEngine engine = new ReplayEngine();
+        try {
+            engine.replay(dir);
+        } finally {
+            LogWriter.end();
+            FileUtils.deleteQuietly(outDir);
+        }
+        engine.printStatistics();
+
+        List<String> snapshot = snapshot();
+        if (golden == null) {
+            for (String line : snapshot) {
+                System.out.println(line);
+            }
+            return;
+        }
+        if (update || !golden.exists()) {
+            FileUtils.writeLines(golden, "UTF-8", snapshot, "\n");
+            System.out.println("正解ファイルを書き込みました: " + golden.getPath() + " (" + snapshot.size() + "行)");
+            return;
+        }
+        List<String> expected = FileUtils.readLines(golden, UTF8);
+        if (!compare(expected, snapshot)) {
+            System.exit(1);
+        }
+        System.out.println("最後の状態は正解と一致しました (" + snapshot.size() + "行)");
+    }
+
+    /**
+     * 設定を読み込んで、ログの出力先を一時フォルダにします
+     *
+     * @return 一時フォルダ
+     */
+    public static File setup() throws IOException {
+        // 他の設定は static initializer で読み込まれる
+        AppConfig.load();
+
+        File outDir = File.createTempFile("logbook-replay", "");
+        outDir.delete();
+        outDir.mkdirs();
+        AppConfig.get().setReportPath(new File(outDir, "report").getPath());
+        AppConfig.get().setBattleLogPath(new File(outDir, "battlelog").getPath());
+        // ジャーナルに追記すると読んでいるフォルダに書き込んでしまう
+        AppConfig.get().setStoreJson(false);
+        AppConfig.get().setSendDatabase(false);
+        BattleResultServer.setLogPath(AppConfig.get().getBattleLogPath());
+        return outDir;
+    }
+
+    /**
+     * フォルダのデータを全部再生します
+     *
+     * @param dir キャプチャのフォルダ
+     */
+    public void replay(File dir) throws IOException {
+        if (CaptureJournal.listSegments(dir).length > 0) {
+            try (CaptureJournal.Reader reader = new CaptureJournal.Reader(dir)) {
+                CaptureJournal.JournalData data;
+                while ((data = reader.next()) != null) {
+                    this.feed(data);
+                }
+            }
+        }
+        else {
+            File[] files = dir.listFiles();
+            if (files == null) {
+                throw new IOException("フォルダがありません (" + dir.getPath() + ")");
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                if (!file.getName().endsWith(".json")) {
+                    continue;
+                }
+                try {
+                    this.process(new TestData(file.getPath()), 0);
+                } catch (ParseException | IllegalArgumentException e) {
+                    this.numErrors++;
+                    System.out.println("読み込めません: " + file.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * ジャーナルのデータを同定して処理します
+     * リクエストが記録されていない場合は同定せずにそのまま処理します
+     */
+    private void feed(CaptureJournal.JournalData data) {
+        if (data.getRequest().isEmpty() || (DataType.TYPEMAP.get(data.getUrl()) == null)) {
+            this.process(data, 0);
+            return;
+        }
+        byte[] response = ("svdata=" + data.getResponse()).getBytes(UTF8);
+        long start = System.nanoTime();
+        Data defined = new UndefinedData(data.getUrl(), data.getUrl(), data.getRequest().getBytes(UTF8), response)
+                .toDefinedData();
+        long parse = System.nanoTime() - start;
+        if (defined.getDataType() == DataType.UNDEFINED) {
+            this.numErrors++;
+            System.out.println("同定できません: " + data.getUrl() + " " + data.getCreateDate());
+            return;
+        }
+        this.process(defined, parse);
+    }
+
+    private void process(Data data, long parse) {
+        long start = System.nanoTime();
+        try {
+            GlobalContext.updateContext(data);
+        } catch (RuntimeException e) {
+            this.numErrors++;
+            System.out.println("処理中に例外: " + data.getDataType() + " " + data.getCreateDate());
+            e.printStackTrace(System.out);
+        }
+        long update = System.nanoTime() - start;
+        Stat stat = this.stats.get(data.getDataType());
+        if (stat == null) {
+            stat = new Stat();
+            this.stats.put(data.getDataType(), stat);
+        }
+        stat.add(parse, update);
+        this.numEvents++;
+        this.totalNanos += parse + update;
+    }
+
+    /**
+     * 処理時間を出力します
+     */
+    public void printStatistics() {
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(this.totalNanos);
+        double perSec = (this.totalNanos > 0) ? ((this.numEvents * 1e9) / this.totalNanos) : 0;
+        System.out.println(String.format("完了 %d件 (エラー%d件) %d ms %.1f件/秒",
+                this.numEvents, this.numErrors, totalMillis, perSec));
+        System.out.println(String.format("%-32s %8s %12s %12s %12s", "DataType", "件数", "同定(平均us)", "更新(平均us)",
+                "最大(us)"));
+        for (Map.Entry<DataType, Stat> entry : this.stats.entrySet()) {
+            Stat stat = entry.getValue();
+            System.out.println(String.format("%-32s %8d %12.1f %12.1f %12d", entry.getKey(), stat.count,
+                    (stat.parseNanos / 1e3) / stat.count, (stat.updateNanos / 1e3) / stat.count,
+                    TimeUnit.NANOSECONDS.toMicros(stat.maxNanos)));
+        }
+    }
+
+    /**
+     * @return 最後の状態（比較しやすいように1行1項目で並べたもの）
+     */
+    public static List<String> snapshot() {
+        List<String> lines = new ArrayList<String>();
+
+        List<String> ships = new ArrayList<String>();
+        for (ShipDto ship : GlobalContext.getShipMap().values()) {
+            ships.add(String.format("ship %d %d lv=%d exp=%d hp=%d/%d cond=%d fuel=%d bull=%d items=%s",
+                    ship.getId(), ship.getShipId(), ship.getLv(), ship.getExp(), ship.getNowhp(), ship.getMaxhp(),
+                    ship.getCond(), ship.getFuel(), ship.getBull(), Arrays.toString(ship.getItemId())));
+        }
+        Collections.sort(ships);
+        lines.addAll(ships);
+
+        List<String> items = new ArrayList<String>();
+        for (ItemDto item : GlobalContext.getItemMap().values()) {
+            if (item == null) {
+                continue;
+            }
+            items.add(String.format("item %d %d lv=%d locked=%b",
+                    item.getId(), item.getSlotitemId(), item.getLevel(), item.isLocked()));
+        }
+        Collections.sort(items);
+        lines.addAll(items);
+
+        List<String> docks = new ArrayList<String>();
+        for (DockDto dock : GlobalContext.getDock().values()) {
+            StringBuilder sb = new StringBuilder("dock ").append(dock.getId());
+            for (ShipDto ship : dock.getShips()) {
+                sb.append(' ').append(ship.getId());
+            }
+            docks.add(sb.toString());
+        }
+        Collections.sort(docks);
+        lines.addAll(docks);
+
+        NdockDto[] ndocks = GlobalContext.getNdocks();
+        for (int i = 0; i < ndocks.length; i++) {
+            if (ndocks[i] != null) {
+                lines.add("ndock " + (i + 1) + " " + ndocks[i].getNdockid());
+            }
+        }
+
+        List<BattleResultDto> results = GlobalContext.getBattleResultList();
+        for (int i = 0; i < results.size(); i++) {
+            BattleResultDto result = results.get(i);
+            lines.add("battle " + i + " " + result.getRank().rank() + " " + result.getEnemyName());
+        }
+        return lines;
+    }
+
+    /**
+     * 正解と比較して違いを出力します
+     *
+     * @return 一致した場合は true
+     */
+    private static boolean compare(List<String> expected, List<String> actual) {
+        Set<String> expectedSet = new HashSet<String>(expected);
+        Set<String> actualSet = new HashSet<String>(actual);
+        int diffs = 0;
+        for (String line : expected) {
+            if (!actualSet.contains(line)) {
+                if (diffs++ < MAX_DIFF_LINES) {
+                    System.out.println("- " + line);
+                }
+            }
+        }
+        for (String line : actual) {
+            if (!expectedSet.contains(line)) {
+                if (diffs++ < MAX_DIFF_LINES) {
+                    System.out.println("+ " + line);
+                }
+            }
+        }
+        if (diffs > 0) {
+            System.out.println("最後の状態が正解と違います (" + diffs + "行)");
+        }
+        return diffs == 0;
+    }
+}